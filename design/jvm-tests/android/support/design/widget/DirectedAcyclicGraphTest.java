@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.design.widget;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class DirectedAcyclicGraphTest extends TestCase {
+
+    @Test
+    public void testDependenciesAreSortedFirst() {
+        final DirectedAcyclicGraph<String> graph = createGraph("a", "b", "c", "d");
+        graph.addEdge("a", "c");
+        graph.addEdge("c", "d");
+
+        assertEquals(Arrays.asList("d", "c", "a", "b"), graph.getSortedList());
+        assertEquals(Arrays.asList("c"), graph.getIncomingEdges("a"));
+        assertEquals(Arrays.asList("d"), graph.getIncomingEdges("c"));
+        assertNull(graph.getIncomingEdges("b"));
+        assertNull(graph.getIncomingEdges("d"));
+        assertEquals(Arrays.asList("c"), graph.getOutgoingEdges("d"));
+        assertEquals(Arrays.asList("a"), graph.getOutgoingEdges("c"));
+        assertNull(graph.getOutgoingEdges("a"));
+        assertNull(graph.getOutgoingEdges("b"));
+    }
+
+    @Test
+    public void testIndependentNodesKeepTheirOrder() {
+        final DirectedAcyclicGraph<String> graph = createGraph("a", "b", "c", "d", "e");
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), graph.getSortedList());
+
+        // Only the dependency moves, the other nodes stay where they were
+        graph.addEdge("b", "d");
+        assertEquals(Arrays.asList("a", "d", "b", "c", "e"), graph.getSortedList());
+    }
+
+    @Test
+    public void testOutgoingEdgesAreInSortedOrder() {
+        final DirectedAcyclicGraph<String> graph = createGraph("a", "b", "c", "d");
+        graph.addEdge("a", "d");
+        graph.addEdge("a", "c");
+        graph.addEdge("c", "d");
+
+        final List<String> sorted = graph.getSortedList();
+        assertEquals(Arrays.asList("d", "c", "a", "b"), sorted);
+        assertEquals(Arrays.asList("c", "a"), graph.getOutgoingEdges("d"));
+        assertEquals(Arrays.asList("a"), graph.getOutgoingEdges("c"));
+    }
+
+    @Test
+    public void testCycleIsBroken() {
+        final DirectedAcyclicGraph<String> graph = createGraph("a", "b", "c", "d");
+        graph.addEdge("a", "b");
+        graph.addEdge("b", "c");
+        graph.addEdge("c", "a");
+
+        // Every node is sorted once, and the edge closing the cycle is left out
+        assertEquals(Arrays.asList("c", "b", "a", "d"), graph.getSortedList());
+        assertEquals(Arrays.asList("b"), graph.getOutgoingEdges("c"));
+        assertEquals(Arrays.asList("a"), graph.getOutgoingEdges("b"));
+        assertNull(graph.getOutgoingEdges("a"));
+        assertEquals(Arrays.asList("a"), graph.getIncomingEdges("c"));
+    }
+
+    @Test
+    public void testAddEdgeRequiresNodes() {
+        final DirectedAcyclicGraph<String> graph = createGraph("a");
+        try {
+            graph.addEdge("a", "b");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            graph.addEdge("b", "a");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testChangesAreSortedAgain() {
+        final DirectedAcyclicGraph<String> graph = createGraph("a", "b");
+        assertEquals(Arrays.asList("a", "b"), graph.getSortedList());
+
+        graph.addNode("c");
+        graph.addNode("a");
+        graph.addEdge("a", "c");
+        assertEquals(3, graph.size());
+        assertEquals(Arrays.asList("c", "a", "b"), graph.getSortedList());
+
+        graph.clear();
+        assertEquals(0, graph.size());
+        assertFalse(graph.contains("a"));
+        assertTrue(graph.getSortedList().isEmpty());
+        assertNull(graph.getOutgoingEdges("c"));
+
+        graph.addNode("b");
+        graph.addNode("a");
+        graph.addEdge("b", "a");
+        assertEquals(Arrays.asList("a", "b"), graph.getSortedList());
+        assertEquals(Arrays.asList("b"), graph.getOutgoingEdges("a"));
+    }
+
+    private static DirectedAcyclicGraph<String> createGraph(String... nodes) {
+        final DirectedAcyclicGraph<String> graph = new DirectedAcyclicGraph<>();
+        for (String node : nodes) {
+            graph.addNode(node);
+        }
+        return graph;
+    }
+}
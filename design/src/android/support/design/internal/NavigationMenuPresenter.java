@@ -114,6 +114,13 @@ public class NavigationMenuPresenter implements MenuPresenter {
         }
     }
 
+    @Override
+    public void updateMenuItemView(MenuItemImpl item) {
+        if (mAdapter != null) {
+            mAdapter.updateItem(item);
+        }
+    }
+
     @Override
     public void setCallback(Callback cb) {
         mCallback = cb;
@@ -427,6 +434,34 @@ public class NavigationMenuPresenter implements MenuPresenter {
             notifyDataSetChanged();
         }
 
+        /**
+         * Rebinds the rows showing {@code menuItem} after its properties changed, falling back
+         * to {@link #update()} if the change affects the rest of the list.
+         */
+        public void updateItem(MenuItemImpl menuItem) {
+            if (mUpdateSuspended) {
+                return;
+            }
+            if (menuItem.isChecked() && menuItem != mCheckedItem && menuItem.isCheckable()) {
+                // Unchecks the previously checked item, which notifies us of that change too
+                setCheckedItem(menuItem);
+            }
+            for (int i = 0, size = mItems.size(); i < size; i++) {
+                NavigationMenuItem item = mItems.get(i);
+                if (item instanceof NavigationMenuTextItem
+                        && ((NavigationMenuTextItem) item).getMenuItem() == menuItem) {
+                    if (((NavigationMenuTextItem) item).hasIcon()
+                            != (menuItem.getIcon() != null)) {
+                        // Icons are aligned within groups, so gaining or losing one affects
+                        // the other items of the group too
+                        update();
+                        return;
+                    }
+                    notifyItemChanged(i);
+                }
+            }
+        }
+
         /**
          * Flattens the visible menu items of {@link #mMenu} into {@link #mItems},
          * while inserting separators between items when necessary.
@@ -499,6 +534,12 @@ public class NavigationMenuPresenter implements MenuPresenter {
                     currentGroupId = groupId;
                 }
             }
+            for (int i = 0, size = mItems.size(); i < size; i++) {
+                NavigationMenuItem item = mItems.get(i);
+                if (item instanceof NavigationMenuTextItem) {
+                    ((NavigationMenuTextItem) item).updateHasIcon();
+                }
+            }
             mUpdateSuspended = false;
         }
 
@@ -597,6 +638,11 @@ public class NavigationMenuPresenter implements MenuPresenter {
 
         private final MenuItemImpl mMenuItem;
 
+        /**
+         * Whether the menu item had an icon when the list was last prepared.
+         */
+        private boolean mHasIcon;
+
         private NavigationMenuTextItem(MenuItemImpl item) {
             mMenuItem = item;
         }
@@ -605,6 +651,14 @@ public class NavigationMenuPresenter implements MenuPresenter {
             return mMenuItem;
         }
 
+        public boolean hasIcon() {
+            return mHasIcon;
+        }
+
+        void updateHasIcon() {
+            mHasIcon = mMenuItem.getIcon() != null;
+        }
+
     }
 
     /**
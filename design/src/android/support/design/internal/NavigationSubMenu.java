@@ -39,4 +39,10 @@ public class NavigationSubMenu extends SubMenuBuilder {
         ((MenuBuilder) getParentMenu()).onItemsChanged(structureChanged);
     }
 
+    @Override
+    public void onItemChanged(MenuItemImpl item) {
+        super.onItemChanged(item);
+        ((MenuBuilder) getParentMenu()).onItemChanged(item);
+    }
+
 }
@@ -25,6 +25,7 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Build;
+import android.support.annotation.VisibleForTesting;
 import android.support.design.R;
 import android.support.v4.text.TextDirectionHeuristicsCompat;
 import android.support.v4.view.GravityCompat;
@@ -66,30 +67,30 @@ final class CollapsingTextHelper {
     private int mExpandedTextColor;
     private int mCollapsedTextColor;
 
-    private float mExpandedDrawY;
-    private float mCollapsedDrawY;
-    private float mExpandedDrawX;
-    private float mCollapsedDrawX;
     private float mCurrentDrawX;
     private float mCurrentDrawY;
     private Typeface mCollapsedTypeface;
     private Typeface mExpandedTypeface;
-    private Typeface mCurrentTypeface;
 
     private CharSequence mText;
-    private CharSequence mTextToDraw;
-    private boolean mIsRtl;
 
+    // The text laid out at both ends of the animation, every frame in between only scales and
+    // moves one of them
+    private final TextLayout mCollapsedLayout;
+    private final TextLayout mExpandedLayout;
+    private TextLayout mCurrentLayout;
+    private boolean mTextLayoutsValid;
+    private int mTextLayoutDirection;
+
+    private boolean mUseScalingTexture = USE_SCALING_TEXTURE;
     private boolean mUseTexture;
     private Bitmap mExpandedTitleTexture;
+    private Canvas mTextureCanvas;
     private Paint mTexturePaint;
-    private float mTextureAscent;
-    private float mTextureDescent;
+    // Whether mExpandedTitleTexture holds the current expanded text
+    private boolean mTextureValid;
 
     private float mScale;
-    private float mCurrentTextSize;
-
-    private boolean mBoundsChanged;
 
     private final TextPaint mTextPaint;
 
@@ -111,6 +112,9 @@ final class CollapsingTextHelper {
         mCollapsedBounds = new Rect();
         mExpandedBounds = new Rect();
         mCurrentBounds = new RectF();
+
+        mCollapsedLayout = new TextLayout();
+        mExpandedLayout = new TextLayout();
     }
 
     void setTextSizeInterpolator(Interpolator interpolator) {
@@ -126,14 +130,14 @@ final class CollapsingTextHelper {
     void setExpandedTextSize(float textSize) {
         if (mExpandedTextSize != textSize) {
             mExpandedTextSize = textSize;
-            recalculate();
+            invalidateTextLayouts();
         }
     }
 
     void setCollapsedTextSize(float textSize) {
         if (mCollapsedTextSize != textSize) {
             mCollapsedTextSize = textSize;
-            recalculate();
+            invalidateTextLayouts();
         }
     }
 
@@ -147,6 +151,8 @@ final class CollapsingTextHelper {
     void setExpandedTextColor(int textColor) {
         if (mExpandedTextColor != textColor) {
             mExpandedTextColor = textColor;
+            // The texture is drawn in the expanded color
+            mTextureValid = false;
             recalculate();
         }
     }
@@ -154,7 +160,7 @@ final class CollapsingTextHelper {
     void setExpandedBounds(int left, int top, int right, int bottom) {
         if (!rectEquals(mExpandedBounds, left, top, right, bottom)) {
             mExpandedBounds.set(left, top, right, bottom);
-            mBoundsChanged = true;
+            mTextLayoutsValid = false;
             onBoundsChanged();
         }
     }
@@ -162,7 +168,7 @@ final class CollapsingTextHelper {
     void setCollapsedBounds(int left, int top, int right, int bottom) {
         if (!rectEquals(mCollapsedBounds, left, top, right, bottom)) {
             mCollapsedBounds.set(left, top, right, bottom);
-            mBoundsChanged = true;
+            mTextLayoutsValid = false;
             onBoundsChanged();
         }
     }
@@ -175,7 +181,7 @@ final class CollapsingTextHelper {
     void setExpandedTextGravity(int gravity) {
         if (mExpandedTextGravity != gravity) {
             mExpandedTextGravity = gravity;
-            recalculate();
+            invalidateTextLayouts();
         }
     }
 
@@ -186,7 +192,7 @@ final class CollapsingTextHelper {
     void setCollapsedTextGravity(int gravity) {
         if (mCollapsedTextGravity != gravity) {
             mCollapsedTextGravity = gravity;
-            recalculate();
+            invalidateTextLayouts();
         }
     }
 
@@ -214,7 +220,7 @@ final class CollapsingTextHelper {
             mCollapsedTypeface = readFontFamilyTypeface(resId);
         }
 
-        recalculate();
+        invalidateTextLayouts();
     }
 
     void setExpandedTextAppearance(int resId) {
@@ -237,7 +243,7 @@ final class CollapsingTextHelper {
             mExpandedTypeface = readFontFamilyTypeface(resId);
         }
 
-        recalculate();
+        invalidateTextLayouts();
     }
 
     private Typeface readFontFamilyTypeface(int resId) {
@@ -257,20 +263,20 @@ final class CollapsingTextHelper {
     void setCollapsedTypeface(Typeface typeface) {
         if (mCollapsedTypeface != typeface) {
             mCollapsedTypeface = typeface;
-            recalculate();
+            invalidateTextLayouts();
         }
     }
 
     void setExpandedTypeface(Typeface typeface) {
         if (mExpandedTypeface != typeface) {
             mExpandedTypeface = typeface;
-            recalculate();
+            invalidateTextLayouts();
         }
     }
 
     void setTypefaces(Typeface typeface) {
         mCollapsedTypeface = mExpandedTypeface = typeface;
-        recalculate();
+        invalidateTextLayouts();
     }
 
     Typeface getCollapsedTypeface() {
@@ -314,10 +320,12 @@ final class CollapsingTextHelper {
     }
 
     private void calculateOffsets(final float fraction) {
+        // This runs for every frame of the animation, so it only interpolates between the two
+        // text layouts and must not allocate
         interpolateBounds(fraction);
-        mCurrentDrawX = lerp(mExpandedDrawX, mCollapsedDrawX, fraction,
+        mCurrentDrawX = lerp(mExpandedLayout.drawX, mCollapsedLayout.drawX, fraction,
                 mPositionInterpolator);
-        mCurrentDrawY = lerp(mExpandedDrawY, mCollapsedDrawY, fraction,
+        mCurrentDrawY = lerp(mExpandedLayout.drawY, mCollapsedLayout.drawY, fraction,
                 mPositionInterpolator);
 
         setInterpolatedTextSize(lerp(mExpandedTextSize, mCollapsedTextSize,
@@ -341,83 +349,82 @@ final class CollapsingTextHelper {
     }
 
     private void calculateBaseOffsets() {
-        final float currentTextSize = mCurrentTextSize;
-
-        // We then calculate the collapsed text size, using the same logic
-        calculateUsingTextSize(mCollapsedTextSize);
-        float width = mTextToDraw != null ?
-                mTextPaint.measureText(mTextToDraw, 0, mTextToDraw.length()) : 0;
-        final int collapsedAbsGravity = GravityCompat.getAbsoluteGravity(mCollapsedTextGravity,
-                mIsRtl ? ViewCompat.LAYOUT_DIRECTION_RTL : ViewCompat.LAYOUT_DIRECTION_LTR);
-        switch (collapsedAbsGravity & Gravity.VERTICAL_GRAVITY_MASK) {
-            case Gravity.BOTTOM:
-                mCollapsedDrawY = mCollapsedBounds.bottom;
-                break;
-            case Gravity.TOP:
-                mCollapsedDrawY = mCollapsedBounds.top - mTextPaint.ascent();
-                break;
-            case Gravity.CENTER_VERTICAL:
-            default:
-                float textHeight = mTextPaint.descent() - mTextPaint.ascent();
-                float textOffset = (textHeight / 2) - mTextPaint.descent();
-                mCollapsedDrawY = mCollapsedBounds.centerY() + textOffset;
-                break;
+        final int layoutDirection = ViewCompat.getLayoutDirection(mView);
+        if (mTextLayoutsValid && mTextLayoutDirection == layoutDirection) {
+            // Nothing which affects the text layouts has changed since they were computed
+            return;
         }
-        switch (collapsedAbsGravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
-            case Gravity.CENTER_HORIZONTAL:
-                mCollapsedDrawX = mCollapsedBounds.centerX() - (width / 2);
-                break;
-            case Gravity.RIGHT:
-                mCollapsedDrawX = mCollapsedBounds.right - width;
-                break;
-            case Gravity.LEFT:
-            default:
-                mCollapsedDrawX = mCollapsedBounds.left;
-                break;
+
+        layoutText(mCollapsedLayout, mCollapsedTextSize, mCollapsedTypeface, mCollapsedBounds,
+                mCollapsedTextGravity);
+        layoutText(mExpandedLayout, mExpandedTextSize, mExpandedTypeface, mExpandedBounds,
+                mExpandedTextGravity);
+
+        mTextLayoutsValid = true;
+        mTextLayoutDirection = layoutDirection;
+        // The expanded text may have changed so the texture needs to be redrawn
+        mTextureValid = false;
+    }
+
+    /**
+     * Ellipsizes and positions the text within {@code bounds}, using the given text size and
+     * typeface.
+     */
+    private void layoutText(TextLayout layout, float textSize, Typeface typeface, Rect bounds,
+            int gravity) {
+        mTextPaint.setTextSize(textSize);
+        mTextPaint.setTypeface(typeface);
+
+        layout.textSize = textSize;
+        layout.typeface = typeface;
+        layout.ascent = mTextPaint.ascent();
+        layout.descent = mTextPaint.descent();
+
+        if (mText != null) {
+            layout.text = TextUtils.ellipsize(mText, mTextPaint,
+                    Math.max(0, bounds.width()), TextUtils.TruncateAt.END);
+            layout.isRtl = calculateIsRtl(layout.text);
+            layout.width = mTextPaint.measureText(layout.text, 0, layout.text.length());
+        } else {
+            layout.text = null;
+            layout.isRtl = false;
+            layout.width = 0;
         }
 
-        calculateUsingTextSize(mExpandedTextSize);
-        width = mTextToDraw != null
-                ? mTextPaint.measureText(mTextToDraw, 0, mTextToDraw.length()) : 0;
-        final int expandedAbsGravity = GravityCompat.getAbsoluteGravity(mExpandedTextGravity,
-                mIsRtl ? ViewCompat.LAYOUT_DIRECTION_RTL : ViewCompat.LAYOUT_DIRECTION_LTR);
-        switch (expandedAbsGravity & Gravity.VERTICAL_GRAVITY_MASK) {
+        final int absGravity = GravityCompat.getAbsoluteGravity(gravity,
+                layout.isRtl ? ViewCompat.LAYOUT_DIRECTION_RTL : ViewCompat.LAYOUT_DIRECTION_LTR);
+        switch (absGravity & Gravity.VERTICAL_GRAVITY_MASK) {
             case Gravity.BOTTOM:
-                mExpandedDrawY = mExpandedBounds.bottom;
+                layout.drawY = bounds.bottom;
                 break;
             case Gravity.TOP:
-                mExpandedDrawY = mExpandedBounds.top - mTextPaint.ascent();
+                layout.drawY = bounds.top - layout.ascent;
                 break;
             case Gravity.CENTER_VERTICAL:
             default:
-                float textHeight = mTextPaint.descent() - mTextPaint.ascent();
-                float textOffset = (textHeight / 2) - mTextPaint.descent();
-                mExpandedDrawY = mExpandedBounds.centerY() + textOffset;
+                float textHeight = layout.descent - layout.ascent;
+                float textOffset = (textHeight / 2) - layout.descent;
+                layout.drawY = bounds.centerY() + textOffset;
                 break;
         }
-        switch (expandedAbsGravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+        switch (absGravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
             case Gravity.CENTER_HORIZONTAL:
-                mExpandedDrawX = mExpandedBounds.centerX() - (width / 2);
+                layout.drawX = bounds.centerX() - (layout.width / 2);
                 break;
             case Gravity.RIGHT:
-                mExpandedDrawX = mExpandedBounds.right - width;
+                layout.drawX = bounds.right - layout.width;
                 break;
             case Gravity.LEFT:
             default:
-                mExpandedDrawX = mExpandedBounds.left;
+                layout.drawX = bounds.left;
                 break;
         }
-
-        // The bounds have changed so we need to clear the texture
-        clearTexture();
-        // Now reset the text size back to the original
-        setInterpolatedTextSize(currentTextSize);
     }
 
     private void interpolateBounds(float fraction) {
         mCurrentBounds.left = lerp(mExpandedBounds.left, mCollapsedBounds.left,
                 fraction, mPositionInterpolator);
-        mCurrentBounds.top = lerp(mExpandedDrawY, mCollapsedDrawY,
+        mCurrentBounds.top = lerp(mExpandedLayout.drawY, mCollapsedLayout.drawY,
                 fraction, mPositionInterpolator);
         mCurrentBounds.right = lerp(mExpandedBounds.right, mCollapsedBounds.right,
                 fraction, mPositionInterpolator);
@@ -428,25 +435,15 @@ final class CollapsingTextHelper {
     public void draw(Canvas canvas) {
         final int saveCount = canvas.save();
 
-        if (mTextToDraw != null && mDrawTitle) {
+        final TextLayout layout = mCurrentLayout;
+        if (layout != null && layout.text != null && mDrawTitle) {
             float x = mCurrentDrawX;
             float y = mCurrentDrawY;
 
-            final boolean drawTexture = mUseTexture && mExpandedTitleTexture != null;
+            final boolean drawTexture = mUseTexture && mTextureValid;
 
-            final float ascent;
-            final float descent;
-
-            // Update the TextPaint to the current text size
-            mTextPaint.setTextSize(mCurrentTextSize);
-
-            if (drawTexture) {
-                ascent = mTextureAscent * mScale;
-                descent = mTextureDescent * mScale;
-            } else {
-                ascent = mTextPaint.ascent() * mScale;
-                descent = mTextPaint.descent() * mScale;
-            }
+            final float ascent = layout.ascent * mScale;
+            final float descent = layout.descent * mScale;
 
             if (DEBUG_DRAW) {
                 // Just a debug tool, which drawn a Magneta rect in the text bounds
@@ -466,7 +463,10 @@ final class CollapsingTextHelper {
                 // If we should use a texture, draw it instead of text
                 canvas.drawBitmap(mExpandedTitleTexture, x, y, mTexturePaint);
             } else {
-                canvas.drawText(mTextToDraw, 0, mTextToDraw.length(), x, y, mTextPaint);
+                // Update the TextPaint to the text size of the layout we're drawing
+                mTextPaint.setTextSize(layout.textSize);
+                mTextPaint.setTypeface(layout.typeface);
+                canvas.drawText(layout.text, 0, layout.text.length(), x, y, mTextPaint);
             }
         }
 
@@ -482,42 +482,11 @@ final class CollapsingTextHelper {
     }
 
     private void setInterpolatedTextSize(float textSize) {
-        calculateUsingTextSize(textSize);
-
-        // Use our texture if the scale isn't 1.0
-        mUseTexture = USE_SCALING_TEXTURE && mScale != 1f;
-
-        if (mUseTexture) {
-            // Make sure we have an expanded texture if needed
-            ensureExpandedTexture();
-        }
-
-        ViewCompat.postInvalidateOnAnimation(mView);
-    }
-
-    private void calculateUsingTextSize(final float textSize) {
-        if (mText == null) return;
-
-        final float availableWidth;
-        final float newTextSize;
-        boolean updateDrawText = false;
-
         if (isClose(textSize, mCollapsedTextSize)) {
-            availableWidth = mCollapsedBounds.width();
-            newTextSize = mCollapsedTextSize;
+            mCurrentLayout = mCollapsedLayout;
             mScale = 1f;
-            if (mCurrentTypeface != mCollapsedTypeface) {
-                mCurrentTypeface = mCollapsedTypeface;
-                updateDrawText = true;
-            }
         } else {
-            availableWidth = mExpandedBounds.width();
-            newTextSize = mExpandedTextSize;
-            if (mCurrentTypeface != mExpandedTypeface) {
-                mCurrentTypeface = mExpandedTypeface;
-                updateDrawText = true;
-            }
-
+            mCurrentLayout = mExpandedLayout;
             if (isClose(textSize, mExpandedTextSize)) {
                 // If we're close to the expanded text size, snap to it and use a scale of 1
                 mScale = 1f;
@@ -527,52 +496,66 @@ final class CollapsingTextHelper {
             }
         }
 
-        if (availableWidth > 0) {
-            updateDrawText = (mCurrentTextSize != newTextSize) || mBoundsChanged || updateDrawText;
-            mCurrentTextSize = newTextSize;
-            mBoundsChanged = false;
-        }
-
-        if (mTextToDraw == null || updateDrawText) {
-            mTextPaint.setTextSize(mCurrentTextSize);
-            mTextPaint.setTypeface(mCurrentTypeface);
+        // Use our texture if the scale isn't 1.0
+        mUseTexture = mUseScalingTexture && mScale != 1f;
 
-            // If we don't currently have text to draw, or the text size has changed, ellipsize...
-            final CharSequence title = TextUtils.ellipsize(mText, mTextPaint,
-                    availableWidth, TextUtils.TruncateAt.END);
-            if (!TextUtils.equals(title, mTextToDraw)) {
-                mTextToDraw = title;
-                mIsRtl = calculateIsRtl(mTextToDraw);
-            }
+        if (mUseTexture) {
+            // Make sure we have an expanded texture if needed
+            ensureExpandedTexture();
         }
+
+        ViewCompat.postInvalidateOnAnimation(mView);
     }
 
     private void ensureExpandedTexture() {
-        if (mExpandedTitleTexture != null || mExpandedBounds.isEmpty()
-                || TextUtils.isEmpty(mTextToDraw)) {
+        final TextLayout layout = mExpandedLayout;
+        if (mTextureValid || mExpandedBounds.isEmpty() || TextUtils.isEmpty(layout.text)) {
             return;
         }
 
-        calculateOffsets(0f);
-        mTextureAscent = mTextPaint.ascent();
-        mTextureDescent = mTextPaint.descent();
-
-        final int w = Math.round(mTextPaint.measureText(mTextToDraw, 0, mTextToDraw.length()));
-        final int h = Math.round(mTextureDescent - mTextureAscent);
+        final int w = Math.round(layout.width);
+        final int h = Math.round(layout.descent - layout.ascent);
 
         if (w <= 0 || h <= 0) {
             return; // If the width or height are 0, return
         }
 
-        mExpandedTitleTexture = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        if (mExpandedTitleTexture != null && canReuseTexture(mExpandedTitleTexture, w, h)) {
+            // The texture is big enough for the new text, so clear it rather than creating
+            // a new one. Any space left over is transparent so the texture can be drawn as is.
+            mExpandedTitleTexture.eraseColor(Color.TRANSPARENT);
+        } else {
+            clearTexture();
+            mExpandedTitleTexture = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        }
+
+        if (mTextureCanvas == null) {
+            mTextureCanvas = new Canvas();
+        }
+        mTextureCanvas.setBitmap(mExpandedTitleTexture);
 
-        Canvas c = new Canvas(mExpandedTitleTexture);
-        c.drawText(mTextToDraw, 0, mTextToDraw.length(), 0, h - mTextPaint.descent(), mTextPaint);
+        mTextPaint.setTextSize(layout.textSize);
+        mTextPaint.setTypeface(layout.typeface);
+        mTextPaint.setColor(mExpandedTextColor);
+        mTextPaint.setShadowLayer(mExpandedShadowRadius, mExpandedShadowDx, mExpandedShadowDy,
+                mExpandedShadowColor);
+        mTextureCanvas.drawText(layout.text, 0, layout.text.length(), 0, h - layout.descent,
+                mTextPaint);
 
         if (mTexturePaint == null) {
             // Make sure we have a paint
             mTexturePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
         }
+        mTextureValid = true;
+    }
+
+    /**
+     * Returns true if {@code texture} can hold text of the given size without wasting more than
+     * half of its width.
+     */
+    private static boolean canReuseTexture(Bitmap texture, int width, int height) {
+        return texture.getHeight() == height
+                && texture.getWidth() >= width && texture.getWidth() <= width * 2;
     }
 
     public void recalculate() {
@@ -584,6 +567,14 @@ final class CollapsingTextHelper {
         }
     }
 
+    /**
+     * Marks the text layouts as stale and recalculates them, if we've already been laid out.
+     */
+    private void invalidateTextLayouts() {
+        mTextLayoutsValid = false;
+        recalculate();
+    }
+
     /**
      * Set the title to display
      *
@@ -592,9 +583,8 @@ final class CollapsingTextHelper {
     void setText(CharSequence text) {
         if (text == null || !text.equals(mText)) {
             mText = text;
-            mTextToDraw = null;
-            clearTexture();
-            recalculate();
+            // The texture is kept, so that it can be reused if the new text fits within it
+            invalidateTextLayouts();
         }
     }
 
@@ -602,6 +592,18 @@ final class CollapsingTextHelper {
         return mText;
     }
 
+    /**
+     * Sets whether scaled text is drawn through a texture, so that the texture can be tested on
+     * any platform version.
+     */
+    @VisibleForTesting
+    void setUseScalingTexture(boolean useScalingTexture) {
+        if (mUseScalingTexture != useScalingTexture) {
+            mUseScalingTexture = useScalingTexture;
+            recalculate();
+        }
+    }
+
     private void clearTexture() {
         if (mExpandedTitleTexture != null) {
             mExpandedTitleTexture.recycle();
@@ -651,4 +653,19 @@ final class CollapsingTextHelper {
     private static boolean rectEquals(Rect r, int left, int top, int right, int bottom) {
         return !(r.left != left || r.top != top || r.right != right || r.bottom != bottom);
     }
+
+    /**
+     * The text as laid out at one end of the animation.
+     */
+    private static final class TextLayout {
+        CharSequence text;
+        Typeface typeface;
+        float textSize;
+        float width;
+        float ascent;
+        float descent;
+        float drawX;
+        float drawY;
+        boolean isRtl;
+    }
 }
@@ -115,27 +115,12 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     static final ThreadLocal<Map<String, Constructor<Behavior>>> sConstructors =
             new ThreadLocal<>();
 
-    final Comparator<View> mLayoutDependencyComparator = new Comparator<View>() {
-        @Override
-        public int compare(View lhs, View rhs) {
-            if (lhs == rhs) {
-                return 0;
-            } else if (((LayoutParams) lhs.getLayoutParams()).dependsOn(
-                    CoordinatorLayout.this, lhs, rhs)) {
-                return 1;
-            } else if (((LayoutParams) rhs.getLayoutParams()).dependsOn(
-                    CoordinatorLayout.this, rhs, lhs)) {
-                return -1;
-            } else {
-                return 0;
-            }
-        }
-    };
-
     static final Comparator<View> TOP_SORTED_CHILDREN_COMPARATOR;
     static final CoordinatorLayoutInsetsHelper INSETS_HELPER;
 
     private final List<View> mDependencySortedChildren = new ArrayList<View>();
+    private final DirectedAcyclicGraph<View> mChildDag = new DirectedAcyclicGraph<>();
+    private boolean mDependencyGraphDirty;
     private final List<View> mTempList1 = new ArrayList<>();
     private final List<View> mTempDependenciesList = new ArrayList<>();
     private final Rect mTempRect1 = new Rect();
@@ -557,18 +542,73 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     }
 
     private void prepareChildren() {
-        mDependencySortedChildren.clear();
         for (int i = 0, count = getChildCount(); i < count; i++) {
             final View child = getChildAt(i);
 
             final LayoutParams lp = getResolvedLayoutParams(child);
             lp.findAnchorView(this, child);
+        }
+        if (isDependencyGraphStale()) {
+            buildDependencyGraph();
+        }
+    }
+
+    /**
+     * Returns true if children were added or removed, or a child's layout params, behavior
+     * or anchor changed since the dependency graph was built.
+     */
+    private boolean isDependencyGraphStale() {
+        final int count = getChildCount();
+        if (mDependencyGraphDirty || count != mChildDag.size()) {
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            if (!mChildDag.contains(child)
+                    || ((LayoutParams) child.getLayoutParams()).isDependencyGraphStale()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Asks every child's behavior which other children it depends on and sorts the children
+     * in dependency order. The graph is only rebuilt when the children, their layout params,
+     * behaviors or anchors change.
+     */
+    private void buildDependencyGraph() {
+        mDependencyGraphDirty = false;
+        mChildDag.clear();
+        final int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            mChildDag.addNode(getChildAt(i));
+        }
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            final Behavior b = lp.getBehavior();
+            boolean behaviorDependsOnAnchor = false;
 
-            mDependencySortedChildren.add(child);
+            for (int j = 0; j < count; j++) {
+                if (j == i) {
+                    continue;
+                }
+                final View other = getChildAt(j);
+                final boolean behaviorDependency =
+                        b != null && b.layoutDependsOn(this, child, other);
+                if (other == lp.mAnchorDirectChild) {
+                    behaviorDependsOnAnchor = behaviorDependency;
+                } else if (!behaviorDependency) {
+                    continue;
+                }
+                mChildDag.addEdge(child, other);
+            }
+            lp.onAddedToDependencyGraph(behaviorDependsOnAnchor);
         }
-        // We need to use a selection sort here to make sure that every item is compared
-        // against each other
-        selectionSort(mDependencySortedChildren, mLayoutDependencyComparator);
+
+        mDependencySortedChildren.clear();
+        mDependencySortedChildren.addAll(mChildDag.getSortedList());
     }
 
     /**
@@ -1095,19 +1135,20 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
      *                         false if run as part of the pre-draw step.
      */
     void dispatchOnDependentViewChanged(final boolean fromNestedScroll) {
+        if (isDependencyGraphStale()) {
+            // A behavior or anchor was changed without a new layout pass
+            buildDependencyGraph();
+        }
+
         final int layoutDirection = ViewCompat.getLayoutDirection(this);
         final int childCount = mDependencySortedChildren.size();
         for (int i = 0; i < childCount; i++) {
             final View child = mDependencySortedChildren.get(i);
             final LayoutParams lp = (LayoutParams) child.getLayoutParams();
 
-            // Check child views before for anchor
-            for (int j = 0; j < i; j++) {
-                final View checkChild = mDependencySortedChildren.get(j);
-
-                if (lp.mAnchorDirectChild == checkChild) {
-                    offsetChildToAnchor(child, layoutDirection);
-                }
+            // The anchor comes before the child, so it is already in place
+            if (lp.mAnchorDirectChild != null) {
+                offsetChildToAnchor(child, layoutDirection);
             }
 
             // Did it change? if not continue
@@ -1120,13 +1161,19 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
             }
             recordLastChildRect(child, newRect);
 
+            // Only children that others depend on have dependents to update
+            final List<View> dependents = mChildDag.getOutgoingEdges(child);
+            if (dependents == null) {
+                continue;
+            }
+
             // Update any behavior-dependent views for the change
-            for (int j = i + 1; j < childCount; j++) {
-                final View checkChild = mDependencySortedChildren.get(j);
+            for (int j = 0, dependentCount = dependents.size(); j < dependentCount; j++) {
+                final View checkChild = dependents.get(j);
                 final LayoutParams checkLp = (LayoutParams) checkChild.getLayoutParams();
                 final Behavior b = checkLp.getBehavior();
 
-                if (b != null && b.layoutDependsOn(this, checkChild, child)) {
+                if (b != null && checkLp.behaviorDependsOn(child)) {
                     if (!fromNestedScroll && checkLp.getChangedAfterNestedScroll()) {
                         // If this is not from a nested scroll and we have already been changed
                         // from a nested scroll, skip the dispatch and reset the flag
@@ -1147,22 +1194,17 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     }
 
     void dispatchDependentViewRemoved(View view) {
-        final int childCount = mDependencySortedChildren.size();
-        boolean viewSeen = false;
-        for (int i = 0; i < childCount; i++) {
-            final View child = mDependencySortedChildren.get(i);
-            if (child == view) {
-                // We've seen our view, which means that any Views after this could be dependent
-                viewSeen = true;
-                continue;
-            }
-            if (viewSeen) {
-                CoordinatorLayout.LayoutParams lp = (CoordinatorLayout.LayoutParams)
-                        child.getLayoutParams();
-                CoordinatorLayout.Behavior b = lp.getBehavior();
-                if (b != null && lp.dependsOn(this, child, view)) {
-                    b.onDependentViewRemoved(this, child, view);
-                }
+        final List<View> dependents = mChildDag.getOutgoingEdges(view);
+        if (dependents == null) {
+            return;
+        }
+        for (int i = 0, count = dependents.size(); i < count; i++) {
+            final View child = dependents.get(i);
+            CoordinatorLayout.LayoutParams lp = (CoordinatorLayout.LayoutParams)
+                    child.getLayoutParams();
+            CoordinatorLayout.Behavior b = lp.getBehavior();
+            if (b != null) {
+                b.onDependentViewRemoved(this, child, view);
             }
         }
     }
@@ -1178,22 +1220,17 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
      * @param view the View to find dependents of to dispatch the call.
      */
     public void dispatchDependentViewsChanged(View view) {
-        final int childCount = mDependencySortedChildren.size();
-        boolean viewSeen = false;
-        for (int i = 0; i < childCount; i++) {
-            final View child = mDependencySortedChildren.get(i);
-            if (child == view) {
-                // We've seen our view, which means that any Views after this could be dependent
-                viewSeen = true;
-                continue;
-            }
-            if (viewSeen) {
-                CoordinatorLayout.LayoutParams lp = (CoordinatorLayout.LayoutParams)
-                        child.getLayoutParams();
-                CoordinatorLayout.Behavior b = lp.getBehavior();
-                if (b != null && lp.dependsOn(this, child, view)) {
-                    b.onDependentViewChanged(this, child, view);
-                }
+        final List<View> dependents = mChildDag.getOutgoingEdges(view);
+        if (dependents == null) {
+            return;
+        }
+        for (int i = 0, count = dependents.size(); i < count; i++) {
+            final View child = dependents.get(i);
+            CoordinatorLayout.LayoutParams lp = (CoordinatorLayout.LayoutParams)
+                    child.getLayoutParams();
+            CoordinatorLayout.Behavior b = lp.getBehavior();
+            if (b != null) {
+                b.onDependentViewChanged(this, child, view);
             }
         }
     }
@@ -1207,12 +1244,18 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
      * @return the list of views which {@code child} depends on.
      */
     public List<View> getDependencies(View child) {
-        // TODO The result of this is probably a good candidate for caching
-
         final LayoutParams lp = (LayoutParams) child.getLayoutParams();
         final List<View> list = mTempDependenciesList;
         list.clear();
 
+        if (mChildDag.contains(child) && !lp.isDependencyGraphStale()) {
+            final List<View> dependencies = mChildDag.getIncomingEdges(child);
+            if (dependencies != null) {
+                list.addAll(dependencies);
+            }
+            return list;
+        }
+
         final int childCount = getChildCount();
         for (int i = 0; i < childCount; i++) {
             final View other = getChildAt(i);
@@ -1259,6 +1302,10 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
             return true;
         }
 
+        if (mChildDag.contains(child) && !lp.isDependencyGraphStale()) {
+            return mChildDag.getIncomingEdges(child) != null;
+        }
+
         final int childCount = getChildCount();
         for (int i = 0; i < childCount; i++) {
             final View other = getChildAt(i);
@@ -1749,6 +1796,11 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
          *     position changes.</li>
          * </ol>
          *
+         * <p>The result is cached by the parent CoordinatorLayout until children are added or
+         * removed, or a child's layout params, behavior or anchor change. It should therefore
+         * only depend on the views themselves, such as their type or id, and not on their
+         * current state.</p>
+         *
          * @param parent the parent view of the given child
          * @param child the child view to test
          * @param dependency the proposed dependency of child
@@ -2210,6 +2262,12 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
 
         Object mBehaviorTag;
 
+        // The behavior and anchor which the parent's dependency graph was built with
+        private boolean mInDependencyGraph;
+        private Behavior mGraphedBehavior;
+        private View mGraphedAnchorDirectChild;
+        private boolean mBehaviorDependsOnAnchor;
+
         public LayoutParams(int width, int height) {
             super(width, height);
         }
@@ -2412,6 +2470,39 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
                     || (mBehavior != null && mBehavior.layoutDependsOn(parent, child, dependency));
         }
 
+        /**
+         * Record that the parent's dependency graph has been built with the current behavior
+         * and anchor of the associated child view.
+         *
+         * @param behaviorDependsOnAnchor true if the behavior depends on the anchor's direct
+         *                                child too, rather than only the anchor itself
+         */
+        void onAddedToDependencyGraph(boolean behaviorDependsOnAnchor) {
+            mInDependencyGraph = true;
+            mGraphedBehavior = mBehavior;
+            mGraphedAnchorDirectChild = mAnchorDirectChild;
+            mBehaviorDependsOnAnchor = behaviorDependsOnAnchor;
+        }
+
+        /**
+         * Returns true if the behavior or anchor of the associated child view changed since
+         * the parent's dependency graph was built, or the graph was built with other
+         * LayoutParams.
+         */
+        boolean isDependencyGraphStale() {
+            return !mInDependencyGraph || mGraphedBehavior != mBehavior
+                    || mGraphedAnchorDirectChild != mAnchorDirectChild;
+        }
+
+        /**
+         * Check if the associated Behavior depends on a child view which the parent's
+         * dependency graph lists as a dependency of the associated child view. Dependencies
+         * other than the anchor are always the Behavior's.
+         */
+        boolean behaviorDependsOn(View dependency) {
+            return dependency != mAnchorDirectChild || mBehaviorDependsOnAnchor;
+        }
+
         /**
          * Invalidate the cached anchor view and direct child ancestor of that anchor.
          * The anchor will need to be
@@ -2539,6 +2630,8 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     final class HierarchyChangeListener implements OnHierarchyChangeListener {
         @Override
         public void onChildViewAdded(View parent, View child) {
+            mDependencyGraphDirty = true;
+
             if (mOnHierarchyChangeListener != null) {
                 mOnHierarchyChangeListener.onChildViewAdded(parent, child);
             }
@@ -2547,6 +2640,7 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
         @Override
         public void onChildViewRemoved(View parent, View child) {
             dispatchDependentViewRemoved(child);
+            mDependencyGraphDirty = true;
 
             if (mOnHierarchyChangeListener != null) {
                 mOnHierarchyChangeListener.onChildViewRemoved(parent, child);
@@ -2654,37 +2748,4 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
             }
         });
     }
-
-    private static void selectionSort(final List<View> list, final Comparator<View> comparator) {
-        if (list == null || list.size() < 2) {
-            return;
-        }
-
-        final View[] array = new View[list.size()];
-        list.toArray(array);
-        final int count = array.length;
-
-        for (int i = 0; i < count; i++) {
-            int min = i;
-
-            for (int j = i + 1; j < count; j++) {
-                if (comparator.compare(array[j], array[min]) < 0) {
-                    min = j;
-                }
-            }
-
-            if (i != min) {
-                // We have a different min so swap the items
-                final View minItem = array[min];
-                array[min] = array[i];
-                array[i] = minItem;
-            }
-        }
-
-        // Finally add the array back into the collection
-        list.clear();
-        for (int i = 0; i < count; i++) {
-            list.add(array[i]);
-        }
-    }
 }
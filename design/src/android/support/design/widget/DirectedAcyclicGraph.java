@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.design.widget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A graph of nodes in which an edge from one node to another means that the latter depends on
+ * the former. {@link CoordinatorLayout} keeps the dependencies between its children in one, so
+ * that it can lay them out in dependency order and find the dependents of a child without
+ * asking every behavior again.
+ */
+final class DirectedAcyclicGraph<T> {
+    private final ArrayList<T> mNodes = new ArrayList<>();
+    private final HashMap<T, ArrayList<T>> mIncomingEdges = new HashMap<>();
+    private final HashMap<T, ArrayList<T>> mOutgoingEdges = new HashMap<>();
+
+    private final ArrayList<T> mSortedList = new ArrayList<>();
+    private final HashSet<T> mSortTmpMarked = new HashSet<>();
+    private final HashSet<T> mSortTmpVisiting = new HashSet<>();
+    private boolean mSorted;
+
+    /**
+     * Adds a node to the graph, if it is not already in it.
+     */
+    void addNode(T node) {
+        if (!mIncomingEdges.containsKey(node)) {
+            mNodes.add(node);
+            mIncomingEdges.put(node, null);
+            mSorted = false;
+        }
+    }
+
+    /**
+     * Returns true if the node is in the graph.
+     */
+    boolean contains(T node) {
+        return mIncomingEdges.containsKey(node);
+    }
+
+    /**
+     * Adds an edge from {@code incomingEdge} to {@code node}, meaning that {@code node}
+     * depends on {@code incomingEdge}. Both nodes must already be in the graph.
+     */
+    void addEdge(T node, T incomingEdge) {
+        if (!mIncomingEdges.containsKey(node) || !mIncomingEdges.containsKey(incomingEdge)) {
+            throw new IllegalArgumentException("All nodes must be present in the graph before"
+                    + " being added as an edge");
+        }
+        ArrayList<T> edges = mIncomingEdges.get(node);
+        if (edges == null) {
+            edges = new ArrayList<>();
+            mIncomingEdges.put(node, edges);
+        }
+        edges.add(incomingEdge);
+        mSorted = false;
+    }
+
+    /**
+     * Returns the nodes that {@code node} depends on, or null if there are none.
+     */
+    List<T> getIncomingEdges(T node) {
+        return mIncomingEdges.get(node);
+    }
+
+    /**
+     * Returns the nodes that depend on {@code node} in the order of the
+     * {@link #getSortedList() sorted list}, or null if there are none.
+     */
+    List<T> getOutgoingEdges(T node) {
+        ensureSorted();
+        return mOutgoingEdges.get(node);
+    }
+
+    /**
+     * Returns the nodes sorted so that every node comes after the nodes it depends on. Nodes
+     * without a dependency between them keep the order in which they were added. The list
+     * must not be modified and is only valid until the graph changes.
+     *
+     * <p>If the dependencies are cyclic, the edge closing each cycle is ignored.</p>
+     */
+    ArrayList<T> getSortedList() {
+        ensureSorted();
+        return mSortedList;
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     */
+    int size() {
+        return mNodes.size();
+    }
+
+    /**
+     * Removes all nodes and edges.
+     */
+    void clear() {
+        mNodes.clear();
+        mIncomingEdges.clear();
+        mOutgoingEdges.clear();
+        mSortedList.clear();
+        mSorted = true;
+    }
+
+    private void ensureSorted() {
+        if (mSorted) {
+            return;
+        }
+        mSortedList.clear();
+        mOutgoingEdges.clear();
+        mSortTmpMarked.clear();
+        mSortTmpVisiting.clear();
+
+        // Depth first, appending each node once all the nodes it depends on have been
+        for (int i = 0, size = mNodes.size(); i < size; i++) {
+            visit(mNodes.get(i));
+        }
+
+        // Build the dependents of each node in sorted order, leaving out the edges which
+        // closed a cycle, since their dependency comes later
+        mSortTmpMarked.clear();
+        for (int i = 0, size = mSortedList.size(); i < size; i++) {
+            final T node = mSortedList.get(i);
+            mSortTmpMarked.add(node);
+            final ArrayList<T> edges = mIncomingEdges.get(node);
+            if (edges == null) {
+                continue;
+            }
+            for (int j = 0, edgeCount = edges.size(); j < edgeCount; j++) {
+                final T dependency = edges.get(j);
+                if (!mSortTmpMarked.contains(dependency)) {
+                    continue;
+                }
+                ArrayList<T> dependents = mOutgoingEdges.get(dependency);
+                if (dependents == null) {
+                    dependents = new ArrayList<>();
+                    mOutgoingEdges.put(dependency, dependents);
+                }
+                dependents.add(node);
+            }
+        }
+        mSorted = true;
+    }
+
+    private void visit(T node) {
+        if (mSortTmpMarked.contains(node) || mSortTmpVisiting.contains(node)) {
+            // Already sorted, or a cycle which we break here
+            return;
+        }
+        mSortTmpVisiting.add(node);
+        final ArrayList<T> edges = mIncomingEdges.get(node);
+        if (edges != null) {
+            for (int i = 0, size = edges.size(); i < size; i++) {
+                visit(edges.get(i));
+            }
+        }
+        mSortTmpVisiting.remove(node);
+        mSortTmpMarked.add(node);
+        mSortedList.add(node);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.design.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.Gravity;
+import android.view.View;
+
+public class CollapsingTextHelperTest extends AndroidTestCase {
+    private static final float EXPANDED_TEXT_SIZE = 60;
+    private static final float COLLAPSED_TEXT_SIZE = 30;
+    private static final float[] FRACTIONS = { 0f, 0.1f, 0.25f, 0.5f, 0.75f, 0.9f, 0.9999f, 1f };
+    private static final float DELTA = 0.01f;
+
+    private CollapsingTextHelper mHelper;
+    private RecordingCanvas mCanvas;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final View view = new View(getContext());
+        view.layout(0, 0, 400, 300);
+        mHelper = new CollapsingTextHelper(view);
+        mHelper.setUseScalingTexture(false);
+        mHelper.setExpandedTextSize(EXPANDED_TEXT_SIZE);
+        mHelper.setCollapsedTextSize(COLLAPSED_TEXT_SIZE);
+        mHelper.setExpandedTextColor(Color.BLACK);
+        mHelper.setCollapsedTextColor(Color.BLACK);
+        mCanvas = new RecordingCanvas();
+    }
+
+    /**
+     * A canvas which records the last text or bitmap drawn, and the scale it was drawn with.
+     */
+    private static class RecordingCanvas extends Canvas {
+        CharSequence mText;
+        Bitmap mBitmap;
+        float mX;
+        float mY;
+        float mScale;
+
+        void reset() {
+            mText = null;
+            mBitmap = null;
+            mScale = 1f;
+        }
+
+        @Override
+        public void scale(float sx, float sy) {
+            super.scale(sx, sy);
+            mScale *= sx;
+        }
+
+        @Override
+        public void drawText(CharSequence text, int start, int end, float x, float y,
+                Paint paint) {
+            mText = text.subSequence(start, end).toString();
+            mX = x;
+            mY = y;
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+            // The texture may be reused for the next text, so keep what it holds now
+            mBitmap = bitmap.copy(bitmap.getConfig(), false);
+            mX = left;
+            mY = top;
+        }
+    }
+
+    /**
+     * The text at one end of the animation, computed the way CollapsingTextHelper used to
+     * compute it for every frame.
+     */
+    private static class ExpectedLayout {
+        final CharSequence text;
+        final float ascent;
+        final float descent;
+        final float width;
+        final float drawX;
+        final float drawY;
+
+        ExpectedLayout(CharSequence fullText, float textSize, Rect bounds, int gravity) {
+            final TextPaint paint = createPaint(textSize);
+            text = TextUtils.ellipsize(fullText, paint, bounds.width(),
+                    TextUtils.TruncateAt.END);
+            ascent = paint.ascent();
+            descent = paint.descent();
+            width = paint.measureText(text, 0, text.length());
+            switch (gravity & Gravity.VERTICAL_GRAVITY_MASK) {
+                case Gravity.BOTTOM:
+                    drawY = bounds.bottom;
+                    break;
+                case Gravity.TOP:
+                    drawY = bounds.top - ascent;
+                    break;
+                default:
+                    drawY = bounds.centerY() + (descent - ascent) / 2 - descent;
+                    break;
+            }
+            switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+                case Gravity.CENTER_HORIZONTAL:
+                    drawX = bounds.centerX() - width / 2;
+                    break;
+                case Gravity.RIGHT:
+                    drawX = bounds.right - width;
+                    break;
+                default:
+                    drawX = bounds.left;
+                    break;
+            }
+        }
+    }
+
+    private static TextPaint createPaint(float textSize) {
+        final TextPaint paint = new TextPaint();
+        paint.setAntiAlias(true);
+        paint.setTextSize(textSize);
+        return paint;
+    }
+
+    private static float lerp(float start, float end, float fraction) {
+        return start + fraction * (end - start);
+    }
+
+    private void drawAt(float fraction) {
+        mHelper.setExpansionFraction(fraction);
+        mCanvas.reset();
+        mHelper.draw(mCanvas);
+    }
+
+    private void assertFramesMatch(String text, Rect expandedBounds, int expandedGravity,
+            Rect collapsedBounds, int collapsedGravity) {
+        mHelper.setExpandedBounds(expandedBounds.left, expandedBounds.top,
+                expandedBounds.right, expandedBounds.bottom);
+        mHelper.setCollapsedBounds(collapsedBounds.left, collapsedBounds.top,
+                collapsedBounds.right, collapsedBounds.bottom);
+        mHelper.setExpandedTextGravity(expandedGravity);
+        mHelper.setCollapsedTextGravity(collapsedGravity);
+        mHelper.setText(text);
+
+        final ExpectedLayout expanded = new ExpectedLayout(text, EXPANDED_TEXT_SIZE,
+                expandedBounds, expandedGravity);
+        final ExpectedLayout collapsed = new ExpectedLayout(text, COLLAPSED_TEXT_SIZE,
+                collapsedBounds, collapsedGravity);
+        for (float fraction : FRACTIONS) {
+            drawAt(fraction);
+            final String frame = text + " at " + fraction;
+            final float textSize = lerp(EXPANDED_TEXT_SIZE, COLLAPSED_TEXT_SIZE, fraction);
+            final boolean isCollapsed = Math.abs(textSize - COLLAPSED_TEXT_SIZE) < 0.001f;
+            final boolean isExpanded = Math.abs(textSize - EXPANDED_TEXT_SIZE) < 0.001f;
+
+            assertEquals(frame, (isCollapsed ? collapsed : expanded).text.toString(),
+                    mCanvas.mText);
+            assertEquals(frame, lerp(expanded.drawX, collapsed.drawX, fraction), mCanvas.mX,
+                    DELTA);
+            assertEquals(frame, lerp(expanded.drawY, collapsed.drawY, fraction), mCanvas.mY,
+                    DELTA);
+            assertEquals(frame, isCollapsed || isExpanded ? 1f : textSize / EXPANDED_TEXT_SIZE,
+                    mCanvas.mScale, DELTA);
+        }
+    }
+
+    public void testFramesMatchPerFrameLayout() {
+        assertFramesMatch("Title", new Rect(20, 100, 380, 280), Gravity.BOTTOM | Gravity.LEFT,
+                new Rect(60, 0, 340, 56), Gravity.CENTER_VERTICAL | Gravity.LEFT);
+    }
+
+    public void testEllipsizedFramesMatchPerFrameLayout() {
+        // Ellipsized differently at either end
+        assertFramesMatch("A title which is too long for the collapsed bounds",
+                new Rect(20, 100, 380, 280), Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL,
+                new Rect(60, 0, 200, 56), Gravity.TOP | Gravity.RIGHT);
+    }
+
+    public void testFramesMatchPerFrameLayoutAfterChanges() {
+        assertFramesMatch("Title", new Rect(20, 100, 380, 280), Gravity.BOTTOM | Gravity.LEFT,
+                new Rect(60, 0, 340, 56), Gravity.CENTER_VERTICAL | Gravity.LEFT);
+        // Every change has to lay the text out again
+        assertFramesMatch("Another title", new Rect(20, 100, 380, 280),
+                Gravity.BOTTOM | Gravity.LEFT, new Rect(60, 0, 340, 56),
+                Gravity.CENTER_VERTICAL | Gravity.LEFT);
+        assertFramesMatch("Another title", new Rect(10, 120, 300, 290),
+                Gravity.BOTTOM | Gravity.LEFT, new Rect(80, 10, 160, 66),
+                Gravity.CENTER_VERTICAL | Gravity.LEFT);
+        assertFramesMatch("Another title", new Rect(10, 120, 300, 290),
+                Gravity.TOP | Gravity.RIGHT, new Rect(80, 10, 160, 66),
+                Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL);
+    }
+
+    /**
+     * Draws the expanded text the way the helper draws it into its texture.
+     */
+    private static Bitmap createExpectedTexture(String text, float textSize, int width) {
+        final TextPaint paint = createPaint(textSize);
+        paint.setColor(Color.BLACK);
+        final int height = Math.round(paint.descent() - paint.ascent());
+        final Bitmap texture = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(texture).drawText(text, 0, text.length(), 0, height - paint.descent(), paint);
+        return texture;
+    }
+
+    private void assertTextureHolds(String text, float textSize) {
+        drawAt(0.5f);
+        assertNull(mCanvas.mText);
+        assertNotNull(mCanvas.mBitmap);
+        final int width = Math.round(createPaint(textSize).measureText(text));
+        assertTrue(text + " does not fit", mCanvas.mBitmap.getWidth() >= width);
+        assertTrue(text, createExpectedTexture(text, textSize, mCanvas.mBitmap.getWidth())
+                .sameAs(mCanvas.mBitmap));
+    }
+
+    public void testTextureIsRedrawnWhenTextChanges() {
+        mHelper.setUseScalingTexture(true);
+        // Wide enough for none of the titles to be ellipsized
+        mHelper.setExpandedBounds(20, 100, 1000, 280);
+        mHelper.setCollapsedBounds(60, 0, 340, 56);
+
+        mHelper.setText("Title");
+        assertTextureHolds("Title", EXPANDED_TEXT_SIZE);
+        mHelper.setText("Another title");
+        assertTextureHolds("Another title", EXPANDED_TEXT_SIZE);
+        // Short enough to be drawn into the same texture
+        mHelper.setText("Other title");
+        assertTextureHolds("Other title", EXPANDED_TEXT_SIZE);
+    }
+
+    public void testTextureIsRedrawnWhenTextSizeChanges() {
+        mHelper.setUseScalingTexture(true);
+        // Wide enough for none of the titles to be ellipsized
+        mHelper.setExpandedBounds(20, 100, 1000, 280);
+        mHelper.setCollapsedBounds(60, 0, 340, 56);
+
+        mHelper.setText("Title");
+        assertTextureHolds("Title", EXPANDED_TEXT_SIZE);
+        mHelper.setExpandedTextSize(EXPANDED_TEXT_SIZE * 1.5f);
+        assertTextureHolds("Title", EXPANDED_TEXT_SIZE * 1.5f);
+    }
+}
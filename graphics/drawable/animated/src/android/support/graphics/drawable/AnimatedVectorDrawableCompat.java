@@ -16,11 +16,14 @@ package android.support.graphics.drawable;
 
 import android.animation.Animator;
 import android.animation.AnimatorInflater;
+import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.content.res.Resources.Theme;
 import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.PorterDuff.Mode;
@@ -34,6 +37,7 @@ import android.support.v4.util.ArrayMap;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.Xml;
+import android.view.animation.AnimationUtils;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -129,6 +133,13 @@ public class AnimatedVectorDrawableCompat extends Drawable implements Animatable
     private static final String ANIMATED_VECTOR = "animated-vector";
     private static final String TARGET = "target";
 
+    private static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+    private static final String SET = "set";
+    private static final String OBJECT_ANIMATOR = "objectAnimator";
+    private static final String PATH_DATA = "pathData";
+    private static final String PATH_MORPH_FRACTION = "pathMorphFraction";
+    private static final int DEFAULT_DURATION = 300;
+
     private static final boolean DBG_ANIMATION_VECTOR_DRAWABLE = false;
 
     private AnimatedVectorDrawableCompatState mAnimatedVectorState;
@@ -137,6 +148,11 @@ public class AnimatedVectorDrawableCompat extends Drawable implements Animatable
 
     private Context mContext;
 
+    // Time spent drawing the frames of the running animation, see getAnimationFrameCount().
+    private int mFrameCount;
+    private long mTotalFrameTimeNanos;
+    private long mMaxFrameTimeNanos;
+
     // Currently the only useful ctor.
     public AnimatedVectorDrawableCompat(Context context) {
         this(context, null, null);
@@ -213,12 +229,44 @@ public class AnimatedVectorDrawableCompat extends Drawable implements Animatable
 
     @Override
     public void draw(Canvas canvas) {
-        mAnimatedVectorState.mVectorDrawable.draw(canvas);
         if (isStarted()) {
+            final long start = System.nanoTime();
+            mAnimatedVectorState.mVectorDrawable.draw(canvas);
+            final long frameTime = System.nanoTime() - start;
+            mFrameCount++;
+            mTotalFrameTimeNanos += frameTime;
+            if (frameTime > mMaxFrameTimeNanos) {
+                mMaxFrameTimeNanos = frameTime;
+            }
             invalidateSelf();
+        } else {
+            mAnimatedVectorState.mVectorDrawable.draw(canvas);
         }
     }
 
+    /**
+     * Returns the number of frames drawn since the animation was last started.
+     */
+    public int getAnimationFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Returns the average time spent drawing a frame of the animation since it was last
+     * started, in nanoseconds, or 0 if no frame was drawn.
+     */
+    public long getAverageFrameTimeNanos() {
+        return mFrameCount == 0 ? 0 : mTotalFrameTimeNanos / mFrameCount;
+    }
+
+    /**
+     * Returns the longest time spent drawing a frame of the animation since it was last
+     * started, in nanoseconds.
+     */
+    public long getMaxFrameTimeNanos() {
+        return mMaxFrameTimeNanos;
+    }
+
     @Override
     protected void onBoundsChange(Rect bounds) {
         mAnimatedVectorState.mVectorDrawable.setBounds(bounds);
@@ -332,7 +380,10 @@ public class AnimatedVectorDrawableCompat extends Drawable implements Animatable
 
                     int id = a.getResourceId(AndroidResources.styleable_AnimatedVectorDrawableTarget_animation, 0);
                     if (id != 0) {
-                        Animator objectAnimator = AnimatorInflater.loadAnimator(mContext, id);
+                        Animator objectAnimator = loadPathMorphAnimator(res, id, target);
+                        if (objectAnimator == null) {
+                            objectAnimator = AnimatorInflater.loadAnimator(mContext, id);
+                        }
                         setupAnimatorsForTarget(target, objectAnimator);
                     }
                     a.recycle();
@@ -343,6 +394,82 @@ public class AnimatedVectorDrawableCompat extends Drawable implements Animatable
         }
     }
 
+    /**
+     * Loads an animator of the "pathData" property, either alone or as the only child of a set,
+     * as an animator of a precomputed morph between its values.
+     * <p/>
+     * The framework animators interpolate their own path data type, which can't be set on
+     * the paths of a {@link VectorDrawableCompat}. Precomputing the morph also avoids parsing
+     * and replaying the path commands on every frame.
+     *
+     * @return the animator, or null if the animation isn't such a path morph.
+     */
+    private Animator loadPathMorphAnimator(Resources res, int id, String targetName)
+            throws XmlPullParserException, IOException {
+        final XmlResourceParser parser = res.getAnimation(id);
+        try {
+            ObjectAnimator animator = null;
+            String valueFrom = null;
+            String valueTo = null;
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                final String tagName = parser.getName();
+                if (SET.equals(tagName) && parser.getDepth() == 1) {
+                    continue;
+                }
+                if (animator != null || !OBJECT_ANIMATOR.equals(tagName) ||
+                        !PATH_DATA.equals(getStringAttribute(res, parser, "propertyName"))) {
+                    // Some other animation, which the framework animators handle.
+                    return null;
+                }
+                valueFrom = getStringAttribute(res, parser, "valueFrom");
+                valueTo = getStringAttribute(res, parser, "valueTo");
+                // The target is set once the animator is added for it.
+                animator = ObjectAnimator.ofFloat(null, PATH_MORPH_FRACTION, 0f, 1f);
+                animator.setDuration(getIntAttribute(res, parser, "duration",
+                        DEFAULT_DURATION));
+                animator.setStartDelay(getIntAttribute(res, parser, "startOffset", 0));
+                animator.setRepeatCount(getIntAttribute(res, parser, "repeatCount", 0));
+                animator.setRepeatMode(getIntAttribute(res, parser, "repeatMode",
+                        ValueAnimator.RESTART));
+                final int interpolatorId =
+                        parser.getAttributeResourceValue(ANDROID_NAMESPACE, "interpolator", 0);
+                if (interpolatorId != 0) {
+                    animator.setInterpolator(
+                            AnimationUtils.loadInterpolator(mContext, interpolatorId));
+                }
+            }
+            if (animator == null || mAnimatedVectorState.mVectorDrawable.setPathMorph(targetName,
+                    valueFrom, valueTo) == null) {
+                return null;
+            }
+            return animator;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static String getStringAttribute(Resources res, XmlResourceParser parser,
+            String name) {
+        final int resId = parser.getAttributeResourceValue(ANDROID_NAMESPACE, name, 0);
+        if (resId != 0) {
+            return res.getString(resId);
+        }
+        return parser.getAttributeValue(ANDROID_NAMESPACE, name);
+    }
+
+    private static int getIntAttribute(Resources res, XmlResourceParser parser, String name,
+            int defaultValue) {
+        final int resId = parser.getAttributeResourceValue(ANDROID_NAMESPACE, name, 0);
+        if (resId != 0) {
+            return res.getInteger(resId);
+        }
+        return parser.getAttributeIntValue(ANDROID_NAMESPACE, name, defaultValue);
+    }
+
     @Override
     public void inflate(Resources res, XmlPullParser parser, AttributeSet attrs)
             throws XmlPullParserException, IOException {
@@ -464,6 +591,9 @@ public class AnimatedVectorDrawableCompat extends Drawable implements Animatable
         if (isStarted()) {
             return;
         }
+        mFrameCount = 0;
+        mTotalFrameTimeNanos = 0;
+        mMaxFrameTimeNanos = 0;
         // Otherwise, kick off every animator.
         final ArrayList<Animator> animators = mAnimatedVectorState.mAnimators;
         final int size = animators.size();
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import android.graphics.Path;
+
+/**
+ * Interpolates between two path data that can morph into each other, see
+ * {@link PathParser#canMorph}.
+ * <p/>
+ * Both ends are converted once into the same sequence of absolute move, cubic Bezier and close
+ * operations: lines and quadratic curves become cubic curves, smooth curves get their reflected
+ * control point resolved and each pair of arcs is split into the same number of segments. Each
+ * frame then only interpolates two float arrays into a reused {@link Path}, without replaying
+ * the commands or allocating. Since arcs are interpolated as curves rather than by their radii
+ * and angles, intermediate frames of arcs can differ slightly from interpolating the path data.
+ */
+final class PathMorph {
+    private static final byte OP_MOVE = 0;
+    private static final byte OP_CUBIC = 1;
+    private static final byte OP_CLOSE = 2;
+
+    private final byte[] mOps;
+    private final float[] mFrom;
+    private final float[] mTo;
+
+    private PathMorph(byte[] ops, float[] from, float[] to) {
+        mOps = ops;
+        mFrom = from;
+        mTo = to;
+    }
+
+    /**
+     * @return a morph from <code>from</code> to <code>to</code>, or null if they can't morph
+     *         into each other.
+     */
+    static PathMorph create(PathParser.PathDataNode[] from, PathParser.PathDataNode[] to) {
+        if (!PathParser.canMorph(from, to)) {
+            return null;
+        }
+        final Builder fromBuilder = new Builder();
+        final Builder toBuilder = new Builder();
+        for (int i = 0; i < from.length; i++) {
+            final char cmd = from[i].type;
+            final float[] fromParams = from[i].params;
+            final float[] toParams = to[i].params;
+            final int incr = getParamCount(cmd);
+            if (incr == 0) {
+                fromBuilder.close();
+                toBuilder.close();
+            }
+            for (int k = 0; k + incr <= fromParams.length && incr > 0; k += incr) {
+                if (cmd == 'a' || cmd == 'A') {
+                    addArcs(fromBuilder, toBuilder, cmd, fromParams, toParams, k);
+                } else {
+                    fromBuilder.addCommand(cmd, fromParams, k);
+                    toBuilder.addCommand(cmd, toParams, k);
+                }
+            }
+        }
+        return new PathMorph(fromBuilder.getOps(), fromBuilder.getPoints(),
+                toBuilder.getPoints());
+    }
+
+    /**
+     * Replaces the contents of <code>path</code> with the interpolated path.
+     */
+    void toPath(float fraction, Path path) {
+        final byte[] ops = mOps;
+        final float[] from = mFrom;
+        final float[] to = mTo;
+        path.rewind();
+        int k = 0;
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case OP_MOVE:
+                    path.moveTo(lerp(from[k], to[k], fraction),
+                            lerp(from[k + 1], to[k + 1], fraction));
+                    k += 2;
+                    break;
+                case OP_CUBIC:
+                    path.cubicTo(lerp(from[k], to[k], fraction),
+                            lerp(from[k + 1], to[k + 1], fraction),
+                            lerp(from[k + 2], to[k + 2], fraction),
+                            lerp(from[k + 3], to[k + 3], fraction),
+                            lerp(from[k + 4], to[k + 4], fraction),
+                            lerp(from[k + 5], to[k + 5], fraction));
+                    k += 6;
+                    break;
+                case OP_CLOSE:
+                    path.close();
+                    break;
+            }
+        }
+    }
+
+    private static float lerp(float from, float to, float fraction) {
+        return from * (1 - fraction) + to * fraction;
+    }
+
+    private static int getParamCount(char cmd) {
+        switch (cmd) {
+            case 'z':
+            case 'Z':
+                return 0;
+            case 'h':
+            case 'H':
+            case 'v':
+            case 'V':
+                return 1;
+            case 'c':
+            case 'C':
+                return 6;
+            case 's':
+            case 'S':
+            case 'q':
+            case 'Q':
+                return 4;
+            case 'a':
+            case 'A':
+                return 7;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Adds a pair of arcs, split into the same number of segments on both ends.
+     */
+    private static void addArcs(Builder fromBuilder, Builder toBuilder, char cmd,
+            float[] fromParams, float[] toParams, int k) {
+        final boolean fromDrawn = fromBuilder.computeArc(cmd, fromParams, k);
+        final boolean toDrawn = toBuilder.computeArc(cmd, toParams, k);
+        final int fromSegments =
+                fromDrawn ? PathParser.PathDataNode.getArcSegmentCount(fromBuilder.getSweep()) : 0;
+        final int toSegments =
+                toDrawn ? PathParser.PathDataNode.getArcSegmentCount(toBuilder.getSweep()) : 0;
+        final int segments = Math.max(fromSegments, toSegments);
+        fromBuilder.addArc(cmd, fromParams, k, fromDrawn, segments);
+        toBuilder.addArc(cmd, toParams, k, toDrawn, segments);
+    }
+
+    /**
+     * Converts the commands of one end of the morph, keeping track of the pen like
+     * {@link PathParser.PathDataNode#nodesToPath}.
+     */
+    private static class Builder {
+        private byte[] mOps = new byte[16];
+        private int mOpCount;
+        private float[] mPoints = new float[64];
+        private int mPointCount;
+        private final double[] mArc = new double[PathParser.ARC_PARAMS];
+
+        private float mCurrentX;
+        private float mCurrentY;
+        private float mCtrlPointX;
+        private float mCtrlPointY;
+        private float mSegmentStartX;
+        private float mSegmentStartY;
+        private char mPreviousCmd = 'm';
+
+        byte[] getOps() {
+            final byte[] ops = new byte[mOpCount];
+            System.arraycopy(mOps, 0, ops, 0, mOpCount);
+            return ops;
+        }
+
+        float[] getPoints() {
+            final float[] points = new float[mPointCount];
+            System.arraycopy(mPoints, 0, points, 0, mPointCount);
+            return points;
+        }
+
+        double getSweep() {
+            return mArc[PathParser.ARC_SWEEP];
+        }
+
+        void close() {
+            addOp(OP_CLOSE);
+            // Like nodesToPath(), move the pen back to the start of the closed segment.
+            mCurrentX = mSegmentStartX;
+            mCurrentY = mSegmentStartY;
+            mCtrlPointX = mSegmentStartX;
+            mCtrlPointY = mSegmentStartY;
+            moveTo(mCurrentX, mCurrentY);
+            mPreviousCmd = 'z';
+        }
+
+        void addCommand(char cmd, float[] val, int k) {
+            final float x0 = mCurrentX;
+            final float y0 = mCurrentY;
+            final boolean previousCubic = mPreviousCmd == 'c' || mPreviousCmd == 's'
+                    || mPreviousCmd == 'C' || mPreviousCmd == 'S';
+            final boolean previousQuad = mPreviousCmd == 'q' || mPreviousCmd == 't'
+                    || mPreviousCmd == 'Q' || mPreviousCmd == 'T';
+            switch (cmd) {
+                case 'm':
+                case 'M':
+                    mCurrentX = cmd == 'm' ? x0 + val[k] : val[k];
+                    mCurrentY = cmd == 'm' ? y0 + val[k + 1] : val[k + 1];
+                    mSegmentStartX = mCurrentX;
+                    mSegmentStartY = mCurrentY;
+                    moveTo(mCurrentX, mCurrentY);
+                    break;
+                case 'l':
+                case 'L':
+                    lineTo(cmd == 'l' ? x0 + val[k] : val[k],
+                            cmd == 'l' ? y0 + val[k + 1] : val[k + 1]);
+                    break;
+                case 'h':
+                case 'H':
+                    lineTo(cmd == 'h' ? x0 + val[k] : val[k], y0);
+                    break;
+                case 'v':
+                case 'V':
+                    lineTo(x0, cmd == 'v' ? y0 + val[k] : val[k]);
+                    break;
+                case 'c':
+                case 'C': {
+                    final float dx = cmd == 'c' ? x0 : 0;
+                    final float dy = cmd == 'c' ? y0 : 0;
+                    cubicTo(dx + val[k], dy + val[k + 1], dx + val[k + 2], dy + val[k + 3],
+                            dx + val[k + 4], dy + val[k + 5]);
+                    break;
+                }
+                case 's':
+                case 'S': {
+                    final float dx = cmd == 's' ? x0 : 0;
+                    final float dy = cmd == 's' ? y0 : 0;
+                    final float reflectiveX = previousCubic ? 2 * x0 - mCtrlPointX : x0;
+                    final float reflectiveY = previousCubic ? 2 * y0 - mCtrlPointY : y0;
+                    cubicTo(reflectiveX, reflectiveY, dx + val[k], dy + val[k + 1],
+                            dx + val[k + 2], dy + val[k + 3]);
+                    break;
+                }
+                case 'q':
+                case 'Q': {
+                    final float dx = cmd == 'q' ? x0 : 0;
+                    final float dy = cmd == 'q' ? y0 : 0;
+                    quadTo(dx + val[k], dy + val[k + 1], dx + val[k + 2], dy + val[k + 3]);
+                    break;
+                }
+                case 't':
+                case 'T': {
+                    final float dx = cmd == 't' ? x0 : 0;
+                    final float dy = cmd == 't' ? y0 : 0;
+                    final float reflectiveX = previousQuad ? 2 * x0 - mCtrlPointX : x0;
+                    final float reflectiveY = previousQuad ? 2 * y0 - mCtrlPointY : y0;
+                    quadTo(reflectiveX, reflectiveY, dx + val[k], dy + val[k + 1]);
+                    break;
+                }
+            }
+            mPreviousCmd = cmd;
+        }
+
+        boolean computeArc(char cmd, float[] val, int k) {
+            final float x1 = cmd == 'a' ? mCurrentX + val[k + 5] : val[k + 5];
+            final float y1 = cmd == 'a' ? mCurrentY + val[k + 6] : val[k + 6];
+            return PathParser.PathDataNode.computeArc(mCurrentX, mCurrentY, x1, y1, val[k],
+                    val[k + 1], val[k + 2], val[k + 3] != 0, val[k + 4] != 0, mArc);
+        }
+
+        /**
+         * Adds the arc last passed to {@link #computeArc} as <code>segments</code> cubic
+         * curves. An arc that is not drawn, because its end points are coincident, becomes
+         * curves of length 0.
+         */
+        void addArc(char cmd, float[] val, int k, boolean drawn, int segments) {
+            final float x0 = mCurrentX;
+            final float y0 = mCurrentY;
+            ensurePointCapacity(segments * 6);
+            if (drawn) {
+                final double[] arc = mArc;
+                PathParser.PathDataNode.arcToBezier(null, mPoints, mPointCount,
+                        arc[PathParser.ARC_CX], arc[PathParser.ARC_CY], arc[PathParser.ARC_A],
+                        arc[PathParser.ARC_B], x0, y0, arc[PathParser.ARC_THETA],
+                        arc[PathParser.ARC_START], arc[PathParser.ARC_SWEEP], segments);
+            } else {
+                for (int i = 0; i < segments * 6; i += 2) {
+                    mPoints[mPointCount + i] = x0;
+                    mPoints[mPointCount + i + 1] = y0;
+                }
+            }
+            mPointCount += segments * 6;
+            for (int i = 0; i < segments; i++) {
+                addOp(OP_CUBIC);
+            }
+            mCurrentX = cmd == 'a' ? x0 + val[k + 5] : val[k + 5];
+            mCurrentY = cmd == 'a' ? y0 + val[k + 6] : val[k + 6];
+            mCtrlPointX = mCurrentX;
+            mCtrlPointY = mCurrentY;
+            mPreviousCmd = cmd;
+        }
+
+        private void moveTo(float x, float y) {
+            addOp(OP_MOVE);
+            addPoint(x, y);
+        }
+
+        private void lineTo(float x, float y) {
+            // A cubic curve with its control points on the end points is a straight line, and
+            // so is any interpolation between two of them.
+            cubicTo(mCurrentX, mCurrentY, x, y, x, y);
+        }
+
+        private void quadTo(float x1, float y1, float x2, float y2) {
+            // Degree elevation of the quadratic curve, which draws the same curve.
+            final float x0 = mCurrentX;
+            final float y0 = mCurrentY;
+            cubicTo(x0 + 2f / 3f * (x1 - x0), y0 + 2f / 3f * (y1 - y0),
+                    x2 + 2f / 3f * (x1 - x2), y2 + 2f / 3f * (y1 - y2), x2, y2);
+            mCtrlPointX = x1;
+            mCtrlPointY = y1;
+        }
+
+        private void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            addOp(OP_CUBIC);
+            addPoint(x1, y1);
+            addPoint(x2, y2);
+            addPoint(x3, y3);
+            mCtrlPointX = x2;
+            mCtrlPointY = y2;
+            mCurrentX = x3;
+            mCurrentY = y3;
+        }
+
+        private void addOp(byte op) {
+            if (mOpCount == mOps.length) {
+                final byte[] ops = new byte[mOpCount * 2];
+                System.arraycopy(mOps, 0, ops, 0, mOpCount);
+                mOps = ops;
+            }
+            mOps[mOpCount++] = op;
+        }
+
+        private void addPoint(float x, float y) {
+            ensurePointCapacity(2);
+            mPoints[mPointCount++] = x;
+            mPoints[mPointCount++] = y;
+        }
+
+        private void ensurePointCapacity(int count) {
+            if (mPointCount + count > mPoints.length) {
+                final float[] points = new float[Math.max(mPoints.length * 2,
+                        mPointCount + count)];
+                System.arraycopy(mPoints, 0, points, 0, mPointCount);
+                mPoints = points;
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@
 package android.support.graphics.drawable;
 
 import android.graphics.Path;
+import android.support.v4.util.LruCache;
 import android.util.Log;
 
 import java.util.ArrayList;
@@ -24,6 +25,57 @@ import java.util.ArrayList;
 class PathParser {
     private static final String LOGTAG = "PathParser";
 
+    // Indices of the center parameterization of an arc, see PathDataNode.computeArc().
+    static final int ARC_CX = 0;
+    static final int ARC_CY = 1;
+    static final int ARC_A = 2;
+    static final int ARC_B = 3;
+    static final int ARC_THETA = 4;
+    static final int ARC_START = 5;
+    static final int ARC_SWEEP = 6;
+    static final int ARC_PARAMS = 7;
+
+    /**
+     * Maximum number of floats held by the parsed path cache, about 256KB of parameters.
+     */
+    private static final int NODES_CACHE_MAX_FLOATS = 64 * 1024;
+
+    /**
+     * Parsed path data shared by every drawable inflated from the same path string.  The cached
+     * nodes must never be modified; see {@link #getSharedNodesFromPathData(String)}.
+     */
+    private static final LruCache<String, PathDataNode[]> sNodesCache =
+            new LruCache<String, PathDataNode[]>(NODES_CACHE_MAX_FLOATS) {
+                @Override
+                protected int sizeOf(String key, PathDataNode[] nodes) {
+                    int size = nodes.length;
+                    for (int i = 0; i < nodes.length; i++) {
+                        size += nodes[i].params.length;
+                    }
+                    return size;
+                }
+            };
+
+    /**
+     * Powers of ten that are exactly representable as floats.
+     */
+    private static final double[] POWERS_OF_TEN = new double[] {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10
+    };
+
+    /**
+     * Largest mantissa parsed without falling back to {@link Float#parseFloat(String)}, so that
+     * the mantissa is exact in a float.  Dividing or multiplying two floats in double precision
+     * and rounding the result to a float is then correctly rounded, like parseFloat.
+     */
+    private static final long MAX_FAST_MANTISSA = 1 << 24;
+
+    /**
+     * Number of digits of {@link #MAX_FAST_MANTISSA}, beyond which the mantissa is not
+     * compared since it may have overflowed.
+     */
+    private static final int MAX_FAST_DIGITS = 8;
+
     // Copy from Arrays.copyOfRange() which is only available from API level 9.
     /**
      * Copies elements from {@code original} into a new array, from indexes start (inclusive) to
@@ -73,30 +125,49 @@ class PathParser {
     }
 
     /**
+     * Returns the parsed nodes of the given path data from a process-wide cache, parsing it if
+     * needed.  The returned nodes are shared with every other caller and must not be modified;
+     * use {@link #deepCopyNodes(PathDataNode[])} to obtain a private copy first.
+     *
      * @param pathData The string representing a path, the same as "d" string in svg file.
      * @return an array of the PathDataNode.
      */
-    public static PathDataNode[] createNodesFromPathData(String pathData) {
+    public static PathDataNode[] getSharedNodesFromPathData(String pathData) {
         if (pathData == null) {
             return null;
         }
-        int start = 0;
-        int end = 1;
-
-        ArrayList<PathDataNode> list = new ArrayList<PathDataNode>();
-        while (end < pathData.length()) {
-            end = nextStart(pathData, end);
-            String s = pathData.substring(start, end).trim();
-            if (s.length() > 0) {
-                float[] val = getFloats(s);
-                addNode(list, s.charAt(0), val);
-            }
+        PathDataNode[] nodes = sNodesCache.get(pathData);
+        if (nodes == null) {
+            nodes = createNodesFromPathData(pathData);
+            sNodesCache.put(pathData, nodes);
+        }
+        return nodes;
+    }
 
-            start = end;
-            end++;
+    /**
+     * @param pathData The string representing a path, the same as "d" string in svg file.
+     * @return an array of the PathDataNode.
+     */
+    public static PathDataNode[] createNodesFromPathData(String pathData) {
+        if (pathData == null) {
+            return null;
         }
-        if ((end - start) == 1 && start < pathData.length()) {
-            addNode(list, pathData.charAt(start), new float[0]);
+        final int length = pathData.length();
+        // A float takes at least one character, so this can hold the parameters of any command.
+        final float[] scratch = new float[length];
+        final ArrayList<PathDataNode> list = new ArrayList<PathDataNode>();
+
+        int start = skipWhitespace(pathData, 0, length);
+        while (start < length) {
+            final int end = nextStart(pathData, start + 1);
+            final char cmd = pathData.charAt(start);
+            if (cmd == 'z' || cmd == 'Z') {
+                addNode(list, cmd, new float[0]);
+            } else {
+                final int count = parseFloats(pathData, start + 1, end, scratch);
+                addNode(list, cmd, copyOfRange(scratch, 0, count));
+            }
+            start = skipWhitespace(pathData, end, length);
         }
         return list.toArray(new PathDataNode[list.size()]);
     }
@@ -177,109 +248,141 @@ class PathParser {
         list.add(new PathDataNode(cmd, val));
     }
 
-    private static class ExtractFloatResult {
-        // We need to return the position of the next separator and whether the
-        // next float starts with a '-' or a '.'.
-        int mEndPosition;
-        boolean mEndWithNegOrDot;
+    private static int skipWhitespace(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
     }
 
     /**
-     * Parse the floats in the string.
-     * This is an optimized version of parseFloat(s.split(",|\\s"));
+     * Parses the floats of one command in a single pass, without creating substrings.  Numbers
+     * are separated by whitespace or commas, by a '-' that does not follow an exponent, or by
+     * a second '.', in which case the '-' or '.' starts the next number.
      *
-     * @param s the string containing a command and list of floats
-     * @return array of floats
+     * @param s the path data
+     * @param start the index after the command character
+     * @param end the index of the next command, or the end of the path data
+     * @param out the array receiving the floats
+     * @return the number of floats parsed
      */
-    private static float[] getFloats(String s) {
-        if (s.charAt(0) == 'z' | s.charAt(0) == 'Z') {
-            return new float[0];
-        }
-        try {
-            float[] results = new float[s.length()];
-            int count = 0;
-            int startPosition = 1;
-            int endPosition = 0;
-
-            ExtractFloatResult result = new ExtractFloatResult();
-            int totalLength = s.length();
-
-            // The startPosition should always be the first character of the
-            // current number, and endPosition is the character after the current
-            // number.
-            while (startPosition < totalLength) {
-                extract(s, startPosition, result);
-                endPosition = result.mEndPosition;
-
-                if (startPosition < endPosition) {
-                    results[count++] = Float.parseFloat(
-                            s.substring(startPosition, endPosition));
-                }
-
-                if (result.mEndWithNegOrDot) {
-                    // Keep the '-' or '.' sign with next number.
-                    startPosition = endPosition;
-                } else {
-                    startPosition = endPosition + 1;
+    private static int parseFloats(String s, int start, int end, float[] out) {
+        int count = 0;
+        int position = start;
+        while (position < end) {
+            final int numberStart = position;
+            boolean secondDot = false;
+            boolean isExponential = false;
+            boolean endWithNegOrDot = false;
+            for (; position < end; position++) {
+                final boolean isPrevExponential = isExponential;
+                isExponential = false;
+                final char c = s.charAt(position);
+                if (c == ',' || c <= ' ') {
+                    break;
+                } else if (c == '-') {
+                    // The negative sign following a 'e' or 'E' is not a separator.
+                    if (position != numberStart && !isPrevExponential) {
+                        endWithNegOrDot = true;
+                        break;
+                    }
+                } else if (c == '.') {
+                    if (secondDot) {
+                        // This is the second dot, and it is considered as a separator.
+                        endWithNegOrDot = true;
+                        break;
+                    }
+                    secondDot = true;
+                } else if (c == 'e' || c == 'E') {
+                    isExponential = true;
                 }
             }
-            return copyOfRange(results, 0, count);
-        } catch (NumberFormatException e) {
-            throw new RuntimeException("error in parsing \"" + s + "\"", e);
+            if (numberStart < position) {
+                out[count++] = parseFloat(s, numberStart, position, start, end);
+            }
+            if (!endWithNegOrDot) {
+                // Skip the separator.
+                position++;
+            }
         }
+        return count;
     }
 
     /**
-     * Calculate the position of the next comma or space or negative sign
-     * @param s the string to search
-     * @param start the position to start searching
-     * @param result the result of the extraction, including the position of the
-     * the starting position of next number, whether it is ending with a '-'.
+     * Parses the float in {@code s} from {@code start} to {@code end}.  Numbers with a mantissa
+     * up to {@link #MAX_FAST_MANTISSA} and small exponents, which covers most path data, are
+     * converted directly; others fall back to {@link Float#parseFloat(String)}.  Both give the
+     * same result.
      */
-    private static void extract(String s, int start, ExtractFloatResult result) {
-        // Now looking for ' ', ',', '.' or '-' from the start.
-        int currentIndex = start;
-        boolean foundSeparator = false;
-        result.mEndWithNegOrDot = false;
-        boolean secondDot = false;
-        boolean isExponential = false;
-        for (; currentIndex < s.length(); currentIndex++) {
-            boolean isPrevExponential = isExponential;
-            isExponential = false;
-            char currentChar = s.charAt(currentIndex);
-            switch (currentChar) {
-                case ' ':
-                case ',':
-                    foundSeparator = true;
-                    break;
-                case '-':
-                    // The negative sign following a 'e' or 'E' is not a separator.
-                    if (currentIndex != start && !isPrevExponential) {
-                        foundSeparator = true;
-                        result.mEndWithNegOrDot = true;
-                    }
-                    break;
-                case '.':
-                    if (!secondDot) {
-                        secondDot = true;
-                    } else {
-                        // This is the second dot, and it is considered as a separator.
-                        foundSeparator = true;
-                        result.mEndWithNegOrDot = true;
-                    }
-                    break;
-                case 'e':
-                case 'E':
-                    isExponential = true;
+    private static float parseFloat(String s, int start, int end, int commandStart,
+            int commandEnd) {
+        int position = start;
+        boolean negative = false;
+        char c = s.charAt(position);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean fast = true;
+        boolean fraction = false;
+        for (; position < end; position++) {
+            c = s.charAt(position);
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    exponent--;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (position < end && (c == 'e' || c == 'E') && hasDigits) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < end && (s.charAt(position) == '-' || s.charAt(position) == '+')) {
+                negativeExponent = s.charAt(position) == '-';
+                position++;
+            }
+            int value = 0;
+            final int exponentStart = position;
+            for (; position < end; position++) {
+                c = s.charAt(position);
+                if (c < '0' || c > '9' || value > 1000) {
                     break;
+                }
+                value = value * 10 + (c - '0');
             }
-            if (foundSeparator) {
-                break;
+            if (position == exponentStart) {
+                fast = false;
             }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (!hasDigits || position != end || digits > MAX_FAST_DIGITS ||
+                mantissa > MAX_FAST_MANTISSA ||
+                exponent < -(POWERS_OF_TEN.length - 1) || exponent > POWERS_OF_TEN.length - 1) {
+            fast = false;
+        }
+        if (fast) {
+            final double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            return (float) (negative ? -value : value);
+        }
+        try {
+            return Float.parseFloat(s.substring(start, end));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("error in parsing \""
+                    + s.substring(commandStart - 1, commandEnd).trim() + "\"", e);
         }
-        // When there is nothing found, then we put the end position to the end
-        // of the string.
-        result.mEndPosition = currentIndex;
     }
 
     /**
@@ -292,7 +395,7 @@ class PathParser {
         char type;
         float[] params;
 
-        private PathDataNode(char type, float[] params) {
+        PathDataNode(char type, float[] params) {
             this.type = type;
             this.params = params;
         }
@@ -310,9 +413,10 @@ class PathParser {
          */
         public static void nodesToPath(PathDataNode[] node, Path path) {
             float[] current = new float[6];
+            double[] arc = new double[ARC_PARAMS];
             char previousCommand = 'm';
             for (int i = 0; i < node.length; i++) {
-                addCommand(path, current, previousCommand, node[i].type, node[i].params);
+                addCommand(path, current, arc, previousCommand, node[i].type, node[i].params);
                 previousCommand = node[i].type;
             }
         }
@@ -334,7 +438,7 @@ class PathParser {
             }
         }
 
-        private static void addCommand(Path path, float[] current,
+        private static void addCommand(Path path, float[] current, double[] arc,
                 char previousCmd, char cmd, float[] val) {
 
             int incr = 2;
@@ -537,7 +641,8 @@ class PathParser {
                                 val[k + 1],
                                 val[k + 2],
                                 val[k + 3] != 0,
-                                val[k + 4] != 0);
+                                val[k + 4] != 0,
+                                arc);
                         currentX += val[k + 5];
                         currentY += val[k + 6];
                         ctrlPointX = currentX;
@@ -553,7 +658,8 @@ class PathParser {
                                 val[k + 1],
                                 val[k + 2],
                                 val[k + 3] != 0,
-                                val[k + 4] != 0);
+                                val[k + 4] != 0,
+                                arc);
                         currentX = val[k + 5];
                         currentY = val[k + 6];
                         ctrlPointX = currentX;
@@ -579,7 +685,31 @@ class PathParser {
                 float b,
                 float theta,
                 boolean isMoreThanHalf,
-                boolean isPositiveArc) {
+                boolean isPositiveArc,
+                double[] arc) {
+            if (computeArc(x0, y0, x1, y1, a, b, theta, isMoreThanHalf, isPositiveArc, arc)) {
+                arcToBezier(p, null, 0, arc[ARC_CX], arc[ARC_CY], arc[ARC_A], arc[ARC_B], x0, y0,
+                        arc[ARC_THETA], arc[ARC_START], arc[ARC_SWEEP],
+                        getArcSegmentCount(arc[ARC_SWEEP]));
+            }
+        }
+
+        /**
+         * Computes the center parameterization of an elliptical arc given by its end points,
+         * and stores it in <code>arc</code> at the ARC_* indices.
+         *
+         * @return false if the end points are coincident, in which case nothing is drawn.
+         */
+        static boolean computeArc(float x0,
+                float y0,
+                float x1,
+                float y1,
+                float a,
+                float b,
+                float theta,
+                boolean isMoreThanHalf,
+                boolean isPositiveArc,
+                double[] arc) {
 
             /* Convert rotation angle from degrees to radians */
             double thetaD = Math.toRadians(theta);
@@ -602,15 +732,14 @@ class PathParser {
             double dsq = dx * dx + dy * dy;
             if (dsq == 0.0) {
                 Log.w(LOGTAG, " Points are coincident");
-                return; /* Points are coincident */
+                return false; /* Points are coincident */
             }
             double disc = 1.0 / dsq - 1.0 / 4.0;
             if (disc < 0.0) {
                 Log.w(LOGTAG, "Points are too far apart " + dsq);
                 float adjust = (float) (Math.sqrt(dsq) / 1.99999);
-                drawArc(p, x0, y0, x1, y1, a * adjust,
-                        b * adjust, theta, isMoreThanHalf, isPositiveArc);
-                return; /* Points are too far apart */
+                return computeArc(x0, y0, x1, y1, a * adjust,
+                        b * adjust, theta, isMoreThanHalf, isPositiveArc, arc);
             }
             double s = Math.sqrt(disc);
             double sdx = s * dx;
@@ -644,13 +773,32 @@ class PathParser {
             cx = cx * cosTheta - cy * sinTheta;
             cy = tcx * sinTheta + cy * cosTheta;
 
-            arcToBezier(p, cx, cy, a, b, x0, y0, thetaD, eta0, sweep);
+            arc[ARC_CX] = cx;
+            arc[ARC_CY] = cy;
+            arc[ARC_A] = a;
+            arc[ARC_B] = b;
+            arc[ARC_THETA] = thetaD;
+            arc[ARC_START] = eta0;
+            arc[ARC_SWEEP] = sweep;
+            return true;
         }
 
         /**
-         * Converts an arc to cubic Bezier segments and records them in p.
+         * @return the number of cubic Bezier segments used to draw an arc, at most 45 degrees
+         *         each.
+         */
+        static int getArcSegmentCount(double sweep) {
+            // Round the magnitude up, so arcs sweeping less than 45 degrees backwards are drawn.
+            return (int) Math.ceil(Math.abs(sweep * 4 / Math.PI));
+        }
+
+        /**
+         * Converts an arc to cubic Bezier segments and records them in p, or if p is null, as
+         * the control and end points of each segment in out.
          *
          * @param p The target for the cubic Bezier segments
+         * @param out The target for the points of the segments, if p is null
+         * @param offset The index of the first point in out
          * @param cx The x coordinate center of the ellipse
          * @param cy The y coordinate center of the ellipse
          * @param a The radius of the ellipse in the horizontal direction
@@ -660,8 +808,12 @@ class PathParser {
          * @param theta The angle that the ellipse bounding rectangle makes with horizontal plane
          * @param start The start angle of the arc on the ellipse
          * @param sweep The angle (positive or negative) of the sweep of the arc on the ellipse
+         * @param numSegments The number of segments to split the arc into
+         * @return The index following the last point written in out
          */
-        private static void arcToBezier(Path p,
+        static int arcToBezier(Path p,
+                float[] out,
+                int offset,
                 double cx,
                 double cy,
                 double a,
@@ -670,13 +822,11 @@ class PathParser {
                 double e1y,
                 double theta,
                 double start,
-                double sweep) {
+                double sweep,
+                int numSegments) {
             // Taken from equations at: http://spaceroots.org/documents/ellipse/node8.html
             // and http://www.spaceroots.org/documents/ellipse/node22.html
 
-            // Maximum of 45 degrees per cubic Bezier segment
-            int numSegments = Math.abs((int) Math.ceil(sweep * 4 / Math.PI));
-
             double eta1 = start;
             double cosTheta = Math.cos(theta);
             double sinTheta = Math.sin(theta);
@@ -702,18 +852,28 @@ class PathParser {
                 double q2x = e2x - alpha * ep2x;
                 double q2y = e2y - alpha * ep2y;
 
-                p.cubicTo((float) q1x,
-                        (float) q1y,
-                        (float) q2x,
-                        (float) q2y,
-                        (float) e2x,
-                        (float) e2y);
+                if (p != null) {
+                    p.cubicTo((float) q1x,
+                            (float) q1y,
+                            (float) q2x,
+                            (float) q2y,
+                            (float) e2x,
+                            (float) e2y);
+                } else {
+                    out[offset++] = (float) q1x;
+                    out[offset++] = (float) q1y;
+                    out[offset++] = (float) q2x;
+                    out[offset++] = (float) q2y;
+                    out[offset++] = (float) e2x;
+                    out[offset++] = (float) e2y;
+                }
                 eta1 = eta2;
                 e1x = e2x;
                 e1y = e2y;
                 ep1x = ep2x;
                 ep1y = ep2y;
             }
+            return offset;
         }
     }
 }
@@ -36,15 +36,21 @@ import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.DrawableRes;
+import android.support.annotation.RawRes;
 import android.support.v4.util.ArrayMap;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.TypedValue;
 import android.util.Xml;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Stack;
 
@@ -198,6 +204,18 @@ public class VectorDrawableCompat extends Drawable {
 
     private static final boolean DBG_VECTOR_DRAWABLE = false;
 
+    // Precompiled binary format, written by VectorDrawableBinaryConverter. All values are big
+    // endian. The file starts with BINARY_MAGIC and BINARY_VERSION, followed by the <vector>
+    // attributes and its children. Each child starts with a tag, and groups end with
+    // BINARY_TAG_END after their own children.
+    static final int BINARY_MAGIC = 0x56444243; // "VDBC"
+    static final int BINARY_VERSION = 1;
+    static final int BINARY_TAG_END = 0;
+    static final int BINARY_TAG_GROUP = 1;
+    static final int BINARY_TAG_PATH = 2;
+    static final int BINARY_TAG_CLIP_PATH = 3;
+    static final int BINARY_NO_TINT_MODE = -1;
+
     private VectorDrawableState mVectorState;
 
     private PorterDuffColorFilter mTintFilter;
@@ -231,6 +249,28 @@ public class VectorDrawableCompat extends Drawable {
         return mVectorState.mVPathRenderer.mVGTargetsMap.get(name);
     }
 
+    /**
+     * Makes the path with the given name morph from one path data to another, driven by its
+     * "pathMorphFraction" property going from 0 to 1.
+     *
+     * @return the path to animate, or null if there is no such path or the path data can't
+     *         morph into each other.
+     */
+    Object setPathMorph(String name, String fromPathData, String toPathData) {
+        final Object target = getTargetByName(name);
+        if (!(target instanceof VPath)) {
+            return null;
+        }
+        final PathMorph pathMorph = PathMorph.create(
+                PathParser.getSharedNodesFromPathData(fromPathData),
+                PathParser.getSharedNodesFromPathData(toPathData));
+        if (pathMorph == null) {
+            return null;
+        }
+        ((VPath) target).setPathMorph(pathMorph);
+        return target;
+    }
+
     @Override
     public ConstantState getConstantState() {
         mVectorState.mChangingConfigurations = getChangingConfigurations();
@@ -267,8 +307,12 @@ public class VectorDrawableCompat extends Drawable {
                 mVectorState.updateCachedBitmap(bounds);
                 mVectorState.drawCachedBitmapWithRootAlpha(canvas, colorFilter);
             }
+        } else if (mVectorState.canUseSharedBitmap()) {
+            // Static Vector Drawable created from a resource, with the raster cache enabled.
+            mVectorState.drawSharedBitmap(canvas, bounds, colorFilter);
         } else {
             // Static Vector Drawable case.
+            mVectorState.releaseSharedBitmap();
             mVectorState.createCachedBitmapIfNeeded(bounds);
             if (!mVectorState.canReuseCache()) {
                 mVectorState.updateCachedBitmap(bounds);
@@ -395,6 +439,47 @@ public class VectorDrawableCompat extends Drawable {
         return Math.min(scaleX, scaleY);
     }
 
+    /**
+     * Sets the maximum size in bytes of the raster cache shared by all the VectorDrawableCompat
+     * objects returned by {@link #create}. Drawables inflated from the same resource at the same
+     * density and drawn at the same size then share a single bitmap, instead of each rendering
+     * and keeping their own, and drawing them only draws that bitmap. Tint and alpha are applied
+     * when drawing, so drawables that only differ by those share the bitmap too.
+     * <p/>
+     * The cache is disabled by default. Passing 0 disables it again and drops the bitmaps it
+     * holds.
+     *
+     * @param maxBytes the maximum size of the cache, in bytes.
+     */
+    public static void setRasterCacheMaxSize(int maxBytes) {
+        VectorRasterCache.setMaxSize(maxBytes);
+    }
+
+    /**
+     * @return the size in bytes of the bitmaps held by the raster cache.
+     * @see #setRasterCacheMaxSize(int)
+     */
+    public static int getRasterCacheSize() {
+        return VectorRasterCache.getSize();
+    }
+
+    /**
+     * @return the number of times a drawable found its bitmap in the raster cache.
+     * @see #setRasterCacheMaxSize(int)
+     */
+    public static int getRasterCacheHitCount() {
+        return VectorRasterCache.getHitCount();
+    }
+
+    /**
+     * @return the number of times a drawable had to render a bitmap missing from the raster
+     *         cache.
+     * @see #setRasterCacheMaxSize(int)
+     */
+    public static int getRasterCacheMissCount() {
+        return VectorRasterCache.getMissCount();
+    }
+
     /**
      * Create a VectorDrawableCompat object.
      *
@@ -420,6 +505,7 @@ public class VectorDrawableCompat extends Drawable {
 
             final VectorDrawableCompat drawable = new VectorDrawableCompat();
             drawable.inflate(res, parser, attrs, theme);
+            drawable.mVectorState.setRasterKey(resId, res.getDisplayMetrics().densityDpi);
             return drawable;
         } catch (XmlPullParserException e) {
             Log.e(LOGTAG, "parser error", e);
@@ -429,6 +515,117 @@ public class VectorDrawableCompat extends Drawable {
         return null;
     }
 
+    /**
+     * Create a VectorDrawableCompat object from a raw resource in the precompiled binary format.
+     * Loading a binary vector avoids parsing XML, resolving attributes and parsing path data,
+     * so it is much faster than {@link #create}. Binary vectors are written from vector
+     * XML files at build time by VectorDrawableBinaryConverter, and can't reference resources or
+     * theme attributes.
+     *
+     * @param res the resources.
+     * @param resId the resource ID of the binary vector.
+     * @return a new VectorDrawableCompat or null if the binary vector is invalid.
+     */
+    @Nullable
+    public static VectorDrawableCompat createFromBinary(@NonNull Resources res,
+            @RawRes int resId) {
+        final InputStream in = res.openRawResource(resId);
+        final VectorDrawableCompat drawable;
+        try {
+            drawable = createFromBinary(res, in);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+        if (drawable != null) {
+            drawable.mVectorState.setRasterKey(resId, res.getDisplayMetrics().densityDpi);
+        }
+        return drawable;
+    }
+
+    /**
+     * Create a VectorDrawableCompat object from a stream in the precompiled binary format.
+     *
+     * @param res the resources, used to resolve the dimensions of the vector.
+     * @param in the stream to read the binary vector from. It is not closed.
+     * @return a new VectorDrawableCompat or null if the binary vector is invalid.
+     * @see #createFromBinary(Resources, int)
+     */
+    @Nullable
+    public static VectorDrawableCompat createFromBinary(@NonNull Resources res,
+            @NonNull InputStream in) {
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(readFully(in));
+            if (buffer.getInt() != BINARY_MAGIC) {
+                throw new IOException("Not a binary vector");
+            }
+            final int version = buffer.get();
+            if (version != BINARY_VERSION) {
+                throw new IOException("Unsupported binary vector version " + version);
+            }
+            final VectorDrawableCompat drawable = new VectorDrawableCompat();
+            drawable.inflateFromBinary(res, buffer);
+            return drawable;
+        } catch (IOException e) {
+            Log.e(LOGTAG, "binary vector error", e);
+        } catch (BufferUnderflowException e) {
+            Log.e(LOGTAG, "binary vector is truncated", e);
+        }
+        return null;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 64));
+        final byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static String readBinaryString(ByteBuffer buffer) throws IOException {
+        final int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        } else if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final String str = new String(buffer.array(), buffer.position(), length, "UTF-8");
+        buffer.position(buffer.position() + length);
+        return str;
+    }
+
+    private static PathParser.PathDataNode[] readBinaryNodes(ByteBuffer buffer)
+            throws IOException {
+        final int count = buffer.getShort();
+        if (count < 0) {
+            return null;
+        } else if (count * 3 > buffer.remaining()) {
+            // Each node takes at least a type and a parameter count.
+            throw new BufferUnderflowException();
+        }
+        final PathParser.PathDataNode[] nodes = new PathParser.PathDataNode[count];
+        for (int i = 0; i < count; i++) {
+            final char type = (char) buffer.get();
+            final int paramCount = buffer.getShort();
+            if (paramCount < 0) {
+                throw new IOException("Invalid path data parameter count " + paramCount);
+            } else if (paramCount * 4 > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final float[] params = new float[paramCount];
+            for (int j = 0; j < params.length; j++) {
+                params[j] = buffer.getFloat();
+            }
+            nodes[i] = new PathParser.PathDataNode(type, params);
+        }
+        return nodes;
+    }
+
     private static int applyAlpha(int color, float alpha) {
         int alphaBytes = Color.alpha(color);
         color &= 0x00FFFFFF;
@@ -473,6 +670,90 @@ public class VectorDrawableCompat extends Drawable {
     }
 
 
+    private void inflateFromBinary(Resources res, ByteBuffer buffer) throws IOException {
+        final VectorDrawableState state = mVectorState;
+        final VPathRenderer pathRenderer = state.mVPathRenderer;
+
+        final float width = buffer.getFloat();
+        final int widthUnit = buffer.get();
+        final float height = buffer.getFloat();
+        final int heightUnit = buffer.get();
+        pathRenderer.mBaseWidth = TypedValue.applyDimension(widthUnit, width,
+                res.getDisplayMetrics());
+        pathRenderer.mBaseHeight = TypedValue.applyDimension(heightUnit, height,
+                res.getDisplayMetrics());
+        pathRenderer.mViewportWidth = buffer.getFloat();
+        pathRenderer.mViewportHeight = buffer.getFloat();
+        if (pathRenderer.mBaseWidth <= 0 || pathRenderer.mBaseHeight <= 0 ||
+                pathRenderer.mViewportWidth <= 0 || pathRenderer.mViewportHeight <= 0) {
+            throw new IOException("<vector> requires width, height and viewport size > 0");
+        }
+        pathRenderer.setAlpha(buffer.getFloat());
+        state.mAutoMirrored = buffer.get() != 0;
+        state.mTintMode = parseTintMode(buffer.get(), Mode.SRC_IN);
+        if (buffer.get() != 0) {
+            state.mTint = ColorStateList.valueOf(buffer.getInt());
+        }
+        final String name = readBinaryString(buffer);
+        if (name != null) {
+            pathRenderer.mRootName = name;
+            pathRenderer.mVGTargetsMap.put(name, pathRenderer);
+        }
+        state.mCacheDirty = true;
+
+        if (!inflateBinaryChildren(buffer, pathRenderer.mRootGroup)) {
+            throw new IOException("no " + SHAPE_PATH + " defined");
+        }
+        mTintFilter = updateTintFilter(mTintFilter, state.mTint, state.mTintMode);
+    }
+
+    /**
+     * Reads the children of a group until its end tag.
+     *
+     * @return whether a path was found.
+     */
+    private boolean inflateBinaryChildren(ByteBuffer buffer, VGroup group) throws IOException {
+        final VPathRenderer pathRenderer = mVectorState.mVPathRenderer;
+        boolean hasPath = false;
+        int tag;
+        while ((tag = buffer.get()) != BINARY_TAG_END) {
+            switch (tag) {
+                case BINARY_TAG_GROUP: {
+                    final VGroup childGroup = new VGroup();
+                    childGroup.inflateFromBinary(buffer);
+                    group.mChildren.add(childGroup);
+                    if (childGroup.getGroupName() != null) {
+                        pathRenderer.mVGTargetsMap.put(childGroup.getGroupName(), childGroup);
+                    }
+                    hasPath |= inflateBinaryChildren(buffer, childGroup);
+                    break;
+                }
+                case BINARY_TAG_PATH: {
+                    final VFullPath path = new VFullPath();
+                    path.inflateFromBinary(buffer);
+                    group.mChildren.add(path);
+                    if (path.getPathName() != null) {
+                        pathRenderer.mVGTargetsMap.put(path.getPathName(), path);
+                    }
+                    hasPath = true;
+                    break;
+                }
+                case BINARY_TAG_CLIP_PATH: {
+                    final VClipPath path = new VClipPath();
+                    path.inflateFromBinary(buffer);
+                    group.mChildren.add(path);
+                    if (path.getPathName() != null) {
+                        pathRenderer.mVGTargetsMap.put(path.getPathName(), path);
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown binary vector tag " + tag);
+            }
+        }
+        return hasPath;
+    }
+
     /**
      * Parses a {@link android.graphics.PorterDuff.Mode} from a tintMode
      * attribute's enum value.
@@ -660,6 +941,13 @@ public class VectorDrawableCompat extends Drawable {
         boolean mCachedAutoMirrored;
         boolean mCacheDirty;
 
+        // Identifies the rendered contents in the shared raster cache. Only set for drawables
+        // created from a resource, 0 otherwise.
+        int mResId;
+        int mDensity;
+        int[] mContent;
+        VectorRasterCache.Entry mSharedBitmap;
+
         /** Temporary paint object used to draw cached bitmaps. */
         Paint mTempPaint;
 
@@ -677,6 +965,9 @@ public class VectorDrawableCompat extends Drawable {
                 mTint = copy.mTint;
                 mTintMode = copy.mTintMode;
                 mAutoMirrored = copy.mAutoMirrored;
+                mResId = copy.mResId;
+                mDensity = copy.mDensity;
+                mContent = copy.mContent;
             }
         }
 
@@ -752,6 +1043,44 @@ public class VectorDrawableCompat extends Drawable {
             mCacheDirty = false;
         }
 
+        public void setRasterKey(int resId, int density) {
+            mResId = resId;
+            mDensity = density;
+            mContent = mVPathRenderer.getThemedContent();
+        }
+
+        public boolean canUseSharedBitmap() {
+            return mResId != 0 && VectorRasterCache.isEnabled();
+        }
+
+        public void drawSharedBitmap(Canvas canvas, Rect bounds, ColorFilter filter) {
+            final int width = bounds.width();
+            final int height = bounds.height();
+            VectorRasterCache.Entry entry = mSharedBitmap;
+            if (entry == null || !entry.matches(width, height)) {
+                releaseSharedBitmap();
+                entry = VectorRasterCache.acquire(this, mResId, mDensity, mContent,
+                        width, height);
+                if (entry == null) {
+                    final Bitmap bitmap = Bitmap.createBitmap(width, height,
+                            Bitmap.Config.ARGB_8888);
+                    mVPathRenderer.draw(new Canvas(bitmap), width, height, null);
+                    entry = VectorRasterCache.put(this, mResId, mDensity, mContent, bitmap);
+                }
+                mSharedBitmap = entry;
+                // The private bitmap is no longer needed while the shared one is used.
+                mCachedBitmap = null;
+            }
+            canvas.drawBitmap(entry.mBitmap, 0, 0, getPaint(filter));
+        }
+
+        public void releaseSharedBitmap() {
+            if (mSharedBitmap != null) {
+                VectorRasterCache.release(this, mSharedBitmap);
+                mSharedBitmap = null;
+            }
+        }
+
         public VectorDrawableState() {
             mVPathRenderer = new VPathRenderer();
         }
@@ -874,6 +1203,36 @@ public class VectorDrawableCompat extends Drawable {
             }
         }
 
+        /**
+         * Returns the attributes of the paths that may be resolved from the theme, so that
+         * drawables inflated from the same resource with different themes don't share rasters.
+         */
+        public int[] getThemedContent() {
+            final ArrayList<Integer> content = new ArrayList<Integer>();
+            addThemedContent(mRootGroup, content);
+            final int[] result = new int[content.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = content.get(i);
+            }
+            return result;
+        }
+
+        private static void addThemedContent(VGroup group, ArrayList<Integer> content) {
+            for (int i = 0; i < group.mChildren.size(); i++) {
+                final Object child = group.mChildren.get(i);
+                if (child instanceof VGroup) {
+                    addThemedContent((VGroup) child, content);
+                } else if (child instanceof VFullPath) {
+                    final VFullPath path = (VFullPath) child;
+                    content.add(path.mFillColor);
+                    content.add(Float.floatToIntBits(path.mFillAlpha));
+                    content.add(path.mStrokeColor);
+                    content.add(Float.floatToIntBits(path.mStrokeAlpha));
+                    content.add(Float.floatToIntBits(path.mStrokeWidth));
+                }
+            }
+        }
+
         public void draw(Canvas canvas, int w, int h, ColorFilter filter) {
             // Travese the tree in pre-order to draw.
             drawGroupTree(mRootGroup, IDENTITY_MATRIX, canvas, w, h, filter);
@@ -1077,6 +1436,18 @@ public class VectorDrawableCompat extends Drawable {
             updateLocalMatrix();
         }
 
+        public void inflateFromBinary(ByteBuffer buffer) throws IOException {
+            mGroupName = readBinaryString(buffer);
+            mRotate = buffer.getFloat();
+            mPivotX = buffer.getFloat();
+            mPivotY = buffer.getFloat();
+            mScaleX = buffer.getFloat();
+            mScaleY = buffer.getFloat();
+            mTranslateX = buffer.getFloat();
+            mTranslateY = buffer.getFloat();
+            updateLocalMatrix();
+        }
+
         private void updateLocalMatrix() {
             // The order we apply is the same as the
             // RenderNode.cpp::applyViewPropertyTransforms().
@@ -1185,6 +1556,14 @@ public class VectorDrawableCompat extends Drawable {
      */
     private static class VPath {
         protected PathParser.PathDataNode[] mNodes = null;
+        // Whether mNodes may be shared with other paths or the parsed path cache, in which case
+        // they must be copied before being modified.
+        boolean mNodesShared;
+        // When set, the path is drawn by interpolating between two path data instead of mNodes,
+        // once the animator has set the fraction for the first time.
+        PathMorph mPathMorph;
+        float mPathMorphFraction;
+        boolean mPathMorphStarted;
         String mPathName;
         int mChangingConfigurations;
 
@@ -1217,10 +1596,21 @@ public class VectorDrawableCompat extends Drawable {
         public VPath(VPath copy) {
             mPathName = copy.mPathName;
             mChangingConfigurations = copy.mChangingConfigurations;
-            mNodes = PathParser.deepCopyNodes(copy.mNodes);
+            // Share the nodes until either path modifies them.
+            mNodes = copy.mNodes;
+            mNodesShared = true;
+            copy.mNodesShared = true;
+            // PathMorph is immutable, so it can be shared as well.
+            mPathMorph = copy.mPathMorph;
+            mPathMorphFraction = copy.mPathMorphFraction;
+            mPathMorphStarted = copy.mPathMorphStarted;
         }
 
         public void toPath(Path path) {
+            if (mPathMorph != null && mPathMorphStarted) {
+                mPathMorph.toPath(mPathMorphFraction, path);
+                return;
+            }
             path.reset();
             if (mNodes != null) {
                 PathParser.PathDataNode.nodesToPath(mNodes, path);
@@ -1250,13 +1640,33 @@ public class VectorDrawableCompat extends Drawable {
 
         @SuppressWarnings("unused")
         public void setPathData(PathParser.PathDataNode[] nodes) {
-            if (!PathParser.canMorph(mNodes, nodes)) {
+            mPathMorph = null;
+            if (mNodesShared || !PathParser.canMorph(mNodes, nodes)) {
                 // This should not happen in the middle of animation.
                 mNodes = PathParser.deepCopyNodes(nodes);
+                mNodesShared = false;
             } else {
                 PathParser.updateNodes(mNodes, nodes);
             }
         }
+
+        void setPathMorph(PathMorph pathMorph) {
+            mPathMorph = pathMorph;
+            mPathMorphFraction = 0;
+            // Like the framework, keep drawing the path data until the animation starts.
+            mPathMorphStarted = false;
+        }
+
+        @SuppressWarnings("unused")
+        public float getPathMorphFraction() {
+            return mPathMorphFraction;
+        }
+
+        @SuppressWarnings("unused")
+        public void setPathMorphFraction(float fraction) {
+            mPathMorphFraction = fraction;
+            mPathMorphStarted = true;
+        }
     }
 
     /**
@@ -1283,6 +1693,11 @@ public class VectorDrawableCompat extends Drawable {
             a.recycle();
         }
 
+        public void inflateFromBinary(ByteBuffer buffer) throws IOException {
+            mPathName = readBinaryString(buffer);
+            mNodes = readBinaryNodes(buffer);
+        }
+
         private void updateStateFromTypedArray(TypedArray a) {
             // Account for any configuration changes.
             // mChangingConfigurations |= Utils.getChangingConfigurations(a);;
@@ -1294,7 +1709,8 @@ public class VectorDrawableCompat extends Drawable {
 
             final String pathData = a.getString(AndroidResources.styleable_VectorDrawableClipPath_pathData);
             if (pathData != null) {
-                mNodes = PathParser.createNodesFromPathData(pathData);
+                mNodes = PathParser.getSharedNodesFromPathData(pathData);
+                mNodesShared = true;
             }
         }
 
@@ -1388,6 +1804,22 @@ public class VectorDrawableCompat extends Drawable {
             a.recycle();
         }
 
+        public void inflateFromBinary(ByteBuffer buffer) throws IOException {
+            mPathName = readBinaryString(buffer);
+            mNodes = readBinaryNodes(buffer);
+            mFillColor = buffer.getInt();
+            mFillAlpha = buffer.getFloat();
+            mStrokeColor = buffer.getInt();
+            mStrokeAlpha = buffer.getFloat();
+            mStrokeWidth = buffer.getFloat();
+            mTrimPathStart = buffer.getFloat();
+            mTrimPathEnd = buffer.getFloat();
+            mTrimPathOffset = buffer.getFloat();
+            mStrokeLineCap = getStrokeLineCap(buffer.get(), mStrokeLineCap);
+            mStrokeLineJoin = getStrokeLineJoin(buffer.get(), mStrokeLineJoin);
+            mStrokeMiterlimit = buffer.getFloat();
+        }
+
         private void updateStateFromTypedArray(TypedArray a, XmlPullParser parser) {
             // Account for any configuration changes.
             // mChangingConfigurations |= Utils.getChangingConfigurations(a);
@@ -1412,7 +1844,8 @@ public class VectorDrawableCompat extends Drawable {
             }
             final String pathData = a.getString(AndroidResources.styleable_VectorDrawablePath_pathData);
             if (pathData != null) {
-                mNodes = PathParser.createNodesFromPathData(pathData);
+                mNodes = PathParser.getSharedNodesFromPathData(pathData);
+                mNodesShared = true;
             }
 
             mFillColor = TypedArrayUtils.getNamedColor(a, parser, "fillColor",
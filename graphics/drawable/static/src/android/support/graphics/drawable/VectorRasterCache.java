@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import android.graphics.Bitmap;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Process wide cache of rasterized vector drawables, shared by every {@link VectorDrawableCompat}
+ * created from the same resource and drawn at the same size.
+ * <p/>
+ * Each bitmap is reference counted by the drawable states drawing it. Holders are only weakly
+ * referenced, so a drawable that is dropped without being redrawn at another size doesn't pin
+ * its bitmap. Once the cache grows beyond its maximum size in bytes, the least recently used
+ * bitmaps that no drawable is holding are evicted. Evicting a bitmap that is still held would
+ * not free any memory, so those stay in the cache and can still be shared.
+ */
+final class VectorRasterCache {
+    private static final Object sLock = new Object();
+
+    // Access ordered, so iteration starts from the least recently used entry.
+    private static final LinkedHashMap<Key, Entry> sEntries =
+            new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    // Reused for lookups to avoid allocating a key on every miss of a drawable state.
+    private static final Key sLookupKey = new Key();
+
+    private static int sMaxSize;
+    private static int sSize;
+    private static int sHitCount;
+    private static int sMissCount;
+    private static int sEvictionCount;
+
+    private VectorRasterCache() {
+    }
+
+    static final class Key {
+        int mResId;
+        int mDensity;
+        // The theme dependent values of the drawable, which are never modified once rendered.
+        int[] mContent;
+        int mContentHash;
+        int mWidth;
+        int mHeight;
+
+        Key set(int resId, int density, int[] content, int width, int height) {
+            mResId = resId;
+            mDensity = density;
+            mContent = content;
+            mContentHash = Arrays.hashCode(content);
+            mWidth = width;
+            mHeight = height;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            // Different contents may share a hash, so the values themselves are compared.
+            return mResId == other.mResId && mDensity == other.mDensity &&
+                    mWidth == other.mWidth && mHeight == other.mHeight &&
+                    mContentHash == other.mContentHash &&
+                    Arrays.equals(mContent, other.mContent);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mResId;
+            result = 31 * result + mDensity;
+            result = 31 * result + mContentHash;
+            result = 31 * result + mWidth;
+            result = 31 * result + mHeight;
+            return result;
+        }
+    }
+
+    static final class Entry {
+        final Key mKey;
+        final Bitmap mBitmap;
+        final int mByteCount;
+        private final ArrayList<WeakReference<Object>> mHolders =
+                new ArrayList<WeakReference<Object>>(1);
+
+        Entry(Key key, Bitmap bitmap) {
+            mKey = key;
+            mBitmap = bitmap;
+            // Bitmap.getByteCount() needs API 12, every cached bitmap is ARGB_8888.
+            mByteCount = bitmap.getWidth() * bitmap.getHeight() * 4;
+        }
+
+        boolean matches(int width, int height) {
+            return mKey.mWidth == width && mKey.mHeight == height;
+        }
+
+        void addHolder(Object holder) {
+            mHolders.add(new WeakReference<Object>(holder));
+        }
+
+        void removeHolder(Object holder) {
+            for (int i = mHolders.size() - 1; i >= 0; i--) {
+                final Object current = mHolders.get(i).get();
+                if (current == holder || current == null) {
+                    mHolders.remove(i);
+                }
+            }
+        }
+
+        boolean isHeld() {
+            for (int i = mHolders.size() - 1; i >= 0; i--) {
+                if (mHolders.get(i).get() == null) {
+                    mHolders.remove(i);
+                }
+            }
+            return !mHolders.isEmpty();
+        }
+    }
+
+    /**
+     * Sets the maximum size of the cache in bytes. 0, the default, disables the cache and drops
+     * every bitmap it holds.
+     */
+    static void setMaxSize(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes < 0");
+        }
+        synchronized (sLock) {
+            sMaxSize = maxBytes;
+            trimToSize(maxBytes);
+        }
+    }
+
+    static boolean isEnabled() {
+        synchronized (sLock) {
+            return sMaxSize > 0;
+        }
+    }
+
+    /**
+     * Returns the cached bitmap for the given drawable contents and size, held on behalf of
+     * {@code holder}, or null if there is none.
+     */
+    static Entry acquire(Object holder, int resId, int density, int[] content, int width,
+            int height) {
+        synchronized (sLock) {
+            final Entry entry = sEntries.get(
+                    sLookupKey.set(resId, density, content, width, height));
+            // Don't keep the contents of the drawable reachable from the lookup key
+            sLookupKey.mContent = null;
+            if (entry == null) {
+                sMissCount++;
+                return null;
+            }
+            sHitCount++;
+            entry.addHolder(holder);
+            return entry;
+        }
+    }
+
+    /**
+     * Adds a bitmap rendered after a miss in {@link #acquire}, and holds it on behalf of
+     * {@code holder}. If another thread added the same contents in the meantime, that entry is
+     * returned instead.
+     */
+    static Entry put(Object holder, int resId, int density, int[] content, Bitmap bitmap) {
+        final Key key = new Key().set(resId, density, content, bitmap.getWidth(),
+                bitmap.getHeight());
+        synchronized (sLock) {
+            Entry entry = sEntries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, bitmap);
+                sEntries.put(key, entry);
+                sSize += entry.mByteCount;
+            }
+            entry.addHolder(holder);
+            trimToSize(sMaxSize);
+            return entry;
+        }
+    }
+
+    /**
+     * Stops holding {@code entry} on behalf of {@code holder}, making it evictable once nothing
+     * else holds it.
+     */
+    static void release(Object holder, Entry entry) {
+        synchronized (sLock) {
+            entry.removeHolder(holder);
+            if (sSize > sMaxSize) {
+                trimToSize(sMaxSize);
+            }
+        }
+    }
+
+    private static void trimToSize(int maxSize) {
+        final Iterator<Entry> it = sEntries.values().iterator();
+        while (sSize > maxSize && it.hasNext()) {
+            final Entry entry = it.next();
+            if (maxSize == 0 || !entry.isHeld()) {
+                it.remove();
+                sSize -= entry.mByteCount;
+                sEvictionCount++;
+            }
+        }
+    }
+
+    static int getSize() {
+        synchronized (sLock) {
+            return sSize;
+        }
+    }
+
+    static int getHitCount() {
+        synchronized (sLock) {
+            return sHitCount;
+        }
+    }
+
+    static int getMissCount() {
+        synchronized (sLock) {
+            return sMissCount;
+        }
+    }
+
+    static int getEvictionCount() {
+        synchronized (sLock) {
+            return sEvictionCount;
+        }
+    }
+}
@@ -20,7 +20,7 @@ LOCAL_MODULE_TAGS := tests
 
 LOCAL_SDK_VERSION := current
 
-LOCAL_SRC_FILES := $(call all-java-files-under, src)
+LOCAL_SRC_FILES := $(call all-java-files-under, src ../tools/src)
 
 LOCAL_RESOURCE_DIR = \
         $(LOCAL_PATH)/res \
@@ -30,6 +30,8 @@ LOCAL_PACKAGE_NAME := AndroidVectorDrawableTests
 
 LOCAL_STATIC_JAVA_LIBRARIES := android-support-v7-vectordrawable android-support-v4
 
+LOCAL_JAVA_LIBRARIES := android.test.runner
+
 LOCAL_AAPT_FLAGS := \
         --auto-add-overlay \
         --extra-packages android.support.graphics.drawable \
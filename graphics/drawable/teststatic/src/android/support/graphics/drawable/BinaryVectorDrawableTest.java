@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.vectordrawable.R;
+import android.test.AndroidTestCase;
+import android.util.TypedValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tests loading vectors converted to the binary format by {@link VectorDrawableBinaryConverter}
+ * with {@link VectorDrawableCompat#createFromBinary}.
+ */
+public class BinaryVectorDrawableTest extends AndroidTestCase {
+
+    public void testRoundTripDrawsLikeXml() throws IOException {
+        final Resources res = getContext().getResources();
+        final VectorDrawableCompat expected =
+                VectorDrawableCompat.create(res, R.drawable.vector_drawable03, null);
+        final VectorDrawableCompat actual =
+                VectorDrawableCompat.createFromBinary(res, new ByteArrayInputStream(convert()));
+        assertNotNull(actual);
+        assertEquals(expected.getIntrinsicWidth(), actual.getIntrinsicWidth());
+        assertEquals(expected.getIntrinsicHeight(), actual.getIntrinsicHeight());
+
+        final Bitmap expectedBitmap = draw(expected);
+        final Bitmap actualBitmap = draw(actual);
+        for (int y = 0; y < expectedBitmap.getHeight(); y++) {
+            for (int x = 0; x < expectedBitmap.getWidth(); x++) {
+                assertEquals("pixel at " + x + "," + y, expectedBitmap.getPixel(x, y),
+                        actualBitmap.getPixel(x, y));
+            }
+        }
+    }
+
+    public void testTruncatedBinaryIsRejected() throws IOException {
+        final byte[] binary = convert();
+        final int step = Math.max(1, binary.length / 64);
+        for (int length = binary.length - 1; length >= 0; length -= step) {
+            final byte[] truncated = new byte[length];
+            System.arraycopy(binary, 0, truncated, 0, length);
+            assertNull("truncated to " + length + " bytes", createFromBinary(truncated));
+        }
+    }
+
+    public void testWrongMagicIsRejected() throws IOException {
+        final byte[] binary = convert();
+        binary[0] ^= 0xff;
+        assertNull(createFromBinary(binary));
+    }
+
+    public void testNegativeParameterCountIsRejected() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = writeHeader(bytes);
+        out.writeByte(VectorDrawableCompat.BINARY_TAG_PATH);
+        out.writeShort(-1); // name
+        out.writeShort(1); // node count
+        out.writeByte('M');
+        out.writeShort(-2); // parameter count
+        out.close();
+        assertNull(createFromBinary(bytes.toByteArray()));
+    }
+
+    public void testOversizedCountsAreRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = writeHeader(bytes);
+        out.writeByte(VectorDrawableCompat.BINARY_TAG_PATH);
+        out.writeShort(-1); // name
+        out.writeShort(Short.MAX_VALUE); // node count
+        out.close();
+        assertNull(createFromBinary(bytes.toByteArray()));
+
+        bytes = new ByteArrayOutputStream();
+        out = writeHeader(bytes);
+        out.writeByte(VectorDrawableCompat.BINARY_TAG_PATH);
+        out.writeShort(-1); // name
+        out.writeShort(1); // node count
+        out.writeByte('M');
+        out.writeShort(Short.MAX_VALUE); // parameter count
+        out.writeFloat(0);
+        out.writeFloat(0);
+        out.close();
+        assertNull(createFromBinary(bytes.toByteArray()));
+    }
+
+    private byte[] convert() throws IOException {
+        final InputStream in = getContext().getResources().openRawResource(
+                R.raw.vector_drawable03);
+        try {
+            return VectorDrawableBinaryConverter.convert(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private VectorDrawableCompat createFromBinary(byte[] binary) {
+        return VectorDrawableCompat.createFromBinary(getContext().getResources(),
+                new ByteArrayInputStream(binary));
+    }
+
+    /**
+     * Writes the attributes of a 24dp x 24dp vector, to be followed by its children.
+     */
+    private static DataOutputStream writeHeader(ByteArrayOutputStream bytes) throws IOException {
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VectorDrawableCompat.BINARY_MAGIC);
+        out.writeByte(VectorDrawableCompat.BINARY_VERSION);
+        out.writeFloat(24);
+        out.writeByte(TypedValue.COMPLEX_UNIT_DIP);
+        out.writeFloat(24);
+        out.writeByte(TypedValue.COMPLEX_UNIT_DIP);
+        out.writeFloat(24); // viewport width
+        out.writeFloat(24); // viewport height
+        out.writeFloat(1); // alpha
+        out.writeBoolean(false); // auto mirrored
+        out.writeByte(VectorDrawableCompat.BINARY_NO_TINT_MODE);
+        out.writeBoolean(false); // tint
+        out.writeShort(-1); // name
+        return out;
+    }
+
+    private static Bitmap draw(VectorDrawableCompat drawable) {
+        final Bitmap bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(),
+                drawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that both ends of a {@link PathMorph} draw the same paths as
+ * {@link PathParser.PathDataNode#nodesToPath} does for the path data.
+ */
+public class PathMorphTest extends TestCase {
+    private static final int SAMPLES_PER_CONTOUR = 32;
+    private static final float TOLERANCE = 0.05f;
+
+    public void testLines() {
+        assertEndsMatch("M2,2 L10,2 l0,8 H2 h4 V4 v2 z m1,1 l2,0 z",
+                "M4,1 L12,3 l-1,9 H1 h5 V5 v1 z m2,2 l3,1 z");
+    }
+
+    public void testCubicAndSmoothCurves() {
+        assertEndsMatch("M0,0 C5,10 15,10 20,0 S35,-10 40,0 s10,10 20,0 c2,2 4,2 6,0",
+                "M0,5 C6,12 14,8 21,1 S33,-12 41,2 s12,8 18,-1 c1,3 5,1 7,0");
+        // A smooth curve after something else than a curve has no control point to reflect
+        assertEndsMatch("M0,0 L10,0 S20,10 30,0", "M0,2 L12,1 S22,12 28,3");
+    }
+
+    public void testQuadraticAndSmoothCurves() {
+        assertEndsMatch("M0,0 Q10,20 20,0 T40,0 q5,10 10,0 t10,0",
+                "M1,2 Q12,18 22,1 T38,2 q6,8 12,1 t8,-1");
+    }
+
+    public void testArcs() {
+        assertEndsMatch("M10,10 a5,5 0 0,1 10,0 A8,8 0 1,0 30,10 z",
+                "M12,8 a6,4 30 0,1 10,2 A10,6 0 1,0 32,12 z");
+        // Arcs of very different sweeps are split into the same number of segments
+        assertEndsMatch("M0,10 A10,10 0 0,1 2,8", "M0,10 A10,10 0 1,1 20,10");
+        // An arc whose end points are coincident is not drawn
+        assertEndsMatch("M5,5 a4,4 0 0,1 0,0 l5,0", "M5,5 a4,4 0 0,1 6,0 l5,0");
+    }
+
+    private static void assertEndsMatch(String fromPathData, String toPathData) {
+        final PathParser.PathDataNode[] from = PathParser.createNodesFromPathData(fromPathData);
+        final PathParser.PathDataNode[] to = PathParser.createNodesFromPathData(toPathData);
+        final PathMorph morph = PathMorph.create(from, to);
+        assertNotNull(morph);
+
+        final Path path = new Path();
+        morph.toPath(0, path);
+        assertSamePath(fromPathData, toPath(from), path);
+        morph.toPath(1, path);
+        assertSamePath(toPathData, toPath(to), path);
+    }
+
+    private static Path toPath(PathParser.PathDataNode[] nodes) {
+        final Path path = new Path();
+        PathParser.PathDataNode.nodesToPath(nodes, path);
+        return path;
+    }
+
+    /**
+     * Compares the length of every contour of the paths, and points along them.
+     */
+    private static void assertSamePath(String pathData, Path expected, Path actual) {
+        final PathMeasure expectedMeasure = new PathMeasure(expected, false);
+        final PathMeasure actualMeasure = new PathMeasure(actual, false);
+        final float[] expectedPoint = new float[2];
+        final float[] actualPoint = new float[2];
+        int contour = 0;
+        while (true) {
+            final float length = expectedMeasure.getLength();
+            final String message = pathData + ", contour " + contour;
+            assertEquals(message, length, actualMeasure.getLength(),
+                    TOLERANCE + length * 0.001f);
+            for (int i = 0; i <= SAMPLES_PER_CONTOUR; i++) {
+                final float distance = length * i / SAMPLES_PER_CONTOUR;
+                expectedMeasure.getPosTan(distance, expectedPoint, null);
+                actualMeasure.getPosTan(distance, actualPoint, null);
+                assertEquals(message + " at " + distance, expectedPoint[0], actualPoint[0],
+                        TOLERANCE);
+                assertEquals(message + " at " + distance, expectedPoint[1], actualPoint[1],
+                        TOLERANCE);
+            }
+            final boolean expectedNext = expectedMeasure.nextContour();
+            assertEquals(message + " is the last contour", expectedNext,
+                    actualMeasure.nextContour());
+            if (!expectedNext) {
+                break;
+            }
+            contour++;
+        }
+    }
+}
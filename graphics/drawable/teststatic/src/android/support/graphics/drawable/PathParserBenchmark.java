@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+/**
+ * Measures parsing Material icon path strings with {@link PathParser}, both from scratch and
+ * through the shared parsed path cache.  Only uses code that does not depend on the Android
+ * runtime, so it can be run on a desktop JVM with the library and android.jar on the
+ * classpath:
+ * <pre>
+ * java -cp android.jar:android-support-v4.jar:vectordrawable.jar:. \
+ *         android.support.graphics.drawable.PathParserBenchmark
+ * </pre>
+ */
+public class PathParserBenchmark {
+    private static final int ITERATIONS = 20000;
+
+    static final String[] MATERIAL_ICON_PATHS = new String[] {
+            // ic_menu
+            "M3,18h18v-2H3v2zm0,-5h18v-2H3v2zm0,-7v2h18V6H3z",
+            // ic_search
+            "M15.5,14h-0.79l-0.28,-0.27C15.41,12.59 16,11.11 16,9.5 16,5.91 13.09,3 9.5,3S3,5.91 "
+                    + "3,9.5 5.91,16 9.5,16c1.61,0 3.09,-0.59 4.23,-1.57l0.27,0.28v0.79l5,4.99"
+                    + "L20.49,19l-4.99,-5zm-6,0C7.01,14 5,11.99 5,9.5S7.01,5 9.5,5 14,7.01 14,9.5 "
+                    + "11.99,14 9.5,14z",
+            // ic_favorite
+            "M12,21.35l-1.45,-1.32C5.4,15.36 2,12.28 2,8.5 2,5.42 4.42,3 7.5,3c1.74,0 3.41,0.81 "
+                    + "4.5,2.09C13.09,3.81 14.76,3 16.5,3 19.58,3 22,5.42 22,8.5c0,3.78 -3.4,6.86 "
+                    + "-8.55,11.54L12,21.35z",
+            // ic_add
+            "M19,13h-6v6h-2v-6H5v-2h6V5h2v6h6v2z",
+            // ic_close
+            "M19,6.41L17.59,5 12,10.59 6.41,5 5,6.41 10.59,12 5,17.59 6.41,19 12,13.41 17.59,19 "
+                    + "19,17.59 13.41,12z",
+            // ic_arrow_back
+            "M20,11H7.83l5.59,-5.59L12,4l-8,8 8,8 1.41,-1.41L7.83,13H20v-2z",
+            // ic_more_vert
+            "M12,8c1.1,0 2,-0.9 2,-2s-0.9,-2 -2,-2 -2,0.9 -2,2 0.9,2 2,2zm0,2c-1.1,0 -2,0.9 -2,2"
+                    + "s0.9,2 2,2 2,-0.9 2,-2 -0.9,-2 -2,-2zm0,6c-1.1,0 -2,0.9 -2,2s0.9,2 2,2 2,"
+                    + "-0.9 2,-2 -0.9,-2 -2,-2z",
+            // ic_check
+            "M9,16.17L4.83,12l-1.42,1.41L9,19 21,7l-1.41,-1.41z",
+            // ic_share
+            "M18,16.08c-0.76,0 -1.44,0.3 -1.96,0.77L8.91,12.7c0.05,-0.23 0.09,-0.46 0.09,-0.7"
+                    + "s-0.04,-0.47 -0.09,-0.7l7.05,-4.11c0.54,0.5 1.25,0.81 2.04,0.81 1.66,0 3,"
+                    + "-1.34 3,-3s-1.34,-3 -3,-3 -3,1.34 -3,3c0,0.24 0.04,0.47 0.09,0.7L8.04,9.81"
+                    + "C7.5,9.31 6.79,9 6,9c-1.66,0 -3,1.34 -3,3s1.34,3 3,3c0.79,0 1.5,-0.31 2.04,"
+                    + "-0.81l7.12,4.16c-0.05,0.21 -0.08,0.43 -0.08,0.65 0,1.61 1.31,2.92 2.92,"
+                    + "2.92 1.61,0 2.92,-1.31 2.92,-2.92s-1.31,-2.92 -2.92,-2.92z",
+            // ic_delete
+            "M6,19c0,1.1 0.9,2 2,2h8c1.1,0 2,-0.9 2,-2V7H6v12zM19,4h-3.5l-1,-1h-5l-1,1H5v2h14V4z",
+            // ic_settings, with compact number syntax
+            "M19.43 12.98c.04-.32.07-.64.07-.98s-.03-.66-.07-.98l2.11-1.65c.19-.15.24-.42.12-.64"
+                    + "l-2-3.46c-.12-.22-.39-.3-.61-.22l-2.49 1c-.52-.4-1.08-.73-1.69-.98"
+                    + "l-.38-2.65C14.46 2.18 14.25 2 14 2h-4c-.25 0-.46.18-.49.42l-.38 2.65"
+                    + "c-.61.25-1.17.59-1.69.98l-2.49-1c-.23-.09-.49 0-.61.22l-2 3.46"
+                    + "c-.13.22-.07.49.12.64l2.11 1.65c-.04.32-.07.65-.07.98s.03.66.07.98l-2.11 "
+                    + "1.65c-.19.15-.24.42-.12.64l2 3.46c.12.22.39.3.61.22l2.49-1c.52.4 1.08.73 "
+                    + "1.69.98l.38 2.65c.03.24.24.42.49.42h4c.25 0 .46-.18.49-.42l.38-2.65"
+                    + "c.61-.25 1.17-.59 1.69-.98l2.49 1c.23.09.49 0 .61-.22l2-3.46"
+                    + "c.12-.22.07-.49-.12-.64l-2.11-1.65zM12 15.5c-1.93 0-3.5-1.57-3.5-3.5"
+                    + "s1.57-3.5 3.5-3.5 3.5 1.57 3.5 3.5-1.57 3.5-3.5 3.5z",
+            // ic_place, with arcs
+            "M12,2C8.13,2 5,5.13 5,9c0,5.25 7,13 7,13s7,-7.75 7,-13c0,-3.87 -3.13,-7 -7,-7zm0,9.5"
+                    + "c-1.38,0 -2.5,-1.12 -2.5,-2.5s1.12,-2.5 2.5,-2.5 2.5,1.12 2.5,2.5 -1.12,"
+                    + "2.5 -2.5,2.5zM4,22a8,8 0 0,1 16,0z"
+    };
+
+    public static void main(String[] args) {
+        // Warm up both paths before measuring.
+        parse(ITERATIONS);
+        parseShared(ITERATIONS);
+
+        final long parseNanos = parse(ITERATIONS);
+        final long sharedNanos = parseShared(ITERATIONS);
+        final int paths = ITERATIONS * MATERIAL_ICON_PATHS.length;
+        System.out.println(String.format("parse=%d ns/path shared=%d ns/path (%d paths)",
+                parseNanos / paths, sharedNanos / paths, MATERIAL_ICON_PATHS.length));
+    }
+
+    private static long parse(int iterations) {
+        int nodes = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String pathData : MATERIAL_ICON_PATHS) {
+                nodes += PathParser.createNodesFromPathData(pathData).length;
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        if (nodes == 0) {
+            throw new AssertionError("No nodes parsed");
+        }
+        return nanos;
+    }
+
+    private static long parseShared(int iterations) {
+        int nodes = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String pathData : MATERIAL_ICON_PATHS) {
+                nodes += PathParser.getSharedNodesFromPathData(pathData).length;
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        if (nodes == 0) {
+            throw new AssertionError("No nodes parsed");
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link PathParser} parses the numbers of path data exactly like
+ * {@link Float#parseFloat(String)}.  Like {@link PathParserBenchmark}, it only uses code that
+ * does not depend on the Android runtime, so it can also be run on a desktop JVM.
+ */
+public class PathParserTest extends TestCase {
+
+    public void testIntegersAndDecimals() {
+        assertParsesLikeParseFloat("0", "1", "-1", "+1", "10", "1.5", "-1.5", "0.001", "100.25",
+                "3.14159", "0.0", "-0", "-0.0", "007.50", "1.", "-1.");
+    }
+
+    public void testLeadingDotAndMinus() {
+        assertParsesLikeParseFloat(".5", "-.5", "+.5", ".001", "-.125", "-0.5", ".0");
+    }
+
+    public void testExponents() {
+        assertParsesLikeParseFloat("1e5", "1E5", "1e+5", "1e-5", "-2.5e2", "2.5e-2", ".5e1",
+                "1e10", "1e-10", "1e11", "1e-11", "123e-7", "1.5e0", "1e05", "1e-005",
+                "3e38", "1e39", "1e-45", "1e-46", "1e1000", "-1e1000", "1e-1000");
+    }
+
+    public void testImplicitSeparators() {
+        // A second dot or a minus sign not following an exponent starts the next number
+        assertParsedAs("1.5.5", "1.5", ".5");
+        assertParsedAs(".5.5.5", ".5", ".5", ".5");
+        assertParsedAs("1-2", "1", "-2");
+        assertParsedAs("-1-2-3", "-1", "-2", "-3");
+        assertParsedAs("1.5-.5", "1.5", "-.5");
+        assertParsedAs("1e-2-3", "1e-2", "-3");
+        assertParsedAs("1,2 3\t4\n5", "1", "2", "3", "4", "5");
+        assertParsedAs("  1 ,, 2  ", "1", "2");
+    }
+
+    public void testLargeMantissas() {
+        final int maxExact = 1 << 24;
+        assertParsesLikeParseFloat(Integer.toString(maxExact - 1), Integer.toString(maxExact),
+                Integer.toString(maxExact + 1), Integer.toString(maxExact + 3),
+                "0." + (maxExact + 1), "1677721.7", "16777217e-5", "-16777217",
+                "99999999", "123456789", "1234567891234", "0.123456789",
+                "1.00000005960464477539", "3.4028235677973366e38");
+    }
+
+    public void testFallbackPath() {
+        // Too many digits or too large an exponent to be converted directly
+        assertParsesLikeParseFloat("3.14159265358979323846", "2.718281828459045",
+                "0.30000000000000004", "1e20", "1e-20", "1.17549435e-38", "1.4e-45",
+                "9223372036854775807", "9223372036854775808000", "0.000000000000000000001",
+                "1" + repeat('0', 50), "0." + repeat('0', 50) + "1");
+    }
+
+    public void testRandomNumbersMatchParseFloat() {
+        final Random random = new Random(0);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.setLength(0);
+            if (random.nextBoolean()) {
+                builder.append('-');
+            }
+            final String digits = Long.toString(random.nextLong() & Long.MAX_VALUE)
+                    .substring(0, 1 + random.nextInt(12));
+            final int dot = random.nextInt(digits.length() + 1);
+            builder.append(digits, 0, dot).append('.').append(digits, dot, digits.length());
+            if (random.nextInt(4) == 0) {
+                builder.append('e').append(random.nextInt(31) - 15);
+            }
+            assertParsesLikeParseFloat(builder.toString());
+        }
+    }
+
+    public void testInvalidNumberThrows() {
+        try {
+            PathParser.createNodesFromPathData("M1e,2");
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    private static void assertParsesLikeParseFloat(String... numbers) {
+        for (String number : numbers) {
+            assertParsedAs(number, number);
+        }
+    }
+
+    /**
+     * Checks that the parameters parsed from {@code params} are bit for bit the floats that
+     * {@link Float#parseFloat(String)} parses from {@code expected}.
+     */
+    private static void assertParsedAs(String params, String... expected) {
+        final PathParser.PathDataNode[] nodes =
+                PathParser.createNodesFromPathData("M" + params + "z");
+        assertEquals(params, 2, nodes.length);
+        final float[] parsed = nodes[0].params;
+        assertEquals(params, expected.length, parsed.length);
+        for (int i = 0; i < expected.length; i++) {
+            final float expectedValue = Float.parseFloat(expected[i]);
+            assertEquals(params + " at " + i + ": expected " + expectedValue + " but was "
+                            + parsed[i], Float.floatToIntBits(expectedValue),
+                    Float.floatToIntBits(parsed[i]));
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        final char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+}
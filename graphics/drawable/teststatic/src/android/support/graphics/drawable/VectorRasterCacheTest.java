@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.vectordrawable.R;
+import android.test.AndroidTestCase;
+
+/**
+ * Tests for {@link VectorRasterCache} and its use by {@link VectorDrawableCompat}.
+ */
+public class VectorRasterCacheTest extends AndroidTestCase {
+    private static final int SIZE = 10;
+    // SIZE x SIZE ARGB_8888 bitmaps take 400 bytes each.
+    private static final int BITMAP_BYTES = SIZE * SIZE * 4;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        VectorRasterCache.setMaxSize(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        VectorRasterCache.setMaxSize(0);
+        super.tearDown();
+    }
+
+    public void testKeyEquality() {
+        final VectorRasterCache.Key key = new VectorRasterCache.Key().set(1, 2, content(3), 4, 5);
+        final VectorRasterCache.Key same = new VectorRasterCache.Key().set(1, 2, content(3), 4, 5);
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+
+        assertFalse(key.equals(new VectorRasterCache.Key().set(9, 2, content(3), 4, 5)));
+        assertFalse(key.equals(new VectorRasterCache.Key().set(1, 9, content(3), 4, 5)));
+        assertFalse(key.equals(new VectorRasterCache.Key().set(1, 2, content(9), 4, 5)));
+        assertFalse(key.equals(new VectorRasterCache.Key().set(1, 2, content(3), 9, 5)));
+        assertFalse(key.equals(new VectorRasterCache.Key().set(1, 2, content(3), 4, 9)));
+        assertFalse(key.equals(null));
+        assertFalse(key.equals("key"));
+
+        // Reusing a key for lookups changes its identity
+        same.set(1, 2, content(3), 5, 4);
+        assertFalse(key.equals(same));
+    }
+
+    public void testKeyComparesContentWithSameHash() {
+        // Different theme values which hash the same
+        final int[] content = new int[] { 0, 31 };
+        final int[] collision = new int[] { 1, 0 };
+        final VectorRasterCache.Key key = new VectorRasterCache.Key().set(1, 2, content, 4, 5);
+        final VectorRasterCache.Key other =
+                new VectorRasterCache.Key().set(1, 2, collision, 4, 5);
+        assertEquals(key.hashCode(), other.hashCode());
+        assertFalse(key.equals(other));
+
+        VectorRasterCache.setMaxSize(10 * BITMAP_BYTES);
+        final Object holder = new Object();
+        VectorRasterCache.put(holder, 1, 160, content, createBitmap());
+        assertNull(VectorRasterCache.acquire(holder, 1, 160, collision, SIZE, SIZE));
+    }
+
+    public void testAcquireMatchesWholeKey() {
+        VectorRasterCache.setMaxSize(10 * BITMAP_BYTES);
+        final Object holder = new Object();
+        final VectorRasterCache.Entry entry = VectorRasterCache.put(holder, 1, 160, content(7),
+                createBitmap());
+
+        final int misses = VectorRasterCache.getMissCount();
+        final int hits = VectorRasterCache.getHitCount();
+        assertSame(entry, VectorRasterCache.acquire(holder, 1, 160, content(7), SIZE, SIZE));
+        assertNull(VectorRasterCache.acquire(holder, 2, 160, content(7), SIZE, SIZE));
+        assertNull(VectorRasterCache.acquire(holder, 1, 240, content(7), SIZE, SIZE));
+        assertNull(VectorRasterCache.acquire(holder, 1, 160, content(8), SIZE, SIZE));
+        assertNull(VectorRasterCache.acquire(holder, 1, 160, content(7), SIZE + 1, SIZE));
+        assertEquals(hits + 1, VectorRasterCache.getHitCount());
+        assertEquals(misses + 4, VectorRasterCache.getMissCount());
+    }
+
+    public void testPutReturnsExistingEntry() {
+        VectorRasterCache.setMaxSize(10 * BITMAP_BYTES);
+        final VectorRasterCache.Entry entry = VectorRasterCache.put(new Object(), 1, 160,
+                content(7), createBitmap());
+        assertSame(entry, VectorRasterCache.put(new Object(), 1, 160, content(7), createBitmap()));
+        assertEquals(BITMAP_BYTES, VectorRasterCache.getSize());
+    }
+
+    public void testReleasedWhenNoLongerHeld() {
+        VectorRasterCache.setMaxSize(BITMAP_BYTES);
+        final Object first = new Object();
+        final Object second = new Object();
+        final VectorRasterCache.Entry entry = VectorRasterCache.put(first, 1, 160, content(7),
+                createBitmap());
+        assertSame(entry, VectorRasterCache.acquire(second, 1, 160, content(7), SIZE, SIZE));
+
+        // Held bitmaps are kept even though the cache is over its maximum size
+        final Object other = new Object();
+        final VectorRasterCache.Entry otherEntry = VectorRasterCache.put(other, 2, 160, content(7),
+                createBitmap());
+        assertEquals(2 * BITMAP_BYTES, VectorRasterCache.getSize());
+
+        final int evictions = VectorRasterCache.getEvictionCount();
+        VectorRasterCache.release(first, entry);
+        assertEquals(2 * BITMAP_BYTES, VectorRasterCache.getSize());
+        assertEquals(evictions, VectorRasterCache.getEvictionCount());
+
+        // Evicted once the last holder releases it
+        VectorRasterCache.release(second, entry);
+        assertEquals(BITMAP_BYTES, VectorRasterCache.getSize());
+        assertEquals(evictions + 1, VectorRasterCache.getEvictionCount());
+        assertNull(VectorRasterCache.acquire(second, 1, 160, content(7), SIZE, SIZE));
+        assertSame(otherEntry, VectorRasterCache.acquire(second, 2, 160, content(7), SIZE, SIZE));
+        VectorRasterCache.release(other, otherEntry);
+    }
+
+    public void testDisablingDropsHeldBitmaps() {
+        VectorRasterCache.setMaxSize(10 * BITMAP_BYTES);
+        assertTrue(VectorRasterCache.isEnabled());
+        final Object holder = new Object();
+        VectorRasterCache.put(holder, 1, 160, content(7), createBitmap());
+
+        VectorRasterCache.setMaxSize(0);
+        assertFalse(VectorRasterCache.isEnabled());
+        assertEquals(0, VectorRasterCache.getSize());
+        assertNull(VectorRasterCache.acquire(holder, 1, 160, content(7), SIZE, SIZE));
+    }
+
+    public void testDrawablesShareBitmap() {
+        VectorDrawableCompat.setRasterCacheMaxSize(1024 * 1024);
+        final VectorDrawableCompat first = create();
+        final VectorDrawableCompat second = create();
+
+        final int misses = VectorDrawableCompat.getRasterCacheMissCount();
+        final int hits = VectorDrawableCompat.getRasterCacheHitCount();
+        final Bitmap firstBitmap = draw(first, 48);
+        final Bitmap secondBitmap = draw(second, 48);
+        assertEquals(misses + 1, VectorDrawableCompat.getRasterCacheMissCount());
+        assertEquals(hits + 1, VectorDrawableCompat.getRasterCacheHitCount());
+        assertEquals(48 * 48 * 4, VectorDrawableCompat.getRasterCacheSize());
+        assertSamePixels(firstBitmap, secondBitmap);
+    }
+
+    public void testFallsBackToPrivateBitmapAfterSharedDraw() {
+        final Bitmap expected = draw(create(), 48);
+
+        VectorDrawableCompat.setRasterCacheMaxSize(1024 * 1024);
+        final VectorDrawableCompat drawable = create();
+        assertSamePixels(expected, draw(drawable, 48));
+
+        // The shared bitmap is dropped, so the drawable renders its own again
+        VectorDrawableCompat.setRasterCacheMaxSize(0);
+        assertSamePixels(expected, draw(drawable, 48));
+        assertEquals(0, VectorDrawableCompat.getRasterCacheSize());
+
+        // And goes back to the shared one once the cache is enabled again
+        VectorDrawableCompat.setRasterCacheMaxSize(1024 * 1024);
+        assertSamePixels(expected, draw(drawable, 48));
+        assertEquals(48 * 48 * 4, VectorDrawableCompat.getRasterCacheSize());
+    }
+
+    private VectorDrawableCompat create() {
+        return VectorDrawableCompat.create(getContext().getResources(),
+                R.drawable.vector_drawable03, null);
+    }
+
+    private static int[] content(int value) {
+        return new int[] { value };
+    }
+
+    private static Bitmap createBitmap() {
+        return Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+    }
+
+    private static Bitmap draw(VectorDrawableCompat drawable, int size) {
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, size, size);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static void assertSamePixels(Bitmap expected, Bitmap actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("pixel at " + x + "," + y, expected.getPixel(x, y),
+                        actual.getPixel(x, y));
+            }
+        }
+    }
+}
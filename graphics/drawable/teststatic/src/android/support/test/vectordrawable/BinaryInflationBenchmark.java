@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.test.vectordrawable;
+
+import android.content.res.Resources;
+import android.support.graphics.drawable.VectorDrawableBinaryConverter;
+import android.support.graphics.drawable.VectorDrawableCompat;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compares inflating a vector drawable from its compiled XML resource with loading the same
+ * vector from the precompiled binary format. The binary vector is converted at runtime from a
+ * raw copy of the XML, outside of the measured loop.
+ */
+public class BinaryInflationBenchmark {
+    private static final String LOG_TAG = "BinaryInflation";
+    private static final int ITERATIONS = 200;
+
+    /**
+     * Runs the benchmark, logs the results and returns them as a single line of text.
+     */
+    public static String run(Resources res, Resources.Theme theme) throws IOException {
+        final byte[] binary;
+        final InputStream in = res.openRawResource(R.raw.vector_drawable03);
+        try {
+            binary = VectorDrawableBinaryConverter.convert(in);
+        } finally {
+            in.close();
+        }
+
+        // Warm up both paths before measuring.
+        inflateXml(res, theme, ITERATIONS);
+        inflateBinary(res, binary, ITERATIONS);
+
+        final long xmlNanos = inflateXml(res, theme, ITERATIONS) / ITERATIONS;
+        final long binaryNanos = inflateBinary(res, binary, ITERATIONS) / ITERATIONS;
+        final String result = "xml=" + (xmlNanos / 1000) + " us binary=" + (binaryNanos / 1000)
+                + " us (" + binary.length + " bytes)";
+        Log.i(LOG_TAG, result);
+        return result;
+    }
+
+    private static long inflateXml(Resources res, Resources.Theme theme, int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (VectorDrawableCompat.create(res, R.drawable.vector_drawable03, theme) == null) {
+                throw new IllegalStateException("Can't inflate vector_drawable03");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long inflateBinary(Resources res, byte[] binary, int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (VectorDrawableCompat.createFromBinary(res,
+                    new ByteArrayInputStream(binary)) == null) {
+                throw new IllegalStateException("Can't load vector_drawable03");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
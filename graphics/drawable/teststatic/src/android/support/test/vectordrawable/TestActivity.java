@@ -27,6 +27,7 @@ import android.widget.LinearLayout;
 import android.widget.ScrollView;
 import android.widget.TextView;
 
+import java.io.IOException;
 import java.text.DecimalFormat;
 
 public class TestActivity extends Activity {
@@ -115,6 +116,15 @@ public class TestActivity extends Activity {
         t.setText("avgL=" + df.format(time / (icon.length)) + " ms");
         container.addView(t);
 
+        // Compare with loading a precompiled binary vector.
+        TextView binaryTime = new TextView(this);
+        try {
+            binaryTime.setText(BinaryInflationBenchmark.run(res, getTheme()));
+        } catch (IOException e) {
+            binaryTime.setText("binary vector error: " + e);
+        }
+        container.addView(binaryTime);
+
         addDrawableButtons(container, extras);
 
         addDrawableButtons(container, d);
@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable;
+
+import android.util.TypedValue;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Converts vector drawable XML files to the precompiled binary format loaded by
+ * {@link VectorDrawableCompat#createFromBinary}, with groups and paths already parsed and every
+ * attribute resolved. It is meant to be run at build time on a desktop JVM, with the library and
+ * android.jar on the classpath, and writes each converted file to the output directory with a
+ * <code>.bin</code> extension:
+ * <pre>
+ * java -cp android.jar:android-support-v4.jar:vectordrawable.jar:. \
+ *         android.support.graphics.drawable.VectorDrawableBinaryConverter \
+ *         res/drawable/ic_menu.xml res/drawable/ic_search.xml res/raw
+ * </pre>
+ * Since there are no resources at build time, attributes must be literal values. References to
+ * resources or theme attributes are reported as errors.
+ */
+public class VectorDrawableBinaryConverter {
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    private static final Pattern DIMENSION = Pattern.compile(
+            "([-+]?[0-9]*\\.?[0-9]+(?:[eE][-+]?[0-9]+)?)\\s*(px|dp|dip|sp|pt|in|mm)");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: VectorDrawableBinaryConverter <vector.xml>... <out dir>");
+            System.exit(1);
+        }
+        final File outDir = new File(args[args.length - 1]);
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Can't create " + outDir);
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            final File file = new File(args[i]);
+            final byte[] binary;
+            final InputStream in = new FileInputStream(file);
+            try {
+                binary = convert(in);
+            } catch (IOException e) {
+                throw newIOException(file + ": " + e.getMessage(), e);
+            } finally {
+                in.close();
+            }
+            final String name = file.getName();
+            final int dot = name.lastIndexOf('.');
+            final File outFile = new File(outDir,
+                    (dot > 0 ? name.substring(0, dot) : name) + ".bin");
+            final OutputStream out = new FileOutputStream(outFile);
+            try {
+                out.write(binary);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Converts a vector drawable XML document to the binary format.
+     *
+     * @throws IOException if the document is not a valid vector drawable, or uses attribute
+     *         values that can only be resolved at runtime.
+     */
+    public static byte[] convert(InputStream xml) throws IOException {
+        final Element vector;
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            final Document document = factory.newDocumentBuilder().parse(xml);
+            vector = document.getDocumentElement();
+        } catch (ParserConfigurationException e) {
+            throw newIOException(e.getMessage(), e);
+        } catch (SAXException e) {
+            throw newIOException(e.getMessage(), e);
+        }
+        if (!"vector".equals(vector.getTagName())) {
+            throw new IOException("Expected <vector>, found <" + vector.getTagName() + ">");
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VectorDrawableCompat.BINARY_MAGIC);
+        out.writeByte(VectorDrawableCompat.BINARY_VERSION);
+        writeDimension(out, vector, "width");
+        writeDimension(out, vector, "height");
+        out.writeFloat(getFloat(vector, "viewportWidth", 0));
+        out.writeFloat(getFloat(vector, "viewportHeight", 0));
+        out.writeFloat(getFloat(vector, "alpha", 1));
+        out.writeBoolean(getBoolean(vector, "autoMirrored", false));
+        out.writeByte(getTintMode(vector));
+        final String tint = getAttribute(vector, "tint");
+        out.writeBoolean(tint != null);
+        if (tint != null) {
+            out.writeInt(parseColor("tint", tint));
+        }
+        writeString(out, getAttribute(vector, "name"));
+        writeChildren(out, vector);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeChildren(DataOutputStream out, Element parent) throws IOException {
+        final NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            final Node node = children.item(i);
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            final Element child = (Element) node;
+            final String tagName = child.getTagName();
+            if ("group".equals(tagName)) {
+                out.writeByte(VectorDrawableCompat.BINARY_TAG_GROUP);
+                writeString(out, getAttribute(child, "name"));
+                out.writeFloat(getFloat(child, "rotation", 0));
+                out.writeFloat(getFloat(child, "pivotX", 0));
+                out.writeFloat(getFloat(child, "pivotY", 0));
+                out.writeFloat(getFloat(child, "scaleX", 1));
+                out.writeFloat(getFloat(child, "scaleY", 1));
+                out.writeFloat(getFloat(child, "translateX", 0));
+                out.writeFloat(getFloat(child, "translateY", 0));
+                writeChildren(out, child);
+            } else if ("path".equals(tagName)) {
+                out.writeByte(VectorDrawableCompat.BINARY_TAG_PATH);
+                writePath(out, child);
+            } else if ("clip-path".equals(tagName)) {
+                out.writeByte(VectorDrawableCompat.BINARY_TAG_CLIP_PATH);
+                final String pathData = getAttribute(child, "pathData");
+                // Like the XML inflater, ignore the attributes of a clip path without data.
+                writeString(out, pathData != null ? getAttribute(child, "name") : null);
+                writeNodes(out, pathData);
+            }
+        }
+        out.writeByte(VectorDrawableCompat.BINARY_TAG_END);
+    }
+
+    private static void writePath(DataOutputStream out, Element path) throws IOException {
+        final String pathData = getAttribute(path, "pathData");
+        // Like the XML inflater, ignore the attributes of a path without data, which is empty.
+        final boolean hasPathData = pathData != null;
+        writeString(out, hasPathData ? getAttribute(path, "name") : null);
+        writeNodes(out, pathData);
+        out.writeInt(hasPathData ? getColor(path, "fillColor") : 0);
+        out.writeFloat(hasPathData ? getFloat(path, "fillAlpha", 1) : 1);
+        out.writeInt(hasPathData ? getColor(path, "strokeColor") : 0);
+        out.writeFloat(hasPathData ? getFloat(path, "strokeAlpha", 1) : 1);
+        out.writeFloat(hasPathData ? getFloat(path, "strokeWidth", 0) : 0);
+        out.writeFloat(hasPathData ? getFloat(path, "trimPathStart", 0) : 0);
+        out.writeFloat(hasPathData ? getFloat(path, "trimPathEnd", 1) : 1);
+        out.writeFloat(hasPathData ? getFloat(path, "trimPathOffset", 0) : 0);
+        out.writeByte(hasPathData ? getEnum(path, "strokeLineCap",
+                new String[] { "butt", "round", "square" }) : -1);
+        out.writeByte(hasPathData ? getEnum(path, "strokeLineJoin",
+                new String[] { "miter", "round", "bevel" }) : -1);
+        out.writeFloat(hasPathData ? getFloat(path, "strokeMiterLimit", 4) : 4);
+    }
+
+    private static void writeNodes(DataOutputStream out, String pathData) throws IOException {
+        if (pathData == null) {
+            out.writeShort(-1);
+            return;
+        }
+        final PathParser.PathDataNode[] nodes;
+        try {
+            nodes = PathParser.createNodesFromPathData(pathData);
+        } catch (RuntimeException e) {
+            throw newIOException(e.getMessage(), e);
+        }
+        checkShort("pathData", nodes.length);
+        out.writeShort(nodes.length);
+        for (PathParser.PathDataNode node : nodes) {
+            out.writeByte(node.type);
+            checkShort("pathData", node.params.length);
+            out.writeShort(node.params.length);
+            for (float param : node.params) {
+                out.writeFloat(param);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeShort(-1);
+            return;
+        }
+        final byte[] bytes = str.getBytes("UTF-8");
+        checkShort("name", bytes.length);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeDimension(DataOutputStream out, Element element, String name)
+            throws IOException {
+        final String value = getAttribute(element, name);
+        if (value == null) {
+            throw new IOException("<vector> tag requires " + name);
+        }
+        final Matcher matcher = DIMENSION.matcher(value.trim());
+        if (!matcher.matches()) {
+            throw new IOException(name + " must be a literal dimension, found " + value);
+        }
+        final String unit = matcher.group(2);
+        out.writeFloat(Float.parseFloat(matcher.group(1)));
+        if ("px".equals(unit)) {
+            out.writeByte(TypedValue.COMPLEX_UNIT_PX);
+        } else if ("sp".equals(unit)) {
+            out.writeByte(TypedValue.COMPLEX_UNIT_SP);
+        } else if ("pt".equals(unit)) {
+            out.writeByte(TypedValue.COMPLEX_UNIT_PT);
+        } else if ("in".equals(unit)) {
+            out.writeByte(TypedValue.COMPLEX_UNIT_IN);
+        } else if ("mm".equals(unit)) {
+            out.writeByte(TypedValue.COMPLEX_UNIT_MM);
+        } else {
+            out.writeByte(TypedValue.COMPLEX_UNIT_DIP);
+        }
+    }
+
+    // IOException(String, Throwable) needs API 9 on Android, where this also runs in tests.
+    private static IOException newIOException(String message, Throwable cause) {
+        final IOException e = new IOException(message);
+        e.initCause(cause);
+        return e;
+    }
+
+    private static void checkShort(String name, int value) throws IOException {
+        if (value > Short.MAX_VALUE) {
+            throw new IOException(name + " is too long for the binary format");
+        }
+    }
+
+    private static String getAttribute(Element element, String name) throws IOException {
+        if (!element.hasAttributeNS(ANDROID_NS, name)) {
+            return null;
+        }
+        final String value = element.getAttributeNS(ANDROID_NS, name);
+        if (value.startsWith("@") || value.startsWith("?")) {
+            throw new IOException("android:" + name + " must be a literal value, found "
+                    + value);
+        }
+        return value;
+    }
+
+    private static float getFloat(Element element, String name, float defValue)
+            throws IOException {
+        final String value = getAttribute(element, name);
+        if (value == null) {
+            return defValue;
+        }
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("android:" + name + " must be a float, found " + value);
+        }
+    }
+
+    private static boolean getBoolean(Element element, String name, boolean defValue)
+            throws IOException {
+        final String value = getAttribute(element, name);
+        return value == null ? defValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private static int getColor(Element element, String name) throws IOException {
+        final String value = getAttribute(element, name);
+        return value == null ? 0 : parseColor(name, value);
+    }
+
+    /**
+     * Parses a color in any of the formats accepted by aapt: #RGB, #ARGB, #RRGGBB or #AARRGGBB.
+     */
+    private static int parseColor(String name, String value) throws IOException {
+        final String hex = value.trim();
+        final int length = hex.length() - 1;
+        if (hex.charAt(0) == '#' && (length == 3 || length == 4 || length == 6 || length == 8)) {
+            try {
+                long color = Long.parseLong(hex.substring(1), 16);
+                if (length <= 4) {
+                    // Expand each digit, so that #ABC becomes #AABBCC.
+                    long expanded = 0;
+                    for (int i = length - 1; i >= 0; i--) {
+                        final long digit = (color >> (4 * i)) & 0xF;
+                        expanded = (expanded << 8) | (digit << 4) | digit;
+                    }
+                    color = expanded;
+                }
+                if (length == 3 || length == 6) {
+                    color |= 0xFF000000L;
+                }
+                return (int) color;
+            } catch (NumberFormatException e) {
+                // Fall through to the error below.
+            }
+        }
+        throw new IOException("android:" + name + " must be a color, found " + value);
+    }
+
+    private static int getTintMode(Element element) throws IOException {
+        final String value = getAttribute(element, "tintMode");
+        if (value == null) {
+            return VectorDrawableCompat.BINARY_NO_TINT_MODE;
+        }
+        // The values of the tintMode enum of the framework's VectorDrawable.
+        final String[] names = new String[] {
+                "src_over", "src_in", "src_atop", "multiply", "screen", "add"
+        };
+        final int[] values = new int[] { 3, 5, 9, 14, 15, 16 };
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(value.trim())) {
+                return values[i];
+            }
+        }
+        throw new IOException("Unknown android:tintMode " + value);
+    }
+
+    private static int getEnum(Element element, String name, String[] names)
+            throws IOException {
+        final String value = getAttribute(element, name);
+        if (value == null) {
+            return -1;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(value.trim())) {
+                return i;
+            }
+        }
+        throw new IOException("Unknown android:" + name + " " + value);
+    }
+}
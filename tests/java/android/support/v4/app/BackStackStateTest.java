@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.app;
+
+import android.test.AndroidTestCase;
+import android.test.MoreAsserts;
+
+/**
+ * Tests for the compact encoding of {@link BackStackState}.
+ */
+public class BackStackStateTest extends AndroidTestCase {
+
+    public void testOpsRoundTrip() {
+        final int[] ops = new int[] {
+                BackStackRecord.OP_REPLACE, 3, 0x7f040001, 0x7f040002, 0, 0, 2, 1, 2,
+                BackStackRecord.OP_ADD, -1, 0, 0, 0, 0, 0,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, 127, 128, -64, -65
+        };
+        final byte[] encoded = BackStackState.encodeOps(ops);
+        MoreAsserts.assertEquals(ops, BackStackState.decodeOps(encoded));
+    }
+
+    public void testSmallOpsTakeOneByteEach() {
+        final int[] ops = new int[] { BackStackRecord.OP_ADD, 5, 0, 0, 0, 0, 0 };
+        assertEquals(ops.length, BackStackState.encodeOps(ops).length);
+    }
+}
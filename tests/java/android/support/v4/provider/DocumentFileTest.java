@@ -144,6 +144,57 @@ public class DocumentFileTest extends AndroidTestCase {
         test.exec(DocumentFile.fromTreeUri(getContext(), treeUri));
     }
 
+    public void testListCallbackAndRefresh() throws Exception {
+        final DocumentTest test = new DocumentTest() {
+            @Override
+            public void exec(DocumentFile doc) throws Exception {
+                resetRoot();
+
+                final DocumentFile meow = doc.findFile(MEOW);
+                final int[] count = new int[1];
+                meow.listFiles(new DocumentFile.ListCallback() {
+                    @Override
+                    public boolean onFileListed(DocumentFile file) {
+                        count[0]++;
+                        return true;
+                    }
+                });
+                assertEquals("count", 3, count[0]);
+
+                // Stops listing when asked to
+                count[0] = 0;
+                meow.listFiles(new DocumentFile.ListCallback() {
+                    @Override
+                    public boolean onFileListed(DocumentFile file) {
+                        count[0]++;
+                        return false;
+                    }
+                });
+                assertEquals("count", 1, count[0]);
+
+                // Listed metadata matches the provider
+                final DocumentFile cat = meow.findFile(CAT);
+                assertEquals("name", CAT, cat.getName());
+                assertEquals("type", "image/jpeg", cat.getType());
+                assertEquals("length", 4, cat.length());
+                assertTrue("canRead", cat.canRead());
+                assertTrue("canWrite", cat.canWrite());
+
+                // Changes are visible after refresh
+                writeInt(rootMeowCat, 24);
+                final DataOutputStream out = new DataOutputStream(
+                        new FileOutputStream(rootMeowCat, true));
+                out.writeInt(48);
+                out.close();
+                cat.refresh();
+                assertEquals("length", 8, cat.length());
+            }
+        };
+
+        test.exec(DocumentFile.fromFile(root));
+        test.exec(DocumentFile.fromTreeUri(getContext(), treeUri));
+    }
+
     public void testReadAndWrite() throws Exception {
         final DocumentTest test = new DocumentTest() {
             @Override
@@ -20,6 +20,7 @@ import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.support.v17.leanback.R;
+import android.support.v17.leanback.os.TraceHelper;
 import android.animation.Animator;
 import android.animation.ValueAnimator;
 import android.app.Activity;
@@ -90,6 +91,9 @@ public final class BackgroundManager {
 
     private static final String TAG = "BackgroundManager";
     private static final boolean DEBUG = false;
+    private static final String TRACE_CHANGE_BACKGROUND_TAG = "BackgroundManager ChangeBackground";
+    private static final String TRACE_UPDATE_IMMEDIATE_TAG = "BackgroundManager UpdateImmediate";
+    private static final String COUNTER_TRANSITION = "BackgroundManager Transition";
 
     private static final int FULL_ALPHA = 255;
     private static final int DIM_ALPHA_ON_SOLID = (int) (0.8f * FULL_ALPHA);
@@ -454,6 +458,7 @@ public final class BackgroundManager {
 
         @Override
         public void onAnimationStart(Animator animation) {
+            TraceHelper.incrementCounter(COUNTER_TRANSITION);
         }
         @Override
         public void onAnimationRepeat(Animator animation) {
@@ -937,6 +942,7 @@ public final class BackgroundManager {
     }
 
     private void updateImmediate() {
+        TraceHelper.beginSection(TRACE_UPDATE_IMMEDIATE_TAG);
         lazyInit();
 
         DrawableWrapper colorWrapper = getColorWrapper();
@@ -959,6 +965,7 @@ public final class BackgroundManager {
                 dimWrapper.setAlpha(FULL_ALPHA);
             }
         }
+        TraceHelper.endSection();
     }
 
     /**
@@ -1156,8 +1163,10 @@ public final class BackgroundManager {
 
         @Override
         public void run() {
+            TraceHelper.beginSection(TRACE_CHANGE_BACKGROUND_TAG);
             runTask();
             mChangeRunnable = null;
+            TraceHelper.endSection();
         }
 
         private void runTask() {
@@ -1,9 +1,11 @@
 package android.support.v17.leanback.app;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.v17.leanback.widget.AbstractDetailsDescriptionPresenter;
 import android.support.v17.leanback.widget.Action;
 import android.support.v17.leanback.widget.ControlButtonPresenterSelector;
@@ -11,12 +13,15 @@ import android.support.v17.leanback.widget.OnActionClickedListener;
 import android.support.v17.leanback.widget.OnItemViewClickedListener;
 import android.support.v17.leanback.widget.PlaybackControlsRow;
 import android.support.v17.leanback.widget.PlaybackControlsRowPresenter;
+import android.support.v17.leanback.widget.PlaybackSeekThumbnailCache;
+import android.support.v17.leanback.widget.PlaybackSeekThumbnailProvider;
 import android.support.v17.leanback.widget.Presenter;
 import android.support.v17.leanback.widget.PresenterSelector;
 import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.RowPresenter;
 import android.support.v17.leanback.widget.SparseArrayObjectAdapter;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.InputEvent;
 import android.view.KeyEvent;
 import android.view.View;
@@ -71,6 +76,13 @@ import android.view.View;
  * {@link #getUpdatePeriod()} provides a recommended update period.
  * </p>
  *
+ * <p>To show preview thumbnails while the user fast forwards or rewinds, set a
+ * {@link PlaybackSeekThumbnailProvider} with {@link #setSeekThumbnailProvider} and override
+ * {@link #onSeekThumbnailChanged}.  While seeking, the glue prefetches thumbnails ahead of the
+ * current position in the seek direction, at a distance proportional to the observed seek speed,
+ * and keeps them in a {@link PlaybackSeekThumbnailCache}.
+ * </p>
+ *
  */
 public abstract class PlaybackControlGlue implements OnActionClickedListener, View.OnKeyListener {
     /**
@@ -159,7 +171,13 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
     private static final boolean DEBUG = false;
 
     private static final int MSG_UPDATE_PLAYBACK_STATE = 100;
+    private static final int MSG_PREFETCH_SEEK_THUMBNAILS = 101;
     private static final int UPDATE_PLAYBACK_STATE_DELAY_MS = 2000;
+    private static final int DEFAULT_SEEK_THUMBNAIL_CACHE_SIZE = 4 * 1024 * 1024;
+    // How far ahead of the current position, in wall clock time, thumbnails are prefetched.
+    private static final int SEEK_THUMBNAIL_LOOKAHEAD_MS = 2000;
+    private static final int MIN_SEEK_THUMBNAIL_PREFETCH = 2;
+    private static final int MAX_SEEK_THUMBNAIL_PREFETCH = 10;
     private static final int NUMBER_OF_SEEK_SPEEDS = PLAYBACK_SPEED_FAST_L4 -
             PLAYBACK_SPEED_FAST_L0 + 1;
 
@@ -177,16 +195,46 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
     private OnItemViewClickedListener mExternalOnItemViewClickedListener;
     private int mPlaybackSpeed = PLAYBACK_SPEED_NORMAL;
     private boolean mFadeWhenPlaying = true;
+    private PlaybackSeekThumbnailProvider mSeekThumbnailProvider;
+    private PlaybackSeekThumbnailCache mSeekThumbnailCache;
+    private final SparseArray<SeekThumbnailRequest> mSeekThumbnailRequests =
+            new SparseArray<SeekThumbnailRequest>();
+    private int mSeekThumbnailIndex = -1;
+    private int mLastSeekPosition = -1;
+    private long mLastSeekUptime;
+    private float mSeekVelocity;
 
     private final Handler mHandler = new Handler() {
         @Override
         public void handleMessage(Message msg) {
             if (msg.what == MSG_UPDATE_PLAYBACK_STATE) {
                 updatePlaybackState();
+            } else if (msg.what == MSG_PREFETCH_SEEK_THUMBNAILS) {
+                prefetchSeekThumbnails();
             }
         }
     };
 
+    private final class SeekThumbnailRequest
+            implements PlaybackSeekThumbnailProvider.ResultCallback {
+        boolean mCancelled;
+
+        @Override
+        public void onThumbnailLoaded(Bitmap bitmap, int index) {
+            if (mCancelled || mSeekThumbnailRequests.get(index) != this) {
+                return;
+            }
+            mSeekThumbnailRequests.remove(index);
+            if (bitmap == null) {
+                return;
+            }
+            mSeekThumbnailCache.put(index, bitmap);
+            if (index == mSeekThumbnailIndex) {
+                onSeekThumbnailChanged(bitmap);
+            }
+        }
+    }
+
     private final OnItemViewClickedListener mOnItemViewClickedListener =
             new OnItemViewClickedListener() {
         @Override
@@ -366,6 +414,56 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
         return mFadeWhenPlaying;
     }
 
+    /**
+     * Sets the provider of thumbnails shown while the user fast forwards or rewinds.
+     * Previously cached thumbnails are discarded, and the requests still outstanding with the
+     * previous provider are cancelled.  Setting null stops showing seek thumbnails.
+     */
+    public void setSeekThumbnailProvider(PlaybackSeekThumbnailProvider provider) {
+        if (mSeekThumbnailProvider == provider) {
+            return;
+        }
+        stopSeekThumbnailPrefetch();
+        if (mSeekThumbnailProvider != null) {
+            mSeekThumbnailProvider.reset();
+        }
+        mSeekThumbnailProvider = provider;
+        if (mSeekThumbnailCache != null) {
+            mSeekThumbnailCache.clear();
+        } else if (provider != null) {
+            mSeekThumbnailCache = new PlaybackSeekThumbnailCache(
+                    DEFAULT_SEEK_THUMBNAIL_CACHE_SIZE);
+        }
+        if (provider != null && isSeeking(mPlaybackSpeed)) {
+            startSeekThumbnailPrefetch();
+        }
+    }
+
+    /**
+     * Returns the provider of seek thumbnails.
+     */
+    public PlaybackSeekThumbnailProvider getSeekThumbnailProvider() {
+        return mSeekThumbnailProvider;
+    }
+
+    /**
+     * Sets the cache of decoded seek thumbnails.  By default a cache of 4MB is created when a
+     * provider is set.
+     */
+    public void setSeekThumbnailCache(PlaybackSeekThumbnailCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null");
+        }
+        mSeekThumbnailCache = cache;
+    }
+
+    /**
+     * Returns the cache of decoded seek thumbnails.
+     */
+    public PlaybackSeekThumbnailCache getSeekThumbnailCache() {
+        return mSeekThumbnailCache;
+    }
+
     /**
      * Set the {@link OnItemViewClickedListener} to be called if the click event
      * is not handled internally.
@@ -687,6 +785,13 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
             mFragment.setFadingEnabled(playbackSpeed == PLAYBACK_SPEED_NORMAL);
         }
 
+        if (!isSeeking(playbackSpeed)) {
+            stopSeekThumbnailPrefetch();
+        } else if (mSeekThumbnailProvider != null &&
+                !mHandler.hasMessages(MSG_PREFETCH_SEEK_THUMBNAILS)) {
+            startSeekThumbnailPrefetch();
+        }
+
         if (mPlayPauseAction != null) {
             int index = playbackSpeed == PLAYBACK_SPEED_PAUSED ?
                     PlaybackControlsRow.PlayPauseAction.PLAY :
@@ -698,6 +803,100 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
         }
     }
 
+    private static boolean isSeeking(int playbackSpeed) {
+        return playbackSpeed >= PLAYBACK_SPEED_FAST_L0 || playbackSpeed <= -PLAYBACK_SPEED_FAST_L0;
+    }
+
+    private void startSeekThumbnailPrefetch() {
+        mLastSeekPosition = -1;
+        mSeekVelocity = 0;
+        mHandler.removeMessages(MSG_PREFETCH_SEEK_THUMBNAILS);
+        prefetchSeekThumbnails();
+    }
+
+    /**
+     * Cancels the outstanding requests and clears the thumbnail shown, if any.  Must be called
+     * before the provider that the requests were made to is replaced.
+     */
+    private void stopSeekThumbnailPrefetch() {
+        mHandler.removeMessages(MSG_PREFETCH_SEEK_THUMBNAILS);
+        for (int i = mSeekThumbnailRequests.size() - 1; i >= 0; i--) {
+            cancelSeekThumbnailRequest(mSeekThumbnailRequests.keyAt(i),
+                    mSeekThumbnailRequests.valueAt(i));
+        }
+        mSeekThumbnailRequests.clear();
+        if (mSeekThumbnailIndex != -1) {
+            mSeekThumbnailIndex = -1;
+            onSeekThumbnailChanged(null);
+        }
+    }
+
+    private void cancelSeekThumbnailRequest(int index, SeekThumbnailRequest request) {
+        request.mCancelled = true;
+        mSeekThumbnailProvider.cancelFetch(index);
+    }
+
+    /**
+     * Publishes the thumbnail at the current seek position and fetches the thumbnails the
+     * seek will reach within SEEK_THUMBNAIL_LOOKAHEAD_MS.  Requests that fall outside
+     * of that window are cancelled.  Runs again after every update period until
+     * {@link #stopSeekThumbnailPrefetch} is called, also when nothing can be fetched yet.
+     */
+    private void prefetchSeekThumbnails() {
+        mHandler.sendEmptyMessageDelayed(MSG_PREFETCH_SEEK_THUMBNAILS, getUpdatePeriod());
+        if (mSeekThumbnailProvider == null || !hasValidMedia() || !isSeeking(mPlaybackSpeed)) {
+            return;
+        }
+        final int interval = mSeekThumbnailProvider.getThumbnailInterval();
+        if (interval <= 0) {
+            return;
+        }
+        final int position = getCurrentPosition();
+        final long now = SystemClock.uptimeMillis();
+        if (mLastSeekPosition >= 0 && now > mLastSeekUptime) {
+            mSeekVelocity = Math.abs(position - mLastSeekPosition)
+                    / (float) (now - mLastSeekUptime);
+        }
+        mLastSeekPosition = position;
+        mLastSeekUptime = now;
+
+        final int direction = mPlaybackSpeed > 0 ? 1 : -1;
+        final int lastIndex = Math.max(0, getMediaDuration() - 1) / interval;
+        int count = (int) Math.ceil(mSeekVelocity * SEEK_THUMBNAIL_LOOKAHEAD_MS / interval);
+        count = Math.max(MIN_SEEK_THUMBNAIL_PREFETCH, Math.min(MAX_SEEK_THUMBNAIL_PREFETCH, count));
+        final int first = Math.min(lastIndex, Math.max(0, position / interval));
+        final int last = Math.min(lastIndex, Math.max(0, first + direction * count));
+        final int low = Math.min(first, last);
+        final int high = Math.max(first, last);
+
+        for (int i = mSeekThumbnailRequests.size() - 1; i >= 0; i--) {
+            int index = mSeekThumbnailRequests.keyAt(i);
+            if (index < low || index > high) {
+                cancelSeekThumbnailRequest(index, mSeekThumbnailRequests.valueAt(i));
+                mSeekThumbnailRequests.removeAt(i);
+            }
+        }
+
+        if (first != mSeekThumbnailIndex) {
+            mSeekThumbnailIndex = first;
+            Bitmap bitmap = mSeekThumbnailCache.get(first);
+            if (bitmap != null) {
+                onSeekThumbnailChanged(bitmap);
+            }
+        }
+        for (int index = first; ; index += direction) {
+            if (mSeekThumbnailRequests.get(index) == null &&
+                    mSeekThumbnailCache.get(index) == null) {
+                SeekThumbnailRequest request = new SeekThumbnailRequest();
+                mSeekThumbnailRequests.put(index, request);
+                mSeekThumbnailProvider.fetchThumbnail(index, request);
+            }
+            if (index == last) {
+                break;
+            }
+        }
+    }
+
     private static void notifyItemChanged(SparseArrayObjectAdapter adapter, Object object) {
         int index = adapter.indexOf(object);
         if (index >= 0) {
@@ -821,6 +1020,13 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
         return new SparseArrayObjectAdapter(presenterSelector);
     }
 
+    /**
+     * Invoked when the thumbnail for the current seek position becomes available, or with null
+     * when seeking ends.  A subclass may override this to display the thumbnail.
+     */
+    protected void onSeekThumbnailChanged(Bitmap thumbnail) {
+    }
+
     /**
      * Must be called appropriately by a subclass when the playback state has changed.
      */
@@ -851,6 +1057,14 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
      */
     protected void onMetadataChanged() {
         if (DEBUG) Log.v(TAG, "onMetadataChanged");
+        if (mSeekThumbnailProvider != null) {
+            // Thumbnails belong to the previous media item.
+            stopSeekThumbnailPrefetch();
+            mSeekThumbnailCache.clear();
+            if (isSeeking(mPlaybackSpeed)) {
+                startSeekThumbnailPrefetch();
+            }
+        }
         updateRowMetadata();
     }
 }
@@ -19,6 +19,7 @@ import android.animation.TimeAnimator;
 import android.animation.TimeAnimator.TimeListener;
 import android.os.Bundle;
 import android.support.v17.leanback.R;
+import android.support.v17.leanback.os.TraceHelper;
 import android.support.v17.leanback.widget.ItemBridgeAdapter;
 import android.support.v17.leanback.widget.OnItemViewClickedListener;
 import android.support.v17.leanback.widget.OnItemViewSelectedListener;
@@ -110,6 +111,9 @@ public class RowsFragment extends BaseRowFragment {
 
     private static final String TAG = "RowsFragment";
     private static final boolean DEBUG = false;
+    private static final String TRACE_ROW_SELECTED_TAG = "RowsFragment RowSelected";
+    private static final String TRACE_CREATE_ROW_TAG = "RowsFragment CreateRow";
+    private static final String TRACE_ATTACH_ROW_TAG = "RowsFragment AttachRow";
 
     private ItemBridgeAdapter.ViewHolder mSelectedViewHolder;
     private int mSubPosition;
@@ -217,6 +221,7 @@ public class RowsFragment extends BaseRowFragment {
     @Override
     void onRowSelected(RecyclerView parent, RecyclerView.ViewHolder viewHolder,
             int position, int subposition) {
+        TraceHelper.beginSection(TRACE_ROW_SELECTED_TAG);
         if (mSelectedViewHolder != viewHolder || mSubPosition != subposition) {
             if (DEBUG) Log.v(TAG, "new row selected position " + position + " subposition "
                     + subposition + " view " + viewHolder.itemView);
@@ -229,6 +234,7 @@ public class RowsFragment extends BaseRowFragment {
                 setRowViewSelected(mSelectedViewHolder, true, false);
             }
         }
+        TraceHelper.endSection();
     }
 
     @Override
@@ -322,6 +328,7 @@ public class RowsFragment extends BaseRowFragment {
         }
         @Override
         public void onCreate(ItemBridgeAdapter.ViewHolder vh) {
+            TraceHelper.beginSection(TRACE_CREATE_ROW_TAG);
             VerticalGridView listView = getVerticalGridView();
             if (listView != null) {
                 // set clip children false for slide animation
@@ -337,10 +344,12 @@ public class RowsFragment extends BaseRowFragment {
             if (mExternalAdapterListener != null) {
                 mExternalAdapterListener.onCreate(vh);
             }
+            TraceHelper.endSection();
         }
         @Override
         public void onAttachedToWindow(ItemBridgeAdapter.ViewHolder vh) {
             if (DEBUG) Log.v(TAG, "onAttachToWindow");
+            TraceHelper.beginSection(TRACE_ATTACH_ROW_TAG);
             // All views share the same mExpand value.  When we attach a view to grid view,
             // we should make sure it pick up the latest mExpand value we set early on other
             // attached views.  For no-structure-change update,  the view is rebound to new data,
@@ -355,6 +364,7 @@ public class RowsFragment extends BaseRowFragment {
             if (mExternalAdapterListener != null) {
                 mExternalAdapterListener.onAttachedToWindow(vh);
             }
+            TraceHelper.endSection();
         }
         @Override
         public void onDetachedFromWindow(ItemBridgeAdapter.ViewHolder vh) {
@@ -18,15 +18,115 @@ package android.support.v17.leanback.os;
 import android.os.Build;
 import android.support.v17.leanback.os.TraceHelperJbmr2;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
 
 /**
  * Helper for systrace events.
+ * <p>
+ * In addition to emitting systrace sections, the helper can collect the number of times each
+ * named section was entered and the total time spent in it, together with plain counters
+ * incremented by {@link #incrementCounter(String)}.  Collection is off by default; turn it on
+ * with {@link #setStatsEnabled(boolean)} and read the results with {@link #getStats()}.
+ * </p>
  * @hide
  */
 public final class TraceHelper {
 
+    /**
+     * Number of calls and accumulated time of a trace section or counter.
+     */
+    public static final class SectionStats {
+        private final String mName;
+        long mCount;
+        long mTotalTimeNanos;
+
+        SectionStats(String name) {
+            mName = name;
+        }
+
+        SectionStats(SectionStats other) {
+            mName = other.mName;
+            mCount = other.mCount;
+            mTotalTimeNanos = other.mTotalTimeNanos;
+        }
+
+        /**
+         * Returns the name of the section or counter.
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the number of times the section was entered or the counter incremented.
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * Returns the total time spent in the section in nanoseconds, always 0 for counters.
+         */
+        public long getTotalTimeNanos() {
+            return mTotalTimeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return mName + " count=" + mCount + " totalTimeNanos=" + mTotalTimeNanos;
+        }
+    }
+
+    /**
+     * Sections currently open on a thread.  Names and start times are kept in parallel arrays
+     * to avoid allocating per section.
+     */
+    private static final class SectionStack {
+        String[] mNames = new String[16];
+        long[] mStartTimes = new long[16];
+        int mSize;
+        // Value of sStatsGeneration when the sections on the stack were opened.
+        int mGeneration;
+
+        void push(String name, long startTime) {
+            if (mSize == mNames.length) {
+                String[] names = new String[mSize * 2];
+                long[] startTimes = new long[mSize * 2];
+                System.arraycopy(mNames, 0, names, 0, mSize);
+                System.arraycopy(mStartTimes, 0, startTimes, 0, mSize);
+                mNames = names;
+                mStartTimes = startTimes;
+            }
+            mNames[mSize] = name;
+            mStartTimes[mSize] = startTime;
+            mSize++;
+        }
+
+        void clear() {
+            Arrays.fill(mNames, 0, mSize, null);
+            mSize = 0;
+        }
+    }
+
     final static TraceHelperVersionImpl sImpl;
 
+    private static volatile boolean sStatsEnabled;
+    // Incremented each time collection is turned on or off, so that every thread drops the
+    // sections it had open before.
+    private static volatile int sStatsGeneration;
+    private static final HashMap<String, SectionStats> sStats =
+            new HashMap<String, SectionStats>();
+    private static final ThreadLocal<SectionStack> sSectionStack = new ThreadLocal<SectionStack>() {
+        @Override
+        protected SectionStack initialValue() {
+            return new SectionStack();
+        }
+    };
+
     static interface TraceHelperVersionImpl {
         public void beginSection(String section);
         public void endSection();
@@ -67,9 +167,115 @@ public final class TraceHelper {
 
     public static void beginSection(String section) {
         sImpl.beginSection(section);
+        if (sStatsEnabled) {
+            getSectionStack().push(section, System.nanoTime());
+        }
     }
 
     public static void endSection() {
         sImpl.endSection();
+        if (sStatsEnabled) {
+            SectionStack stack = getSectionStack();
+            // The stack may be empty when collection was enabled inside an open section.
+            if (stack.mSize > 0) {
+                stack.mSize--;
+                final String name = stack.mNames[stack.mSize];
+                stack.mNames[stack.mSize] = null;
+                final long duration = System.nanoTime()
+                        - stack.mStartTimes[stack.mSize];
+                synchronized (sStats) {
+                    SectionStats stats = getOrCreateStatsLocked(name);
+                    stats.mCount++;
+                    stats.mTotalTimeNanos += duration;
+                }
+            }
+        }
+    }
+
+    /**
+     * Increments the counter with the given name.  Does nothing unless stats collection is
+     * enabled.
+     */
+    public static void incrementCounter(String counter) {
+        if (sStatsEnabled) {
+            synchronized (sStats) {
+                getOrCreateStatsLocked(counter).mCount++;
+            }
+        }
+    }
+
+    /**
+     * Enables or disables collection of section and counter stats.
+     */
+    public static void setStatsEnabled(boolean enabled) {
+        synchronized (sStats) {
+            if (sStatsEnabled != enabled) {
+                sStatsGeneration++;
+                sStatsEnabled = enabled;
+            }
+        }
+    }
+
+    /**
+     * Returns true if collection of section and counter stats is enabled.
+     */
+    public static boolean isStatsEnabled() {
+        return sStatsEnabled;
+    }
+
+    /**
+     * Returns a snapshot of the collected stats of every section and counter.
+     */
+    public static List<SectionStats> getStats() {
+        synchronized (sStats) {
+            List<SectionStats> snapshot = new ArrayList<SectionStats>(sStats.size());
+            for (SectionStats stats : sStats.values()) {
+                snapshot.add(new SectionStats(stats));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the collected stats of the given section or counter, or null if it
+     * has not been recorded.
+     */
+    public static SectionStats getStats(String name) {
+        synchronized (sStats) {
+            SectionStats stats = sStats.get(name);
+            return stats == null ? null : new SectionStats(stats);
+        }
+    }
+
+    /**
+     * Clears the collected stats.
+     */
+    public static void resetStats() {
+        synchronized (sStats) {
+            sStats.clear();
+        }
+    }
+
+    /**
+     * Returns the open sections of the calling thread, dropping the ones which were opened
+     * before collection was last turned on or off: they may have ended without being popped.
+     */
+    private static SectionStack getSectionStack() {
+        final SectionStack stack = sSectionStack.get();
+        final int generation = sStatsGeneration;
+        if (stack.mGeneration != generation) {
+            stack.clear();
+            stack.mGeneration = generation;
+        }
+        return stack;
+    }
+
+    private static SectionStats getOrCreateStatsLocked(String name) {
+        SectionStats stats = sStats.get(name);
+        if (stats == null) {
+            stats = new SectionStats(name);
+            sStats.put(name, stats);
+        }
+        return stats;
     }
 }
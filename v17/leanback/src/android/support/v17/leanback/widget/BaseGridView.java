@@ -132,7 +132,8 @@ abstract class BaseGridView extends RecyclerView {
 
     /**
      * Save on screen views plus save off screen child views without any limitation.
-     * This might cause out of memory, only use it when you are dealing with limited data.
+     * This might cause out of memory, only use it when you are dealing with limited data
+     * or set a bound with {@link #setSaveChildrenMaxBytes(int)}.
      */
     public static final int SAVE_ALL_CHILD = 3;
 
@@ -824,6 +825,24 @@ abstract class BaseGridView extends RecyclerView {
         mLayoutManager.mChildrenStates.setLimitNumber(limitNumber);
     }
 
+    /**
+     * Returns the maximum size in bytes of off screen children states kept when
+     * {@link #getSaveChildrenPolicy()} is {@link #SAVE_ALL_CHILD}.
+     */
+    public final int getSaveChildrenMaxBytes() {
+        return mLayoutManager.mChildrenStates.getMaxBytes();
+    }
+
+    /**
+     * Sets the maximum size in bytes of off screen children states kept when
+     * {@link #getSaveChildrenPolicy()} is {@link #SAVE_ALL_CHILD}.  States of children that
+     * have been off screen the longest are stored in a compact marshalled form and dropped once
+     * this size is exceeded.  The default is unlimited, which keeps every state as it is.
+     */
+    public final void setSaveChildrenMaxBytes(int maxBytes) {
+        mLayoutManager.mChildrenStates.setMaxBytes(maxBytes);
+    }
+
     @Override
     public boolean hasOverlappingRendering() {
         return mHasOverlappingRendering;
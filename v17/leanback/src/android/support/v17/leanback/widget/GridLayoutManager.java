@@ -385,6 +385,17 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
     private static final boolean DEBUG = false;
     private static final boolean TRACE = false;
 
+    // Sections and counters below are always reported to TraceHelper, the finer grained
+    // sections are only emitted when TRACE is true.
+    private static final String TRACE_LAYOUT_TAG = "GLM Layout";
+    private static final String TRACE_APPEND_TAG = "GLM AppendVisibleItems";
+    private static final String TRACE_PREPEND_TAG = "GLM PrependVisibleItems";
+    private static final String TRACE_FOCUS_SEARCH_TAG = "GLM FocusSearch";
+    private static final String TRACE_ADD_FOCUSABLES_TAG = "GLM AddFocusables";
+    private static final String TRACE_SCROLL_TO_SELECTION_TAG = "GLM ScrollToSelection";
+    private static final String COUNTER_CREATE_ITEM = "GLM CreateItem";
+    private static final String COUNTER_REMOVE_ITEM = "GLM RemoveItem";
+
     // maximum pending movement in one direction.
     private final static int MAX_PENDING_MOVES = 10;
 
@@ -1394,6 +1405,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
 
         @Override
         public int createItem(int index, boolean append, Object[] item) {
+            TraceHelper.incrementCounter(COUNTER_CREATE_ITEM);
             if (TRACE) TraceHelper.beginSection("createItem");
             if (TRACE) TraceHelper.beginSection("getview");
             View v = getViewForPosition(index);
@@ -1504,6 +1516,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
 
         @Override
         public void removeItem(int index) {
+            TraceHelper.incrementCounter(COUNTER_REMOVE_ITEM);
             if (TRACE) TraceHelper.beginSection("removeItem");
             View v = findViewByPosition(index);
             if (mInLayout) {
@@ -1636,13 +1649,17 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
     }
 
     private void appendVisibleItems() {
+        TraceHelper.beginSection(TRACE_APPEND_TAG);
         mGrid.appendVisibleItems(mReverseFlowPrimary ? -mExtraLayoutSpace
                 : mSizePrimary + mExtraLayoutSpace);
+        TraceHelper.endSection();
     }
 
     private void prependVisibleItems() {
+        TraceHelper.beginSection(TRACE_PREPEND_TAG);
         mGrid.prependVisibleItems(mReverseFlowPrimary ? mSizePrimary + mExtraLayoutSpace
                 : -mExtraLayoutSpace);
+        TraceHelper.endSection();
     }
 
     /**
@@ -1754,6 +1771,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
             removeAndRecycleAllViews(recycler);
             return;
         }
+        TraceHelper.beginSection(TRACE_LAYOUT_TAG);
         mInLayout = true;
 
         if (state.didStructureChange()) {
@@ -1872,6 +1890,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
 
         mInLayout = false;
         leaveContext();
+        TraceHelper.endSection();
         if (DEBUG) Log.v(getTag(), "layoutChildren end");
     }
 
@@ -2163,7 +2182,16 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
 
     private void scrollToSelection(RecyclerView parent, int position, int subposition,
             boolean smooth, int primaryScrollExtra) {
-        if (TRACE) TraceHelper.beginSection("scrollToSelection");
+        TraceHelper.beginSection(TRACE_SCROLL_TO_SELECTION_TAG);
+        try {
+            scrollToSelectionInternal(parent, position, subposition, smooth, primaryScrollExtra);
+        } finally {
+            TraceHelper.endSection();
+        }
+    }
+
+    private void scrollToSelectionInternal(RecyclerView parent, int position, int subposition,
+            boolean smooth, int primaryScrollExtra) {
         mPrimaryScrollExtra = primaryScrollExtra;
         View view = findViewByPosition(position);
         if (view != null) {
@@ -2189,7 +2217,6 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                 parent.requestLayout();
             }
         }
-        if (TRACE) TraceHelper.endSection();
     }
 
     void startPositionSmoothScroller(int position) {
@@ -2686,6 +2713,16 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
         if (mFocusSearchDisabled) {
             return true;
         }
+        TraceHelper.beginSection(TRACE_ADD_FOCUSABLES_TAG);
+        try {
+            return addFocusablesInternal(recyclerView, views, direction, focusableMode);
+        } finally {
+            TraceHelper.endSection();
+        }
+    }
+
+    private boolean addFocusablesInternal(RecyclerView recyclerView,
+            ArrayList<View> views, int direction, int focusableMode) {
         // If this viewgroup or one of its children currently has focus then we
         // consider our children for focus searching in main direction on the same row.
         // If this viewgroup has no focus and using focus align, we want the system
@@ -2790,6 +2827,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
             RecyclerView.State state) {
         if (DEBUG) Log.v(getTag(), "onFocusSearchFailed direction " + direction);
 
+        TraceHelper.beginSection(TRACE_FOCUS_SEARCH_TAG);
         View view = null;
         int movement = getMovement(direction);
         final boolean isScroll = mBaseGridView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE;
@@ -2812,6 +2850,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
             }
         }
         leaveContext();
+        TraceHelper.endSection();
         if (DEBUG) Log.v(getTag(), "onFocusSearchFailed returning view " + view);
         return view;
     }
@@ -13,6 +13,7 @@
  */
 package android.support.v17.leanback.widget;
 
+import android.support.v17.leanback.os.TraceHelper;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.View;
@@ -27,6 +28,8 @@ import java.util.ArrayList;
 public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProviderAdapter {
     private static final String TAG = "ItemBridgeAdapter";
     private static final boolean DEBUG = false;
+    private static final String TRACE_CREATE_TAG = "IBA CreateViewHolder";
+    private static final String TRACE_BIND_TAG = "IBA BindViewHolder";
 
     /**
      * Interface for listening to ViewHolder operations.
@@ -304,6 +307,7 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
     @Override
     public final RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         if (DEBUG) Log.v(TAG, "onCreateViewHolder viewType " + viewType);
+        TraceHelper.beginSection(TRACE_CREATE_TAG);
         Presenter presenter = mPresenters.get(viewType);
         Presenter.ViewHolder presenterVh;
         View view;
@@ -328,6 +332,7 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         if (mFocusHighlight != null) {
             mFocusHighlight.onInitializeView(view);
         }
+        TraceHelper.endSection();
         return viewHolder;
     }
 
@@ -341,6 +346,7 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
     @Override
     public final void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
         if (DEBUG) Log.v(TAG, "onBindViewHolder position " + position);
+        TraceHelper.beginSection(TRACE_BIND_TAG);
         ViewHolder viewHolder = (ViewHolder) holder;
         viewHolder.mItem = mAdapter.get(position);
 
@@ -350,6 +356,7 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         if (mAdapterListener != null) {
             mAdapterListener.onBind(viewHolder);
         }
+        TraceHelper.endSection();
     }
 
     @Override
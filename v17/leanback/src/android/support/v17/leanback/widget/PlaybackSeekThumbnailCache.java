@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package android.support.v17.leanback.widget;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+/**
+ * A memory cache of decoded seek thumbnails bounded by the total byte size of the bitmaps.
+ * Least recently used thumbnails are evicted first.
+ */
+public class PlaybackSeekThumbnailCache {
+
+    private final LruCache<Integer, Bitmap> mCache;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxSizeBytes Maximum total size in bytes of the cached bitmaps.
+     */
+    public PlaybackSeekThumbnailCache(int maxSizeBytes) {
+        mCache = new LruCache<Integer, Bitmap>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the thumbnail at the given index, or null if it is not cached.
+     */
+    public Bitmap get(int index) {
+        return mCache.get(index);
+    }
+
+    /**
+     * Adds the thumbnail at the given index to the cache.
+     */
+    public void put(int index, Bitmap bitmap) {
+        mCache.put(index, bitmap);
+    }
+
+    /**
+     * Removes all thumbnails from the cache.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Returns the total size in bytes of the cached thumbnails.
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    /**
+     * Returns the maximum total size in bytes of the cached thumbnails.
+     */
+    public int getMaxSize() {
+        return mCache.maxSize();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package android.support.v17.leanback.widget;
+
+import android.graphics.Bitmap;
+
+/**
+ * Provides preview thumbnails of the media for display while the user seeks.
+ * <p>
+ * Thumbnails are evenly spaced every {@link #getThumbnailInterval()} milliseconds of media time
+ * and addressed by index; index 0 covers the start of the media.  Fetches are asynchronous and a
+ * fetch that is no longer needed is cancelled through {@link #cancelFetch(int)}.
+ * </p>
+ */
+public abstract class PlaybackSeekThumbnailProvider {
+
+    /**
+     * Receives the result of {@link #fetchThumbnail(int, ResultCallback)}.
+     */
+    public interface ResultCallback {
+        /**
+         * Called on the main thread when the thumbnail for the given index has been decoded.
+         *
+         * @param bitmap The thumbnail, or null if it could not be loaded.
+         * @param index The index of the thumbnail.
+         */
+        public void onThumbnailLoaded(Bitmap bitmap, int index);
+    }
+
+    /**
+     * Returns the interval in milliseconds of media time between two consecutive thumbnails.
+     */
+    public abstract int getThumbnailInterval();
+
+    /**
+     * Starts loading the thumbnail at the given index.  The result must be delivered to the
+     * callback on the main thread.
+     *
+     * @param index The index of the thumbnail.
+     * @param callback The callback to deliver the result to.
+     */
+    public abstract void fetchThumbnail(int index, ResultCallback callback);
+
+    /**
+     * Cancels a pending fetch for the given index.  A result delivered after this call is
+     * ignored.  The default implementation does nothing.
+     */
+    public void cancelFetch(int index) {
+    }
+
+    /**
+     * Releases resources held by the provider.  The default implementation does nothing.
+     */
+    public void reset() {
+    }
+}
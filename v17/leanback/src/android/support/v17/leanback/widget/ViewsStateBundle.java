@@ -14,6 +14,7 @@
 package android.support.v17.leanback.widget;
 
 import android.os.Bundle;
+import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.v4.util.LruCache;
 import android.util.SparseArray;
@@ -37,6 +38,11 @@ import static android.support.v17.leanback.widget.BaseGridView.SAVE_ALL_CHILD;
  * Vertical list maintains id->bundle mapping of all it's children (even the children is offscreen
  * and being pruned).
  * <p>
+ * States are keyed by the int id and kept in their {@link SparseArray} form.  With
+ * {@link #SAVE_ALL_CHILD} and a size bound set by {@link #setMaxBytes(int)}, they are kept in two
+ * tiers: states that fall out of the hot tier of recently saved states are marshalled into
+ * compact {@link Parcel} byte arrays, and the cold tier is bounded by its size in bytes.
+ * <p>
  * The class is currently used within {@link GridLayoutManager}, but it might be used by other
  * ViewGroup.
  */
@@ -45,25 +51,54 @@ class ViewsStateBundle {
     public static final int LIMIT_DEFAULT = 100;
     public static final int UNLIMITED = Integer.MAX_VALUE;
 
+    /**
+     * Estimated size in bytes of the hot states kept unmarshalled with {@link #SAVE_ALL_CHILD}
+     * and a size bound.
+     */
+    static final int HOT_BYTES_LIMIT = 64 * 1024;
+
+    /**
+     * Estimated size in bytes of a single saved Parcelable before it is marshalled.
+     */
+    static final int ESTIMATED_STATE_BYTES = 256;
+
     private int mSavePolicy;
     private int mLimitNumber;
+    private int mMaxBytes;
+
+    private LruCache<Integer, SparseArray<Parcelable>> mChildStates;
 
-    private LruCache<String, SparseArray<Parcelable>> mChildStates;
+    /**
+     * Marshalled states evicted from {@link #mChildStates}, values are byte[] or, when a state
+     * cannot be flattened, the original SparseArray.
+     */
+    private LruCache<Integer, Object> mColdChildStates;
 
     public ViewsStateBundle() {
         mSavePolicy = SAVE_NO_CHILD;
         mLimitNumber = LIMIT_DEFAULT;
+        mMaxBytes = UNLIMITED;
     }
 
     public void clear() {
+        // Detach the cold tier first so evicting the hot tier does not marshall every state.
+        LruCache<Integer, Object> coldChildStates = mColdChildStates;
+        mColdChildStates = null;
         if (mChildStates != null) {
             mChildStates.evictAll();
         }
+        if (coldChildStates != null) {
+            coldChildStates.evictAll();
+        }
+        mColdChildStates = coldChildStates;
     }
 
     public void remove(int id) {
         if (mChildStates != null && mChildStates.size() != 0) {
-            mChildStates.remove(getSaveStatesKey(id));
+            mChildStates.remove(id);
+        }
+        if (mColdChildStates != null && mColdChildStates.size() != 0) {
+            mColdChildStates.remove(id);
         }
     }
 
@@ -71,25 +106,47 @@ class ViewsStateBundle {
      * @return the saved views states
      */
     public final Bundle saveAsBundle() {
-        if (mChildStates == null || mChildStates.size() == 0) {
+        if ((mChildStates == null || mChildStates.size() == 0) &&
+                (mColdChildStates == null || mColdChildStates.size() == 0)) {
             return null;
         }
-        Map<String, SparseArray<Parcelable>> snapshot = mChildStates.snapshot();
         Bundle bundle = new Bundle();
-        for (Iterator<Entry<String, SparseArray<Parcelable>>> i =
+        if (mColdChildStates != null) {
+            // Cold states stay marshalled in the bundle, they are unmarshalled on demand by
+            // loadView() after restore.
+            Map<Integer, Object> snapshot = mColdChildStates.snapshot();
+            for (Iterator<Entry<Integer, Object>> i =
+                    snapshot.entrySet().iterator(); i.hasNext(); ) {
+                Entry<Integer, Object> e = i.next();
+                putState(bundle, getSaveStatesKey(e.getKey()), e.getValue());
+            }
+        }
+        Map<Integer, SparseArray<Parcelable>> snapshot = mChildStates.snapshot();
+        for (Iterator<Entry<Integer, SparseArray<Parcelable>>> i =
                 snapshot.entrySet().iterator(); i.hasNext(); ) {
-            Entry<String, SparseArray<Parcelable>> e = i.next();
-            bundle.putSparseParcelableArray(e.getKey(), e.getValue());
+            Entry<Integer, SparseArray<Parcelable>> e = i.next();
+            bundle.putSparseParcelableArray(getSaveStatesKey(e.getKey()), e.getValue());
         }
         return bundle;
     }
 
     public final void loadFromBundle(Bundle savedBundle) {
         if (mChildStates != null && savedBundle != null) {
-            mChildStates.evictAll();
+            clear();
             for (Iterator<String> i = savedBundle.keySet().iterator(); i.hasNext(); ) {
                 String key = i.next();
-                mChildStates.put(key, savedBundle.getSparseParcelableArray(key));
+                int id = Integer.parseInt(key);
+                Object state = savedBundle.get(key);
+                if (state instanceof byte[]) {
+                    if (mColdChildStates != null) {
+                        mColdChildStates.put(id, state);
+                    } else {
+                        mChildStates.put(id, unmarshallState((byte[]) state,
+                                savedBundle.getClassLoader()));
+                    }
+                } else {
+                    mChildStates.put(id, savedBundle.getSparseParcelableArray(key));
+                }
             }
         }
     }
@@ -110,6 +167,15 @@ class ViewsStateBundle {
         return mLimitNumber;
     }
 
+    /**
+     * @return the maximum size in bytes of the marshalled off screen states, only works when
+     *         {@link #getSavePolicy()} is {@link #SAVE_ALL_CHILD}.  States are only marshalled
+     *         when it is not {@link #UNLIMITED}.
+     */
+    public final int getMaxBytes() {
+        return mMaxBytes;
+    }
+
     /**
      * @see ViewsStateBundle#getSavePolicy()
      */
@@ -126,20 +192,64 @@ class ViewsStateBundle {
         applyPolicyChanges();
     }
 
+    /**
+     * @see ViewsStateBundle#getMaxBytes()
+     */
+    public final void setMaxBytes(int maxBytes) {
+        this.mMaxBytes = maxBytes;
+        applyPolicyChanges();
+    }
+
+    @SuppressWarnings("unchecked")
     protected void applyPolicyChanges() {
         if (mSavePolicy == SAVE_LIMITED_CHILD) {
             if (mLimitNumber <= 0) {
                 throw new IllegalArgumentException();
             }
-            if (mChildStates == null || mChildStates.maxSize() != mLimitNumber) {
-                mChildStates = new LruCache<String, SparseArray<Parcelable>>(mLimitNumber);
+            if (mChildStates == null || mColdChildStates != null ||
+                    mChildStates.maxSize() != mLimitNumber) {
+                mChildStates = new LruCache<Integer, SparseArray<Parcelable>>(mLimitNumber);
+            }
+            mColdChildStates = null;
+        } else if (mSavePolicy == SAVE_ALL_CHILD && mMaxBytes != UNLIMITED) {
+            if (mMaxBytes <= 0) {
+                throw new IllegalArgumentException();
+            }
+            if (mColdChildStates == null) {
+                mColdChildStates = new LruCache<Integer, Object>(mMaxBytes) {
+                    @Override
+                    protected int sizeOf(Integer key, Object value) {
+                        return value instanceof byte[] ? ((byte[]) value).length :
+                                estimateSize((SparseArray<Parcelable>) value);
+                    }
+                };
+                mChildStates = new LruCache<Integer, SparseArray<Parcelable>>(HOT_BYTES_LIMIT) {
+                    @Override
+                    protected int sizeOf(Integer key, SparseArray<Parcelable> value) {
+                        return estimateSize(value);
+                    }
+
+                    @Override
+                    protected void entryRemoved(boolean evicted, Integer key,
+                            SparseArray<Parcelable> oldValue, SparseArray<Parcelable> newValue) {
+                        if (evicted && mColdChildStates != null) {
+                            mColdChildStates.put(key, marshallState(oldValue));
+                        }
+                    }
+                };
+            } else if (mColdChildStates.maxSize() != mMaxBytes) {
+                mColdChildStates.resize(mMaxBytes);
             }
-        } else if (mSavePolicy == SAVE_ALL_CHILD || mSavePolicy == SAVE_ON_SCREEN_CHILD) {
-            if (mChildStates == null || mChildStates.maxSize() != UNLIMITED) {
-                mChildStates = new LruCache<String, SparseArray<Parcelable>>(UNLIMITED);
+        } else if (mSavePolicy == SAVE_ON_SCREEN_CHILD || mSavePolicy == SAVE_ALL_CHILD) {
+            // Without a size bound, states are kept as they are rather than marshalled.
+            if (mChildStates == null || mColdChildStates != null ||
+                    mChildStates.maxSize() != UNLIMITED) {
+                mChildStates = new LruCache<Integer, SparseArray<Parcelable>>(UNLIMITED);
             }
+            mColdChildStates = null;
         } else {
             mChildStates = null;
+            mColdChildStates = null;
         }
     }
 
@@ -149,12 +259,21 @@ class ViewsStateBundle {
      * @param view view where loads into
      * @param id unique id for the view within this ViewsStateBundle
      */
+    @SuppressWarnings("unchecked")
     public final void loadView(View view, int id) {
         if (mChildStates != null) {
-            String key = getSaveStatesKey(id);
             // Once loaded the state, do not keep the state of child. The child state will
             // be saved again either when child is offscreen or when the parent is saved.
-            SparseArray<Parcelable> container = mChildStates.remove(key);
+            SparseArray<Parcelable> container = mChildStates.remove(id);
+            if (container == null && mColdChildStates != null) {
+                Object state = mColdChildStates.remove(id);
+                if (state instanceof byte[]) {
+                    container = unmarshallState((byte[]) state,
+                            view.getClass().getClassLoader());
+                } else {
+                    container = (SparseArray<Parcelable>) state;
+                }
+            }
             if (container != null) {
                 view.restoreHierarchyState(container);
             }
@@ -169,10 +288,12 @@ class ViewsStateBundle {
      */
     protected final void saveViewUnchecked(View view, int id) {
         if (mChildStates != null) {
-            String key = getSaveStatesKey(id);
             SparseArray<Parcelable> container = new SparseArray<Parcelable>();
             view.saveHierarchyState(container);
-            mChildStates.put(key, container);
+            if (mColdChildStates != null) {
+                mColdChildStates.remove(id);
+            }
+            mChildStates.put(id, container);
         }
     }
 
@@ -220,4 +341,46 @@ class ViewsStateBundle {
     static String getSaveStatesKey(int id) {
         return Integer.toString(id);
     }
+
+    static int estimateSize(SparseArray<Parcelable> container) {
+        return Math.max(1, container.size()) * ESTIMATED_STATE_BYTES;
+    }
+
+    /**
+     * Flattens a state container into a byte array, or returns the container itself if it holds
+     * objects that cannot be marshalled such as binders or file descriptors.
+     */
+    @SuppressWarnings("unchecked")
+    static Object marshallState(SparseArray<Parcelable> container) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeSparseArray((SparseArray<Object>) (SparseArray<?>) container);
+            return parcel.marshall();
+        } catch (RuntimeException e) {
+            return container;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static SparseArray<Parcelable> unmarshallState(byte[] data, ClassLoader loader) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            return (SparseArray<Parcelable>) (SparseArray<?>) parcel.readSparseArray(loader);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putState(Bundle bundle, String key, Object state) {
+        if (state instanceof byte[]) {
+            bundle.putByteArray(key, (byte[]) state);
+        } else {
+            bundle.putSparseParcelableArray(key, (SparseArray<Parcelable>) state);
+        }
+    }
 }
@@ -76,3 +76,12 @@ for line in file:
 file.close()
 outfile.close()
 
+print "copy PlaybackControlGlueTest to PlaybackControlSupportGlueTest"
+file = open('src/android/support/v17/leanback/app/PlaybackControlGlueTest.java', 'r')
+outfile = open('src/android/support/v17/leanback/app/PlaybackControlSupportGlueTest.java', 'w')
+outfile.write("/* This file is auto-generated from PlaybackControlGlueTest.java.  DO NOT MODIFY. */\n\n")
+for line in file:
+    line = line.replace('PlaybackControlGlue', 'PlaybackControlSupportGlue')
+    outfile.write(line)
+file.close()
+outfile.close()
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.v17.leanback.R;
+import android.support.v17.leanback.widget.PlaybackControlsRow;
+import android.support.v17.leanback.widget.PlaybackSeekThumbnailProvider;
+import android.test.InstrumentationTestCase;
+import android.util.SparseArray;
+import android.view.ContextThemeWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests fetching and cancelling seek thumbnails in {@link PlaybackControlGlue}.
+ */
+public class PlaybackControlGlueTest extends InstrumentationTestCase {
+
+    private static final int THUMBNAIL_INTERVAL = 1000;
+    private static final int MEDIA_DURATION = 100000;
+    private static final int TIMEOUT_MS = 5000;
+
+    static class TestProvider extends PlaybackSeekThumbnailProvider {
+        final ArrayList<Integer> mFetched = new ArrayList<Integer>();
+        final ArrayList<Integer> mCancelled = new ArrayList<Integer>();
+        final SparseArray<ResultCallback> mPending = new SparseArray<ResultCallback>();
+        int mInterval = THUMBNAIL_INTERVAL;
+        boolean mReset;
+
+        @Override
+        public int getThumbnailInterval() {
+            return mInterval;
+        }
+
+        @Override
+        public void fetchThumbnail(int index, ResultCallback callback) {
+            mFetched.add(index);
+            mPending.put(index, callback);
+        }
+
+        @Override
+        public void cancelFetch(int index) {
+            // Keep the callback, so that tests can deliver a late result
+            mCancelled.add(index);
+        }
+
+        @Override
+        public void reset() {
+            mReset = true;
+        }
+
+        void deliver(int index, Bitmap bitmap) {
+            mPending.get(index).onThumbnailLoaded(bitmap, index);
+        }
+    }
+
+    static class TestGlue extends PlaybackControlGlue {
+        final ArrayList<Bitmap> mThumbnails = new ArrayList<Bitmap>();
+        int mSpeed = PLAYBACK_SPEED_NORMAL;
+        int mPosition;
+
+        TestGlue(Context context) {
+            super(context, new int[] { PLAYBACK_SPEED_FAST_L0, PLAYBACK_SPEED_FAST_L1 });
+        }
+
+        void seek(int speed, int position) {
+            mSpeed = speed;
+            mPosition = position;
+            onStateChanged();
+        }
+
+        @Override
+        public boolean hasValidMedia() {
+            return true;
+        }
+
+        @Override
+        public boolean isMediaPlaying() {
+            return mSpeed != PLAYBACK_SPEED_PAUSED;
+        }
+
+        @Override
+        public CharSequence getMediaTitle() {
+            return "Title";
+        }
+
+        @Override
+        public CharSequence getMediaSubtitle() {
+            return "Subtitle";
+        }
+
+        @Override
+        public int getMediaDuration() {
+            return MEDIA_DURATION;
+        }
+
+        @Override
+        public Drawable getMediaArt() {
+            return null;
+        }
+
+        @Override
+        public long getSupportedActions() {
+            return ACTION_REWIND | ACTION_PLAY_PAUSE | ACTION_FAST_FORWARD;
+        }
+
+        @Override
+        public int getCurrentSpeedId() {
+            return mSpeed;
+        }
+
+        @Override
+        public int getCurrentPosition() {
+            return mPosition;
+        }
+
+        @Override
+        protected void startPlayback(int speed) {
+        }
+
+        @Override
+        protected void pausePlayback() {
+        }
+
+        @Override
+        protected void skipToNext() {
+        }
+
+        @Override
+        protected void skipToPrevious() {
+        }
+
+        @Override
+        protected void onRowChanged(PlaybackControlsRow row) {
+        }
+
+        @Override
+        protected void onSeekThumbnailChanged(Bitmap thumbnail) {
+            mThumbnails.add(thumbnail);
+        }
+    }
+
+    TestGlue mGlue;
+    TestProvider mProvider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Context context = new ContextThemeWrapper(
+                getInstrumentation().getTargetContext(), R.style.Theme_Leanback);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mGlue = new TestGlue(context);
+                mGlue.createControlsRowAndPresenter();
+                mProvider = new TestProvider();
+                mGlue.setSeekThumbnailProvider(mProvider);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_NORMAL, 0);
+            }
+        });
+        super.tearDown();
+    }
+
+    private static Bitmap createThumbnail() {
+        return Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+    }
+
+    public void testFetchesAheadWhenFastForwarding() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                assertEquals(Arrays.asList(5, 6, 7), mProvider.mFetched);
+                assertTrue(mGlue.mThumbnails.isEmpty());
+
+                // Only the thumbnail at the current position is published
+                final Bitmap ahead = createThumbnail();
+                mProvider.deliver(6, ahead);
+                assertTrue(mGlue.mThumbnails.isEmpty());
+                final Bitmap current = createThumbnail();
+                mProvider.deliver(5, current);
+                assertEquals(Arrays.asList(current), mGlue.mThumbnails);
+                assertSame(ahead, mGlue.getSeekThumbnailCache().get(6));
+                assertSame(current, mGlue.getSeekThumbnailCache().get(5));
+
+                // Stopping cancels the request left and clears the thumbnail
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_NORMAL, 5500);
+                assertEquals(Arrays.asList(7), mProvider.mCancelled);
+                assertEquals(Arrays.asList(current, null), mGlue.mThumbnails);
+            }
+        });
+    }
+
+    public void testFetchesBehindWhenRewinding() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(-PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                assertEquals(Arrays.asList(5, 4, 3), mProvider.mFetched);
+            }
+        });
+    }
+
+    public void testLateResultsAreIgnoredAfterSeekingStops() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_NORMAL, 5500);
+                assertEquals(Arrays.asList(7, 6, 5), mProvider.mCancelled);
+
+                mProvider.deliver(5, createThumbnail());
+                mProvider.deliver(6, createThumbnail());
+                assertNull(mGlue.getSeekThumbnailCache().get(5));
+                assertNull(mGlue.getSeekThumbnailCache().get(6));
+                assertEquals(Arrays.asList((Bitmap) null), mGlue.mThumbnails);
+            }
+        });
+    }
+
+    public void testMetadataChangeCancelsRequestsAndClearsCache() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                mProvider.deliver(5, createThumbnail());
+                final PlaybackSeekThumbnailProvider.ResultCallback previous =
+                        mProvider.mPending.get(6);
+
+                mGlue.onMetadataChanged();
+                assertEquals(Arrays.asList(7, 6), mProvider.mCancelled);
+                assertNull(mGlue.getSeekThumbnailCache().get(5));
+                // Still seeking, so the thumbnails of the new media are fetched
+                assertEquals(Arrays.asList(5, 6, 7, 5, 6, 7), mProvider.mFetched);
+
+                previous.onThumbnailLoaded(createThumbnail(), 6);
+                assertNull(mGlue.getSeekThumbnailCache().get(6));
+            }
+        });
+    }
+
+    public void testReplacingProviderCancelsRequests() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                final TestProvider provider = new TestProvider();
+                mGlue.setSeekThumbnailProvider(provider);
+
+                assertEquals(Arrays.asList(7, 6, 5), mProvider.mCancelled);
+                assertTrue(mProvider.mReset);
+                assertEquals(Arrays.asList(5, 6, 7), provider.mFetched);
+                mProvider.deliver(5, createThumbnail());
+                assertNull(mGlue.getSeekThumbnailCache().get(5));
+                mProvider = provider;
+            }
+        });
+    }
+
+    public void testClearingProviderCancelsRequestsAndClearsThumbnail() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                final Bitmap current = createThumbnail();
+                mProvider.deliver(5, current);
+
+                mGlue.setSeekThumbnailProvider(null);
+                assertEquals(Arrays.asList(7, 6), mProvider.mCancelled);
+                assertTrue(mProvider.mReset);
+                assertEquals(Arrays.asList(current, null), mGlue.mThumbnails);
+
+                mProvider.deliver(6, createThumbnail());
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_NORMAL, 5500);
+                assertEquals(Arrays.asList(current, null), mGlue.mThumbnails);
+            }
+        });
+    }
+
+    public void testPrefetchIsRetriedUntilThumbnailsCanBeFetched() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mProvider.mInterval = 0;
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                assertTrue(mProvider.mFetched.isEmpty());
+                // Picked up on the next periodic update
+                mProvider.mInterval = THUMBNAIL_INTERVAL;
+            }
+        });
+        final boolean[] fetched = new boolean[1];
+        for (long waited = 0; !fetched[0] && waited < TIMEOUT_MS; waited += 100) {
+            Thread.sleep(100);
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    fetched[0] = mProvider.mFetched.contains(5);
+                }
+            });
+        }
+        assertTrue(fetched[0]);
+    }
+
+    public void testRequestsBehindTheSeekAreCancelled() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mGlue.seek(PlaybackControlGlue.PLAYBACK_SPEED_FAST_L0, 5500);
+                // Picked up on the next periodic update
+                mGlue.mPosition = 20500;
+            }
+        });
+        final boolean[] fetched = new boolean[1];
+        for (long waited = 0; !fetched[0] && waited < TIMEOUT_MS; waited += 100) {
+            Thread.sleep(100);
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    fetched[0] = mProvider.mFetched.contains(20);
+                }
+            });
+        }
+        assertTrue(fetched[0]);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(mProvider.mCancelled.containsAll(Arrays.asList(5, 6, 7)));
+                assertFalse(mProvider.mCancelled.contains(20));
+            }
+        });
+    }
+}
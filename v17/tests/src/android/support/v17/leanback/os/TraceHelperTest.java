@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.os;
+
+import android.test.AndroidTestCase;
+
+public class TraceHelperTest extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TraceHelper.setStatsEnabled(false);
+        TraceHelper.resetStats();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TraceHelper.setStatsEnabled(false);
+        TraceHelper.resetStats();
+        super.tearDown();
+    }
+
+    public void testSectionsAndCounters() {
+        TraceHelper.setStatsEnabled(true);
+        TraceHelper.beginSection("outer");
+        TraceHelper.beginSection("inner");
+        TraceHelper.endSection();
+        TraceHelper.beginSection("inner");
+        TraceHelper.endSection();
+        TraceHelper.endSection();
+        TraceHelper.incrementCounter("counter");
+
+        assertEquals(1, TraceHelper.getStats("outer").getCount());
+        assertEquals(2, TraceHelper.getStats("inner").getCount());
+        assertTrue(TraceHelper.getStats("outer").getTotalTimeNanos()
+                >= TraceHelper.getStats("inner").getTotalTimeNanos());
+        assertEquals(1, TraceHelper.getStats("counter").getCount());
+        assertEquals(0, TraceHelper.getStats("counter").getTotalTimeNanos());
+        assertEquals(3, TraceHelper.getStats().size());
+    }
+
+    public void testNothingIsCollectedWhenDisabled() {
+        TraceHelper.beginSection("section");
+        TraceHelper.endSection();
+        TraceHelper.incrementCounter("counter");
+
+        assertNull(TraceHelper.getStats("section"));
+        assertNull(TraceHelper.getStats("counter"));
+    }
+
+    public void testSectionsOpenWhenToggledAreDropped() {
+        // Opened before collection was enabled
+        TraceHelper.beginSection("outer");
+        TraceHelper.setStatsEnabled(true);
+        TraceHelper.beginSection("stale");
+        TraceHelper.setStatsEnabled(false);
+        // Ends without being popped
+        TraceHelper.endSection();
+        TraceHelper.setStatsEnabled(true);
+        TraceHelper.beginSection("section");
+        TraceHelper.endSection();
+        // Must not pop the stale section
+        TraceHelper.endSection();
+
+        assertNull(TraceHelper.getStats("stale"));
+        assertNull(TraceHelper.getStats("outer"));
+        assertEquals(1, TraceHelper.getStats("section").getCount());
+    }
+
+    public void testEnablingAgainKeepsOpenSections() {
+        TraceHelper.setStatsEnabled(true);
+        TraceHelper.beginSection("section");
+        TraceHelper.setStatsEnabled(true);
+        TraceHelper.endSection();
+
+        assertEquals(1, TraceHelper.getStats("section").getCount());
+    }
+}
@@ -15,6 +15,7 @@
  */
 package android.support.v17.leanback.widget;
 
+import android.support.v17.leanback.os.TraceHelper;
 import android.support.v17.leanback.tests.R;
 import android.test.ActivityInstrumentationTestCase2;
 import android.text.Selection;
@@ -402,6 +403,38 @@ public class GridWidgetTest extends ActivityInstrumentationTestCase2<GridActivit
         verifyBeginAligned();
     }
 
+    public void testTraceStats() throws Throwable {
+        mInstrumentation = getInstrumentation();
+        Intent intent = new Intent(mInstrumentation.getContext(), GridActivity.class);
+        intent.putExtra(GridActivity.EXTRA_LAYOUT_RESOURCE_ID, R.layout.vertical_grid);
+        intent.putExtra(GridActivity.EXTRA_NUM_ITEMS, 200);
+        mOrientation = BaseGridView.VERTICAL;
+        mNumRows = 3;
+
+        TraceHelper.resetStats();
+        TraceHelper.setStatsEnabled(true);
+        try {
+            initActivity(intent);
+            scrollToEnd(mVerifyLayout);
+        } finally {
+            TraceHelper.setStatsEnabled(false);
+        }
+
+        TraceHelper.SectionStats layout = TraceHelper.getStats("GLM Layout");
+        assertNotNull(layout);
+        assertTrue(layout.getCount() > 0);
+        assertTrue(layout.getTotalTimeNanos() > 0);
+        TraceHelper.SectionStats append = TraceHelper.getStats("GLM AppendVisibleItems");
+        assertNotNull(append);
+        assertTrue(append.getCount() > 0);
+        TraceHelper.SectionStats created = TraceHelper.getStats("GLM CreateItem");
+        assertNotNull(created);
+        assertTrue(created.getCount() >= 200);
+        assertEquals(0, created.getTotalTimeNanos());
+        TraceHelper.resetStats();
+        assertNull(TraceHelper.getStats("GLM Layout"));
+    }
+
     public void testRedundantAppendRemove() throws Throwable {
         mInstrumentation = getInstrumentation();
         Intent intent = new Intent(mInstrumentation.getContext(), GridActivity.class);
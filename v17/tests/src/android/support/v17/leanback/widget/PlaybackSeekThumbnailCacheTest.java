@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.widget;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+public class PlaybackSeekThumbnailCacheTest extends AndroidTestCase {
+
+    // 10x10 ARGB_8888 thumbnails take 400 bytes each.
+    private static final int THUMBNAIL_BYTES = 400;
+
+    private static Bitmap createThumbnail() {
+        return Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+    }
+
+    public void testPutAndGet() {
+        PlaybackSeekThumbnailCache cache = new PlaybackSeekThumbnailCache(4 * THUMBNAIL_BYTES);
+        Bitmap first = createThumbnail();
+        Bitmap second = createThumbnail();
+        cache.put(1, first);
+        cache.put(2, second);
+
+        assertSame(first, cache.get(1));
+        assertSame(second, cache.get(2));
+        assertNull(cache.get(3));
+        assertEquals(2 * THUMBNAIL_BYTES, cache.getSize());
+        assertEquals(4 * THUMBNAIL_BYTES, cache.getMaxSize());
+    }
+
+    public void testReplacingKeepsSize() {
+        PlaybackSeekThumbnailCache cache = new PlaybackSeekThumbnailCache(4 * THUMBNAIL_BYTES);
+        Bitmap replacement = createThumbnail();
+        cache.put(1, createThumbnail());
+        cache.put(1, replacement);
+
+        assertSame(replacement, cache.get(1));
+        assertEquals(THUMBNAIL_BYTES, cache.getSize());
+    }
+
+    public void testEvictsLeastRecentlyUsedBySize() {
+        PlaybackSeekThumbnailCache cache = new PlaybackSeekThumbnailCache(3 * THUMBNAIL_BYTES);
+        cache.put(1, createThumbnail());
+        cache.put(2, createThumbnail());
+        cache.put(3, createThumbnail());
+        // Makes 2 the least recently used thumbnail
+        assertNotNull(cache.get(1));
+        cache.put(4, createThumbnail());
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+        assertEquals(3 * THUMBNAIL_BYTES, cache.getSize());
+    }
+
+    public void testClear() {
+        PlaybackSeekThumbnailCache cache = new PlaybackSeekThumbnailCache(4 * THUMBNAIL_BYTES);
+        cache.put(1, createThumbnail());
+        cache.put(2, createThumbnail());
+        cache.clear();
+
+        assertNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(0, cache.getSize());
+        assertEquals(4 * THUMBNAIL_BYTES, cache.getMaxSize());
+    }
+}
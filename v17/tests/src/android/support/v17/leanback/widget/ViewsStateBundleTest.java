@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.widget;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.test.AndroidTestCase;
+import android.util.SparseArray;
+import android.view.View;
+
+public class ViewsStateBundleTest extends AndroidTestCase {
+
+    // Number of single view states that fit in the hot tier.
+    private static final int HOT_STATES =
+            ViewsStateBundle.HOT_BYTES_LIMIT / ViewsStateBundle.ESTIMATED_STATE_BYTES;
+
+    /**
+     * View saving a single int as its state.
+     */
+    static class StateView extends View {
+        int mValue;
+
+        StateView(Context context, int value) {
+            super(context);
+            setId(1);
+            mValue = value;
+        }
+
+        @Override
+        protected Parcelable onSaveInstanceState() {
+            super.onSaveInstanceState();
+            final Bundle state = new Bundle();
+            state.putInt("value", mValue);
+            return state;
+        }
+
+        @Override
+        protected void onRestoreInstanceState(Parcelable state) {
+            super.onRestoreInstanceState(BaseSavedState.EMPTY_STATE);
+            mValue = ((Bundle) state).getInt("value");
+        }
+    }
+
+    private void saveViews(ViewsStateBundle states, int count) {
+        for (int id = 0; id < count; id++) {
+            states.saveOffscreenView(new StateView(getContext(), id + 1000), id);
+        }
+    }
+
+    private int loadValue(ViewsStateBundle states, int id) {
+        final StateView view = new StateView(getContext(), -1);
+        states.loadView(view, id);
+        return view.mValue;
+    }
+
+    private static int countMarshalled(Bundle bundle) {
+        int count = 0;
+        for (String key : bundle.keySet()) {
+            if (bundle.get(key) instanceof byte[]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int marshalledSize() {
+        final SparseArray<Parcelable> container = new SparseArray<Parcelable>();
+        new StateView(getContext(), 0).saveHierarchyState(container);
+        return ((byte[]) ViewsStateBundle.marshallState(container)).length;
+    }
+
+    public void testSaveAllWithoutMaxBytesDoesNotMarshall() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        saveViews(states, 4 * HOT_STATES);
+
+        final Bundle bundle = states.saveAsBundle();
+        assertEquals(4 * HOT_STATES, bundle.size());
+        assertEquals(0, countMarshalled(bundle));
+        assertEquals(1000, loadValue(states, 0));
+        assertEquals(1000 + 4 * HOT_STATES - 1, loadValue(states, 4 * HOT_STATES - 1));
+    }
+
+    public void testMaxBytesMarshallsStatesLeavingTheHotTier() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        states.setMaxBytes(1024 * 1024);
+        saveViews(states, HOT_STATES + 10);
+
+        final Bundle bundle = states.saveAsBundle();
+        assertEquals(HOT_STATES + 10, bundle.size());
+        assertEquals(10, countMarshalled(bundle));
+        // The oldest states are the ones marshalled
+        for (int id = 0; id < 10; id++) {
+            assertTrue(bundle.get(ViewsStateBundle.getSaveStatesKey(id)) instanceof byte[]);
+        }
+
+        // Both tiers restore, and loading removes the state
+        assertEquals(1000, loadValue(states, 0));
+        assertEquals(1000 + HOT_STATES, loadValue(states, HOT_STATES));
+        assertEquals(-1, loadValue(states, 0));
+        assertEquals(HOT_STATES + 8, states.saveAsBundle().size());
+    }
+
+    public void testColdTierIsBoundedByBytes() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        states.setMaxBytes(10 * marshalledSize());
+        saveViews(states, HOT_STATES + 20);
+
+        final Bundle bundle = states.saveAsBundle();
+        assertEquals(HOT_STATES + 10, bundle.size());
+        assertEquals(10, countMarshalled(bundle));
+        assertEquals(-1, loadValue(states, 9));
+        assertEquals(1010, loadValue(states, 10));
+    }
+
+    public void testSavingAgainMovesStateToTheHotTier() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        states.setMaxBytes(1024 * 1024);
+        saveViews(states, HOT_STATES + 1);
+        states.saveOffscreenView(new StateView(getContext(), 42), 0);
+
+        final Bundle bundle = states.saveAsBundle();
+        assertEquals(HOT_STATES + 1, bundle.size());
+        assertFalse(bundle.get(ViewsStateBundle.getSaveStatesKey(0)) instanceof byte[]);
+        assertEquals(42, loadValue(states, 0));
+    }
+
+    public void testRestoreKeepsColdStatesMarshalled() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        states.setMaxBytes(1024 * 1024);
+        saveViews(states, HOT_STATES + 10);
+        final Bundle bundle = states.saveAsBundle();
+
+        final ViewsStateBundle bounded = new ViewsStateBundle();
+        bounded.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        bounded.setMaxBytes(1024 * 1024);
+        bounded.loadFromBundle(bundle);
+        assertEquals(10, countMarshalled(bounded.saveAsBundle()));
+        assertEquals(1000, loadValue(bounded, 0));
+        assertEquals(1000 + HOT_STATES, loadValue(bounded, HOT_STATES));
+
+        // Without a bound, the marshalled states are restored as they were saved
+        final ViewsStateBundle unbounded = new ViewsStateBundle();
+        unbounded.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        unbounded.loadFromBundle(bundle);
+        assertEquals(0, countMarshalled(unbounded.saveAsBundle()));
+        assertEquals(1000, loadValue(unbounded, 0));
+    }
+
+    public void testLimitedChildKeepsMostRecentStates() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_LIMITED_CHILD);
+        states.setLimitNumber(3);
+        saveViews(states, 5);
+
+        final Bundle bundle = states.saveAsBundle();
+        assertEquals(3, bundle.size());
+        assertEquals(0, countMarshalled(bundle));
+        assertEquals(-1, loadValue(states, 1));
+        assertEquals(1002, loadValue(states, 2));
+    }
+
+    public void testRemoveAndClear() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        states.setMaxBytes(1024 * 1024);
+        saveViews(states, HOT_STATES + 10);
+
+        states.remove(0);
+        states.remove(HOT_STATES);
+        assertEquals(-1, loadValue(states, 0));
+        assertEquals(-1, loadValue(states, HOT_STATES));
+        assertEquals(HOT_STATES + 8, states.saveAsBundle().size());
+
+        states.clear();
+        assertNull(states.saveAsBundle());
+        saveViews(states, 1);
+        assertEquals(1000, loadValue(states, 0));
+    }
+
+    public void testRemovingMaxBytesStopsMarshalling() {
+        final ViewsStateBundle states = new ViewsStateBundle();
+        states.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        states.setMaxBytes(1024 * 1024);
+        states.setMaxBytes(ViewsStateBundle.UNLIMITED);
+        saveViews(states, HOT_STATES + 10);
+
+        assertEquals(0, countMarshalled(states.saveAsBundle()));
+    }
+}
@@ -16,15 +16,12 @@
 
 package android.support.v4.provider;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.DocumentsContract;
 import android.util.Log;
 
-import java.util.ArrayList;
-
 class DocumentsContractApi21 {
     private static final String TAG = "DocumentFile";
 
@@ -43,43 +40,28 @@ class DocumentsContractApi21 {
                 DocumentsContract.getTreeDocumentId(treeUri));
     }
 
-    public static Uri[] listFiles(Context context, Uri self) {
-        final ContentResolver resolver = context.getContentResolver();
+    /**
+     * Queries {@link DocumentsContractApi19#METADATA_PROJECTION} for all children of the given
+     * directory in a single pass.  The caller must close the returned cursor, which is null if
+     * the query failed.
+     */
+    public static Cursor queryChildMetadata(Context context, Uri self) {
         final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(self,
                 DocumentsContract.getDocumentId(self));
-        final ArrayList<Uri> results = new ArrayList<Uri>();
-
-        Cursor c = null;
         try {
-            c = resolver.query(childrenUri, new String[] {
-                    DocumentsContract.Document.COLUMN_DOCUMENT_ID }, null, null, null);
-            while (c.moveToNext()) {
-                final String documentId = c.getString(0);
-                final Uri documentUri = DocumentsContract.buildDocumentUriUsingTree(self,
-                        documentId);
-                results.add(documentUri);
-            }
+            return context.getContentResolver().query(childrenUri,
+                    DocumentsContractApi19.METADATA_PROJECTION, null, null, null);
         } catch (Exception e) {
             Log.w(TAG, "Failed query: " + e);
-        } finally {
-            closeQuietly(c);
+            return null;
         }
+    }
 
-        return results.toArray(new Uri[results.size()]);
+    public static Uri buildDocumentUriUsingTree(Uri self, String documentId) {
+        return DocumentsContract.buildDocumentUriUsingTree(self, documentId);
     }
 
     public static Uri renameTo(Context context, Uri self, String displayName) {
         return DocumentsContract.renameDocument(context.getContentResolver(), self, displayName);
     }
-
-    private static void closeQuietly(AutoCloseable closeable) {
-        if (closeable != null) {
-            try {
-                closeable.close();
-            } catch (RuntimeException rethrown) {
-                throw rethrown;
-            } catch (Exception ignored) {
-            }
-        }
-    }
 }
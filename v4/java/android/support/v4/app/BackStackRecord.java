@@ -91,7 +91,7 @@ final class BackStackState implements Parcelable {
     }
 
     public BackStackState(Parcel in) {
-        mOps = in.createIntArray();
+        mOps = decodeOps(in.createByteArray());
         mTransition = in.readInt();
         mTransitionStyle = in.readInt();
         mName = in.readString();
@@ -157,7 +157,7 @@ final class BackStackState implements Parcelable {
     }
 
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeIntArray(mOps);
+        dest.writeByteArray(encodeOps(mOps));
         dest.writeInt(mTransition);
         dest.writeInt(mTransitionStyle);
         dest.writeString(mName);
@@ -170,6 +170,55 @@ final class BackStackState implements Parcelable {
         dest.writeStringList(mSharedElementTargetNames);
     }
 
+    /**
+     * Encodes the ops as zigzag varints.  Most values are small command codes, fragment
+     * indices and zero animations, which take one byte each instead of four.
+     */
+    static byte[] encodeOps(int[] ops) {
+        int size = 0;
+        for (int i=0; i<ops.length; i++) {
+            int value = (ops[i] << 1) ^ (ops[i] >> 31);
+            do {
+                size++;
+                value >>>= 7;
+            } while (value != 0);
+        }
+        final byte[] out = new byte[size];
+        int pos = 0;
+        for (int i=0; i<ops.length; i++) {
+            int value = (ops[i] << 1) ^ (ops[i] >> 31);
+            while ((value & ~0x7f) != 0) {
+                out[pos++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out[pos++] = (byte) value;
+        }
+        return out;
+    }
+
+    static int[] decodeOps(byte[] in) {
+        int count = 0;
+        for (int i=0; i<in.length; i++) {
+            if ((in[i] & 0x80) == 0) {
+                count++;
+            }
+        }
+        final int[] ops = new int[count];
+        int pos = 0;
+        for (int i=0; i<count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in[pos++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            ops[i] = (value >>> 1) ^ -(value & 1);
+        }
+        return ops;
+    }
+
     public static final Parcelable.Creator<BackStackState> CREATOR
             = new Parcelable.Creator<BackStackState>() {
         public BackStackState createFromParcel(Parcel in) {
@@ -215,6 +264,7 @@ final class BackStackRecord extends FragmentTransaction implements
 
     Op mHead;
     Op mTail;
+    BackStackState mSavedState;
     int mNumOp;
     int mEnterAnim;
     int mExitAnim;
@@ -617,6 +667,17 @@ final class BackStackRecord extends FragmentTransaction implements
         return commitInternal(true);
     }
     
+    /**
+     * Returns the saved state of this entry.  An entry does not change once it is on the back
+     * stack, so the state is built on the first save and reused by later ones.
+     */
+    BackStackState getSavedState() {
+        if (mSavedState == null) {
+            mSavedState = new BackStackState(this);
+        }
+        return mSavedState;
+    }
+
     int commitInternal(boolean allowStateLoss) {
         if (mCommitted) throw new IllegalStateException("commit already called");
         if (FragmentManagerImpl.DEBUG) {
@@ -636,7 +697,22 @@ final class BackStackRecord extends FragmentTransaction implements
     }
     
     public void run() {
-        if (FragmentManagerImpl.DEBUG) Log.v(TAG, "Run: " + this);
+        run(false);
+    }
+
+    /**
+     * Executes the operations of this transaction.
+     *
+     * @param deferStateChange true if another transaction of the same batch runs right after
+     * this one.  The fragments are then added and removed without moving them to their new
+     * state, leaving that to the last transaction of the batch, which moves them with the
+     * transition of this transaction.  Fragments that are added and removed again within the
+     * batch therefore never create their views.  Transactions with framework transitions,
+     * see {@link #hasTransitions()}, must not be deferred.
+     */
+    void run(boolean deferStateChange) {
+        if (FragmentManagerImpl.DEBUG) Log.v(TAG, "Run: " + this
+                + (deferStateChange ? " (deferred)" : ""));
 
         if (mAddToBackStack) {
             if (mIndex < 0) {
@@ -646,6 +722,12 @@ final class BackStackRecord extends FragmentTransaction implements
 
         bumpBackStackNesting(1);
 
+        if (!deferStateChange && hasTransitions()) {
+            // The transitions begun below need the views of the fragments the earlier
+            // transactions of the batch added, so those are moved to their state first.
+            mManager.moveDeferredFragmentsToState();
+        }
+
         TransitionState state = null;
         SparseArray<Fragment> firstOutFragments = null;
         SparseArray<Fragment> lastInFragments = null;
@@ -668,7 +750,8 @@ final class BackStackRecord extends FragmentTransaction implements
                 case OP_ADD: {
                     Fragment f = op.fragment;
                     f.mNextAnim = enterAnim;
-                    mManager.addFragment(f, false);
+                    mManager.addFragment(f, false, deferStateChange, transition,
+                            transitionStyle);
                 } break;
                 case OP_REPLACE: {
                     Fragment f = op.fragment;
@@ -692,20 +775,22 @@ final class BackStackRecord extends FragmentTransaction implements
                                         if (FragmentManagerImpl.DEBUG) Log.v(TAG, "Bump nesting of "
                                                 + old + " to " + old.mBackStackNesting);
                                     }
-                                    mManager.removeFragment(old, transition, transitionStyle);
+                                    mManager.removeFragment(old, transition, transitionStyle,
+                                            deferStateChange);
                                 }
                             }
                         }
                     }
                     if (f != null) {
                         f.mNextAnim = enterAnim;
-                        mManager.addFragment(f, false);
+                        mManager.addFragment(f, false, deferStateChange, transition,
+                                transitionStyle);
                     }
                 } break;
                 case OP_REMOVE: {
                     Fragment f = op.fragment;
                     f.mNextAnim = exitAnim;
-                    mManager.removeFragment(f, transition, transitionStyle);
+                    mManager.removeFragment(f, transition, transitionStyle, deferStateChange);
                 } break;
                 case OP_HIDE: {
                     Fragment f = op.fragment;
@@ -720,12 +805,12 @@ final class BackStackRecord extends FragmentTransaction implements
                 case OP_DETACH: {
                     Fragment f = op.fragment;
                     f.mNextAnim = exitAnim;
-                    mManager.detachFragment(f, transition, transitionStyle);
+                    mManager.detachFragment(f, transition, transitionStyle, deferStateChange);
                 } break;
                 case OP_ATTACH: {
                     Fragment f = op.fragment;
                     f.mNextAnim = enterAnim;
-                    mManager.attachFragment(f, transition, transitionStyle);
+                    mManager.attachFragment(f, transition, transitionStyle, deferStateChange);
                 } break;
                 default: {
                     throw new IllegalArgumentException("Unknown cmd: " + op.cmd);
@@ -735,13 +820,50 @@ final class BackStackRecord extends FragmentTransaction implements
             op = op.next;
         }
 
-        mManager.moveToState(mManager.mCurState, transition, transitionStyle, true);
+        if (!deferStateChange) {
+            mManager.moveDeferredFragmentsToState();
+            mManager.moveToState(mManager.mCurState, transition, transitionStyle, true);
+        }
 
         if (mAddToBackStack) {
             mManager.addBackStackState(this);
         }
     }
 
+    /**
+     * Returns whether running this transaction may begin framework transitions, which need
+     * the views of the fragments it adds and removes.  Such a transaction can't defer the
+     * state changes of its fragments to a later transaction of a batch.
+     */
+    boolean hasTransitions() {
+        if (!SUPPORTS_TRANSITIONS) {
+            return false;
+        }
+        if (mSharedElementSourceNames != null) {
+            return true;
+        }
+        for (Op op = mHead; op != null; op = op.next) {
+            if (hasTransitions(op.fragment)) {
+                return true;
+            }
+            if (op.cmd == OP_REPLACE && mManager.mAdded != null) {
+                // The fragments this replaces are not known until it runs
+                for (int i = 0; i < mManager.mAdded.size(); i++) {
+                    Fragment old = mManager.mAdded.get(i);
+                    if (old.mContainerId == op.fragment.mContainerId && hasTransitions(old)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTransitions(Fragment fragment) {
+        return fragment != null && (fragment.getEnterTransition() != null
+                || fragment.getExitTransition() != null);
+    }
+
     private static void setFirstOut(SparseArray<Fragment> fragments, Fragment fragment) {
         if (fragment != null) {
             int containerId = fragment.mContainerId;
@@ -50,6 +50,10 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 
 final class FragmentState implements Parcelable {
+    private static final int FLAG_FROM_LAYOUT = 1 << 0;
+    private static final int FLAG_RETAIN_INSTANCE = 1 << 1;
+    private static final int FLAG_DETACHED = 1 << 2;
+
     final String mClassName;
     final int mIndex;
     final boolean mFromLayout;
@@ -89,6 +93,43 @@ final class FragmentState implements Parcelable {
         mSavedFragmentState = in.readBundle();
     }
 
+    /**
+     * Reads a state written by {@link #writeCompactToParcel}.
+     *
+     * @param className The class name, which is stored in a table shared by all states.
+     */
+    FragmentState(Parcel in, String className) {
+        mClassName = className;
+        final int flags = in.readInt();
+        mFromLayout = (flags & FLAG_FROM_LAYOUT) != 0;
+        mRetainInstance = (flags & FLAG_RETAIN_INSTANCE) != 0;
+        mDetached = (flags & FLAG_DETACHED) != 0;
+        mIndex = in.readInt();
+        mFragmentId = in.readInt();
+        mContainerId = in.readInt();
+        mTag = in.readString();
+        mArguments = in.readBundle();
+        mSavedFragmentState = in.readBundle();
+    }
+
+    /**
+     * Writes this state without its class name, packing the boolean fields into one int.
+     * Used by {@link FragmentManagerState}, which writes each class name only once.
+     */
+    void writeCompactToParcel(Parcel dest) {
+        int flags = 0;
+        if (mFromLayout) flags |= FLAG_FROM_LAYOUT;
+        if (mRetainInstance) flags |= FLAG_RETAIN_INSTANCE;
+        if (mDetached) flags |= FLAG_DETACHED;
+        dest.writeInt(flags);
+        dest.writeInt(mIndex);
+        dest.writeInt(mFragmentId);
+        dest.writeInt(mContainerId);
+        dest.writeString(mTag);
+        dest.writeBundle(mArguments);
+        dest.writeBundle(mSavedFragmentState);
+    }
+
     public Fragment instantiate(FragmentHostCallback host, Fragment parent) {
         if (mInstance != null) {
             return mInstance;
@@ -30,6 +30,7 @@ import android.support.annotation.IdRes;
 import android.support.annotation.StringRes;
 import android.support.v4.util.DebugUtils;
 import android.support.v4.util.LogWriter;
+import android.support.v4.util.SimpleArrayMap;
 import android.support.v4.view.LayoutInflaterFactory;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
@@ -343,6 +344,37 @@ public abstract class FragmentManager {
      */
     public abstract boolean isDestroyed();
 
+    /**
+     * Control whether pending transactions are executed as a batch.  When enabled, consecutive
+     * transactions that are executed together, for example several transactions committed
+     * before the main thread gets to run them, add and remove their fragments first and only
+     * then move the fragments to their final state in a single pass, each with the animation
+     * of the transaction that last added or removed it.  Fragments that are added by one of
+     * these transactions and removed by a later one never create their views.  A transaction
+     * with framework transitions or shared elements ends a batch, since its transitions need
+     * the views of its fragments.
+     *
+     * <p>Batching is disabled by default, since {@link Fragment} callbacks are then called in
+     * a different order than when each transaction executes on its own.
+     *
+     * <p>The default implementation does nothing, for FragmentManagers that don't support
+     * batching.
+     *
+     * @param enabled true to execute pending transactions as a batch.
+     */
+    public void setTransactionBatchingEnabled(boolean enabled) {
+    }
+
+    /**
+     * Returns whether pending transactions are executed as a batch.  The default
+     * implementation returns false.
+     *
+     * @see #setTransactionBatchingEnabled(boolean)
+     */
+    public boolean isTransactionBatchingEnabled() {
+        return false;
+    }
+
     /**
      * Print the FragmentManager's state into the given stream.
      *
@@ -372,7 +404,17 @@ final class FragmentManagerState implements Parcelable {
     }
     
     public FragmentManagerState(Parcel in) {
-        mActive = in.createTypedArray(FragmentState.CREATOR);
+        final int activeCount = in.readInt();
+        if (activeCount >= 0) {
+            final String[] classNames = in.createStringArray();
+            mActive = new FragmentState[activeCount];
+            for (int i=0; i<activeCount; i++) {
+                final int nameIndex = in.readInt();
+                if (nameIndex >= 0) {
+                    mActive[i] = new FragmentState(in, classNames[nameIndex]);
+                }
+            }
+        }
         mAdded = in.createIntArray();
         mBackStack = in.createTypedArray(BackStackState.CREATOR);
     }
@@ -382,7 +424,39 @@ final class FragmentManagerState implements Parcelable {
     }
 
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeTypedArray(mActive, flags);
+        if (mActive == null) {
+            dest.writeInt(-1);
+        } else {
+            // Deep back stacks tend to hold many instances of the same few fragment
+            // classes, so each class name is written once and referenced by index.
+            final SimpleArrayMap<String, Integer> nameIndices =
+                    new SimpleArrayMap<String, Integer>();
+            final int[] stateNameIndices = new int[mActive.length];
+            for (int i=0; i<mActive.length; i++) {
+                if (mActive[i] == null) {
+                    stateNameIndices[i] = -1;
+                    continue;
+                }
+                Integer index = nameIndices.get(mActive[i].mClassName);
+                if (index == null) {
+                    index = nameIndices.size();
+                    nameIndices.put(mActive[i].mClassName, index);
+                }
+                stateNameIndices[i] = index;
+            }
+            final String[] classNames = new String[nameIndices.size()];
+            for (int i=0; i<classNames.length; i++) {
+                classNames[nameIndices.valueAt(i)] = nameIndices.keyAt(i);
+            }
+            dest.writeInt(mActive.length);
+            dest.writeStringArray(classNames);
+            for (int i=0; i<mActive.length; i++) {
+                dest.writeInt(stateNameIndices[i]);
+                if (mActive[i] != null) {
+                    mActive[i].writeCompactToParcel(dest);
+                }
+            }
+        }
         dest.writeIntArray(mAdded);
         dest.writeTypedArray(mBackStack, flags);
     }
@@ -480,6 +554,12 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     ArrayList<Runnable> mPendingActions;
     Runnable[] mTmpActions;
     boolean mExecutingActions;
+    boolean mBatchingEnabled;
+
+    // Fragments added or removed by the transactions of a batch before its last one, with the
+    // transition and transition style of the transaction that last added or removed them.
+    // Their state change is left to the last transaction of the batch.
+    SimpleArrayMap<Fragment, int[]> mDeferredStateChanges;
     
     ArrayList<Fragment> mActive;
     ArrayList<Fragment> mAdded;
@@ -699,6 +779,16 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         return mDestroyed;
     }
 
+    @Override
+    public void setTransactionBatchingEnabled(boolean enabled) {
+        mBatchingEnabled = enabled;
+    }
+
+    @Override
+    public boolean isTransactionBatchingEnabled() {
+        return mBatchingEnabled;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(128);
@@ -1312,6 +1402,15 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     }
     
     public void addFragment(Fragment fragment, boolean moveToStateNow) {
+        addFragment(fragment, moveToStateNow, false, 0, 0);
+    }
+
+    /**
+     * Adds a fragment, deferring its state change to the end of the current batch of
+     * transactions if <code>deferStateChange</code> is set.
+     */
+    void addFragment(Fragment fragment, boolean moveToStateNow, boolean deferStateChange,
+            int transition, int transitionStyle) {
         if (mAdded == null) {
             mAdded = new ArrayList<Fragment>();
         }
@@ -1331,10 +1430,24 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                 moveToState(fragment);
             }
         }
+        setStateChangeDeferred(fragment, deferStateChange, transition, transitionStyle);
     }
     
     public void removeFragment(Fragment fragment, int transition, int transitionStyle) {
+        removeFragment(fragment, transition, transitionStyle, false);
+    }
+
+    /**
+     * Removes a fragment, deferring its state change to the end of the current batch of
+     * transactions if <code>deferStateChange</code> is set.
+     */
+    void removeFragment(Fragment fragment, int transition, int transitionStyle,
+            boolean deferStateChange) {
         if (DEBUG) Log.v(TAG, "remove: " + fragment + " nesting=" + fragment.mBackStackNesting);
+        if (mDeferredStateChanges != null && mDeferredStateChanges.containsKey(fragment)) {
+            // Added earlier in the batch and not moved to any state yet
+            deferStateChange = true;
+        }
         final boolean inactive = !fragment.isInBackStack();
         if (!fragment.mDetached || inactive) {
             if (mAdded != null) {
@@ -1345,9 +1458,55 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             }
             fragment.mAdded = false;
             fragment.mRemoving = true;
-            moveToState(fragment, inactive ? Fragment.INITIALIZING : Fragment.CREATED,
-                    transition, transitionStyle, false);
+            if (!deferStateChange) {
+                moveToState(fragment, inactive ? Fragment.INITIALIZING : Fragment.CREATED,
+                        transition, transitionStyle, false);
+            }
+        }
+        setStateChangeDeferred(fragment, deferStateChange, transition, transitionStyle);
+    }
+
+    private void setStateChangeDeferred(Fragment fragment, boolean deferred, int transition,
+            int transitionStyle) {
+        if (deferred) {
+            if (mDeferredStateChanges == null) {
+                mDeferredStateChanges = new SimpleArrayMap<Fragment, int[]>();
+            }
+            mDeferredStateChanges.put(fragment, new int[] { transition, transitionStyle });
+        } else if (mDeferredStateChanges != null) {
+            // This change supersedes the deferred one
+            mDeferredStateChanges.remove(fragment);
+        }
+    }
+
+    /**
+     * Moves the fragments whose state change was deferred by the earlier transactions of a
+     * batch to their final state, each with the transition of the transaction that last added
+     * or removed it.  Called by the last transaction of the batch.
+     */
+    void moveDeferredFragmentsToState() {
+        if (mDeferredStateChanges == null) {
+            return;
         }
+        for (int i = 0; i < mDeferredStateChanges.size(); i++) {
+            final Fragment f = mDeferredStateChanges.keyAt(i);
+            final int[] transition = mDeferredStateChanges.valueAt(i);
+            if (!f.mRemoving) {
+                moveToState(f, mCurState, transition[0], transition[1], false);
+            } else if (f.isInBackStack()) {
+                // Like a fragment added and removed by separate transactions, a fragment the
+                // back stack may add again is created, even if it was added within the batch
+                f.mRemoving = false;
+                moveToState(f, Fragment.CREATED, transition[0], transition[1], false);
+                f.mRemoving = true;
+            } else if (f.mState == Fragment.INITIALIZING) {
+                // Added and removed within the batch, so it was never created
+                makeInactive(f);
+            } else {
+                moveToState(f, Fragment.INITIALIZING, transition[0], transition[1], false);
+            }
+        }
+        mDeferredStateChanges.clear();
     }
     
     public void hideFragment(Fragment fragment, int transition, int transitionStyle) {
@@ -1391,6 +1550,11 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     }
     
     public void detachFragment(Fragment fragment, int transition, int transitionStyle) {
+        detachFragment(fragment, transition, transitionStyle, false);
+    }
+
+    void detachFragment(Fragment fragment, int transition, int transitionStyle,
+            boolean deferStateChange) {
         if (DEBUG) Log.v(TAG, "detach: " + fragment);
         if (!fragment.mDetached) {
             fragment.mDetached = true;
@@ -1404,12 +1568,20 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                     mNeedMenuInvalidate = true;
                 }
                 fragment.mAdded = false;
-                moveToState(fragment, Fragment.CREATED, transition, transitionStyle, false);
+                if (!deferStateChange) {
+                    moveToState(fragment, Fragment.CREATED, transition, transitionStyle, false);
+                }
             }
         }
+        setStateChangeDeferred(fragment, deferStateChange, transition, transitionStyle);
     }
 
     public void attachFragment(Fragment fragment, int transition, int transitionStyle) {
+        attachFragment(fragment, transition, transitionStyle, false);
+    }
+
+    void attachFragment(Fragment fragment, int transition, int transitionStyle,
+            boolean deferStateChange) {
         if (DEBUG) Log.v(TAG, "attach: " + fragment);
         if (fragment.mDetached) {
             fragment.mDetached = false;
@@ -1426,9 +1598,12 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                 if (fragment.mHasMenu && fragment.mMenuVisible) {
                     mNeedMenuInvalidate = true;
                 }
-                moveToState(fragment, mCurState, transition, transitionStyle, false);
+                if (!deferStateChange) {
+                    moveToState(fragment, mCurState, transition, transitionStyle, false);
+                }
             }
         }
+        setStateChangeDeferred(fragment, deferStateChange, transition, transitionStyle);
     }
 
     public Fragment findFragmentById(int id) {
@@ -1613,7 +1788,15 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             
             mExecutingActions = true;
             for (int i=0; i<numActions; i++) {
-                mTmpActions[i].run();
+                final Runnable action = mTmpActions[i];
+                if (mBatchingEnabled && action instanceof BackStackRecord &&
+                        i + 1 < numActions && mTmpActions[i + 1] instanceof BackStackRecord &&
+                        !((BackStackRecord) action).hasTransitions()) {
+                    // The next transaction moves the fragments of both to their final state.
+                    ((BackStackRecord) action).run(true);
+                } else {
+                    action.run();
+                }
                 mTmpActions[i] = null;
             }
             mExecutingActions = false;
@@ -1896,7 +2079,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             if (N > 0) {
                 backStack = new BackStackState[N];
                 for (int i=0; i<N; i++) {
-                    backStack[i] = new BackStackState(mBackStack.get(i));
+                    backStack[i] = mBackStack.get(i).getSavedState();
                     if (DEBUG) Log.v(TAG, "saveAllState: adding back stack #" + i
                             + ": " + mBackStack.get(i));
                 }
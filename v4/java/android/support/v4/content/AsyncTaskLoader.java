@@ -46,6 +46,10 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
         // execution at a later time.  Used to throttle updates.
         boolean waiting;
 
+        // The executor the task was queued on, so that it is taken out of that executor's
+        // queue even if the loader has been given another one since.
+        Executor executor;
+
         /* Runs on a worker thread */
         @Override
         protected D doInBackground(Void... params) {
@@ -109,7 +113,8 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
         }
     }
 
-    private final Executor mExecutor;
+    private Executor mExecutor;
+    private int mLoadPriority = LoaderExecutor.PRIORITY_DEFAULT;
 
     volatile LoadTask mTask;
     volatile LoadTask mCancellingTask;
@@ -119,7 +124,7 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
     Handler mHandler;
 
     public AsyncTaskLoader(Context context) {
-        this(context, ModernAsyncTask.THREAD_POOL_EXECUTOR);
+        this(context, LoaderExecutor.getDefault());
     }
 
     private AsyncTaskLoader(Context context, Executor executor) {
@@ -141,6 +146,62 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
         }
     }
 
+    /**
+     * Set the {@link Executor} used to run {@link #loadInBackground()}.  By default loads run
+     * on {@link LoaderExecutor#getDefault()}, which is shared by all loaders in the process.
+     * The new executor is used starting with the next load.
+     *
+     * @param executor The executor to run loads on.
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the {@link Executor} used to run {@link #loadInBackground()}.
+     */
+    public Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Set the priority of this loader's loads relative to other loads queued on the same
+     * {@link LoaderExecutor}.  Loaders whose data is visible to the user should use
+     * {@link LoaderExecutor#PRIORITY_FOREGROUND}, while loaders that prefetch data should use
+     * {@link LoaderExecutor#PRIORITY_BACKGROUND}.  The priority is applied to the next load
+     * that is queued, and is ignored by executors other than {@link LoaderExecutor}.
+     *
+     * @param priority The load priority, {@link LoaderExecutor#PRIORITY_DEFAULT} by default.
+     */
+    public void setLoadPriority(int priority) {
+        mLoadPriority = priority;
+    }
+
+    /**
+     * Returns the priority set by {@link #setLoadPriority(int)}.
+     */
+    public int getLoadPriority() {
+        return mLoadPriority;
+    }
+
+    /**
+     * Resets the loader.  A load that is queued but has not started running yet is removed
+     * from its executor's queue and canceled, so that it never runs.
+     */
+    @Override
+    public void reset() {
+        final LoadTask task = mTask;
+        if (task != null && (mCancellingTask != null || task.waiting ||
+                task.removeFromQueue(task.executor))) {
+            if (DEBUG) Log.v(TAG, "reset: dropping queued task " + task);
+            cancelLoad();
+        }
+        super.reset();
+    }
+
     @Override
     protected void onForceLoad() {
         super.onForceLoad();
@@ -177,6 +238,9 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
                 boolean cancelled = mTask.cancel(false);
                 if (DEBUG) Log.v(TAG, "cancelLoad: cancelled=" + cancelled);
                 if (cancelled) {
+                    // If the task has not started yet, take it out of the queue rather than
+                    // leaving it to be dequeued later only to do nothing.
+                    mTask.removeFromQueue(mTask.executor);
                     mCancellingTask = mTask;
                     cancelLoadInBackground();
                 }
@@ -216,6 +280,8 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
                 }
             }
             if (DEBUG) Log.v(TAG, "Executing: " + mTask);
+            mTask.setPriority(mLoadPriority);
+            mTask.executor = mExecutor;
             mTask.executeOnExecutor(mExecutor, (Void[]) null);
         }
     }
@@ -349,6 +415,9 @@ public abstract class AsyncTaskLoader<D> extends Loader<D> {
             writer.print(prefix); writer.print("mCancellingTask="); writer.print(mCancellingTask);
                     writer.print(" waiting="); writer.println(mCancellingTask.waiting);
         }
+        if (mLoadPriority != LoaderExecutor.PRIORITY_DEFAULT) {
+            writer.print(prefix); writer.print("mLoadPriority="); writer.println(mLoadPriority);
+        }
         if (mUpdateThrottle != 0) {
             writer.print(prefix); writer.print("mUpdateThrottle=");
                     TimeUtils.formatDuration(mUpdateThrottle, writer);
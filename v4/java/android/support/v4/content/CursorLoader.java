@@ -35,6 +35,8 @@ import java.util.Arrays;
  * documentation for a class overview.
  */
 public class CursorLoader extends AsyncTaskLoader<Cursor> {
+    private static final int DEFAULT_MAX_RESIDENT_PAGES = 4;
+
     final ForceLoadContentObserver mObserver;
 
     Uri mUri;
@@ -42,6 +44,8 @@ public class CursorLoader extends AsyncTaskLoader<Cursor> {
     String mSelection;
     String[] mSelectionArgs;
     String mSortOrder;
+    int mPageSize;
+    int mMaxResidentPages = DEFAULT_MAX_RESIDENT_PAGES;
 
     Cursor mCursor;
     CancellationSignal mCancellationSignal;
@@ -56,12 +60,23 @@ public class CursorLoader extends AsyncTaskLoader<Cursor> {
             mCancellationSignal = new CancellationSignal();
         }
         try {
-            Cursor cursor = ContentResolverCompat.query(getContext().getContentResolver(),
-                    mUri, mProjection, mSelection, mSelectionArgs, mSortOrder,
-                    mCancellationSignal);
+            Cursor cursor = null;
+            boolean paged = false;
+            if (mPageSize > 0) {
+                cursor = PagingCursor.query(getContext().getContentResolver(),
+                        mUri, mProjection, mSelection, mSelectionArgs, mSortOrder,
+                        mPageSize, mMaxResidentPages, mCancellationSignal);
+                paged = cursor != null;
+            }
+            if (!paged) {
+                cursor = ContentResolverCompat.query(getContext().getContentResolver(),
+                        mUri, mProjection, mSelection, mSelectionArgs, mSortOrder,
+                        mCancellationSignal);
+            }
             if (cursor != null) {
                 try {
-                    // Ensure the cursor window is filled.
+                    // Ensure the cursor window is filled.  A paged cursor has already
+                    // loaded its first page.
                     cursor.getCount();
                     cursor.registerContentObserver(mObserver);
                 } catch (RuntimeException ex) {
@@ -223,6 +238,54 @@ public class CursorLoader extends AsyncTaskLoader<Cursor> {
         mSortOrder = sortOrder;
     }
 
+    /**
+     * Enable paging of the query result.  Instead of one query whose whole result is read
+     * before delivery, the loader queries the first {@code pageSize} rows and the total row
+     * count, and delivers a Cursor that queries further pages as positions in them are
+     * requested.  At most {@link #setMaxResidentPages(int)} pages are kept open at a time.
+     *
+     * <p>Pages are requested by appending {@code LIMIT} and {@code OFFSET} clauses to the sort
+     * order, and the row count by querying a {@code count(*)} projection, as supported by
+     * providers backed by a SQLite database.  If no sort order is set, rows are ordered by
+     * {@link android.provider.BaseColumns#_ID}.  If the provider rejects these queries the
+     * loader falls back to loading the whole result.
+     *
+     * <p>Only the first page is queried by the loader.  Later pages are queried synchronously
+     * on the thread that moves the cursor, usually the UI thread, each time a position in a
+     * page that is not open is requested.  Use paging only with providers that answer a page
+     * query quickly, such as a local database with an index for the sort order, and choose a
+     * page size large enough for a screen of rows so that scrolling rarely crosses a page.
+     *
+     * @param pageSize Number of rows per page, or 0 to disable paging (the default).
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("pageSize must not be negative");
+        }
+        mPageSize = pageSize;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Set the maximum number of pages a paged cursor keeps open.  When another page is
+     * needed the open page furthest from it is closed.  The default is 4.
+     *
+     * @see #setPageSize(int)
+     */
+    public void setMaxResidentPages(int maxResidentPages) {
+        if (maxResidentPages < 1) {
+            throw new IllegalArgumentException("maxResidentPages must be at least 1");
+        }
+        mMaxResidentPages = maxResidentPages;
+    }
+
+    public int getMaxResidentPages() {
+        return mMaxResidentPages;
+    }
+
     @Override
     public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
         super.dump(prefix, fd, writer, args);
@@ -233,6 +296,10 @@ public class CursorLoader extends AsyncTaskLoader<Cursor> {
         writer.print(prefix); writer.print("mSelectionArgs=");
                 writer.println(Arrays.toString(mSelectionArgs));
         writer.print(prefix); writer.print("mSortOrder="); writer.println(mSortOrder);
+        if (mPageSize > 0) {
+            writer.print(prefix); writer.print("mPageSize="); writer.print(mPageSize);
+                    writer.print(" mMaxResidentPages="); writer.println(mMaxResidentPages);
+        }
         writer.print(prefix); writer.print("mCursor="); writer.println(mCursor);
         writer.print(prefix); writer.print("mContentChanged="); writer.println(mContentChanged);
     }
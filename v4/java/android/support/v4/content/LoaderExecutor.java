@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.content;
+
+import android.os.SystemClock;
+
+import java.util.Iterator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link java.util.concurrent.Executor} that runs queued work in priority order, used by
+ * default to run the background loads of {@link AsyncTaskLoader}.  Loads with a higher
+ * priority, such as those backing visible UI, are started before lower priority ones such as
+ * prefetches; loads of equal priority are started in the order they were submitted.
+ *
+ * <p>The executor also keeps simple statistics about how long work waited in the queue
+ * before starting, which can be used to tune thread counts and priorities.
+ */
+public class LoaderExecutor extends ThreadPoolExecutor {
+    /**
+     * Priority for work that can wait, such as prefetching data that is not yet shown.
+     */
+    public static final int PRIORITY_BACKGROUND = -10;
+
+    /**
+     * Priority used when none is specified.
+     */
+    public static final int PRIORITY_DEFAULT = 0;
+
+    /**
+     * Priority for work whose result the user is waiting for.
+     */
+    public static final int PRIORITY_FOREGROUND = 10;
+
+    private static final int DEFAULT_THREAD_COUNT = 5;
+    private static final int KEEP_ALIVE = 1;
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "LoaderExecutor #" + mCount.getAndIncrement());
+        }
+    };
+
+    private static LoaderExecutor sDefault;
+
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private final AtomicLong mStartedCount = new AtomicLong();
+    private final AtomicLong mRemovedCount = new AtomicLong();
+    private final AtomicLong mTotalWaitTime = new AtomicLong();
+    private final AtomicLong mMaxWaitTime = new AtomicLong();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    /**
+     * Returns the process-wide executor used by {@link AsyncTaskLoader} when no other
+     * executor has been set.
+     */
+    public static LoaderExecutor getDefault() {
+        synchronized (LoaderExecutor.class) {
+            if (sDefault == null) {
+                sDefault = new LoaderExecutor(DEFAULT_THREAD_COUNT);
+            }
+            return sDefault;
+        }
+    }
+
+    /**
+     * Creates an executor with a fixed number of worker threads.
+     *
+     * @param threadCount The number of threads that may run work concurrently.
+     */
+    public LoaderExecutor(int threadCount) {
+        super(threadCount, threadCount, KEEP_ALIVE, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), sThreadFactory);
+    }
+
+    /**
+     * Queues the given work with {@link #PRIORITY_DEFAULT}.
+     */
+    @Override
+    public void execute(Runnable command) {
+        execute(command, PRIORITY_DEFAULT);
+    }
+
+    /**
+     * Queues the given work.  It will be started before any queued work with a lower
+     * priority.
+     *
+     * @param command The work to run.
+     * @param priority The priority of the work, for example {@link #PRIORITY_FOREGROUND}.
+     */
+    public void execute(Runnable command, int priority) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new QueuedTask(command, priority, mSequence.getAndIncrement(),
+                SystemClock.uptimeMillis()));
+        final int depth = getQueue().size();
+        int max;
+        while (depth > (max = mMaxQueueDepth.get())) {
+            if (mMaxQueueDepth.compareAndSet(max, depth)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes work that has been queued but not yet started, so that it never runs.
+     *
+     * @param task The Runnable that was passed to {@link #execute}.
+     * @return true if the work was still queued and has been removed.
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        final Iterator<Runnable> it = getQueue().iterator();
+        while (it.hasNext()) {
+            final Runnable queued = it.next();
+            if (queued == task || (queued instanceof QueuedTask &&
+                    ((QueuedTask) queued).mRunnable == task)) {
+                if (super.remove(queued)) {
+                    mRemovedCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof QueuedTask) {
+            final long wait = SystemClock.uptimeMillis() - ((QueuedTask) r).mEnqueueTime;
+            mStartedCount.incrementAndGet();
+            mTotalWaitTime.addAndGet(wait);
+            long max;
+            while (wait > (max = mMaxWaitTime.get())) {
+                if (mMaxWaitTime.compareAndSet(max, wait)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks currently waiting to be started.
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * Returns the largest number of tasks that have been waiting at the same time since the
+     * statistics were last reset.
+     */
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    /**
+     * Returns the number of tasks started since the statistics were last reset.
+     */
+    public long getStartedTaskCount() {
+        return mStartedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks removed from the queue by {@link #remove} before they
+     * started, since the statistics were last reset.
+     */
+    public long getRemovedTaskCount() {
+        return mRemovedCount.get();
+    }
+
+    /**
+     * Returns the total time in milliseconds that started tasks spent waiting in the queue
+     * since the statistics were last reset.
+     */
+    public long getTotalWaitTime() {
+        return mTotalWaitTime.get();
+    }
+
+    /**
+     * Returns the longest time in milliseconds that a started task spent waiting in the queue
+     * since the statistics were last reset.
+     */
+    public long getMaxWaitTime() {
+        return mMaxWaitTime.get();
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+    public void resetStats() {
+        mStartedCount.set(0);
+        mRemovedCount.set(0);
+        mTotalWaitTime.set(0);
+        mMaxWaitTime.set(0);
+        mMaxQueueDepth.set(0);
+    }
+
+    private static final class QueuedTask implements Runnable, Comparable<QueuedTask> {
+        final Runnable mRunnable;
+        final int mPriority;
+        final long mSequence;
+        final long mEnqueueTime;
+
+        QueuedTask(Runnable runnable, int priority, long sequence, long enqueueTime) {
+            mRunnable = runnable;
+            mPriority = priority;
+            mSequence = sequence;
+            mEnqueueTime = enqueueTime;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+
+        @Override
+        public int compareTo(QueuedTask another) {
+            if (mPriority != another.mPriority) {
+                return mPriority > another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+}
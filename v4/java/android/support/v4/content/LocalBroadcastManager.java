@@ -18,6 +18,7 @@ package android.support.v4.content;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 import android.content.BroadcastReceiver;
@@ -27,6 +28,7 @@ import android.content.IntentFilter;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Message;
+import android.support.v4.util.Pools;
 import android.util.Log;
 
 /**
@@ -47,11 +49,16 @@ public class LocalBroadcastManager {
     private static class ReceiverRecord {
         final IntentFilter filter;
         final BroadcastReceiver receiver;
-        boolean broadcasting;
+        /**
+         * True if matching the filter may depend on the MIME type resolved from the
+         * Intent's data, which can require a ContentResolver query.
+         */
+        final boolean needsResolvedType;
 
         ReceiverRecord(IntentFilter _filter, BroadcastReceiver _receiver) {
             filter = _filter;
             receiver = _receiver;
+            needsResolvedType = _filter.countDataTypes() > 0 || _filter.countDataSchemes() > 0;
         }
 
         @Override
@@ -67,27 +74,45 @@ public class LocalBroadcastManager {
     }
 
     private static class BroadcastRecord {
-        final Intent intent;
-        final ArrayList<ReceiverRecord> receivers;
+        Intent intent;
+        final ArrayList<ReceiverRecord> receivers = new ArrayList<ReceiverRecord>();
 
-        BroadcastRecord(Intent _intent, ArrayList<ReceiverRecord> _receivers) {
-            intent = _intent;
-            receivers = _receivers;
+        void recycle() {
+            intent = null;
+            receivers.clear();
+            sBroadcastRecordPool.release(this);
         }
     }
 
     private static final String TAG = "LocalBroadcastManager";
     private static final boolean DEBUG = false;
 
+    private static final int MAX_POOLED_BROADCAST_RECORDS = 16;
+    private static final Pools.SynchronizedPool<BroadcastRecord> sBroadcastRecordPool =
+            new Pools.SynchronizedPool<BroadcastRecord>(MAX_POOLED_BROADCAST_RECORDS);
+
+    private static final ReceiverRecord[] EMPTY_RECORDS = new ReceiverRecord[0];
+
     private final Context mAppContext;
 
+    /**
+     * Guards registration.  Senders never take this lock, they read the copy-on-write
+     * {@link #mActions} table instead.
+     */
     private final HashMap<BroadcastReceiver, ArrayList<IntentFilter>> mReceivers
             = new HashMap<BroadcastReceiver, ArrayList<IntentFilter>>();
-    private final HashMap<String, ArrayList<ReceiverRecord>> mActions
-            = new HashMap<String, ArrayList<ReceiverRecord>>();
 
-    private final ArrayList<BroadcastRecord> mPendingBroadcasts
+    /**
+     * Receivers indexed by action.  Neither the map nor the arrays are ever modified once
+     * published; registration replaces the whole table.
+     */
+    private volatile HashMap<String, ReceiverRecord[]> mActions
+            = new HashMap<String, ReceiverRecord[]>();
+
+    private final Object mPendingLock = new Object();
+    private ArrayList<BroadcastRecord> mPendingBroadcasts
             = new ArrayList<BroadcastRecord>();
+    private ArrayList<BroadcastRecord> mSpareBroadcasts;
 
     static final int MSG_EXEC_PENDING_BROADCASTS = 1;
 
@@ -139,15 +164,20 @@ public class LocalBroadcastManager {
                 mReceivers.put(receiver, filters);
             }
             filters.add(filter);
+            HashMap<String, ReceiverRecord[]> actions =
+                    new HashMap<String, ReceiverRecord[]>(mActions);
             for (int i=0; i<filter.countActions(); i++) {
                 String action = filter.getAction(i);
-                ArrayList<ReceiverRecord> entries = mActions.get(action);
+                ReceiverRecord[] entries = actions.get(action);
                 if (entries == null) {
-                    entries = new ArrayList<ReceiverRecord>(1);
-                    mActions.put(action, entries);
+                    entries = EMPTY_RECORDS;
                 }
-                entries.add(entry);
+                ReceiverRecord[] newEntries = new ReceiverRecord[entries.length + 1];
+                System.arraycopy(entries, 0, newEntries, 0, entries.length);
+                newEntries[entries.length] = entry;
+                actions.put(action, newEntries);
             }
+            mActions = actions;
         }
     }
 
@@ -166,24 +196,31 @@ public class LocalBroadcastManager {
             if (filters == null) {
                 return;
             }
+            HashMap<String, ReceiverRecord[]> actions =
+                    new HashMap<String, ReceiverRecord[]>(mActions);
             for (int i=0; i<filters.size(); i++) {
                 IntentFilter filter = filters.get(i);
                 for (int j=0; j<filter.countActions(); j++) {
                     String action = filter.getAction(j);
-                    ArrayList<ReceiverRecord> receivers = mActions.get(action);
+                    ReceiverRecord[] receivers = actions.get(action);
                     if (receivers != null) {
-                        for (int k=0; k<receivers.size(); k++) {
-                            if (receivers.get(k).receiver == receiver) {
-                                receivers.remove(k);
-                                k--;
+                        ArrayList<ReceiverRecord> remaining =
+                                new ArrayList<ReceiverRecord>(receivers.length);
+                        for (int k=0; k<receivers.length; k++) {
+                            if (receivers[k].receiver != receiver) {
+                                remaining.add(receivers[k]);
                             }
                         }
-                        if (receivers.size() <= 0) {
-                            mActions.remove(action);
+                        if (remaining.size() <= 0) {
+                            actions.remove(action);
+                        } else {
+                            actions.put(action,
+                                    remaining.toArray(new ReceiverRecord[remaining.size()]));
                         }
                     }
                 }
             }
+            mActions = actions;
         }
     }
 
@@ -198,74 +235,52 @@ public class LocalBroadcastManager {
      * @see #registerReceiver
      */
     public boolean sendBroadcast(Intent intent) {
-        synchronized (mReceivers) {
-            final String action = intent.getAction();
-            final String type = intent.resolveTypeIfNeeded(
-                    mAppContext.getContentResolver());
-            final Uri data = intent.getData();
-            final String scheme = intent.getScheme();
-            final Set<String> categories = intent.getCategories();
-
-            final boolean debug = DEBUG ||
-                    ((intent.getFlags() & Intent.FLAG_DEBUG_LOG_RESOLUTION) != 0);
-            if (debug) Log.v(
-                    TAG, "Resolving type " + type + " scheme " + scheme
-                    + " of intent " + intent);
-
-            ArrayList<ReceiverRecord> entries = mActions.get(intent.getAction());
-            if (entries != null) {
-                if (debug) Log.v(TAG, "Action list: " + entries);
-
-                ArrayList<ReceiverRecord> receivers = null;
-                for (int i=0; i<entries.size(); i++) {
-                    ReceiverRecord receiver = entries.get(i);
-                    if (debug) Log.v(TAG, "Matching against filter " + receiver.filter);
-
-                    if (receiver.broadcasting) {
-                        if (debug) {
-                            Log.v(TAG, "  Filter's target already added");
-                        }
-                        continue;
-                    }
-
-                    int match = receiver.filter.match(action, type, scheme, data,
-                            categories, "LocalBroadcastManager");
-                    if (match >= 0) {
-                        if (debug) Log.v(TAG, "  Filter matched!  match=0x" +
-                                Integer.toHexString(match));
-                        if (receivers == null) {
-                            receivers = new ArrayList<ReceiverRecord>();
-                        }
-                        receivers.add(receiver);
-                        receiver.broadcasting = true;
-                    } else {
-                        if (debug) {
-                            String reason;
-                            switch (match) {
-                                case IntentFilter.NO_MATCH_ACTION: reason = "action"; break;
-                                case IntentFilter.NO_MATCH_CATEGORY: reason = "category"; break;
-                                case IntentFilter.NO_MATCH_DATA: reason = "data"; break;
-                                case IntentFilter.NO_MATCH_TYPE: reason = "type"; break;
-                                default: reason = "unknown reason"; break;
-                            }
-                            Log.v(TAG, "  Filter did not match: " + reason);
-                        }
-                    }
-                }
+        BroadcastRecord record = matchReceivers(mActions, intent);
+        if (record == null) {
+            return false;
+        }
+        synchronized (mPendingLock) {
+            mPendingBroadcasts.add(record);
+            scheduleLocked();
+        }
+        return true;
+    }
 
-                if (receivers != null) {
-                    for (int i=0; i<receivers.size(); i++) {
-                        receivers.get(i).broadcasting = false;
-                    }
-                    mPendingBroadcasts.add(new BroadcastRecord(intent, receivers));
-                    if (!mHandler.hasMessages(MSG_EXEC_PENDING_BROADCASTS)) {
-                        mHandler.sendEmptyMessage(MSG_EXEC_PENDING_BROADCASTS);
-                    }
-                    return true;
+    /**
+     * Broadcast each of the given intents to all interested BroadcastReceivers.
+     * Like {@link #sendBroadcast(Intent)} this call is asynchronous.  All of the
+     * intents are delivered in order during a single pass on the main thread,
+     * which is cheaper than sending them one at a time.
+     *
+     * @param intents The Intents to broadcast.
+     * @return true if at least one receiver matched one of the intents.
+     *
+     * @see #registerReceiver
+     */
+    public boolean sendBroadcasts(List<Intent> intents) {
+        final HashMap<String, ReceiverRecord[]> actions = mActions;
+        final int count = intents.size();
+        BroadcastRecord[] records = null;
+        int matched = 0;
+        for (int i=0; i<count; i++) {
+            BroadcastRecord record = matchReceivers(actions, intents.get(i));
+            if (record != null) {
+                if (records == null) {
+                    records = new BroadcastRecord[count - i];
                 }
+                records[matched++] = record;
             }
         }
-        return false;
+        if (matched == 0) {
+            return false;
+        }
+        synchronized (mPendingLock) {
+            for (int i=0; i<matched; i++) {
+                mPendingBroadcasts.add(records[i]);
+            }
+            scheduleLocked();
+        }
+        return true;
     }
 
     /**
@@ -279,23 +294,111 @@ public class LocalBroadcastManager {
         }
     }
 
+    private void scheduleLocked() {
+        if (!mHandler.hasMessages(MSG_EXEC_PENDING_BROADCASTS)) {
+            mHandler.sendEmptyMessage(MSG_EXEC_PENDING_BROADCASTS);
+        }
+    }
+
+    /**
+     * Returns a record holding the receivers in the given table that match the intent, or null
+     * if none matches.  Runs without holding any lock.
+     */
+    private BroadcastRecord matchReceivers(HashMap<String, ReceiverRecord[]> actions,
+            Intent intent) {
+        final String action = intent.getAction();
+        final ReceiverRecord[] entries = actions.get(action);
+        if (entries == null) {
+            return null;
+        }
+
+        // Only filters with data types or schemes can be affected by the MIME type resolved from
+        // the Intent's content: Uri, for all others the explicit type gives the same result.
+        String type = intent.getType();
+        boolean typeResolved = false;
+        final Uri data = intent.getData();
+        final String scheme = intent.getScheme();
+        final Set<String> categories = intent.getCategories();
+
+        final boolean debug = DEBUG ||
+                ((intent.getFlags() & Intent.FLAG_DEBUG_LOG_RESOLUTION) != 0);
+        if (debug) Log.v(
+                TAG, "Resolving scheme " + scheme + " of intent " + intent);
+        if (debug) Log.v(TAG, "Action list: " + entries);
+
+        BroadcastRecord record = null;
+        for (int i=0; i<entries.length; i++) {
+            ReceiverRecord receiver = entries[i];
+            if (debug) Log.v(TAG, "Matching against filter " + receiver.filter);
+
+            if (record != null && record.receivers.contains(receiver)) {
+                if (debug) {
+                    Log.v(TAG, "  Filter's target already added");
+                }
+                continue;
+            }
+
+            if (receiver.needsResolvedType && !typeResolved) {
+                type = intent.resolveTypeIfNeeded(mAppContext.getContentResolver());
+                typeResolved = true;
+                if (debug) Log.v(TAG, "Resolved type " + type);
+            }
+
+            int match = receiver.filter.match(action, type, scheme, data,
+                    categories, "LocalBroadcastManager");
+            if (match >= 0) {
+                if (debug) Log.v(TAG, "  Filter matched!  match=0x" +
+                        Integer.toHexString(match));
+                if (record == null) {
+                    record = sBroadcastRecordPool.acquire();
+                    if (record == null) {
+                        record = new BroadcastRecord();
+                    }
+                    record.intent = intent;
+                }
+                record.receivers.add(receiver);
+            } else {
+                if (debug) {
+                    String reason;
+                    switch (match) {
+                        case IntentFilter.NO_MATCH_ACTION: reason = "action"; break;
+                        case IntentFilter.NO_MATCH_CATEGORY: reason = "category"; break;
+                        case IntentFilter.NO_MATCH_DATA: reason = "data"; break;
+                        case IntentFilter.NO_MATCH_TYPE: reason = "type"; break;
+                        default: reason = "unknown reason"; break;
+                    }
+                    Log.v(TAG, "  Filter did not match: " + reason);
+                }
+            }
+        }
+        return record;
+    }
+
     private void executePendingBroadcasts() {
         while (true) {
-            BroadcastRecord[] brs = null;
-            synchronized (mReceivers) {
-                final int N = mPendingBroadcasts.size();
-                if (N <= 0) {
+            ArrayList<BroadcastRecord> brs;
+            synchronized (mPendingLock) {
+                if (mPendingBroadcasts.isEmpty()) {
                     return;
                 }
-                brs = new BroadcastRecord[N];
-                mPendingBroadcasts.toArray(brs);
-                mPendingBroadcasts.clear();
+                // Swap in the spare list rather than copying.  The spare is null while another
+                // call further up the stack, e.g. from sendBroadcastSync in a receiver, is still
+                // dispatching from it.
+                brs = mPendingBroadcasts;
+                mPendingBroadcasts = mSpareBroadcasts != null ? mSpareBroadcasts
+                        : new ArrayList<BroadcastRecord>();
+                mSpareBroadcasts = null;
             }
-            for (int i=0; i<brs.length; i++) {
-                BroadcastRecord br = brs[i];
+            for (int i=0; i<brs.size(); i++) {
+                BroadcastRecord br = brs.get(i);
                 for (int j=0; j<br.receivers.size(); j++) {
                     br.receivers.get(j).receiver.onReceive(mAppContext, br.intent);
                 }
+                br.recycle();
+            }
+            brs.clear();
+            synchronized (mPendingLock) {
+                mSpareBroadcasts = brs;
             }
         }
     }
@@ -83,6 +83,8 @@ abstract class ModernAsyncTask<Params, Progress, Result> {
 
     private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
 
+    private int mPriority = LoaderExecutor.PRIORITY_DEFAULT;
+
     /**
      * Indicates the current status of the task. Each status will be set only once
      * during the lifetime of a task.
@@ -165,6 +167,35 @@ abstract class ModernAsyncTask<Params, Progress, Result> {
         return result;
     }
 
+    /**
+     * Sets the priority used when this task is queued on a {@link LoaderExecutor}.  Has no
+     * effect once the task has been executed, or with other executors.
+     */
+    public final void setPriority(int priority) {
+        mPriority = priority;
+    }
+
+    /**
+     * Returns the priority set by {@link #setPriority}.
+     */
+    public final int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Removes this task from the queue of the given executor if it has not started yet.
+     * The task is not cancelled; callers are expected to {@link #cancel} it as well so
+     * that {@link #onCancelled(Object)} is still delivered.
+     *
+     * @return true if the task was still queued and will never run.
+     */
+    final boolean removeFromQueue(Executor exec) {
+        if (exec instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) exec).remove(mFuture);
+        }
+        return false;
+    }
+
     /**
      * Returns the current status of this task.
      *
@@ -425,7 +456,11 @@ abstract class ModernAsyncTask<Params, Progress, Result> {
         onPreExecute();
 
         mWorker.mParams = params;
-        exec.execute(mFuture);
+        if (exec instanceof LoaderExecutor) {
+            ((LoaderExecutor) exec).execute(mFuture, mPriority);
+        } else {
+            exec.execute(mFuture);
+        }
 
         return this;
     }
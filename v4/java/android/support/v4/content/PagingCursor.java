@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.content;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.support.v4.os.CancellationSignal;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * A Cursor over a query result that is fetched one page of rows at a time with
+ * {@code LIMIT}/{@code OFFSET} clauses appended to the sort order.  Pages are queried when a
+ * position inside them is first requested, and at most a fixed number of pages are kept open;
+ * when that limit is reached the page furthest from the requested one is closed.
+ *
+ * <p>Used by {@link CursorLoader} when paging is enabled.
+ */
+class PagingCursor extends AbstractCursor {
+    private static final String TAG = "PagingCursor";
+
+    private static final String[] COUNT_PROJECTION = new String[] { "count(*)" };
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final String mSortOrder;
+    private final int mPageSize;
+    private final int mMaxResidentPages;
+    private final int mCount;
+    private final String[] mColumnNames;
+
+    private final SparseArray<Cursor> mPages = new SparseArray<Cursor>();
+    private Cursor mCurrentPage;
+
+    /**
+     * Queries the first page of the given query, and the total row count if the first page is
+     * full.
+     *
+     * @return The first page itself if it holds all rows, which is also the case when the
+     * provider ignores the {@code LIMIT} clause, a PagingCursor if there are more
+     * rows, or null if the provider does not accept a {@code LIMIT} clause in the sort order
+     * or a {@code count(*)} projection.  In that case the caller should fall back to a
+     * regular query.
+     */
+    static Cursor query(ContentResolver resolver, Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder, int pageSize, int maxResidentPages,
+            CancellationSignal cancellationSignal) {
+        final Cursor firstPage;
+        try {
+            firstPage = ContentResolverCompat.query(resolver, uri, projection, selection,
+                    selectionArgs, buildPageSortOrder(sortOrder, pageSize, 0),
+                    cancellationSignal);
+        } catch (SQLException e) {
+            Log.w(TAG, "Provider does not support paged queries for " + uri, e);
+            return null;
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Provider does not support paged queries for " + uri, e);
+            return null;
+        }
+        // A first page with more rows than asked for comes from a provider that ignores the
+        // LIMIT clause and already returned every row.
+        if (firstPage == null || firstPage.getCount() != pageSize) {
+            return firstPage;
+        }
+
+        int count = -1;
+        Cursor countCursor = null;
+        try {
+            countCursor = ContentResolverCompat.query(resolver, uri, COUNT_PROJECTION, selection,
+                    selectionArgs, null, cancellationSignal);
+            if (countCursor != null && countCursor.moveToFirst()) {
+                count = countCursor.getInt(0);
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Provider does not support counting rows for " + uri, e);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Provider does not support counting rows for " + uri, e);
+        } catch (RuntimeException e) {
+            firstPage.close();
+            throw e;
+        } finally {
+            if (countCursor != null) {
+                countCursor.close();
+            }
+        }
+        if (count < 0) {
+            firstPage.close();
+            return null;
+        }
+
+        PagingCursor cursor = new PagingCursor(resolver, uri, projection, selection,
+                selectionArgs, sortOrder, pageSize, maxResidentPages, firstPage, count);
+        cursor.setNotificationUri(resolver, uri);
+        return cursor;
+    }
+
+    /**
+     * Returns the sort order used to query the given page.  Rows are ordered by
+     * {@link BaseColumns#_ID} if no sort order is given, since paging requires a stable order.
+     */
+    static String buildPageSortOrder(String sortOrder, int pageSize, int page) {
+        StringBuilder builder = new StringBuilder(64);
+        builder.append(sortOrder != null ? sortOrder : BaseColumns._ID);
+        builder.append(" LIMIT ");
+        builder.append(pageSize);
+        if (page > 0) {
+            builder.append(" OFFSET ");
+            builder.append(page * pageSize);
+        }
+        return builder.toString();
+    }
+
+    private PagingCursor(ContentResolver resolver, Uri uri, String[] projection,
+            String selection, String[] selectionArgs, String sortOrder, int pageSize,
+            int maxResidentPages, Cursor firstPage, int count) {
+        mResolver = resolver;
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mSortOrder = sortOrder;
+        mPageSize = pageSize;
+        mMaxResidentPages = maxResidentPages;
+        mCount = count;
+        mColumnNames = firstPage.getColumnNames();
+        mPages.put(0, firstPage);
+    }
+
+    private Cursor getPage(int page) {
+        Cursor cursor = mPages.get(page);
+        if (cursor != null) {
+            return cursor;
+        }
+        cursor = ContentResolverCompat.query(mResolver, mUri, mProjection, mSelection,
+                mSelectionArgs, buildPageSortOrder(mSortOrder, mPageSize, page), null);
+        if (cursor == null) {
+            return null;
+        }
+        while (mPages.size() >= mMaxResidentPages) {
+            // Recycle the page furthest from the one being accessed.
+            int furthest = 0;
+            for (int i = 1; i < mPages.size(); i++) {
+                if (Math.abs(mPages.keyAt(i) - page) >
+                        Math.abs(mPages.keyAt(furthest) - page)) {
+                    furthest = i;
+                }
+            }
+            mPages.valueAt(furthest).close();
+            mPages.removeAt(furthest);
+        }
+        mPages.put(page, cursor);
+        return cursor;
+    }
+
+    /**
+     * Returns the number of pages currently open.
+     */
+    int getResidentPageCount() {
+        return mPages.size();
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        final int page = newPosition / mPageSize;
+        final Cursor cursor = getPage(page);
+        mCurrentPage = cursor;
+        return cursor != null && cursor.moveToPosition(newPosition - page * mPageSize);
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public String getString(int column) {
+        checkPosition();
+        return mCurrentPage.getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        checkPosition();
+        return mCurrentPage.getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        checkPosition();
+        return mCurrentPage.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        checkPosition();
+        return mCurrentPage.getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        checkPosition();
+        return mCurrentPage.getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        checkPosition();
+        return mCurrentPage.getDouble(column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        checkPosition();
+        return mCurrentPage.getBlob(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        checkPosition();
+        return mCurrentPage.isNull(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        checkPosition();
+        return mCurrentPage.getType(column);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for (int i = 0; i < mPages.size(); i++) {
+            mPages.valueAt(i).close();
+        }
+        mPages.clear();
+        mCurrentPage = null;
+    }
+}
@@ -22,6 +22,14 @@ import android.support.annotation.FloatRange;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A set of color-related utility methods, building upon those available in {@code Color}.
  */
@@ -30,6 +38,26 @@ public class ColorUtils {
     private static final int MIN_ALPHA_SEARCH_MAX_ITERATIONS = 10;
     private static final int MIN_ALPHA_SEARCH_PRECISION = 1;
 
+    /**
+     * Minimum number of colors processed by each thread when a bulk operation is split across
+     * several threads.  Smaller batches are processed on the calling thread only.
+     */
+    private static final int MIN_COLORS_PER_THREAD = 4096;
+
+    /**
+     * Linear value of each 8-bit sRGB component, used to compute luminance without calling
+     * {@link Math#pow(double, double)} for every component.
+     */
+    private static final double[] LINEAR_COMPONENTS = new double[256];
+
+    static {
+        for (int i = 0; i < LINEAR_COMPONENTS.length; i++) {
+            final double component = i / 255d;
+            LINEAR_COMPONENTS[i] = component < 0.03928
+                    ? component / 12.92 : Math.pow((component + 0.055) / 1.055, 2.4);
+        }
+    }
+
     private ColorUtils() {}
 
     /**
@@ -68,16 +96,43 @@ public class ColorUtils {
      */
     @FloatRange(from = 0.0, to = 1.0)
     public static double calculateLuminance(@ColorInt int color) {
-        double red = Color.red(color) / 255d;
-        red = red < 0.03928 ? red / 12.92 : Math.pow((red + 0.055) / 1.055, 2.4);
-
-        double green = Color.green(color) / 255d;
-        green = green < 0.03928 ? green / 12.92 : Math.pow((green + 0.055) / 1.055, 2.4);
+        return (0.2126 * LINEAR_COMPONENTS[(color >> 16) & 0xFF])
+                + (0.7152 * LINEAR_COMPONENTS[(color >> 8) & 0xFF])
+                + (0.0722 * LINEAR_COMPONENTS[color & 0xFF]);
+    }
 
-        double blue = Color.blue(color) / 255d;
-        blue = blue < 0.03928 ? blue / 12.92 : Math.pow((blue + 0.055) / 1.055, 2.4);
+    /**
+     * Calculates the luminance of {@code count} colors, as returned by
+     * {@link #calculateLuminance(int)}.  Does not allocate unless the batch is large enough to
+     * be split across several threads.
+     *
+     * @param colors        the colors.
+     * @param colorsOffset  the index of the first color in {@code colors}.
+     * @param outLuminance  the array that receives the luminance of each color.
+     * @param outOffset     the index in {@code outLuminance} of the first result.
+     * @param count         the number of colors.
+     */
+    public static void calculateLuminance(@NonNull final int[] colors, final int colorsOffset,
+            @NonNull final float[] outLuminance, final int outOffset, int count) {
+        checkBounds(colors.length, colorsOffset, count, 1);
+        checkBounds(outLuminance.length, outOffset, count, 1);
+        if (!isParallel(count)) {
+            luminanceRange(colors, colorsOffset, outLuminance, outOffset, 0, count);
+            return;
+        }
+        runInParallel(count, new BulkOperation() {
+            @Override
+            void run(int start, int end) {
+                luminanceRange(colors, colorsOffset, outLuminance, outOffset, start, end);
+            }
+        });
+    }
 
-        return (0.2126 * red) + (0.7152 * green) + (0.0722 * blue);
+    private static void luminanceRange(int[] colors, int colorsOffset, float[] outLuminance,
+            int outOffset, int start, int end) {
+        for (int i = start; i < end; i++) {
+            outLuminance[outOffset + i] = (float) calculateLuminance(colors[colorsOffset + i]);
+        }
     }
 
     /**
@@ -104,6 +159,57 @@ public class ColorUtils {
         return Math.max(luminance1, luminance2) / Math.min(luminance1, luminance2);
     }
 
+    /**
+     * Calculates the contrast ratio between each of {@code count} foreground colors and
+     * {@code background}, as returned by {@link #calculateContrast(int, int)}.  The luminance
+     * of the background is only calculated once.  Does not allocate unless the batch is large
+     * enough to be split across several threads.
+     *
+     * @param foregrounds       the foreground colors.
+     * @param foregroundsOffset the index of the first color in {@code foregrounds}.
+     * @param background        the background color. Must be opaque.
+     * @param outContrast       the array that receives the contrast ratio of each color.
+     * @param outOffset         the index in {@code outContrast} of the first result.
+     * @param count             the number of foreground colors.
+     */
+    public static void calculateContrast(@NonNull final int[] foregrounds,
+            final int foregroundsOffset, @ColorInt final int background,
+            @NonNull final float[] outContrast, final int outOffset, int count) {
+        if (Color.alpha(background) != 255) {
+            throw new IllegalArgumentException("background can not be translucent: #"
+                    + Integer.toHexString(background));
+        }
+        checkBounds(foregrounds.length, foregroundsOffset, count, 1);
+        checkBounds(outContrast.length, outOffset, count, 1);
+        final double backgroundLuminance = calculateLuminance(background) + 0.05;
+        if (!isParallel(count)) {
+            contrastRange(foregrounds, foregroundsOffset, background, backgroundLuminance,
+                    outContrast, outOffset, 0, count);
+            return;
+        }
+        runInParallel(count, new BulkOperation() {
+            @Override
+            void run(int start, int end) {
+                contrastRange(foregrounds, foregroundsOffset, background, backgroundLuminance,
+                        outContrast, outOffset, start, end);
+            }
+        });
+    }
+
+    private static void contrastRange(int[] foregrounds, int foregroundsOffset, int background,
+            double backgroundLuminance, float[] outContrast, int outOffset, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int foreground = foregrounds[foregroundsOffset + i];
+            if ((foreground >>> 24) < 255) {
+                // If the foreground is translucent, composite the foreground over the background
+                foreground = compositeColors(foreground, background);
+            }
+            final double luminance = calculateLuminance(foreground) + 0.05;
+            outContrast[outOffset + i] = (float) (Math.max(luminance, backgroundLuminance)
+                    / Math.min(luminance, backgroundLuminance));
+        }
+    }
+
     /**
      * Calculates the minimum alpha value which can be applied to {@code foreground} so that would
      * have a contrast value of at least {@code minContrastRatio} when compared to
@@ -170,6 +276,10 @@ public class ColorUtils {
     public static void RGBToHSL(@IntRange(from = 0x0, to = 0xFF) int r,
             @IntRange(from = 0x0, to = 0xFF) int g, @IntRange(from = 0x0, to = 0xFF) int b,
             @NonNull float[] hsl) {
+        RGBToHSL(r, g, b, hsl, 0);
+    }
+
+    private static void RGBToHSL(int r, int g, int b, float[] hsl, int offset) {
         final float rf = r / 255f;
         final float gf = g / 255f;
         final float bf = b / 255f;
@@ -201,9 +311,9 @@ public class ColorUtils {
             h += 360f;
         }
 
-        hsl[0] = constrain(h, 0f, 360f);
-        hsl[1] = constrain(s, 0f, 1f);
-        hsl[2] = constrain(l, 0f, 1f);
+        hsl[offset] = constrain(h, 0f, 360f);
+        hsl[offset + 1] = constrain(s, 0f, 1f);
+        hsl[offset + 2] = constrain(l, 0f, 1f);
     }
 
     /**
@@ -221,6 +331,43 @@ public class ColorUtils {
         RGBToHSL(Color.red(color), Color.green(color), Color.blue(color), hsl);
     }
 
+    /**
+     * Converts {@code count} ARGB colors to their HSL (hue-saturation-lightness) components, as
+     * returned by {@link #colorToHSL(int, float[])}.  The components of each color are stored
+     * consecutively in {@code outHsl}, so it must have room for {@code 3 * count} values.  Does
+     * not allocate unless the batch is large enough to be split across several threads.
+     *
+     * @param colors       the ARGB colors to convert. The alpha component is ignored.
+     * @param colorsOffset the index of the first color in {@code colors}.
+     * @param outHsl       the array that receives the HSL components of each color.
+     * @param outOffset    the index in {@code outHsl} of the hue of the first color.
+     * @param count        the number of colors.
+     */
+    public static void colorToHSL(@NonNull final int[] colors, final int colorsOffset,
+            @NonNull final float[] outHsl, final int outOffset, int count) {
+        checkBounds(colors.length, colorsOffset, count, 1);
+        checkBounds(outHsl.length, outOffset, count, 3);
+        if (!isParallel(count)) {
+            hslRange(colors, colorsOffset, outHsl, outOffset, 0, count);
+            return;
+        }
+        runInParallel(count, new BulkOperation() {
+            @Override
+            void run(int start, int end) {
+                hslRange(colors, colorsOffset, outHsl, outOffset, start, end);
+            }
+        });
+    }
+
+    private static void hslRange(int[] colors, int colorsOffset, float[] outHsl, int outOffset,
+            int start, int end) {
+        for (int i = start; i < end; i++) {
+            final int color = colors[colorsOffset + i];
+            RGBToHSL((color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF, outHsl,
+                    outOffset + 3 * i);
+        }
+    }
+
     /**
      * Convert HSL (hue-saturation-lightness) components to a RGB color.
      * <ul>
@@ -308,4 +455,81 @@ public class ColorUtils {
         return amount < low ? low : (amount > high ? high : amount);
     }
 
+    private static void checkBounds(int length, int offset, int count, int valuesPerColor) {
+        if (offset < 0 || count < 0 || count > (length - offset) / valuesPerColor) {
+            throw new ArrayIndexOutOfBoundsException("offset " + offset + " and count " + count
+                    + " out of bounds for length " + length);
+        }
+    }
+
+    /**
+     * A bulk operation over a range of colors.  Implementations must only write to the part of
+     * the output that belongs to the range, so that disjoint ranges can run concurrently.
+     */
+    private static abstract class BulkOperation {
+        abstract void run(int start, int end);
+    }
+
+    private static boolean isParallel(int count) {
+        return count >= 2 * MIN_COLORS_PER_THREAD && BulkExecutor.THREAD_COUNT > 0;
+    }
+
+    /**
+     * Splits the range {@code [0, count)} into chunks, runs all but the first one on the bulk
+     * executor and the first one on the calling thread, and waits for all of them to finish.
+     */
+    private static void runInParallel(int count, final BulkOperation operation) {
+        final int chunks = Math.min(BulkExecutor.THREAD_COUNT + 1, count / MIN_COLORS_PER_THREAD);
+        final int chunkSize = (count + chunks - 1) / chunks;
+        final CountDownLatch done = new CountDownLatch(chunks - 1);
+        for (int i = 1; i < chunks; i++) {
+            final int start = i * chunkSize;
+            final int end = Math.min(count, start + chunkSize);
+            BulkExecutor.INSTANCE.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        operation.run(start, end);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        operation.run(0, chunkSize);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lazily created pool of threads that bulk operations are split across.  Threads exit when
+     * idle, and chunks run on the calling thread when all of them are busy.
+     */
+    private static class BulkExecutor {
+        static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors() - 1;
+
+        static final Executor INSTANCE = new ThreadPoolExecutor(0, Math.max(THREAD_COUNT, 1),
+                1, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ColorUtils #" + mCount.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
 }
@@ -78,6 +78,19 @@ import java.io.File;
 public abstract class DocumentFile {
     static final String TAG = "DocumentFile";
 
+    /**
+     * Callback invoked for each child by {@link DocumentFile#listFiles(ListCallback)}.
+     */
+    public interface ListCallback {
+        /**
+         * Called for each child document as it is read from the provider.
+         *
+         * @param file the child document.
+         * @return {@code true} to continue listing, {@code false} to stop.
+         */
+        boolean onFileListed(DocumentFile file);
+    }
+
     private final DocumentFile mParent;
 
     DocumentFile(DocumentFile parent) {
@@ -294,7 +307,9 @@ public abstract class DocumentFile {
 
     /**
      * Returns an array of files contained in the directory represented by this
-     * file.
+     * file. For a document tree, the display name, MIME type, size, last
+     * modified time and flags of every child are fetched in the same query,
+     * see {@link #refresh()}.
      *
      * @return an array of files or {@code null}.
      * @throws UnsupportedOperationException when working with a single document
@@ -304,6 +319,40 @@ public abstract class DocumentFile {
      */
     public abstract DocumentFile[] listFiles();
 
+    /**
+     * Lists the files contained in the directory represented by this file one
+     * at a time, without building an array of all of them. Listing stops when
+     * the callback returns {@code false}.
+     * <p>
+     * Like {@link #listFiles()}, documents inside a tree created from
+     * {@link #fromTreeUri(Context, Uri)} are listed with all of their metadata
+     * in a single query. Their {@link #getName()}, {@link #getType()},
+     * {@link #isDirectory()}, {@link #isFile()}, {@link #lastModified()},
+     * {@link #length()}, {@link #canRead()} and {@link #canWrite()} return
+     * that snapshot until {@link #refresh()} is called.
+     *
+     * @throws UnsupportedOperationException when working with a single document
+     *             created from {@link #fromSingleUri(Context, Uri)}.
+     * @see #listFiles()
+     */
+    public void listFiles(ListCallback callback) {
+        for (DocumentFile file : listFiles()) {
+            if (!callback.onFileListed(file)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Re-reads the metadata of this document from the underlying provider in a
+     * single query. Documents returned by {@link #listFiles()} keep a snapshot
+     * of their metadata taken while listing; call this to pick up later
+     * changes. Does nothing for documents that always read their metadata
+     * directly.
+     */
+    public void refresh() {
+    }
+
     /**
      * Search through {@link #listFiles()} for the first document matching the
      * given display name. Returns {@code null} when no matching document is
@@ -17,16 +17,58 @@
 package android.support.v4.provider;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayList;
 
 class TreeDocumentFile extends DocumentFile {
     private Context mContext;
     private Uri mUri;
 
+    /**
+     * Metadata captured when this document was listed or refreshed, or null to query the
+     * provider on every call.
+     */
+    private Metadata mMetadata;
+
+    /**
+     * Immutable snapshot of the columns of a document that back the getters.
+     */
+    static final class Metadata {
+        final String mName;
+        final String mRawType;
+        final long mLastModified;
+        final long mLength;
+        final int mFlags;
+
+        Metadata(Cursor c) {
+            mName = getString(c, DocumentsContractApi19.COLUMN_INDEX_DISPLAY_NAME);
+            mRawType = getString(c, DocumentsContractApi19.COLUMN_INDEX_MIME_TYPE);
+            mLastModified = getLong(c, DocumentsContractApi19.COLUMN_INDEX_LAST_MODIFIED);
+            mLength = getLong(c, DocumentsContractApi19.COLUMN_INDEX_SIZE);
+            mFlags = (int) getLong(c, DocumentsContractApi19.COLUMN_INDEX_FLAGS);
+        }
+
+        private static String getString(Cursor c, int column) {
+            return c.isNull(column) ? null : c.getString(column);
+        }
+
+        private static long getLong(Cursor c, int column) {
+            return c.isNull(column) ? 0 : c.getLong(column);
+        }
+    }
+
     TreeDocumentFile(DocumentFile parent, Context context, Uri uri) {
+        this(parent, context, uri, null);
+    }
+
+    TreeDocumentFile(DocumentFile parent, Context context, Uri uri, Metadata metadata) {
         super(parent);
         mContext = context;
         mUri = uri;
+        mMetadata = metadata;
     }
 
     @Override
@@ -48,41 +90,74 @@ class TreeDocumentFile extends DocumentFile {
 
     @Override
     public String getName() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return metadata.mName;
+        }
         return DocumentsContractApi19.getName(mContext, mUri);
     }
 
     @Override
     public String getType() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return DocumentsContractApi19.getTypeFromRawType(metadata.mRawType);
+        }
         return DocumentsContractApi19.getType(mContext, mUri);
     }
 
     @Override
     public boolean isDirectory() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return DocumentsContractApi19.isDirectoryRawType(metadata.mRawType);
+        }
         return DocumentsContractApi19.isDirectory(mContext, mUri);
     }
 
     @Override
     public boolean isFile() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return DocumentsContractApi19.isFileRawType(metadata.mRawType);
+        }
         return DocumentsContractApi19.isFile(mContext, mUri);
     }
 
     @Override
     public long lastModified() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return metadata.mLastModified;
+        }
         return DocumentsContractApi19.lastModified(mContext, mUri);
     }
 
     @Override
     public long length() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return metadata.mLength;
+        }
         return DocumentsContractApi19.length(mContext, mUri);
     }
 
     @Override
     public boolean canRead() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return DocumentsContractApi19.canRead(mContext, mUri, metadata.mRawType);
+        }
         return DocumentsContractApi19.canRead(mContext, mUri);
     }
 
     @Override
     public boolean canWrite() {
+        final Metadata metadata = mMetadata;
+        if (metadata != null) {
+            return DocumentsContractApi19.canWrite(mContext, mUri, metadata.mRawType,
+                    metadata.mFlags);
+        }
         return DocumentsContractApi19.canWrite(mContext, mUri);
     }
 
@@ -98,12 +173,60 @@ class TreeDocumentFile extends DocumentFile {
 
     @Override
     public DocumentFile[] listFiles() {
-        final Uri[] result = DocumentsContractApi21.listFiles(mContext, mUri);
-        final DocumentFile[] resultFiles = new DocumentFile[result.length];
-        for (int i = 0; i < result.length; i++) {
-            resultFiles[i] = new TreeDocumentFile(this, mContext, result[i]);
+        final ArrayList<DocumentFile> results = new ArrayList<DocumentFile>();
+        listFiles(new ListCallback() {
+            @Override
+            public boolean onFileListed(DocumentFile file) {
+                results.add(file);
+                return true;
+            }
+        });
+        return results.toArray(new DocumentFile[results.size()]);
+    }
+
+    @Override
+    public void listFiles(ListCallback callback) {
+        final Cursor c = DocumentsContractApi21.queryChildMetadata(mContext, mUri);
+        if (c == null) {
+            return;
+        }
+        try {
+            while (true) {
+                final DocumentFile file;
+                // Failures of the provider end the listing, but those of the callback are
+                // left to the caller.
+                try {
+                    if (!c.moveToNext()) {
+                        break;
+                    }
+                    final Uri documentUri = DocumentsContractApi21.buildDocumentUriUsingTree(mUri,
+                            c.getString(DocumentsContractApi19.COLUMN_INDEX_DOCUMENT_ID));
+                    file = new TreeDocumentFile(this, mContext, documentUri, new Metadata(c));
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed query: " + e);
+                    break;
+                }
+                if (!callback.onFileListed(file)) {
+                    break;
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @Override
+    public void refresh() {
+        final Cursor c = DocumentsContractApi19.queryMetadata(mContext, mUri);
+        if (c == null) {
+            mMetadata = null;
+            return;
+        }
+        try {
+            mMetadata = c.moveToFirst() ? new Metadata(c) : null;
+        } finally {
+            c.close();
         }
-        return resultFiles;
     }
 
     @Override
@@ -111,6 +234,7 @@ class TreeDocumentFile extends DocumentFile {
         final Uri result = DocumentsContractApi21.renameTo(mContext, mUri, displayName);
         if (result != null) {
             mUri = result;
+            mMetadata = null;
             return true;
         } else {
             return false;
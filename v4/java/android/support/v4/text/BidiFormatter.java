@@ -20,7 +20,11 @@ import android.support.v4.view.ViewCompat;
 
 import java.util.Locale;
 
+import static android.support.v4.text.TextDirectionHeuristicsCompat.ANYRTL_LTR;
 import static android.support.v4.text.TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR;
+import static android.support.v4.text.TextDirectionHeuristicsCompat.FIRSTSTRONG_RTL;
+import static android.support.v4.text.TextDirectionHeuristicsCompat.LTR;
+import static android.support.v4.text.TextDirectionHeuristicsCompat.RTL;
 
 /**
  * Utility class for formatting text for display in a potentially opposite-directionality context
@@ -107,21 +111,6 @@ public final class BidiFormatter {
      */
     private static final char RLM = '\u200F';
 
-    /*
-     * String representation of LRM
-     */
-    private static final String LRM_STRING = Character.toString(LRM);
-
-    /*
-     * String representation of RLM
-     */
-    private static final String RLM_STRING = Character.toString(RLM);
-
-    /**
-     * Empty string constant.
-     */
-    private static final String EMPTY_STRING = "";
-
     /**
      * A class for building a BidiFormatter with non-default options.
      */
@@ -129,6 +118,7 @@ public final class BidiFormatter {
         private boolean mIsRtlContext;
         private int mFlags;
         private TextDirectionHeuristicCompat mTextDirectionHeuristicCompat;
+        private int mDirectionCacheSize;
 
         /**
          * Constructor.
@@ -165,6 +155,7 @@ public final class BidiFormatter {
             mIsRtlContext = isRtlContext;
             mTextDirectionHeuristicCompat = DEFAULT_TEXT_DIRECTION_HEURISTIC;
             mFlags = DEFAULT_FLAGS;
+            mDirectionCacheSize = 0;
         }
 
         /**
@@ -192,6 +183,26 @@ public final class BidiFormatter {
             return this;
         }
 
+        /**
+         * Specifies the number of strings for which the BidiFormatter to be built remembers the
+         * estimated directionality, so that formatting the same string again does not scan it.
+         * This is useful when the same long or mixed-directionality strings are formatted
+         * repeatedly, e.g. the messages bound to the rows of a list.  Only directionalities
+         * estimated with the default heuristic are remembered.  The size is rounded up to a power
+         * of two, and a string may be forgotten early when another one takes its slot.  The
+         * default is 0, which disables the cache.
+         *
+         * @param maxSize the number of strings to remember.
+         * @return the builder itself.
+         */
+        public Builder setDirectionCacheSize(int maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("maxSize must not be negative");
+            }
+            mDirectionCacheSize = maxSize;
+            return this;
+        }
+
         private static BidiFormatter getDefaultInstanceFromContext(boolean isRtlContext) {
             return isRtlContext ? DEFAULT_RTL_INSTANCE : DEFAULT_LTR_INSTANCE;
         }
@@ -201,10 +212,12 @@ public final class BidiFormatter {
          */
         public BidiFormatter build() {
             if (mFlags == DEFAULT_FLAGS &&
-                    mTextDirectionHeuristicCompat == DEFAULT_TEXT_DIRECTION_HEURISTIC) {
+                    mTextDirectionHeuristicCompat == DEFAULT_TEXT_DIRECTION_HEURISTIC &&
+                    mDirectionCacheSize == 0) {
                 return getDefaultInstanceFromContext(mIsRtlContext);
             }
-            return new BidiFormatter(mIsRtlContext, mFlags, mTextDirectionHeuristicCompat);
+            return new BidiFormatter(mIsRtlContext, mFlags, mTextDirectionHeuristicCompat,
+                    mDirectionCacheSize);
         }
     }
 
@@ -215,16 +228,19 @@ public final class BidiFormatter {
     private static final BidiFormatter DEFAULT_LTR_INSTANCE = new BidiFormatter(
             false /* LTR context */,
             DEFAULT_FLAGS,
-            DEFAULT_TEXT_DIRECTION_HEURISTIC);
+            DEFAULT_TEXT_DIRECTION_HEURISTIC,
+            0 /* no direction cache */);
 
     private static final BidiFormatter DEFAULT_RTL_INSTANCE = new BidiFormatter(
             true /* RTL context */,
             DEFAULT_FLAGS,
-            DEFAULT_TEXT_DIRECTION_HEURISTIC);
+            DEFAULT_TEXT_DIRECTION_HEURISTIC,
+            0 /* no direction cache */);
 
     private final boolean mIsRtlContext;
     private final int mFlags;
     private final TextDirectionHeuristicCompat mDefaultTextDirectionHeuristicCompat;
+    private final DirectionCacheEntry[] mDirectionCache;
 
     /**
      * Factory for creating an instance of BidiFormatter for the default locale directionality.
@@ -256,11 +272,22 @@ public final class BidiFormatter {
      * @param isRtlContext Whether the context directionality is RTL or not.
      * @param flags The option flags.
      * @param heuristic The default text direction heuristic.
+     * @param directionCacheSize The number of strings whose directionality is remembered.
      */
-    private BidiFormatter(boolean isRtlContext, int flags, TextDirectionHeuristicCompat heuristic) {
+    private BidiFormatter(boolean isRtlContext, int flags, TextDirectionHeuristicCompat heuristic,
+            int directionCacheSize) {
         mIsRtlContext = isRtlContext;
         mFlags = flags;
         mDefaultTextDirectionHeuristicCompat = heuristic;
+        if (directionCacheSize > 0) {
+            int size = 1;
+            while (size < directionCacheSize) {
+                size <<= 1;
+            }
+            mDirectionCache = new DirectionCacheEntry[size];
+        } else {
+            mDirectionCache = null;
+        }
     }
 
     /**
@@ -285,24 +312,23 @@ public final class BidiFormatter {
      * from "sticking" to other opposite-directionality text or a number appearing after it inline
      * with only neutral content in between. Otherwise returns the empty string. While the exit
      * directionality is determined by scanning the end of the string, the overall directionality is
-     * given explicitly by a heuristic to estimate the {@code str}'s directionality.
+     * given by the direction info.
      *
      * @param str String after which the mark may need to appear.
-     * @param heuristic The text direction heuristic that will be used to estimate the {@code str}'s
-     *                  directionality.
+     * @param info The direction info of {@code str}, as returned by {@link #getDirectionInfo}.
      * @return LRM for RTL text in LTR context; RLM for LTR text in RTL context;
-     *     else, the empty string.
+     *     else, 0.
      */
-    private String markAfter(String str, TextDirectionHeuristicCompat heuristic) {
-        final boolean isRtl = heuristic.isRtl(str, 0, str.length());
+    private char markAfter(String str, int info) {
+        final boolean isRtl = (info & INFO_RTL) != 0;
         // getExitDir() is called only if needed (short-circuit).
-        if (!mIsRtlContext && (isRtl || getExitDir(str) == DIR_RTL)) {
-            return LRM_STRING;
+        if (!mIsRtlContext && (isRtl || getExitDir(str, info) == DIR_RTL)) {
+            return LRM;
         }
-        if (mIsRtlContext && (!isRtl || getExitDir(str) == DIR_LTR)) {
-            return RLM_STRING;
+        if (mIsRtlContext && (!isRtl || getExitDir(str, info) == DIR_LTR)) {
+            return RLM;
         }
-        return EMPTY_STRING;
+        return 0;
     }
 
     /**
@@ -312,24 +338,23 @@ public final class BidiFormatter {
      * wrapping) prevents it from "sticking" to other opposite-directionality text appearing before
      * it inline with only neutral content in between. Otherwise returns the empty string. While the
      * entry directionality is determined by scanning the beginning of the string, the overall
-     * directionality is given explicitly by a heuristic to estimate the {@code str}'s directionality.
+     * directionality is given by the direction info.
      *
      * @param str String before which the mark may need to appear.
-     * @param heuristic The text direction heuristic that will be used to estimate the {@code str}'s
-     *                  directionality.
+     * @param info The direction info of {@code str}, as returned by {@link #getDirectionInfo}.
      * @return LRM for RTL text in LTR context; RLM for LTR text in RTL context;
-     *     else, the empty string.
+     *     else, 0.
      */
-    private String markBefore(String str, TextDirectionHeuristicCompat heuristic) {
-        final boolean isRtl = heuristic.isRtl(str, 0, str.length());
+    private char markBefore(String str, int info) {
+        final boolean isRtl = (info & INFO_RTL) != 0;
         // getEntryDir() is called only if needed (short-circuit).
-        if (!mIsRtlContext && (isRtl || getEntryDir(str) == DIR_RTL)) {
-            return LRM_STRING;
+        if (!mIsRtlContext && (isRtl || getEntryDir(str, info) == DIR_RTL)) {
+            return LRM;
         }
-        if (mIsRtlContext && (!isRtl || getEntryDir(str) == DIR_LTR)) {
-            return RLM_STRING;
+        if (mIsRtlContext && (!isRtl || getEntryDir(str, info) == DIR_LTR)) {
+            return RLM;
         }
-        return EMPTY_STRING;
+        return 0;
     }
 
     /**
@@ -340,7 +365,7 @@ public final class BidiFormatter {
      *          false.
      */
     public boolean isRtl(String str) {
-        return mDefaultTextDirectionHeuristicCompat.isRtl(str, 0, str.length());
+        return (getDirectionInfo(str, mDefaultTextDirectionHeuristicCompat) & INFO_RTL) != 0;
     }
 
     /**
@@ -374,24 +399,71 @@ public final class BidiFormatter {
      */
     public String unicodeWrap(String str, TextDirectionHeuristicCompat heuristic, boolean isolate) {
         if (str == null) return null;
-        final boolean isRtl = heuristic.isRtl(str, 0, str.length());
-        StringBuilder result = new StringBuilder();
-        if (getStereoReset() && isolate) {
-            result.append(markBefore(str,
-                    isRtl ? TextDirectionHeuristicsCompat.RTL : TextDirectionHeuristicsCompat.LTR));
+        final int info = getDirectionInfo(str, heuristic);
+        final boolean isRtl = (info & INFO_RTL) != 0;
+        final char before = getStereoReset() && isolate ? markBefore(str, info) : 0;
+        final char after = isolate ? markAfter(str, info) : 0;
+        if (before == 0 && after == 0 && isRtl == mIsRtlContext) {
+            // Nothing to add, which is the common case for text matching the context.
+            return str;
+        }
+        StringBuilder result = new StringBuilder(str.length() + 4);
+        appendWrapped(str, isRtl, before, after, result);
+        return result.toString();
+    }
+
+    /**
+     * Operates like {@link #unicodeWrap(String, TextDirectionHeuristicCompat, boolean)}, but
+     * appends the result to the given {@code StringBuilder} instead of returning a new string.
+     * Does not allocate when the directionality of {@code str} is already known or only
+     * contains characters that cannot be RTL, so it is suited to formatting many strings, e.g.
+     * when binding the rows of a list.
+     *
+     * @param str The input string.  Nothing is appended if {@code str} is {@code null}.
+     * @param heuristic The algorithm to be used to estimate the string's overall direction.
+     * @param isolate Whether to directionally isolate the string to prevent it from garbling the
+     *     content around it
+     * @param out The builder to append to.
+     * @return {@code out}.
+     */
+    public StringBuilder unicodeWrap(String str, TextDirectionHeuristicCompat heuristic,
+            boolean isolate, StringBuilder out) {
+        if (str == null) return out;
+        final int info = getDirectionInfo(str, heuristic);
+        appendWrapped(str, (info & INFO_RTL) != 0,
+                getStereoReset() && isolate ? markBefore(str, info) : 0,
+                isolate ? markAfter(str, info) : 0, out);
+        return out;
+    }
+
+    /**
+     * Operates like {@link #unicodeWrap(String, TextDirectionHeuristicCompat, boolean,
+     * StringBuilder)}, but uses the formatter's default direction estimation algorithm and
+     * assumes {@code isolate} is true.
+     *
+     * @param str The input string.
+     * @param out The builder to append to.
+     * @return {@code out}.
+     */
+    public StringBuilder unicodeWrap(String str, StringBuilder out) {
+        return unicodeWrap(str, mDefaultTextDirectionHeuristicCompat, true /* isolate */, out);
+    }
+
+    private void appendWrapped(String str, boolean isRtl, char before, char after,
+            StringBuilder out) {
+        if (before != 0) {
+            out.append(before);
         }
         if (isRtl != mIsRtlContext) {
-            result.append(isRtl ? RLE : LRE);
-            result.append(str);
-            result.append(PDF);
+            out.append(isRtl ? RLE : LRE);
+            out.append(str);
+            out.append(PDF);
         } else {
-            result.append(str);
+            out.append(str);
         }
-        if (isolate) {
-            result.append(markAfter(str,
-                    isRtl ? TextDirectionHeuristicsCompat.RTL : TextDirectionHeuristicsCompat.LTR));
+        if (after != 0) {
+            out.append(after);
         }
-        return result.toString();
     }
 
     /**
@@ -447,6 +519,122 @@ public final class BidiFormatter {
     private static final int DIR_UNKNOWN = 0;
     private static final int DIR_RTL = +1;
 
+    /**
+     * Directionality that has not been determined yet.  Only used in direction info.
+     */
+    private static final int DIR_UNRESOLVED = 2;
+
+    /**
+     * Characters below this one are never strong RTL or bidi formatting characters.  It is the
+     * first character of the Hebrew block.
+     */
+    private static final char FIRST_RTL_CHAR = '\u0590';
+
+    /**
+     * The direction info of a string packs its entry and exit directionalities, offset by one to
+     * fit in two bits each, and whether its overall directionality is RTL into an int.
+     */
+    private static final int INFO_ENTRY_SHIFT = 0;
+    private static final int INFO_EXIT_SHIFT = 2;
+    private static final int INFO_DIR_MASK = 3;
+    private static final int INFO_RTL = 1 << 4;
+
+    private static int packDirectionInfo(int entryDir, int exitDir, boolean isRtl) {
+        return ((entryDir + 1) << INFO_ENTRY_SHIFT) | ((exitDir + 1) << INFO_EXIT_SHIFT) |
+                (isRtl ? INFO_RTL : 0);
+    }
+
+    /**
+     * An entry of the direction cache.  Entries are immutable, so the cache can be read and
+     * written from several threads without locking; a racing write at worst loses an entry.
+     */
+    private static final class DirectionCacheEntry {
+        final String str;
+        final int info;
+
+        DirectionCacheEntry(String str, int info) {
+            this.str = str;
+            this.info = info;
+        }
+    }
+
+    /**
+     * Returns the direction info of a string, using the direction cache if the string's
+     * directionality is estimated with the default heuristic.
+     */
+    private int getDirectionInfo(String str, TextDirectionHeuristicCompat heuristic) {
+        final DirectionCacheEntry[] cache = mDirectionCache;
+        if (cache == null || heuristic != mDefaultTextDirectionHeuristicCompat) {
+            return computeDirectionInfo(str, heuristic);
+        }
+        final int index = str.hashCode() & (cache.length - 1);
+        final DirectionCacheEntry entry = cache[index];
+        if (entry != null && (entry.str == str || entry.str.equals(str))) {
+            return entry.info;
+        }
+        int info = computeDirectionInfo(str, heuristic);
+        // Resolve everything up front so that cached strings are never scanned again.
+        info = packDirectionInfo(getEntryDir(str, info), getExitDir(str, info),
+                (info & INFO_RTL) != 0);
+        cache[index] = new DirectionCacheEntry(str, info);
+        return info;
+    }
+
+    /**
+     * Computes the direction info of a string.  If the string only contains characters below
+     * {@link #FIRST_RTL_CHAR}, its entry and exit directionalities are found in the same pass,
+     * and so is its overall directionality for the built-in heuristics.  Otherwise the entry and
+     * exit directionalities are left unresolved, to be determined only if needed.
+     */
+    private static int computeDirectionInfo(String str, TextDirectionHeuristicCompat heuristic) {
+        final int simpleDir = getSimpleDir(str);
+        final boolean isRtl;
+        if (simpleDir == DIR_UNRESOLVED) {
+            isRtl = heuristic.isRtl(str, 0, str.length());
+        } else if (heuristic == FIRSTSTRONG_LTR || heuristic == ANYRTL_LTR ||
+                heuristic == LTR) {
+            isRtl = false;
+        } else if (heuristic == FIRSTSTRONG_RTL) {
+            isRtl = simpleDir != DIR_LTR;
+        } else if (heuristic == RTL) {
+            isRtl = true;
+        } else {
+            isRtl = heuristic.isRtl(str, 0, str.length());
+        }
+        return packDirectionInfo(simpleDir, simpleDir, isRtl);
+    }
+
+    /**
+     * Returns DIR_LTR if the string only contains characters below {@link #FIRST_RTL_CHAR} and
+     * at least one of them is strong LTR, DIR_UNKNOWN if it only contains such characters but
+     * none is strong, and DIR_UNRESOLVED otherwise.  For such strings the result is both the
+     * entry and the exit directionality.
+     */
+    private static int getSimpleDir(String str) {
+        final byte[] dirTypes = DirectionalityEstimator.DIR_TYPE_CACHE;
+        int dir = DIR_UNKNOWN;
+        for (int i = 0, length = str.length(); i < length; i++) {
+            final char c = str.charAt(i);
+            if (c >= FIRST_RTL_CHAR) {
+                return DIR_UNRESOLVED;
+            }
+            if (dirTypes[c] == Character.DIRECTIONALITY_LEFT_TO_RIGHT) {
+                dir = DIR_LTR;
+            }
+        }
+        return dir;
+    }
+
+    private static int getExitDir(String str, int info) {
+        final int dir = ((info >> INFO_EXIT_SHIFT) & INFO_DIR_MASK) - 1;
+        return dir == DIR_UNRESOLVED ? getExitDir(str) : dir;
+    }
+
+    private static int getEntryDir(String str, int info) {
+        final int dir = ((info >> INFO_ENTRY_SHIFT) & INFO_DIR_MASK) - 1;
+        return dir == DIR_UNRESOLVED ? getEntryDir(str) : dir;
+    }
+
     /**
      * Returns the directionality of the last character with strong directionality in the string, or
      * DIR_UNKNOWN if none was encountered. For efficiency, actually scans backwards from the end of
@@ -148,6 +148,25 @@ public class AtomicFile {
         }
     }
 
+    /**
+     * Opens the file for appending to its current contents.  Like {@link #openRead()}, this
+     * first rolls back an incomplete write, so that the appended data is not dropped by a
+     * later read restoring the backup.  Call {@link #finishWrite(FileOutputStream)} when
+     * done; if appending fails, the stream should only be closed, and the file may be left
+     * with part of the data appended.
+     */
+    FileOutputStream openAppend() throws IOException {
+        if (mBackupName.exists()) {
+            mBaseName.delete();
+            mBackupName.renameTo(mBaseName);
+        }
+        try {
+            return new FileOutputStream(mBaseName, true);
+        } catch (FileNotFoundException e) {
+            throw new IOException("Couldn't append " + mBaseName);
+        }
+    }
+
     /**
      * Open the atomic file for reading.  If there previously was an
      * incomplete write, this will roll back to the last good data before
@@ -0,0 +1,434 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Writes snapshots of data to an {@link AtomicFile} in the background.
+ *
+ * <p>Callers submit a {@link Snapshot} with {@link #write(Snapshot)} and return immediately.
+ * Writes are performed on a single background thread shared by all writers, so writes to
+ * the file never overlap.  A snapshot that has not been written yet when a newer one is
+ * submitted is dropped, so a burst of changes results in a single write of the latest data.
+ * Data can also be appended to the file with {@link #append(Snapshot)}.  Appends are written
+ * in order after any snapshot submitted before them, and a snapshot submitted later replaces
+ * the pending appends, since it holds the complete contents of the file.
+ * {@link #flush()} blocks until everything submitted so far has been written, for example
+ * before the process is about to be stopped.
+ *
+ * <p>The writer keeps statistics about the writes it performed, including the time spent
+ * writing and syncing the file and the number of bytes written.
+ */
+public class AtomicFileWriter {
+    private static final String TAG = "AtomicFileWriter";
+
+    /**
+     * Default time, in milliseconds, that a write waits for newer snapshots before starting.
+     */
+    public static final long DEFAULT_COALESCE_DELAY = 100;
+
+    /**
+     * Data to be written or appended to the file.  The snapshot must not change after it has
+     * been submitted, since it is written later on a background thread.
+     */
+    public interface Snapshot {
+        /**
+         * Writes the data to the given stream.  Called on the writer thread.  The stream
+         * must not be closed.
+         *
+         * @throws IOException if the data could not be written, in which case the
+         * previous contents of the file are kept.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static HandlerThread sThread;
+
+    private final AtomicFile mFile;
+    private final long mCoalesceDelay;
+    private final Handler mHandler;
+
+    private final Object mLock = new Object();
+    private Snapshot mPending;
+    private ArrayList<Snapshot> mPendingAppends;
+    private long mSubmittedGeneration;
+    private long mWrittenGeneration;
+
+    private long mWriteCount;
+    private long mFailedWriteCount;
+    private long mCoalescedCount;
+    private long mBytesWritten;
+    private long mTotalWriteTime;
+    private long mMaxWriteTime;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            performWrite();
+        }
+    };
+
+    private static Looper getLooper() {
+        synchronized (AtomicFileWriter.class) {
+            if (sThread == null) {
+                sThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+                sThread.start();
+            }
+            return sThread.getLooper();
+        }
+    }
+
+    /**
+     * Creates a writer for the given file that waits {@link #DEFAULT_COALESCE_DELAY}
+     * milliseconds for further snapshots before writing.
+     */
+    public AtomicFileWriter(AtomicFile file) {
+        this(file, DEFAULT_COALESCE_DELAY);
+    }
+
+    /**
+     * Creates a writer for the given file.
+     *
+     * @param file The file to write.
+     * @param coalesceDelayMs Time in milliseconds that a write waits after a snapshot is
+     * submitted, so that snapshots submitted in the meantime replace it.
+     */
+    public AtomicFileWriter(AtomicFile file, long coalesceDelayMs) {
+        if (coalesceDelayMs < 0) {
+            throw new IllegalArgumentException("coalesceDelayMs must not be negative");
+        }
+        mFile = file;
+        mCoalesceDelay = coalesceDelayMs;
+        mHandler = new Handler(getLooper());
+    }
+
+    /**
+     * Returns the file this writer writes to.
+     */
+    public AtomicFile getFile() {
+        return mFile;
+    }
+
+    /**
+     * Schedules the snapshot to be written, replacing any snapshot that has been submitted
+     * but not yet written.
+     *
+     * @param snapshot The data to write.
+     */
+    public void write(Snapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("snapshot must not be null");
+        }
+        synchronized (mLock) {
+            scheduleLocked();
+            if (mPending != null) {
+                mCoalescedCount++;
+            }
+            if (mPendingAppends != null) {
+                mCoalescedCount += mPendingAppends.size();
+                mPendingAppends = null;
+            }
+            mPending = snapshot;
+            mSubmittedGeneration++;
+        }
+    }
+
+    /**
+     * Schedules the given bytes to be written.  The array must not be modified afterwards.
+     *
+     * @see #write(Snapshot)
+     */
+    public void write(final byte[] data) {
+        write(new Snapshot() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(data);
+            }
+        });
+    }
+
+    /**
+     * Schedules the data to be appended to the file, after any snapshot or data submitted
+     * before.  The data is dropped if a snapshot submitted later replaces the whole file
+     * before it has been written, or if writing a snapshot submitted before it fails.
+     *
+     * <p>Appending does not replace the file atomically: if the process dies while
+     * appending, the file may end with part of the data.
+     *
+     * @param data The data to append.
+     */
+    public void append(Snapshot data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data must not be null");
+        }
+        synchronized (mLock) {
+            scheduleLocked();
+            if (mPendingAppends == null) {
+                mPendingAppends = new ArrayList<Snapshot>();
+            }
+            mPendingAppends.add(data);
+            mSubmittedGeneration++;
+        }
+    }
+
+    /**
+     * Schedules the given bytes to be appended.  The array must not be modified afterwards.
+     *
+     * @see #append(Snapshot)
+     */
+    public void append(final byte[] data) {
+        append(new Snapshot() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(data);
+            }
+        });
+    }
+
+    /**
+     * Posts the write, unless one is already pending.  Called before the data is queued.
+     */
+    private void scheduleLocked() {
+        if (mPending == null && mPendingAppends == null) {
+            mHandler.postDelayed(mWriteRunnable, mCoalesceDelay);
+        }
+    }
+
+    /**
+     * Writes any pending data immediately and waits until everything submitted before this
+     * call has been written, whether or not the write succeeded.
+     */
+    public void flush() {
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            // Called from the writer thread; waiting would deadlock.
+            performWrite();
+            return;
+        }
+        boolean interrupted = false;
+        synchronized (mLock) {
+            final long target = mSubmittedGeneration;
+            if (mPending != null || mPendingAppends != null) {
+                mHandler.removeCallbacks(mWriteRunnable);
+                mHandler.postAtFrontOfQueue(mWriteRunnable);
+            }
+            while (mWrittenGeneration < target) {
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void performWrite() {
+        final Snapshot snapshot;
+        final ArrayList<Snapshot> appends;
+        final long generation;
+        synchronized (mLock) {
+            snapshot = mPending;
+            appends = mPendingAppends;
+            generation = mSubmittedGeneration;
+            mPending = null;
+            mPendingAppends = null;
+            mHandler.removeCallbacks(mWriteRunnable);
+        }
+        if (snapshot == null && appends == null) {
+            return;
+        }
+
+        final boolean written = snapshot == null || writeSnapshot(snapshot);
+        if (appends != null) {
+            if (written) {
+                appendData(appends);
+            } else {
+                // Appending to the previous contents would leave a gap in the data.
+                Log.e(TAG, "Dropped data appended to " + mFile.getBaseFile());
+            }
+        }
+
+        synchronized (mLock) {
+            mWrittenGeneration = generation;
+            mLock.notifyAll();
+        }
+    }
+
+    private boolean writeSnapshot(Snapshot snapshot) {
+        final long start = SystemClock.uptimeMillis();
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.startWrite();
+            CountingOutputStream out = new CountingOutputStream(fos);
+            snapshot.writeTo(out);
+            out.flush();
+            mFile.finishWrite(fos);
+            recordWrite(out.mCount, start);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing " + mFile.getBaseFile(), e);
+            mFile.failWrite(fos);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error writing " + mFile.getBaseFile(), e);
+            mFile.failWrite(fos);
+        }
+        recordFailedWrite();
+        return false;
+    }
+
+    private void appendData(ArrayList<Snapshot> appends) {
+        final long start = SystemClock.uptimeMillis();
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.openAppend();
+            CountingOutputStream out = new CountingOutputStream(fos);
+            for (int i = 0; i < appends.size(); i++) {
+                appends.get(i).writeTo(out);
+            }
+            out.flush();
+            mFile.finishWrite(fos);
+            recordWrite(out.mCount, start);
+            return;
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending to " + mFile.getBaseFile(), e);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error appending to " + mFile.getBaseFile(), e);
+        }
+        if (fos != null) {
+            try {
+                fos.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+        recordFailedWrite();
+    }
+
+    private void recordWrite(long bytes, long start) {
+        final long duration = SystemClock.uptimeMillis() - start;
+        synchronized (mLock) {
+            mWriteCount++;
+            mBytesWritten += bytes;
+            mTotalWriteTime += duration;
+            if (duration > mMaxWriteTime) {
+                mMaxWriteTime = duration;
+            }
+        }
+    }
+
+    private void recordFailedWrite() {
+        synchronized (mLock) {
+            mFailedWriteCount++;
+        }
+    }
+
+    /**
+     * Returns the number of successful writes, counting the appends written together as one.
+     */
+    public long getWriteCount() {
+        synchronized (mLock) {
+            return mWriteCount;
+        }
+    }
+
+    /**
+     * Returns the number of writes that failed.
+     */
+    public long getFailedWriteCount() {
+        synchronized (mLock) {
+            return mFailedWriteCount;
+        }
+    }
+
+    /**
+     * Returns the number of snapshots and appends that were replaced by a newer snapshot
+     * before being written.
+     */
+    public long getCoalescedCount() {
+        synchronized (mLock) {
+            return mCoalescedCount;
+        }
+    }
+
+    /**
+     * Returns the total number of bytes written by successful writes.
+     */
+    public long getBytesWritten() {
+        synchronized (mLock) {
+            return mBytesWritten;
+        }
+    }
+
+    /**
+     * Returns the total time in milliseconds spent in successful writes, including syncing
+     * the file to disk.
+     */
+    public long getTotalWriteTime() {
+        synchronized (mLock) {
+            return mTotalWriteTime;
+        }
+    }
+
+    /**
+     * Returns the longest time in milliseconds spent in a single successful write.
+     */
+    public long getMaxWriteTime() {
+        synchronized (mLock) {
+            return mMaxWriteTime;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The AtomicFile owns the underlying stream.
+            flush();
+        }
+    }
+}
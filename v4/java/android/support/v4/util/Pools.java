@@ -17,6 +17,9 @@
 
 package android.support.v4.util;
 
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Helper class for crating pools of objects. An example use looks like this:
@@ -163,4 +166,289 @@ public final class Pools {
             }
         }
     }
+
+    /**
+     * Pool of objects that may be acquired and released from many threads concurrently.
+     * Unlike {@link SynchronizedPool}, threads do not contend on a single lock: each thread
+     * first uses a small cache of its own, and only when that is empty or full does it use a
+     * lock-free stack of instances shared by all threads.
+     *
+     * <p>The shared stack holds at most {@code maxPoolSize} instances; releasing an instance
+     * when both the thread's cache and the shared stack are full drops it and counts an
+     * overflow.  Since each thread may hold up to {@code localPoolSize} instances in addition,
+     * instances released by one thread are not always available to another.  Instances cached
+     * by a thread that has terminated are moved to the shared stack the next time another
+     * thread misses or first uses the pool.
+     *
+     * <p>{@link #release(Object)} only detects instances already in the calling thread's own
+     * cache; releasing the same instance twice from different threads is not detected.
+     *
+     * @param <T> The pooled type.
+     */
+    public static class ConcurrentPool<T> implements Pool<T> {
+        private static final int DEFAULT_LOCAL_POOL_SIZE = 4;
+
+        private final int mLocalPoolSize;
+
+        /**
+         * Shared instances, kept in a fixed set of nodes so that sharing them doesn't allocate.
+         * Each node is linked into either the stack of nodes holding an instance or the stack
+         * of free nodes.  A node is only accessed by the thread which popped it, until that
+         * thread pushes it again.
+         */
+        private final Object[] mSharedInstances;
+        /** Next node of each node in its stack, as encoded in a stack head. */
+        private final int[] mSharedNext;
+        /**
+         * Heads of the two stacks.  The low 32 bits are the index of the top node plus one, or
+         * 0 if the stack is empty.  The high 32 bits are incremented on every change, so that a
+         * head which was popped and pushed again in the meantime fails a compare-and-set.
+         */
+        private final AtomicLong mSharedHead = new AtomicLong();
+        private final AtomicLong mFreeHead = new AtomicLong();
+
+        /** Local pools of the threads that have used this pool and may still be alive. */
+        private final CopyOnWriteArrayList<LocalPool> mLocalPools =
+                new CopyOnWriteArrayList<LocalPool>();
+
+        /** Counts of local pools whose thread has terminated. */
+        private final AtomicLong mReclaimedHits = new AtomicLong();
+        private final AtomicLong mReclaimedMisses = new AtomicLong();
+        private final AtomicLong mReclaimedOverflows = new AtomicLong();
+
+        private final ThreadLocal<LocalPool> mLocalPool = new ThreadLocal<LocalPool>() {
+            @Override
+            protected LocalPool initialValue() {
+                reclaimTerminatedThreads();
+                LocalPool local = new LocalPool(Thread.currentThread(), mLocalPoolSize);
+                mLocalPools.add(local);
+                return local;
+            }
+        };
+
+        /**
+         * Creates a new instance with a small per-thread cache.
+         *
+         * @param maxPoolSize The max size of the pool shared by all threads.
+         *
+         * @throws IllegalArgumentException If the max pool size is less than zero.
+         */
+        public ConcurrentPool(int maxPoolSize) {
+            this(maxPoolSize, DEFAULT_LOCAL_POOL_SIZE);
+        }
+
+        /**
+         * Creates a new instance.
+         *
+         * @param maxPoolSize The max size of the pool shared by all threads.
+         * @param localPoolSize The max number of instances cached by each thread.
+         *
+         * @throws IllegalArgumentException If the max pool size is less than zero, or the
+         *         local pool size is negative.
+         */
+        public ConcurrentPool(int maxPoolSize, int localPoolSize) {
+            if (maxPoolSize <= 0) {
+                throw new IllegalArgumentException("The max pool size must be > 0");
+            }
+            if (localPoolSize < 0) {
+                throw new IllegalArgumentException("The local pool size must be >= 0");
+            }
+            mSharedInstances = new Object[maxPoolSize];
+            mSharedNext = new int[maxPoolSize];
+            // Initially every node is free, each linked to the one below it
+            for (int i = 0; i < maxPoolSize; i++) {
+                mSharedNext[i] = i;
+            }
+            mFreeHead.set(maxPoolSize);
+            mLocalPoolSize = localPoolSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T acquire() {
+            final LocalPool local = mLocalPool.get();
+            if (local.mSize > 0) {
+                final int lastPooledIndex = local.mSize - 1;
+                T instance = (T) local.mPool[lastPooledIndex];
+                local.mPool[lastPooledIndex] = null;
+                local.mSize--;
+                local.mHits++;
+                return instance;
+            }
+            Object instance = takeShared();
+            if (instance == null && reclaimTerminatedThreads()) {
+                instance = takeShared();
+            }
+            if (instance == null) {
+                local.mMisses++;
+                return null;
+            }
+            local.mHits++;
+            return (T) instance;
+        }
+
+        @Override
+        public boolean release(T instance) {
+            final LocalPool local = mLocalPool.get();
+            for (int i = 0; i < local.mSize; i++) {
+                if (local.mPool[i] == instance) {
+                    throw new IllegalStateException("Already in the pool!");
+                }
+            }
+            if (local.mSize < local.mPool.length) {
+                local.mPool[local.mSize] = instance;
+                local.mSize++;
+                return true;
+            }
+            if (!putShared(instance)) {
+                local.mOverflows++;
+                return false;
+            }
+            return true;
+        }
+
+        private Object takeShared() {
+            final int node = popNode(mSharedHead);
+            if (node < 0) {
+                return null;
+            }
+            final Object instance = mSharedInstances[node];
+            mSharedInstances[node] = null;
+            pushNode(mFreeHead, node);
+            return instance;
+        }
+
+        private boolean putShared(Object instance) {
+            final int node = popNode(mFreeHead);
+            if (node < 0) {
+                return false;
+            }
+            mSharedInstances[node] = instance;
+            pushNode(mSharedHead, node);
+            return true;
+        }
+
+        /**
+         * Pops the top node of a stack.  The compare-and-set only fails if another thread
+         * changed the stack in the meantime.
+         *
+         * @return The index of the node, or -1 if the stack is empty.
+         */
+        private int popNode(AtomicLong head) {
+            while (true) {
+                final long current = head.get();
+                final int top = (int) current;
+                if (top == 0) {
+                    return -1;
+                }
+                // Stale if the node was popped in the meantime, but then the head changed too
+                final int next = mSharedNext[top - 1];
+                if (head.compareAndSet(current, nextHead(current, next))) {
+                    return top - 1;
+                }
+            }
+        }
+
+        /**
+         * Pushes a node popped by this thread onto a stack.  The writes to the node happen
+         * before the compare-and-set that publishes it.
+         */
+        private void pushNode(AtomicLong head, int node) {
+            while (true) {
+                final long current = head.get();
+                mSharedNext[node] = (int) current;
+                if (head.compareAndSet(current, nextHead(current, node + 1))) {
+                    return;
+                }
+            }
+        }
+
+        private static long nextHead(long current, int top) {
+            return ((current >>> 32) + 1) << 32 | top;
+        }
+
+        /**
+         * Moves the instances and counts of the local pools of terminated threads to the
+         * shared pool, and forgets those local pools.
+         *
+         * @return Whether any instance was moved.
+         */
+        private boolean reclaimTerminatedThreads() {
+            boolean reclaimed = false;
+            for (LocalPool local : mLocalPools) {
+                final Thread owner = local.mOwner.get();
+                // Only the thread that removes the local pool reads it
+                if ((owner == null || !owner.isAlive()) && mLocalPools.remove(local)) {
+                    for (int i = 0; i < local.mSize; i++) {
+                        reclaimed |= putShared(local.mPool[i]);
+                        local.mPool[i] = null;
+                    }
+                    local.mSize = 0;
+                    mReclaimedHits.addAndGet(local.mHits);
+                    mReclaimedMisses.addAndGet(local.mMisses);
+                    mReclaimedOverflows.addAndGet(local.mOverflows);
+                }
+            }
+            return reclaimed;
+        }
+
+        /**
+         * @return The number of calls to {@link #acquire()} that returned an instance.
+         */
+        public long getHitCount() {
+            long count = mReclaimedHits.get();
+            for (LocalPool local : mLocalPools) {
+                count += local.mHits;
+            }
+            return count;
+        }
+
+        /**
+         * @return The number of calls to {@link #acquire()} that returned null.
+         */
+        public long getMissCount() {
+            long count = mReclaimedMisses.get();
+            for (LocalPool local : mLocalPools) {
+                count += local.mMisses;
+            }
+            return count;
+        }
+
+        /**
+         * @return The number of calls to {@link #release(Object)} that dropped the instance
+         *         because the pool was full.
+         */
+        public long getOverflowCount() {
+            long count = mReclaimedOverflows.get();
+            for (LocalPool local : mLocalPools) {
+                count += local.mOverflows;
+            }
+            return count;
+        }
+
+        /**
+         * @return The number of local pools kept for threads that may still be alive.
+         */
+        int getLocalPoolCount() {
+            return mLocalPools.size();
+        }
+
+        /**
+         * Instances cached by one thread, and that thread's counts.  Only that thread writes
+         * the counts while it is alive, other threads only read them to compute totals.
+         */
+        private static final class LocalPool {
+            final WeakReference<Thread> mOwner;
+            final Object[] mPool;
+            int mSize;
+            volatile long mHits;
+            volatile long mMisses;
+            volatile long mOverflows;
+
+            LocalPool(Thread owner, int size) {
+                mOwner = new WeakReference<Thread>(owner);
+                mPool = new Object[size];
+            }
+        }
+    }
 }
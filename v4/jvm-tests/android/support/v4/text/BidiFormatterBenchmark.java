@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.text;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+/**
+ * Measures {@link BidiFormatter#unicodeWrap} over corpora of strings with different mixes of
+ * LTR and RTL text, both short ones like the names bound to the rows of a contact list and
+ * longer ones like chat messages.  Compares
+ * returning new strings, appending to a reused {@code StringBuilder}, and appending with the
+ * direction cache enabled.  Every variant must wrap each string as the formatter did before
+ * these variants were added; timings are printed to standard output.
+ */
+@RunWith(JUnit4.class)
+public class BidiFormatterBenchmark extends TestCase {
+    private static final int CORPUS_SIZE = 500;
+    private static final int DISTINCT_STRINGS = 200;
+    private static final int ITERATIONS = 200;
+    private static final int[] RTL_PERCENTAGES = new int[] { 0, 10, 50, 100 };
+    private static final int[] WORD_COUNTS = new int[] { 2, 20 };
+
+    private static final String[] LATIN_WORDS = new String[] {
+            "Anna", "Bob", "Caf\u00e9", "M\u00fcller", "Jos\u00e9", "(555) 0100", "chat"
+    };
+    private static final String[] RTL_WORDS = new String[] {
+            "\u05d3\u05e0\u05d4", "\u05d9\u05d5\u05e1\u05d9", "\u0645\u062d\u0645\u062f",
+            "\u0633\u0627\u0631\u0629"
+    };
+
+    @Test
+    public void testThroughput() {
+        final BidiFormatter plain = BidiFormatter.getInstance(false);
+        final BidiFormatter cached = new BidiFormatter.Builder(false)
+                .setDirectionCacheSize(DISTINCT_STRINGS).build();
+
+        for (int wordCount : WORD_COUNTS) {
+            for (int rtlPercentage : RTL_PERCENTAGES) {
+                final String[] corpus = buildCorpus(rtlPercentage, wordCount);
+                assertWrapsLikeBefore(plain, cached, corpus, false);
+                assertWrapsLikeBefore(BidiFormatter.getInstance(true),
+                        new BidiFormatter.Builder(true).setDirectionCacheSize(DISTINCT_STRINGS)
+                                .build(), corpus, true);
+                // Warm up every variant before measuring.
+                for (int i = 0; i < 3; i++) {
+                    runStrings(plain, corpus);
+                    runBuilder(plain, corpus);
+                    runBuilder(cached, corpus);
+                }
+
+                System.out.println(String.format("words=%2d rtl=%3d%% strings=%5d ns/op"
+                        + " builder=%5d ns/op cached=%5d ns/op", wordCount, rtlPercentage,
+                        nanosPerOp(runStrings(plain, corpus)),
+                        nanosPerOp(runBuilder(plain, corpus)),
+                        nanosPerOp(runBuilder(cached, corpus))));
+            }
+        }
+    }
+
+    /**
+     * Checks that returning new strings, appending to a builder and appending with the
+     * direction cache all wrap every string of the corpus as {@link #wrapLikeBefore} does.
+     * The cached formatter is checked twice, so that its cached directions are checked too.
+     */
+    private static void assertWrapsLikeBefore(BidiFormatter plain, BidiFormatter cached,
+            String[] corpus, boolean isRtlContext) {
+        final StringBuilder out = new StringBuilder();
+        for (int pass = 0; pass < 2; pass++) {
+            for (String str : corpus) {
+                final String expected = wrapLikeBefore(str, isRtlContext);
+                assertEquals(str, expected, plain.unicodeWrap(str));
+                out.setLength(0);
+                assertEquals(str, expected, plain.unicodeWrap(str, out).toString());
+                out.setLength(0);
+                assertEquals(str, expected, cached.unicodeWrap(str, out).toString());
+            }
+        }
+    }
+
+    /**
+     * Wraps a string the way {@link BidiFormatter#unicodeWrap(String)} did before it resolved
+     * directions without a directionality estimator, with the default heuristic, stereo reset
+     * and isolation.  Only valid for strings without explicit embeddings or overrides, whose
+     * entry and exit directionalities are those of their first and last strong characters.
+     */
+    private static String wrapLikeBefore(String str, boolean isRtlContext) {
+        final boolean isRtl =
+                TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR.isRtl(str, 0, str.length());
+        final StringBuilder result = new StringBuilder();
+        result.append(markLikeBefore(isRtl, isRtlContext, getStrongDirection(str, true)));
+        if (isRtl != isRtlContext) {
+            result.append(isRtl ? '\u202B' /* RLE */ : '\u202A' /* LRE */);
+            result.append(str);
+            result.append('\u202C' /* PDF */);
+        } else {
+            result.append(str);
+        }
+        result.append(markLikeBefore(isRtl, isRtlContext, getStrongDirection(str, false)));
+        return result.toString();
+    }
+
+    private static String markLikeBefore(boolean isRtl, boolean isRtlContext, int direction) {
+        if (!isRtlContext && (isRtl || direction > 0)) {
+            return "\u200E" /* LRM */;
+        }
+        if (isRtlContext && (!isRtl || direction < 0)) {
+            return "\u200F" /* RLM */;
+        }
+        return "";
+    }
+
+    /**
+     * Returns -1 if the first or last strong character of the string is LTR, +1 if it is RTL
+     * and 0 if there is none.
+     */
+    private static int getStrongDirection(String str, boolean first) {
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(first ? i : str.length() - 1 - i);
+            switch (Character.getDirectionality(c)) {
+                case Character.DIRECTIONALITY_LEFT_TO_RIGHT:
+                    return -1;
+                case Character.DIRECTIONALITY_RIGHT_TO_LEFT:
+                case Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC:
+                    return +1;
+            }
+        }
+        return 0;
+    }
+
+    private static String[] buildCorpus(int rtlPercentage, int wordCount) {
+        final Random random = new Random(rtlPercentage);
+        final String[] distinct = new String[DISTINCT_STRINGS];
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < DISTINCT_STRINGS; i++) {
+            final boolean rtl = random.nextInt(100) < rtlPercentage;
+            final String[] words = rtl ? RTL_WORDS : LATIN_WORDS;
+            builder.setLength(0);
+            for (int j = 0; j < wordCount; j++) {
+                // Mix in a Latin word now and then.
+                builder.append(random.nextInt(4) == 0
+                        ? LATIN_WORDS[random.nextInt(LATIN_WORDS.length)]
+                        : words[random.nextInt(words.length)]);
+                builder.append(' ');
+            }
+            // Keep every string distinct.
+            distinct[i] = builder.append(i).toString();
+        }
+        final String[] corpus = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            corpus[i] = distinct[random.nextInt(DISTINCT_STRINGS)];
+        }
+        return corpus;
+    }
+
+    private static long nanosPerOp(long nanos) {
+        return nanos / ((long) ITERATIONS * CORPUS_SIZE);
+    }
+
+    private static long runStrings(BidiFormatter formatter, String[] corpus) {
+        int length = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String str : corpus) {
+                length += formatter.unicodeWrap(str).length();
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        assertTrue(length > 0);
+        return nanos;
+    }
+
+    private static long runBuilder(BidiFormatter formatter, String[] corpus) {
+        final StringBuilder out = new StringBuilder();
+        int length = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String str : corpus) {
+                out.setLength(0);
+                length += formatter.unicodeWrap(str, out).length();
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        assertTrue(length > 0);
+        return nanos;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the throughput of {@link Pools.SynchronizedPool} and {@link Pools.ConcurrentPool}
+ * with 1 to 16 threads that each repeatedly acquire and release a few instances.  Results are
+ * printed to standard output.  This is not part of the unit tests; run its {@link #main} with
+ * the unit test classpath.
+ */
+public class PoolsBenchmark {
+    private static final int POOL_SIZE = 64;
+    private static final int HELD_PER_THREAD = 2;
+    private static final int ITERATIONS = 200000;
+    private static final int[] THREAD_COUNTS = new int[] { 1, 2, 4, 8, 16 };
+
+    public static void main(String[] args) throws InterruptedException {
+        // Warm up both implementations before measuring.
+        run(new Pools.SynchronizedPool<Object>(POOL_SIZE), 4);
+        run(new Pools.ConcurrentPool<Object>(POOL_SIZE), 4);
+
+        for (int threads : THREAD_COUNTS) {
+            long synchronizedNanos = run(new Pools.SynchronizedPool<Object>(POOL_SIZE), threads);
+            Pools.ConcurrentPool<Object> concurrent = new Pools.ConcurrentPool<Object>(POOL_SIZE);
+            long concurrentNanos = run(concurrent, threads);
+            System.out.println(String.format("threads=%2d synchronized=%6d ops/ms"
+                    + " concurrent=%6d ops/ms (hits=%d misses=%d overflows=%d)",
+                    threads, opsPerMs(threads, synchronizedNanos),
+                    opsPerMs(threads, concurrentNanos), concurrent.getHitCount(),
+                    concurrent.getMissCount(), concurrent.getOverflowCount()));
+        }
+    }
+
+    private static long opsPerMs(int threads, long nanos) {
+        final long ops = (long) threads * ITERATIONS * HELD_PER_THREAD * 2;
+        return ops * 1000000 / Math.max(nanos, 1);
+    }
+
+    private static long run(final Pools.Pool<Object> pool, int threadCount)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    final Object[] held = new Object[HELD_PER_THREAD];
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        for (int j = 0; j < HELD_PER_THREAD; j++) {
+                            Object instance = pool.acquire();
+                            held[j] = instance != null ? instance : new Object();
+                        }
+                        for (int j = 0; j < HELD_PER_THREAD; j++) {
+                            pool.release(held[j]);
+                            held[j] = null;
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        final long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - startTime;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class PoolsTest extends TestCase {
+
+    @Test
+    public void testConcurrentPoolLocalThenShared() {
+        Pools.ConcurrentPool<Object> pool = new Pools.ConcurrentPool<Object>(2, 1);
+        assertNull(pool.acquire());
+        Object a = new Object();
+        Object b = new Object();
+        Object c = new Object();
+        Object d = new Object();
+        assertTrue(pool.release(a));
+        assertTrue(pool.release(b));
+        assertTrue(pool.release(c));
+        assertFalse(pool.release(d));
+        assertEquals(1, pool.getMissCount());
+        assertEquals(1, pool.getOverflowCount());
+
+        // The thread's own cache is used first, then the shared stack in LIFO order.
+        assertSame(a, pool.acquire());
+        assertSame(c, pool.acquire());
+        assertSame(b, pool.acquire());
+        assertNull(pool.acquire());
+        assertEquals(3, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testConcurrentPoolDoubleRelease() {
+        Pools.ConcurrentPool<Object> pool = new Pools.ConcurrentPool<Object>(4);
+        Object a = new Object();
+        pool.release(a);
+        try {
+            pool.release(a);
+            fail("releasing twice should throw");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testConcurrentPoolSharedAcrossThreads() throws InterruptedException {
+        final Pools.ConcurrentPool<Object> pool = new Pools.ConcurrentPool<Object>(1000, 0);
+        final int threadCount = 8;
+        final int perThread = 100;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        pool.release(new Object());
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+        Object instance;
+        while ((instance = pool.acquire()) != null) {
+            assertNull("acquired twice", seen.put(instance, Boolean.TRUE));
+        }
+        assertEquals(threadCount * perThread, seen.size());
+    }
+
+    @Test
+    public void testConcurrentPoolReclaimsTerminatedThreads() throws InterruptedException {
+        final Pools.ConcurrentPool<Object> pool = new Pools.ConcurrentPool<Object>(4, 4);
+        final Object a = new Object();
+        final Object b = new Object();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                assertNull(pool.acquire());
+                pool.release(a);
+                pool.release(b);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(1, pool.getLocalPoolCount());
+
+        // The instances cached by the terminated thread are handed out to other threads, and
+        // its counts are kept after its local pool is dropped.
+        IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+        seen.put(pool.acquire(), Boolean.TRUE);
+        seen.put(pool.acquire(), Boolean.TRUE);
+        assertTrue(seen.containsKey(a));
+        assertTrue(seen.containsKey(b));
+        assertNull(pool.acquire());
+        assertEquals(1, pool.getLocalPoolCount());
+        assertEquals(2, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testConcurrentPoolForgetsTerminatedThreads() throws InterruptedException {
+        final Pools.ConcurrentPool<Object> pool = new Pools.ConcurrentPool<Object>(4);
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    pool.release(new Object());
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        // Each thread drops the local pools of the threads that terminated before it
+        assertEquals(1, pool.getLocalPoolCount());
+        assertEquals(0, pool.getOverflowCount());
+    }
+
+    @Test
+    public void testConcurrentPoolNeverHandsOutAnInstanceTwice() throws InterruptedException {
+        // Fewer shared slots than threads, so that the threads keep popping and pushing the
+        // same nodes of the shared stack
+        final Pools.ConcurrentPool<AtomicBoolean> pool =
+                new Pools.ConcurrentPool<AtomicBoolean>(4, 0);
+        final int threadCount = 8;
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        AtomicBoolean instance = pool.acquire();
+                        if (instance == null) {
+                            instance = new AtomicBoolean();
+                        }
+                        // Set while this thread holds the instance
+                        if (!instance.compareAndSet(false, true)) {
+                            errors.incrementAndGet();
+                        }
+                        instance.set(false);
+                        pool.release(instance);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(0, errors.get());
+    }
+}
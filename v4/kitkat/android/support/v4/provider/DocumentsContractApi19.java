@@ -29,6 +29,23 @@ import android.util.Log;
 class DocumentsContractApi19 {
     private static final String TAG = "DocumentFile";
 
+    /**
+     * Columns fetched in a single query to build a metadata snapshot of a document.
+     */
+    public static final String[] METADATA_PROJECTION = new String[] {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_FLAGS };
+    public static final int COLUMN_INDEX_DOCUMENT_ID = 0;
+    public static final int COLUMN_INDEX_DISPLAY_NAME = 1;
+    public static final int COLUMN_INDEX_MIME_TYPE = 2;
+    public static final int COLUMN_INDEX_LAST_MODIFIED = 3;
+    public static final int COLUMN_INDEX_SIZE = 4;
+    public static final int COLUMN_INDEX_FLAGS = 5;
+
     public static boolean isDocumentUri(Context context, Uri self) {
         return DocumentsContract.isDocumentUri(context, self);
     }
@@ -42,7 +59,10 @@ class DocumentsContractApi19 {
     }
 
     public static String getType(Context context, Uri self) {
-        final String rawType = getRawType(context, self);
+        return getTypeFromRawType(getRawType(context, self));
+    }
+
+    public static String getTypeFromRawType(String rawType) {
         if (DocumentsContract.Document.MIME_TYPE_DIR.equals(rawType)) {
             return null;
         } else {
@@ -51,12 +71,20 @@ class DocumentsContractApi19 {
     }
 
     public static boolean isDirectory(Context context, Uri self) {
-        return DocumentsContract.Document.MIME_TYPE_DIR.equals(getRawType(context, self));
+        return isDirectoryRawType(getRawType(context, self));
+    }
+
+    public static boolean isDirectoryRawType(String rawType) {
+        return DocumentsContract.Document.MIME_TYPE_DIR.equals(rawType);
     }
 
     public static boolean isFile(Context context, Uri self) {
-        final String type = getRawType(context, self);
-        if (DocumentsContract.Document.MIME_TYPE_DIR.equals(type) || TextUtils.isEmpty(type)) {
+        return isFileRawType(getRawType(context, self));
+    }
+
+    public static boolean isFileRawType(String rawType) {
+        if (DocumentsContract.Document.MIME_TYPE_DIR.equals(rawType)
+                || TextUtils.isEmpty(rawType)) {
             return false;
         } else {
             return true;
@@ -86,6 +114,20 @@ class DocumentsContractApi19 {
         return true;
     }
 
+    /**
+     * Same as {@link #canRead(Context, Uri)} for a document whose MIME type is already known.
+     */
+    public static boolean canRead(Context context, Uri self, String rawType) {
+        // Ignore if grant doesn't allow read
+        if (context.checkCallingOrSelfUriPermission(self, Intent.FLAG_GRANT_READ_URI_PERMISSION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+
+        // Ignore documents without MIME
+        return !TextUtils.isEmpty(rawType);
+    }
+
     public static boolean canWrite(Context context, Uri self) {
         // Ignore if grant doesn't allow write
         if (context.checkCallingOrSelfUriPermission(self, Intent.FLAG_GRANT_WRITE_URI_PERMISSION)
@@ -95,7 +137,23 @@ class DocumentsContractApi19 {
 
         final String type = getRawType(context, self);
         final int flags = queryForInt(context, self, DocumentsContract.Document.COLUMN_FLAGS, 0);
+        return canWriteWithTypeAndFlags(type, flags);
+    }
+
+    /**
+     * Same as {@link #canWrite(Context, Uri)} for a document whose MIME type and flags are
+     * already known.
+     */
+    public static boolean canWrite(Context context, Uri self, String rawType, int flags) {
+        // Ignore if grant doesn't allow write
+        if (context.checkCallingOrSelfUriPermission(self, Intent.FLAG_GRANT_WRITE_URI_PERMISSION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        return canWriteWithTypeAndFlags(rawType, flags);
+    }
 
+    private static boolean canWriteWithTypeAndFlags(String type, int flags) {
         // Ignore documents without MIME
         if (TextUtils.isEmpty(type)) {
             return false;
@@ -139,6 +197,20 @@ class DocumentsContractApi19 {
         }
     }
 
+    /**
+     * Queries all columns of {@link #METADATA_PROJECTION} for the given document.  The caller
+     * must close the returned cursor, which is null if the query failed.
+     */
+    public static Cursor queryMetadata(Context context, Uri self) {
+        try {
+            return context.getContentResolver().query(self, METADATA_PROJECTION, null, null,
+                    null);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed query: " + e);
+            return null;
+        }
+    }
+
     private static String queryForString(Context context, Uri self, String column,
             String defaultValue) {
         final ContentResolver resolver = context.getContentResolver();
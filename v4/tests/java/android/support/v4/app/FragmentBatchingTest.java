@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ActivityInstrumentationTestCase2;
+import android.transition.Fade;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link FragmentManager#setTransactionBatchingEnabled(boolean)}
+ */
+@RunWith(AndroidJUnit4.class)
+public class FragmentBatchingTest extends ActivityInstrumentationTestCase2<FragmentActivity> {
+    private static final int CONTAINER = android.R.id.content;
+
+    public FragmentBatchingTest() {
+        super("android.support.v4.test", FragmentActivity.class);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        // Note that injectInstrumentation was added in v5. Since this is v4 we have to use
+        // the misspelled (and deprecated) inject API.
+        injectInsrumentation(InstrumentationRegistry.getInstrumentation());
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        getInstrumentation().waitForIdleSync();
+        super.tearDown();
+    }
+
+    private FragmentManager getFragmentManager() {
+        return getActivity().getSupportFragmentManager();
+    }
+
+    @Test
+    public void testAddThenRemoveNeverCreatesView() throws Throwable {
+        final FragmentManager fm = getFragmentManager();
+        final CountingFragment fragment = new CountingFragment();
+        final CountingFragment backStackFragment = new CountingFragment();
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fm.setTransactionBatchingEnabled(true);
+                fm.beginTransaction().add(CONTAINER, fragment).commit();
+                fm.beginTransaction().add(CONTAINER, backStackFragment).addToBackStack(null)
+                        .commit();
+                fm.beginTransaction().remove(fragment).remove(backStackFragment).commit();
+                fm.executePendingTransactions();
+            }
+        });
+        assertEquals(0, fragment.mCreateViewCount);
+        assertFalse(fragment.isAdded());
+        assertEquals(Fragment.INITIALIZING, fragment.mState);
+        // A fragment which the back stack may add again is kept created
+        assertEquals(0, backStackFragment.mCreateViewCount);
+        assertFalse(backStackFragment.isAdded());
+        assertEquals(Fragment.CREATED, backStackFragment.mState);
+    }
+
+    @Test
+    public void testFinalStatesMatchUnbatchedExecution() throws Throwable {
+        final String unbatched = runTransactions(false);
+        final String batched = runTransactions(true);
+        assertEquals(unbatched, batched);
+    }
+
+    /**
+     * Runs the same transactions on new fragments, and returns the final state of each
+     * fragment.
+     */
+    private String runTransactions(final boolean batchingEnabled) throws Throwable {
+        final FragmentManager fm = getFragmentManager();
+        final CountingFragment[] fragments = new CountingFragment[4];
+        for (int i = 0; i < fragments.length; i++) {
+            fragments[i] = new CountingFragment();
+        }
+        final String[] states = new String[fragments.length];
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fm.setTransactionBatchingEnabled(batchingEnabled);
+                fm.beginTransaction().add(CONTAINER, fragments[0]).add(CONTAINER, fragments[1])
+                        .commit();
+                fm.beginTransaction().replace(CONTAINER, fragments[2]).addToBackStack(null)
+                        .commit();
+                fm.beginTransaction().add(fragments[3], "headless").hide(fragments[2])
+                        .commit();
+                fm.beginTransaction().detach(fragments[3]).show(fragments[2]).commit();
+                fm.beginTransaction().attach(fragments[3]).commit();
+                fm.executePendingTransactions();
+                for (int i = 0; i < fragments.length; i++) {
+                    states[i] = describe(fragments[i]);
+                }
+
+                // Leave no fragments behind for the next run
+                fm.popBackStackImmediate();
+                fm.beginTransaction().remove(fragments[0]).remove(fragments[1])
+                        .remove(fragments[3]).commit();
+                fm.executePendingTransactions();
+            }
+        });
+        return Arrays.toString(states);
+    }
+
+    private static String describe(CountingFragment fragment) {
+        return "state=" + fragment.mState + " added=" + fragment.isAdded()
+                + " hidden=" + fragment.isHidden() + " detached=" + fragment.isDetached()
+                + " hasView=" + (fragment.getView() != null);
+    }
+
+    @Test
+    public void testPopBackStackAfterBatch() throws Throwable {
+        final FragmentManager fm = getFragmentManager();
+        final CountingFragment first = new CountingFragment();
+        final CountingFragment second = new CountingFragment();
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fm.setTransactionBatchingEnabled(true);
+                fm.beginTransaction().add(CONTAINER, first).commit();
+                fm.beginTransaction().replace(CONTAINER, second).addToBackStack(null).commit();
+                fm.executePendingTransactions();
+            }
+        });
+        assertEquals(0, first.mCreateViewCount);
+        assertEquals(Fragment.CREATED, first.mState);
+        assertEquals(Fragment.RESUMED, second.mState);
+        assertEquals(1, fm.getBackStackEntryCount());
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(fm.popBackStackImmediate());
+            }
+        });
+        assertEquals(0, fm.getBackStackEntryCount());
+        assertEquals(1, first.mCreateViewCount);
+        assertEquals(Fragment.RESUMED, first.mState);
+        assertTrue(first.isAdded());
+        assertFalse(second.isAdded());
+        assertEquals(Fragment.INITIALIZING, second.mState);
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fm.beginTransaction().remove(first).commit();
+                fm.executePendingTransactions();
+            }
+        });
+    }
+
+    @Test
+    public void testTransitionAfterDeferredTransaction() throws Throwable {
+        if (Build.VERSION.SDK_INT < 21) {
+            // Fragment transitions are only supported from Lollipop on
+            return;
+        }
+        final FragmentManager fm = getFragmentManager();
+        final CountingFragment first = new CountingFragment();
+        final CountingFragment second = new CountingFragment();
+        second.setEnterTransition(new Fade());
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fm.setTransactionBatchingEnabled(true);
+                fm.beginTransaction().add(CONTAINER, first).commit();
+                fm.beginTransaction().replace(CONTAINER, second).commit();
+                fm.executePendingTransactions();
+            }
+        });
+        // The replaced fragment was given its view before the transition began, as it is
+        // without batching
+        assertEquals(1, first.mCreateViewCount);
+        assertFalse(first.isAdded());
+        assertEquals(Fragment.INITIALIZING, first.mState);
+        assertEquals(1, second.mCreateViewCount);
+        assertEquals(Fragment.RESUMED, second.mState);
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fm.beginTransaction().remove(second).commit();
+                fm.executePendingTransactions();
+            }
+        });
+    }
+
+    public static class CountingFragment extends Fragment {
+        int mCreateViewCount;
+
+        @Override
+        public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                Bundle savedInstanceState) {
+            mCreateViewCount++;
+            return new FrameLayout(inflater.getContext());
+        }
+    }
+}
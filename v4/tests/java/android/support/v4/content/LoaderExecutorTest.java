@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.content;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link LoaderExecutor}
+ */
+public class LoaderExecutorTest extends AndroidTestCase {
+    private LoaderExecutor mExecutor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mExecutor = new LoaderExecutor(1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testPriorityOrder() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+        final List<String> order = new ArrayList<String>();
+
+        // Occupy the only thread so that everything below is queued.
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+        });
+        mExecutor.execute(new Recorder("background", order, done),
+                LoaderExecutor.PRIORITY_BACKGROUND);
+        mExecutor.execute(new Recorder("default1", order, done));
+        mExecutor.execute(new Recorder("foreground", order, done),
+                LoaderExecutor.PRIORITY_FOREGROUND);
+        mExecutor.execute(new Recorder("default2", order, done));
+        assertEquals(4, mExecutor.getQueueDepth());
+
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (order) {
+            assertEquals("foreground", order.get(0));
+            assertEquals("default1", order.get(1));
+            assertEquals("default2", order.get(2));
+            assertEquals("background", order.get(3));
+        }
+        assertEquals(4, mExecutor.getMaxQueueDepth());
+        assertEquals(5, mExecutor.getStartedTaskCount());
+    }
+
+    public void testRemoveQueued() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> order = new ArrayList<String>();
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+        });
+        final Recorder removed = new Recorder("removed", order, done);
+        mExecutor.execute(removed);
+        mExecutor.execute(new Recorder("kept", order, done));
+
+        assertTrue(mExecutor.remove(removed));
+        assertFalse(mExecutor.remove(removed));
+        assertEquals(1, mExecutor.getRemovedTaskCount());
+
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (order) {
+            assertEquals(1, order.size());
+            assertEquals("kept", order.get(0));
+        }
+    }
+
+    private static class Recorder implements Runnable {
+        private final String mName;
+        private final List<String> mOrder;
+        private final CountDownLatch mDone;
+
+        Recorder(String name, List<String> order, CountDownLatch done) {
+            mName = name;
+            mOrder = order;
+            mDone = done;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mOrder) {
+                mOrder.add(mName);
+            }
+            mDone.countDown();
+        }
+    }
+}
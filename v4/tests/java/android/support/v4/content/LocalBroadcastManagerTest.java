@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.content;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link LocalBroadcastManager}
+ */
+public class LocalBroadcastManagerTest extends InstrumentationTestCase {
+    private static final String ACTION_A = "android.support.v4.content.test.A";
+    private static final String ACTION_B = "android.support.v4.content.test.B";
+    private static final String ACTION_UNMATCHED = "android.support.v4.content.test.UNMATCHED";
+    private static final String EXTRA_INDEX = "index";
+
+    private LocalBroadcastManager mManager;
+    private final List<String> mReceived = Collections.synchronizedList(new ArrayList<String>());
+    private final List<BroadcastReceiver> mRegistered = new ArrayList<BroadcastReceiver>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mManager = LocalBroadcastManager.getInstance(getInstrumentation().getTargetContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        // The manager is a process wide singleton
+        for (BroadcastReceiver receiver : mRegistered) {
+            mManager.unregisterReceiver(receiver);
+        }
+        super.tearDown();
+    }
+
+    public void testSendBroadcastsDeliversInOrder() {
+        register(new Recorder("a"), ACTION_A);
+        register(new Recorder("b"), ACTION_B);
+
+        assertTrue(mManager.sendBroadcasts(Arrays.asList(intent(ACTION_A, 1), intent(ACTION_B, 2),
+                intent(ACTION_UNMATCHED, 3), intent(ACTION_A, 4))));
+        getInstrumentation().waitForIdleSync();
+
+        assertEquals(Arrays.asList("a:1", "b:2", "a:4"), mReceived);
+    }
+
+    public void testSendBroadcastsWithoutReceivers() {
+        register(new Recorder("a"), ACTION_A);
+
+        assertFalse(mManager.sendBroadcasts(new ArrayList<Intent>()));
+        assertFalse(mManager.sendBroadcasts(Arrays.asList(intent(ACTION_UNMATCHED, 1),
+                intent(ACTION_B, 2))));
+        getInstrumentation().waitForIdleSync();
+
+        assertTrue(mReceived.isEmpty());
+    }
+
+    public void testUnregisterDuringDispatch() {
+        final Recorder other = new Recorder("other");
+        register(new Recorder("self") {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                super.onReceive(context, intent);
+                mManager.unregisterReceiver(this);
+            }
+        }, ACTION_A);
+        register(other, ACTION_A);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mManager.sendBroadcastSync(intent(ACTION_A, 1));
+                mManager.sendBroadcastSync(intent(ACTION_A, 2));
+            }
+        });
+        assertEquals(Arrays.asList("self:1", "other:1", "other:2"), mReceived);
+
+        mManager.unregisterReceiver(other);
+        assertFalse(mManager.sendBroadcast(intent(ACTION_A, 3)));
+    }
+
+    public void testRegisterDuringDispatch() {
+        final Recorder added = new Recorder("added");
+        register(new Recorder("first") {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                super.onReceive(context, intent);
+                if (!mRegistered.contains(added)) {
+                    register(added, ACTION_A);
+                }
+            }
+        }, ACTION_A);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Only receivers registered when the broadcast is sent receive it
+                mManager.sendBroadcastSync(intent(ACTION_A, 1));
+                mManager.sendBroadcastSync(intent(ACTION_A, 2));
+            }
+        });
+        assertEquals(Arrays.asList("first:1", "first:2", "added:2"), mReceived);
+    }
+
+    public void testSendBroadcastSyncFromReceiver() {
+        register(new Recorder("outer") {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                super.onReceive(context, intent);
+                mManager.sendBroadcastSync(intent(ACTION_B, 2));
+            }
+        }, ACTION_A);
+        register(new Recorder("inner"), ACTION_B);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mManager.sendBroadcastSync(intent(ACTION_A, 1));
+            }
+        });
+        assertEquals(Arrays.asList("outer:1", "inner:2"), mReceived);
+
+        // The queue is still usable once the nested dispatch is done
+        assertTrue(mManager.sendBroadcasts(Arrays.asList(intent(ACTION_B, 3))));
+        getInstrumentation().waitForIdleSync();
+        assertEquals(Arrays.asList("outer:1", "inner:2", "inner:3"), mReceived);
+    }
+
+    private void register(BroadcastReceiver receiver, String action) {
+        mRegistered.add(receiver);
+        mManager.registerReceiver(receiver, new IntentFilter(action));
+    }
+
+    private static Intent intent(String action, int index) {
+        return new Intent(action).putExtra(EXTRA_INDEX, index);
+    }
+
+    private class Recorder extends BroadcastReceiver {
+        private final String mName;
+
+        Recorder(String name) {
+            mName = name;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mReceived.add(mName + ":" + intent.getIntExtra(EXTRA_INDEX, -1));
+        }
+    }
+}
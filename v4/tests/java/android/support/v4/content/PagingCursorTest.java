@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.content;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.BaseColumns;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentResolver;
+
+/**
+ * Tests for {@link PagingCursor}
+ */
+public class PagingCursorTest extends AndroidTestCase {
+    private static final String AUTHORITY = "android.support.v4.content.pagingcursortest";
+    private static final Uri URI = Uri.parse("content://" + AUTHORITY + "/rows");
+    private static final String[] PROJECTION = new String[] { BaseColumns._ID, "name" };
+
+    private static final int LIMIT_APPLIED = 0;
+    private static final int LIMIT_REJECTED = 1;
+    private static final int LIMIT_IGNORED = 2;
+
+    private MockContentResolver mResolver;
+    private RowsProvider mProvider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mResolver = new MockContentResolver();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mProvider != null) {
+            mProvider.mDatabase.close();
+        }
+        super.tearDown();
+    }
+
+    private void addProvider(int rows, int limitMode) {
+        mProvider = new RowsProvider(rows, limitMode);
+        mProvider.attachInfo(getContext(), null);
+        mResolver.addProvider(AUTHORITY, mProvider);
+    }
+
+    private Cursor query(int pageSize, int maxResidentPages) {
+        return PagingCursor.query(mResolver, URI, PROJECTION, null, null, null, pageSize,
+                maxResidentPages, null);
+    }
+
+    public void testSinglePageIsReturnedDirectly() {
+        addProvider(5, LIMIT_APPLIED);
+        Cursor cursor = query(10, 4);
+        try {
+            assertFalse(cursor instanceof PagingCursor);
+            assertEquals(5, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testGetCount() {
+        addProvider(95, LIMIT_APPLIED);
+        Cursor cursor = query(10, 4);
+        try {
+            assertTrue(cursor instanceof PagingCursor);
+            assertEquals(95, cursor.getCount());
+            // Only the first page and the row count are queried up front
+            assertEquals(2, mProvider.mQueryCount);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testMoveAcrossPageBoundaries() {
+        addProvider(25, LIMIT_APPLIED);
+        Cursor cursor = query(10, 4);
+        try {
+            int expectedId = 1;
+            while (cursor.moveToNext()) {
+                assertEquals(expectedId, cursor.getInt(0));
+                assertEquals("row " + expectedId, cursor.getString(1));
+                if (Build.VERSION.SDK_INT >= 11) {
+                    assertEquals(Cursor.FIELD_TYPE_INTEGER, cursor.getType(0));
+                    assertEquals(Cursor.FIELD_TYPE_STRING, cursor.getType(1));
+                }
+                expectedId++;
+            }
+            assertEquals(26, expectedId);
+
+            // Moving backwards across a boundary reads the earlier page again
+            assertTrue(cursor.moveToPosition(10));
+            assertEquals(11, cursor.getInt(0));
+            assertTrue(cursor.moveToPrevious());
+            assertEquals(10, cursor.getInt(0));
+            assertFalse(cursor.moveToPosition(25));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testFarthestPageIsEvicted() {
+        addProvider(100, LIMIT_APPLIED);
+        PagingCursor cursor = (PagingCursor) query(10, 2);
+        try {
+            assertEquals(1, cursor.getResidentPageCount());
+            assertTrue(cursor.moveToPosition(15));
+            assertEquals(2, cursor.getResidentPageCount());
+            assertTrue(cursor.moveToPosition(25));
+            assertEquals(2, cursor.getResidentPageCount());
+
+            // Page 1 is still open, page 0 was evicted and must be queried again
+            int queries = mProvider.mQueryCount;
+            assertTrue(cursor.moveToPosition(19));
+            assertEquals(20, cursor.getInt(0));
+            assertEquals(queries, mProvider.mQueryCount);
+            assertTrue(cursor.moveToPosition(0));
+            assertEquals(1, cursor.getInt(0));
+            assertEquals(queries + 1, mProvider.mQueryCount);
+            assertEquals(2, cursor.getResidentPageCount());
+        } finally {
+            cursor.close();
+        }
+        assertEquals(0, cursor.getResidentPageCount());
+    }
+
+    public void testFallbackWhenLimitIsRejected() {
+        addProvider(100, LIMIT_REJECTED);
+        assertNull(query(10, 4));
+    }
+
+    public void testAllRowsAreReturnedDirectlyWhenLimitIsIgnored() {
+        addProvider(25, LIMIT_IGNORED);
+        Cursor cursor = query(10, 4);
+        try {
+            assertFalse(cursor instanceof PagingCursor);
+            assertEquals(25, cursor.getCount());
+            assertEquals(1, mProvider.mQueryCount);
+            int expectedId = 1;
+            while (cursor.moveToNext()) {
+                assertEquals(expectedId, cursor.getInt(0));
+                expectedId++;
+            }
+            assertEquals(26, expectedId);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testFullPageFromProviderIgnoringLimit() {
+        // Exactly one page worth of rows cannot be told apart from a paged result
+        addProvider(10, LIMIT_IGNORED);
+        Cursor cursor = query(10, 4);
+        try {
+            assertEquals(10, cursor.getCount());
+            assertTrue(cursor.moveToPosition(9));
+            assertEquals(10, cursor.getInt(0));
+            assertFalse(cursor.moveToNext());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Serves rows with ids 1 to n and names "row <id>" from an in-memory database.
+     */
+    private static class RowsProvider extends ContentProvider {
+        final SQLiteDatabase mDatabase;
+        final int mLimitMode;
+        int mQueryCount;
+
+        RowsProvider(int rows, int limitMode) {
+            mDatabase = SQLiteDatabase.create(null);
+            mDatabase.execSQL("CREATE TABLE rows (_id INTEGER PRIMARY KEY, name TEXT)");
+            for (int i = 1; i <= rows; i++) {
+                ContentValues values = new ContentValues();
+                values.put(BaseColumns._ID, i);
+                values.put("name", "row " + i);
+                mDatabase.insert("rows", null, values);
+            }
+            mLimitMode = limitMode;
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                String[] selectionArgs, String sortOrder) {
+            final int limit = sortOrder != null ? sortOrder.indexOf(" LIMIT ") : -1;
+            if (limit >= 0) {
+                if (mLimitMode == LIMIT_REJECTED) {
+                    throw new IllegalArgumentException("Invalid sort order " + sortOrder);
+                } else if (mLimitMode == LIMIT_IGNORED) {
+                    sortOrder = sortOrder.substring(0, limit);
+                }
+            }
+            mQueryCount++;
+            return mDatabase.query("rows", projection, selection, selectionArgs, null, null,
+                    sortOrder);
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection,
+                String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.graphics;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Random;
+
+/**
+ * Compares the bulk {@link ColorUtils} methods with calling the scalar methods in a loop, for
+ * batches of different sizes.  Both must give the same results; timings are logged.
+ */
+public class ColorUtilsBenchmark extends AndroidTestCase {
+    private static final String TAG = "ColorUtilsBenchmark";
+
+    private static final int[] BATCH_SIZES = new int[] { 16, 1024, 65536 };
+    private static final int TOTAL_COLORS = 1 << 20;
+    private static final int BACKGROUND = 0xFFFAFAFA;
+
+    public void testThroughput() {
+        final Random random = new Random(0);
+        for (int batchSize : BATCH_SIZES) {
+            final int[] colors = new int[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                colors[i] = random.nextInt();
+            }
+            // Luminance, contrast and HSL of each color
+            final float[] scalarOut = new float[5 * batchSize];
+            final float[] bulkOut = new float[5 * batchSize];
+            final int iterations = TOTAL_COLORS / batchSize;
+
+            // Warm up both versions before measuring.
+            runScalar(colors, scalarOut, iterations);
+            runBulk(colors, bulkOut, iterations);
+            for (int i = 0; i < scalarOut.length; i++) {
+                assertEquals("batch=" + batchSize + " index=" + i, scalarOut[i], bulkOut[i], 0f);
+            }
+
+            final long scalar = runScalar(colors, scalarOut, iterations);
+            final long bulk = runBulk(colors, bulkOut, iterations);
+            Log.i(TAG, String.format("batch=%5d scalar=%4d ns/color bulk=%4d ns/color",
+                    batchSize, scalar / TOTAL_COLORS, bulk / TOTAL_COLORS));
+        }
+    }
+
+    private static long runScalar(int[] colors, float[] out, int iterations) {
+        final float[] hsl = new float[3];
+        final int count = colors.length;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (int j = 0; j < count; j++) {
+                out[j] = (float) ColorUtils.calculateLuminance(colors[j]);
+            }
+            for (int j = 0; j < count; j++) {
+                out[count + j] = (float) ColorUtils.calculateContrast(colors[j], BACKGROUND);
+            }
+            for (int j = 0; j < count; j++) {
+                ColorUtils.colorToHSL(colors[j], hsl);
+                System.arraycopy(hsl, 0, out, 2 * count + 3 * j, 3);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runBulk(int[] colors, float[] out, int iterations) {
+        final int count = colors.length;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ColorUtils.calculateLuminance(colors, 0, out, 0, count);
+            ColorUtils.calculateContrast(colors, 0, BACKGROUND, out, count, count);
+            ColorUtils.colorToHSL(colors, 0, out, 2 * count, count);
+        }
+        return System.nanoTime() - start;
+    }
+}
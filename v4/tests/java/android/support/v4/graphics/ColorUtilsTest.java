@@ -21,6 +21,7 @@ import android.test.AndroidTestCase;
 
 import java.lang.Integer;
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * @hide
@@ -95,6 +96,73 @@ public class ColorUtilsTest extends AndroidTestCase {
         }
     }
 
+    public void testBulkMatchesScalar() {
+        // Large enough to be split across threads on multi-core devices.
+        final int count = 20000;
+        final int offset = 3;
+        final Random random = new Random(42);
+        final int[] colors = new int[count + offset];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt();
+        }
+        final float[] luminance = new float[count + offset];
+        final float[] contrast = new float[count + offset];
+        final float[] hsls = new float[3 * count + offset];
+
+        ColorUtils.calculateLuminance(colors, offset, luminance, offset, count);
+        ColorUtils.calculateContrast(colors, offset, 0xFF2196F3, contrast, offset, count);
+        ColorUtils.colorToHSL(colors, offset, hsls, offset, count);
+
+        final float[] hsl = new float[3];
+        for (int i = 0; i < count; i++) {
+            final int color = colors[offset + i];
+            assertEquals((float) ColorUtils.calculateLuminance(color), luminance[offset + i]);
+            assertEquals((float) ColorUtils.calculateContrast(color, 0xFF2196F3),
+                    contrast[offset + i]);
+            ColorUtils.colorToHSL(color, hsl);
+            assertEquals(hsl[0], hsls[offset + 3 * i]);
+            assertEquals(hsl[1], hsls[offset + 3 * i + 1]);
+            assertEquals(hsl[2], hsls[offset + 3 * i + 2]);
+        }
+    }
+
+    public void testBulkLuminanceMatchesFormula() {
+        for (TestEntry entry : sEntryList) {
+            final int color = entry.rgb;
+            double red = Color.red(color) / 255d;
+            red = red < 0.03928 ? red / 12.92 : Math.pow((red + 0.055) / 1.055, 2.4);
+            double green = Color.green(color) / 255d;
+            green = green < 0.03928 ? green / 12.92 : Math.pow((green + 0.055) / 1.055, 2.4);
+            double blue = Color.blue(color) / 255d;
+            blue = blue < 0.03928 ? blue / 12.92 : Math.pow((blue + 0.055) / 1.055, 2.4);
+            final double expected = (0.2126 * red) + (0.7152 * green) + (0.0722 * blue);
+
+            assertEquals(expected, ColorUtils.calculateLuminance(color), 1e-12);
+            final float[] luminance = new float[1];
+            ColorUtils.calculateLuminance(new int[] { color }, 0, luminance, 0, 1);
+            assertEquals((float) expected, luminance[0]);
+        }
+    }
+
+    public void testBulkBounds() {
+        final int[] colors = new int[4];
+        try {
+            ColorUtils.colorToHSL(colors, 0, new float[11], 0, 4);
+            fail("Expected ArrayIndexOutOfBoundsException");
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+        try {
+            ColorUtils.calculateLuminance(colors, 1, new float[4], 0, 4);
+            fail("Expected ArrayIndexOutOfBoundsException");
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+        try {
+            ColorUtils.calculateContrast(colors, 0, 0x80FFFFFF, new float[4], 0, 4);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
     private static void testMinAlpha(String title, int color, float expected, int actual) {
         final String message = title + " text within error for #" + Integer.toHexString(color);
         if (expected < 0) {
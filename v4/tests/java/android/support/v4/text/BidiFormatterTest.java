@@ -176,4 +176,44 @@ public class BidiFormatterTest extends AndroidTestCase {
                 LRE + HE + EN + HE + PDF,
                 RTL_FMT_EXIT_RESET.unicodeWrap(HE + EN + HE, TextDirectionHeuristicsCompat.LTR, false));
     }
+
+    public void testUnicodeWrapToBuilder() {
+        final StringBuilder out = new StringBuilder("x");
+        assertSame(out, LTR_FMT.unicodeWrap(null, out));
+        assertEquals("x", out.toString());
+
+        LTR_FMT.unicodeWrap(EN, out);
+        LTR_FMT.unicodeWrap("." + HE + ".", out);
+        RTL_FMT_EXIT_RESET.unicodeWrap(HE + EN, TextDirectionHeuristicsCompat.RTL, true, out);
+        assertEquals("x" + EN + LRM + RLE + "." + HE + "." + PDF + LRM + HE + EN + RLM,
+                out.toString());
+    }
+
+    public void testUnicodeWrapReturnsSameStringIfUnchanged() {
+        final String str = "." + EN + ".";
+        assertSame(str, LTR_FMT.unicodeWrap(str));
+        assertSame(HE, RTL_FMT.unicodeWrap(HE));
+    }
+
+    public void testDirectionCache() {
+        final BidiFormatter ltrCached =
+                new BidiFormatter.Builder(false).setDirectionCacheSize(2).build();
+        final BidiFormatter rtlCached =
+                new BidiFormatter.Builder(true).setDirectionCacheSize(2).build();
+        assertNotSame(LTR_FMT, ltrCached);
+
+        final String[] strings = new String[] {
+                EN, HE, "." + HE + ".", "." + EN + ".", HE + EN, EN + HE + EN, "", "."
+        };
+        // Format every string twice so that the second time is served from the cache.
+        for (int i = 0; i < 2; i++) {
+            for (String str : strings) {
+                assertEquals(LTR_FMT.unicodeWrap(str), ltrCached.unicodeWrap(str));
+                assertEquals(RTL_FMT.unicodeWrap(str), rtlCached.unicodeWrap(str));
+                assertEquals(LTR_FMT.isRtl(str), ltrCached.isRtl(str));
+                assertEquals(LTR_FMT.unicodeWrap(str, TextDirectionHeuristicsCompat.RTL),
+                        ltrCached.unicodeWrap(str, TextDirectionHeuristicsCompat.RTL));
+            }
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import android.test.AndroidTestCase;
+import android.test.MoreAsserts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Tests for {@link AtomicFileWriter}
+ */
+public class AtomicFileWriterTest extends AndroidTestCase {
+    private AtomicFile mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new AtomicFile(new File(getContext().getFilesDir(), "writer.test"));
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    public void testCoalescedWrites() throws Exception {
+        // A long delay ensures that all writes are still pending when flushing.
+        final AtomicFileWriter writer = new AtomicFileWriter(mFile, 10000);
+        writer.write(new byte[] { 1 });
+        writer.write(new byte[] { 1, 2 });
+        writer.write(new byte[] { 1, 2, 3 });
+        writer.flush();
+
+        MoreAsserts.assertEquals(new byte[] { 1, 2, 3 }, mFile.readFully());
+        assertEquals(1, writer.getWriteCount());
+        assertEquals(2, writer.getCoalescedCount());
+        assertEquals(3, writer.getBytesWritten());
+    }
+
+    public void testFailedWriteKeepsPreviousData() throws Exception {
+        final AtomicFileWriter writer = new AtomicFileWriter(mFile, 0);
+        writer.write(new byte[] { 4, 5 });
+        writer.flush();
+
+        writer.write(new AtomicFileWriter.Snapshot() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(6);
+                throw new IOException("failed");
+            }
+        });
+        writer.flush();
+
+        MoreAsserts.assertEquals(new byte[] { 4, 5 }, mFile.readFully());
+        assertEquals(1, writer.getWriteCount());
+        assertEquals(1, writer.getFailedWriteCount());
+    }
+
+    public void testAppendsFollowWrites() throws Exception {
+        final AtomicFileWriter writer = new AtomicFileWriter(mFile, 10000);
+        writer.write(new byte[] { 1 });
+        writer.append(new byte[] { 2 });
+        writer.append(new byte[] { 3, 4 });
+        writer.flush();
+        MoreAsserts.assertEquals(new byte[] { 1, 2, 3, 4 }, mFile.readFully());
+
+        writer.append(new byte[] { 5 });
+        writer.flush();
+        MoreAsserts.assertEquals(new byte[] { 1, 2, 3, 4, 5 }, mFile.readFully());
+        assertEquals(3, writer.getWriteCount());
+        assertEquals(5, writer.getBytesWritten());
+    }
+
+    public void testWriteReplacesPendingAppends() throws Exception {
+        final AtomicFileWriter writer = new AtomicFileWriter(mFile, 10000);
+        writer.write(new byte[] { 1 });
+        writer.flush();
+
+        writer.append(new byte[] { 2 });
+        writer.append(new byte[] { 3 });
+        writer.write(new byte[] { 4 });
+        writer.append(new byte[] { 5 });
+        writer.flush();
+
+        MoreAsserts.assertEquals(new byte[] { 4, 5 }, mFile.readFully());
+        assertEquals(2, writer.getCoalescedCount());
+    }
+
+    public void testAppendsAfterFailedWriteAreDropped() throws Exception {
+        final AtomicFileWriter writer = new AtomicFileWriter(mFile, 10000);
+        writer.write(new byte[] { 1 });
+        writer.flush();
+
+        writer.write(new AtomicFileWriter.Snapshot() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                throw new IOException("failed");
+            }
+        });
+        writer.append(new byte[] { 2 });
+        writer.flush();
+
+        MoreAsserts.assertEquals(new byte[] { 1 }, mFile.readFully());
+        assertEquals(1, writer.getFailedWriteCount());
+    }
+
+    public void testAppendRollsBackIncompleteWrite() throws Exception {
+        final AtomicFileWriter writer = new AtomicFileWriter(mFile, 0);
+        writer.write(new byte[] { 1, 2 });
+        writer.flush();
+
+        // As if the process died while replacing the file
+        final FileOutputStream fos = mFile.startWrite();
+        fos.write(9);
+        fos.close();
+
+        writer.append(new byte[] { 3 });
+        writer.flush();
+        MoreAsserts.assertEquals(new byte[] { 1, 2, 3 }, mFile.readFully());
+    }
+}
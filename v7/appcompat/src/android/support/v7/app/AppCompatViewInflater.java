@@ -21,9 +21,9 @@ import android.content.ContextWrapper;
 import android.content.res.TypedArray;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.v4.util.ArrayMap;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.appcompat.R;
+import android.support.v7.view.ConstructorCache;
 import android.support.v7.view.ContextThemeWrapper;
 import android.support.v7.widget.AppCompatAutoCompleteTextView;
 import android.support.v7.widget.AppCompatButton;
@@ -46,7 +46,6 @@ import android.view.View;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Map;
 
 /**
  * This class is responsible for manually inflating our tinted widgets which are used on devices
@@ -64,9 +63,6 @@ class AppCompatViewInflater {
 
     private static final String LOG_TAG = "AppCompatViewInflater";
 
-    private static final Map<String, Constructor<? extends View>> sConstructorMap
-            = new ArrayMap<>();
-
     private final Object[] mConstructorArgs = new Object[2];
 
     public final View createView(View parent, final String name, @NonNull Context context,
@@ -86,47 +82,55 @@ class AppCompatViewInflater {
 
         View view = null;
 
-        // We need to 'inject' our tint aware Views in place of the standard framework versions
-        switch (name) {
-            case "TextView":
-                view = new AppCompatTextView(context, attrs);
-                break;
-            case "ImageView":
-                view = new AppCompatImageView(context, attrs);
-                break;
-            case "Button":
-                view = new AppCompatButton(context, attrs);
-                break;
-            case "EditText":
-                view = new AppCompatEditText(context, attrs);
-                break;
-            case "Spinner":
-                view = new AppCompatSpinner(context, attrs);
-                break;
-            case "ImageButton":
-                view = new AppCompatImageButton(context, attrs);
-                break;
-            case "CheckBox":
-                view = new AppCompatCheckBox(context, attrs);
-                break;
-            case "RadioButton":
-                view = new AppCompatRadioButton(context, attrs);
-                break;
-            case "CheckedTextView":
-                view = new AppCompatCheckedTextView(context, attrs);
-                break;
-            case "AutoCompleteTextView":
-                view = new AppCompatAutoCompleteTextView(context, attrs);
-                break;
-            case "MultiAutoCompleteTextView":
-                view = new AppCompatMultiAutoCompleteTextView(context, attrs);
-                break;
-            case "RatingBar":
-                view = new AppCompatRatingBar(context, attrs);
-                break;
-            case "SeekBar":
-                view = new AppCompatSeekBar(context, attrs);
-                break;
+        // Registered factories come first, they create views without any reflection
+        final ViewFactoryRegistry.ViewFactory factory = ViewFactoryRegistry.getFactory(name);
+        if (factory != null) {
+            view = factory.createView(context, attrs);
+        }
+
+        if (view == null) {
+            // We need to 'inject' our tint aware Views in place of the standard framework versions
+            switch (name) {
+                case "TextView":
+                    view = new AppCompatTextView(context, attrs);
+                    break;
+                case "ImageView":
+                    view = new AppCompatImageView(context, attrs);
+                    break;
+                case "Button":
+                    view = new AppCompatButton(context, attrs);
+                    break;
+                case "EditText":
+                    view = new AppCompatEditText(context, attrs);
+                    break;
+                case "Spinner":
+                    view = new AppCompatSpinner(context, attrs);
+                    break;
+                case "ImageButton":
+                    view = new AppCompatImageButton(context, attrs);
+                    break;
+                case "CheckBox":
+                    view = new AppCompatCheckBox(context, attrs);
+                    break;
+                case "RadioButton":
+                    view = new AppCompatRadioButton(context, attrs);
+                    break;
+                case "CheckedTextView":
+                    view = new AppCompatCheckedTextView(context, attrs);
+                    break;
+                case "AutoCompleteTextView":
+                    view = new AppCompatAutoCompleteTextView(context, attrs);
+                    break;
+                case "MultiAutoCompleteTextView":
+                    view = new AppCompatMultiAutoCompleteTextView(context, attrs);
+                    break;
+                case "RatingBar":
+                    view = new AppCompatRatingBar(context, attrs);
+                    break;
+                case "SeekBar":
+                    view = new AppCompatSeekBar(context, attrs);
+                    break;
+            }
         }
 
         if (view == null && originalContext != context) {
@@ -193,7 +197,8 @@ class AppCompatViewInflater {
 
     private View createView(Context context, String name, String prefix)
             throws ClassNotFoundException, InflateException {
-        Constructor<? extends View> constructor = sConstructorMap.get(name);
+        Constructor<? extends View> constructor =
+                ConstructorCache.get(name, View.class, sConstructorSignature);
 
         try {
             if (constructor == null) {
@@ -202,9 +207,8 @@ class AppCompatViewInflater {
                         prefix != null ? (prefix + name) : name).asSubclass(View.class);
 
                 constructor = clazz.getConstructor(sConstructorSignature);
-                sConstructorMap.put(name, constructor);
+                ConstructorCache.put(name, sConstructorSignature, constructor);
             }
-            constructor.setAccessible(true);
             return constructor.newInstance(mConstructorArgs);
         } catch (Exception e) {
             // We do not want to catch these, lets return null and let the actual LayoutInflater
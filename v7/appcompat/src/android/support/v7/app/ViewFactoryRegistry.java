@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.app;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.ArrayMap;
+import android.util.AttributeSet;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.RelativeLayout;
+import android.widget.ScrollView;
+
+/**
+ * Registry of factories which create the views of given layout tags directly, instead of
+ * through reflection.
+ * <p>
+ * Layouts inflated through {@link AppCompatDelegate} consult the registered factories before
+ * anything else, so frequently inflated views, such as the app's own custom views, can skip
+ * the class loading and reflective constructor calls of {@link android.view.LayoutInflater}.
+ * Tags are matched exactly as they appear in the layout: framework views by their simple name,
+ * other views by their fully qualified class name.
+ * <p>
+ * The most common framework layouts are registered by default. Factories are usually
+ * registered once, for example from {@link android.app.Application#onCreate()}:
+ * <pre>
+ * ViewFactoryRegistry.registerFactory("com.example.widget.AvatarView",
+ *         new ViewFactoryRegistry.ViewFactory() {
+ *             public View createView(Context context, AttributeSet attrs) {
+ *                 return new AvatarView(context, attrs);
+ *             }
+ *         });
+ * </pre>
+ */
+public final class ViewFactoryRegistry {
+
+    /**
+     * Creates the view of a layout tag.
+     */
+    public interface ViewFactory {
+        /**
+         * Creates a view, the same way as its {@code (Context, AttributeSet)} constructor.
+         *
+         * @param context the context to create the view with, already themed for the view
+         * @param attrs the attributes of the tag
+         * @return the view, or null to leave inflation of the tag to the layout inflater
+         */
+        @Nullable
+        View createView(@NonNull Context context, @NonNull AttributeSet attrs);
+    }
+
+    private static final ArrayMap<String, ViewFactory> sFactories = new ArrayMap<>();
+
+    static {
+        sFactories.put("LinearLayout", new ViewFactory() {
+            @Override
+            public View createView(Context context, AttributeSet attrs) {
+                return new LinearLayout(context, attrs);
+            }
+        });
+        sFactories.put("FrameLayout", new ViewFactory() {
+            @Override
+            public View createView(Context context, AttributeSet attrs) {
+                return new FrameLayout(context, attrs);
+            }
+        });
+        sFactories.put("RelativeLayout", new ViewFactory() {
+            @Override
+            public View createView(Context context, AttributeSet attrs) {
+                return new RelativeLayout(context, attrs);
+            }
+        });
+        sFactories.put("ScrollView", new ViewFactory() {
+            @Override
+            public View createView(Context context, AttributeSet attrs) {
+                return new ScrollView(context, attrs);
+            }
+        });
+        sFactories.put("View", new ViewFactory() {
+            @Override
+            public View createView(Context context, AttributeSet attrs) {
+                return new View(context, attrs);
+            }
+        });
+    }
+
+    private ViewFactoryRegistry() {
+    }
+
+    /**
+     * Registers the factory creating the views of {@code name}, replacing any factory already
+     * registered for it, including the default ones.
+     *
+     * @param name the tag of the view in layouts
+     * @param factory the factory creating the view
+     */
+    public static void registerFactory(@NonNull String name, @NonNull ViewFactory factory) {
+        synchronized (sFactories) {
+            sFactories.put(name, factory);
+        }
+    }
+
+    /**
+     * Unregisters the factory creating the views of {@code name}, if any. The views are then
+     * created through reflection again.
+     *
+     * @param name the tag of the view in layouts
+     */
+    public static void unregisterFactory(@NonNull String name) {
+        synchronized (sFactories) {
+            sFactories.remove(name);
+        }
+    }
+
+    /**
+     * Returns the factory registered for {@code name}, or null.
+     */
+    @Nullable
+    public static ViewFactory getFactory(@NonNull String name) {
+        synchronized (sFactories) {
+            return sFactories.get(name);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.view;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Process wide cache of the constructors used by the inflaters which instantiate classes named
+ * in XML: views, action views and action providers of menus, and preferences.
+ * <p>
+ * Constructors are keyed by the name they were looked up with and their signature, so that
+ * inflaters looking up the same name with different signatures don't clash. Cached
+ * constructors are already made accessible.
+ *
+ * @hide
+ */
+public final class ConstructorCache {
+
+    private static final HashMap<Key, Constructor<?>> sConstructors = new HashMap<>();
+    // Reused for lookups, guarded by sConstructors
+    private static final Key sLookupKey = new Key();
+
+    private ConstructorCache() {
+    }
+
+    private static final class Key {
+        String mName;
+        Class<?>[] mSignature;
+
+        Key set(String name, Class<?>[] signature) {
+            mName = name;
+            mSignature = signature;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mName.equals(other.mName) && Arrays.equals(mSignature, other.mSignature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mName.hashCode() + Arrays.hashCode(mSignature);
+        }
+    }
+
+    /**
+     * Returns the constructor cached for {@code name} and {@code signature}, or null if there
+     * is none or it does not construct a {@code type}.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static <T> Constructor<? extends T> get(@NonNull String name, @NonNull Class<T> type,
+            @NonNull Class<?>[] signature) {
+        final Constructor<?> constructor;
+        synchronized (sConstructors) {
+            constructor = sConstructors.get(sLookupKey.set(name, signature));
+        }
+        if (constructor == null || !type.isAssignableFrom(constructor.getDeclaringClass())) {
+            return null;
+        }
+        return (Constructor<? extends T>) constructor;
+    }
+
+    /**
+     * Caches {@code constructor} for {@code name} and {@code signature}, making it accessible.
+     * The name does not have to be the name of the class, for instance inflaters cache the
+     * constructors of classes found in their default packages by the unqualified name.
+     */
+    public static void put(@NonNull String name, @NonNull Class<?>[] signature,
+            @NonNull Constructor<?> constructor) {
+        constructor.setAccessible(true);
+        synchronized (sConstructors) {
+            sConstructors.put(new Key().set(name, signature), constructor);
+        }
+    }
+
+    /**
+     * Returns the constructor of the class named {@code className} with the given signature,
+     * loading the class and caching the constructor on first use.
+     *
+     * @param classLoader the class loader to load the class with
+     * @param className the fully qualified name of the class
+     * @param type the class or interface that the loaded class must be assignable to
+     * @param signature the parameter types of the constructor
+     */
+    @NonNull
+    public static <T> Constructor<? extends T> getOrLoad(@NonNull ClassLoader classLoader,
+            @NonNull String className, @NonNull Class<T> type, @NonNull Class<?>[] signature)
+            throws ClassNotFoundException, NoSuchMethodException {
+        Constructor<? extends T> constructor = get(className, type, signature);
+        if (constructor == null) {
+            constructor = classLoader.loadClass(className).asSubclass(type)
+                    .getConstructor(signature);
+            put(className, signature, constructor);
+        }
+        return constructor;
+    }
+}
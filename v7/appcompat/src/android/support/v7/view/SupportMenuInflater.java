@@ -494,9 +494,9 @@ public class SupportMenuInflater extends MenuInflater {
         private <T> T newInstance(String className, Class<?>[] constructorSignature,
                 Object[] arguments) {
             try {
-                Class<?> clazz = mContext.getClassLoader().loadClass(className);
-                Constructor<?> constructor = clazz.getConstructor(constructorSignature);
-                constructor.setAccessible(true);
+                Constructor<?> constructor = ConstructorCache.getOrLoad(
+                        mContext.getClassLoader(), className, Object.class,
+                        constructorSignature);
                 return (T) constructor.newInstance(arguments);
             } catch (Exception e) {
                 Log.w(LOG_TAG, "Cannot instantiate class: " + className, e);
@@ -119,6 +119,10 @@ public abstract class BaseMenuPresenter implements MenuPresenter {
         }
     }
 
+    public void updateMenuItemView(MenuItemImpl item) {
+        updateMenuView(false);
+    }
+
     /**
      * Add an item view at the given index.
      *
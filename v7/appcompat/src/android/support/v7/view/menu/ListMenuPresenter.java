@@ -128,6 +128,11 @@ public class ListMenuPresenter implements MenuPresenter, AdapterView.OnItemClick
         if (mAdapter != null) mAdapter.notifyDataSetChanged();
     }
 
+    @Override
+    public void updateMenuItemView(MenuItemImpl item) {
+        updateMenuView(false);
+    }
+
     @Override
     public void setCallback(Callback cb) {
         mCallback = cb;
@@ -161,6 +161,13 @@ public class MenuBuilder implements SupportMenu {
 
     private boolean mItemsChangedWhileDispatchPrevented = false;
 
+    /**
+     * Items whose properties changed while dispatching was prevented. They are dispatched
+     * individually once dispatching resumes, unless the whole menu has to be updated anyway.
+     */
+    private ArrayList<MenuItemImpl> mItemChangesWhileDispatchPrevented =
+            new ArrayList<MenuItemImpl>();
+
     private boolean mOptionalIconsVisible = false;
 
     private boolean mIsClosing = false;
@@ -287,6 +294,21 @@ public class MenuBuilder implements SupportMenu {
         startDispatchingItemsChanged();
     }
 
+    private void dispatchPresenterItemUpdate(MenuItemImpl item) {
+        if (mPresenters.isEmpty()) return;
+
+        stopDispatchingItemsChanged();
+        for (WeakReference<MenuPresenter> ref : mPresenters) {
+            final MenuPresenter presenter = ref.get();
+            if (presenter == null) {
+                mPresenters.remove(ref);
+            } else {
+                presenter.updateMenuItemView(item);
+            }
+        }
+        startDispatchingItemsChanged();
+    }
+
     private boolean dispatchSubMenuSelected(SubMenuBuilder subMenu,
             MenuPresenter preferredPresenter) {
         if (mPresenters.isEmpty()) return false;
@@ -1033,6 +1055,22 @@ public class MenuBuilder implements SupportMenu {
         }
     }
 
+    /**
+     * Called by {@link MenuItemImpl} when one of its properties, such as its title, icon or
+     * checked state, has changed. Unlike {@link #onItemsChanged(boolean)} presenters only need
+     * to update the view of that item.
+     *
+     * @param item The item whose properties changed.
+     */
+    public void onItemChanged(MenuItemImpl item) {
+        if (!mPreventDispatchingItemsChanged) {
+            dispatchPresenterItemUpdate(item);
+        } else if (!mItemsChangedWhileDispatchPrevented
+                && !mItemChangesWhileDispatchPrevented.contains(item)) {
+            mItemChangesWhileDispatchPrevented.add(item);
+        }
+    }
+
     /**
      * Stop dispatching item changed events to presenters until
      * {@link #startDispatchingItemsChanged()} is called. Useful when
@@ -1042,6 +1080,7 @@ public class MenuBuilder implements SupportMenu {
         if (!mPreventDispatchingItemsChanged) {
             mPreventDispatchingItemsChanged = true;
             mItemsChangedWhileDispatchPrevented = false;
+            mItemChangesWhileDispatchPrevented.clear();
         }
     }
 
@@ -1050,7 +1089,18 @@ public class MenuBuilder implements SupportMenu {
 
         if (mItemsChangedWhileDispatchPrevented) {
             mItemsChangedWhileDispatchPrevented = false;
+            // The whole menu is updated, which covers the changed items too
+            mItemChangesWhileDispatchPrevented.clear();
             onItemsChanged(true);
+        } else if (!mItemChangesWhileDispatchPrevented.isEmpty()) {
+            // Dispatching each item stops and starts dispatching again, which clears the
+            // queue, so drain a copy of it
+            final ArrayList<MenuItemImpl> changedItems =
+                    new ArrayList<MenuItemImpl>(mItemChangesWhileDispatchPrevented);
+            mItemChangesWhileDispatchPrevented.clear();
+            for (int i = 0, size = changedItems.size(); i < size; i++) {
+                onItemChanged(changedItems.get(i));
+            }
         }
     }
 
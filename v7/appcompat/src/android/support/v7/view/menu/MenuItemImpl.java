@@ -187,7 +187,7 @@ public final class MenuItemImpl implements SupportMenuItem {
             mFlags &= ~ENABLED;
         }
 
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -245,7 +245,7 @@ public final class MenuItemImpl implements SupportMenuItem {
 
         mShortcutAlphabeticChar = Character.toLowerCase(alphaChar);
 
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -263,7 +263,7 @@ public final class MenuItemImpl implements SupportMenuItem {
 
         mShortcutNumericChar = numericChar;
 
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -273,7 +273,7 @@ public final class MenuItemImpl implements SupportMenuItem {
         mShortcutNumericChar = numericChar;
         mShortcutAlphabeticChar = Character.toLowerCase(alphaChar);
 
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -368,7 +368,7 @@ public final class MenuItemImpl implements SupportMenuItem {
     public MenuItem setTitle(CharSequence title) {
         mTitle = title;
 
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         if (mSubMenu != null) {
             mSubMenu.setHeaderTitle(title);
@@ -406,7 +406,7 @@ public final class MenuItemImpl implements SupportMenuItem {
             title = mTitle;
         }
 
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -432,7 +432,7 @@ public final class MenuItemImpl implements SupportMenuItem {
     public MenuItem setIcon(Drawable icon) {
         mIconResId = NO_ICON;
         mIconDrawable = icon;
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -443,7 +443,7 @@ public final class MenuItemImpl implements SupportMenuItem {
         mIconResId = iconResId;
 
         // If we have a view, we need to push the Drawable to them
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
 
         return this;
     }
@@ -458,7 +458,7 @@ public final class MenuItemImpl implements SupportMenuItem {
         final int oldFlags = mFlags;
         mFlags = (mFlags & ~CHECKABLE) | (checkable ? CHECKABLE : 0);
         if (oldFlags != mFlags) {
-            mMenu.onItemsChanged(false);
+            mMenu.onItemChanged(this);
         }
 
         return this;
@@ -494,7 +494,7 @@ public final class MenuItemImpl implements SupportMenuItem {
         final int oldFlags = mFlags;
         mFlags = (mFlags & ~CHECKED) | (checked ? CHECKED : 0);
         if (oldFlags != mFlags) {
-            mMenu.onItemsChanged(false);
+            mMenu.onItemChanged(this);
         }
     }
 
@@ -727,7 +727,7 @@ public final class MenuItemImpl implements SupportMenuItem {
 
     public void setActionViewExpanded(boolean isExpanded) {
         mIsActionViewExpanded = isExpanded;
-        mMenu.onItemsChanged(false);
+        mMenu.onItemChanged(this);
     }
 
     @Override
@@ -266,6 +266,11 @@ public class MenuPopupHelper implements AdapterView.OnItemClickListener, View.On
         }
     }
 
+    @Override
+    public void updateMenuItemView(MenuItemImpl item) {
+        updateMenuView(false);
+    }
+
     @Override
     public void setCallback(Callback cb) {
         mPresenterCallback = cb;
@@ -80,6 +80,15 @@ public interface MenuPresenter {
      */
     public void updateMenuView(boolean cleared);
 
+    /**
+     * Update the UI of a single menu item in response to a change of its properties, such as
+     * its title, icon or checked state. Called by MenuBuilder instead of
+     * {@link #updateMenuView(boolean)} when nothing else in the menu changed.
+     *
+     * @param item The item that changed
+     */
+    public void updateMenuItemView(MenuItemImpl item);
+
     /**
      * Set a callback object that will be notified of menu events
      * related to this specific presentation.
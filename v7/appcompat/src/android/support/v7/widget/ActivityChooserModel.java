@@ -18,7 +18,6 @@ package android.support.v7.widget;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlSerializer;
 
 import android.content.ComponentName;
 import android.content.Context;
@@ -27,14 +26,21 @@ import android.content.pm.ResolveInfo;
 import android.database.DataSetObservable;
 import android.os.AsyncTask;
 import android.support.v4.os.AsyncTaskCompat;
+import android.support.v4.util.AtomicFile;
+import android.support.v4.util.AtomicFileWriter;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Xml;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -52,6 +58,11 @@ import java.util.Map;
  * choice history the file can be omitted, thus the activities will be ordered
  * based on historical usage for the current session.
  * <p>
+ * The history is kept in a binary log to which each choice is appended, and which
+ * is rewritten only once it holds twice as many records as the history itself. The
+ * log is read on a background thread as soon as the model is created, so that the
+ * first query of the model usually does not have to wait for it.
+ * <p>
  * </p>
  * For each backing history file there is a singleton instance of this class. Thus,
  * several clients that specify the same history file will share the same model. Note
@@ -208,6 +219,43 @@ class ActivityChooserModel extends DataSetObservable {
      */
     private static final String HISTORY_FILE_EXTENSION = ".xml";
 
+    /**
+     * The extension of the history log, which replaces the extension of the history file.
+     */
+    private static final String HISTORY_LOG_FILE_EXTENSION = ".log";
+
+    /**
+     * Magic number at the start of the history log, "ACHL".
+     */
+    private static final int HISTORY_LOG_MAGIC = 0x4143484c;
+
+    /**
+     * Version of the history log format.
+     */
+    private static final int HISTORY_LOG_VERSION = 1;
+
+    /**
+     * The history log is compacted once it holds this many times more records than the
+     * history.
+     */
+    private static final int HISTORY_LOG_COMPACTION_FACTOR = 2;
+
+    /**
+     * Result of reading the history log: the log was read completely.
+     */
+    private static final int HISTORY_LOG_READ = 0;
+
+    /**
+     * Result of reading the history log: the end of the log is damaged.
+     */
+    private static final int HISTORY_LOG_DAMAGED = 1;
+
+    /**
+     * Result of reading the history log: the log has an unknown format, for example one
+     * written by a newer version of this class.
+     */
+    private static final int HISTORY_LOG_UNKNOWN = 2;
+
     /**
      * An invalid item index.
      */
@@ -249,6 +297,46 @@ class ActivityChooserModel extends DataSetObservable {
      */
     private final String mHistoryFileName;
 
+    /**
+     * The history log, or <code>null</code> if the model is not backed by a file.
+     */
+    private final AtomicFile mHistoryLogFile;
+
+    /**
+     * Writes the history log in the background, or <code>null</code> if the model is not
+     * backed by a file.
+     */
+    private final AtomicFileWriter mHistoryLogWriter;
+
+    /**
+     * Records read from the history log in the background, until they are merged
+     * into the historical records.
+     */
+    private List<HistoricalRecord> mLoadedHistoricalRecords;
+
+    /**
+     * The number of records in the history log, including those pruned from the history.
+     */
+    private int mHistoryLogRecordCount;
+
+    /**
+     * Flag whether the history log has an unknown format. Such a log is left untouched,
+     * so new records are kept for the current session only.
+     */
+    private boolean mHistoryLogUnknown;
+
+    /**
+     * Flag whether the history log holds the history read when the model was created, so
+     * that new records can be appended to it. Otherwise the next record starts a new log
+     * holding the whole history.
+     */
+    private boolean mHistoryLogWritten;
+
+    /**
+     * Incremented whenever the activities are reloaded.
+     */
+    private int mActivitiesGeneration;
+
     /**
      * The intent for which a activity is being chosen.
      */
@@ -265,33 +353,18 @@ class ActivityChooserModel extends DataSetObservable {
     private int mHistoryMaxSize = DEFAULT_HISTORY_MAX_LENGTH;
 
     /**
-     * Flag whether choice history can be read. In general many clients can
-     * share the same data model and {@link #readHistoricalDataIfNeeded()} may be called
-     * by arbitrary of them any number of times. Therefore, this class guarantees
-     * that the very first read succeeds and subsequent reads can be performed
-     * only after a call to {@link #persistHistoricalDataIfNeeded()} followed by change
-     * of the share records.
+     * Flag whether the history log has been read in the background. Until then
+     * the model waits for it before it can report any state that depends on the history.
      */
-    private boolean mCanReadHistoricalData = true;
+    private boolean mHistoricalRecordsLoaded;
 
     /**
-     * Flag whether the choice history was read. This is used to enforce that
-     * before calling {@link #persistHistoricalDataIfNeeded()} a call to
-     * {@link #persistHistoricalDataIfNeeded()} has been made. This aims to avoid a
-     * scenario in which a choice history file exits, it is not read yet and
-     * it is overwritten. Note that always all historical records are read in
-     * full and the file is rewritten. This is necessary since we need to
-     * purge old records that are outside of the sliding window of past choices.
+     * Flag whether the records read from the history log were merged into the historical
+     * records. This is used to enforce that the history log is appended to only after it
+     * has been read, so that records of a log which is not read yet are never dropped
+     * by a compaction.
      */
-    private boolean mReadShareHistoryCalled = false;
-
-    /**
-     * Flag whether the choice records have changed. In general many clients can
-     * share the same data model and {@link #persistHistoricalDataIfNeeded()} may be called
-     * by arbitrary of them any number of times. Therefore, this class guarantees
-     * that choice history will be persisted only if it has changed.
-     */
-    private boolean mHistoricalRecordsChanged = true;
+    private boolean mHistoricalRecordsMerged;
 
     /**
      * Flag whether to reload the activities for the current intent.
@@ -344,7 +417,7 @@ class ActivityChooserModel extends DataSetObservable {
      * @param context Context for loading resources.
      * @param historyFileName The history XML file.
      */
-    private ActivityChooserModel(Context context, String historyFileName) {
+    ActivityChooserModel(Context context, String historyFileName) {
         mContext = context.getApplicationContext();
         if (!TextUtils.isEmpty(historyFileName)
                 && !historyFileName.endsWith(HISTORY_FILE_EXTENSION)) {
@@ -352,6 +425,32 @@ class ActivityChooserModel extends DataSetObservable {
         } else {
             mHistoryFileName = historyFileName;
         }
+        if (!TextUtils.isEmpty(mHistoryFileName)) {
+            final String logFileName = mHistoryFileName.substring(0,
+                    mHistoryFileName.length() - HISTORY_FILE_EXTENSION.length())
+                    + HISTORY_LOG_FILE_EXTENSION;
+            mHistoryLogFile = new AtomicFile(mContext.getFileStreamPath(logFileName));
+            mHistoryLogWriter = new AtomicFileWriter(mHistoryLogFile);
+            AsyncTaskCompat.executeParallel(new LoadHistoryAsyncTask());
+        } else {
+            mHistoryLogFile = null;
+            mHistoryLogWriter = null;
+            mHistoricalRecordsLoaded = true;
+        }
+    }
+
+    /**
+     * Waits until the history log has been read and every choice made so far has been
+     * written to it.
+     * Use for testing only.  <b>Never</b> call this from a UI thread.
+     */
+    void flushHistoryLog() {
+        synchronized (mInstanceLock) {
+            waitForHistoricalRecords();
+        }
+        if (mHistoryLogWriter != null) {
+            mHistoryLogWriter.flush();
+        }
     }
 
     /**
@@ -555,25 +654,34 @@ class ActivityChooserModel extends DataSetObservable {
     }
 
     /**
-     * Persists the history data to the backing file if the latter
-     * was provided. Calling this method before a call to {@link #readHistoricalDataIfNeeded()}
-     * throws an exception. Calling this method more than one without choosing an
-     * activity has not effect.
+     * Persists a new historical record to the history log if the model is backed by a
+     * file. The record is appended to the log, unless there is no log yet or the log has
+     * grown to {@link #HISTORY_LOG_COMPACTION_FACTOR} times the size of the history, in
+     * which case the log is rewritten with the current history instead. Calling this method
+     * before a call to {@link #readHistoricalDataIfNeeded()} throws an exception.
+     *
+     * @param historicalRecord The record which was added.
      *
      * @throws IllegalStateException If this method is called before a call to
      *         {@link #readHistoricalDataIfNeeded()}.
      */
-    private void persistHistoricalDataIfNeeded() {
-        if (!mReadShareHistoryCalled) {
+    private void persistHistoricalRecord(HistoricalRecord historicalRecord) {
+        if (!mHistoricalRecordsMerged) {
             throw new IllegalStateException("No preceding call to #readHistoricalData");
         }
-        if (!mHistoricalRecordsChanged) {
+        if (mHistoryLogWriter == null || mHistoryLogUnknown) {
             return;
         }
-        mHistoricalRecordsChanged = false;
-        if (!TextUtils.isEmpty(mHistoryFileName)) {
-            AsyncTaskCompat.executeParallel(new PersistHistoryAsyncTask(),
-                    new ArrayList<HistoricalRecord>(mHistoricalRecords), mHistoryFileName);
+        mHistoryLogRecordCount++;
+        if (!mHistoryLogWritten || mHistoryLogRecordCount
+                > HISTORY_LOG_COMPACTION_FACTOR * mHistoricalRecords.size()) {
+            final List<HistoricalRecord> historicalRecords =
+                    new ArrayList<HistoricalRecord>(mHistoricalRecords);
+            mHistoryLogRecordCount = historicalRecords.size();
+            mHistoryLogWritten = true;
+            mHistoryLogWriter.write(new HistoryLogSnapshot(historicalRecords));
+        } else {
+            mHistoryLogWriter.append(new HistoryLogSnapshot(historicalRecord));
         }
     }
 
@@ -687,6 +795,7 @@ class ActivityChooserModel extends DataSetObservable {
     private boolean loadActivitiesIfNeeded() {
         if (mReloadActivities && mIntent != null) {
             mReloadActivities = false;
+            mActivitiesGeneration++;
             mActivities.clear();
             List<ResolveInfo> resolveInfos = mContext.getPackageManager()
                     .queryIntentActivities(mIntent, 0);
@@ -701,21 +810,42 @@ class ActivityChooserModel extends DataSetObservable {
     }
 
     /**
-     * Reads the historical data if necessary which is it has
-     * changed, there is a history file, and there is not persist
-     * in progress.
+     * Reads the historical data if necessary which is if the records read from
+     * the history log have not been merged into the history yet. Waits for the
+     * history log to be read if it has not been read yet.
      *
      * @return Whether reading was performed.
      */
     private boolean readHistoricalDataIfNeeded() {
-        if (mCanReadHistoricalData && mHistoricalRecordsChanged &&
-                !TextUtils.isEmpty(mHistoryFileName)) {
-            mCanReadHistoricalData = false;
-            mReadShareHistoryCalled = true;
-            readHistoricalDataImpl();
-            return true;
+        if (mHistoricalRecordsMerged) {
+            return false;
+        }
+        waitForHistoricalRecords();
+        mHistoricalRecordsMerged = true;
+        if (mLoadedHistoricalRecords == null) {
+            return false;
+        }
+        mHistoricalRecords.addAll(0, mLoadedHistoricalRecords);
+        mLoadedHistoricalRecords = null;
+        return true;
+    }
+
+    /**
+     * Waits until the history log has been read in the background. Called with the
+     * instance lock held.
+     */
+    private void waitForHistoricalRecords() {
+        boolean interrupted = false;
+        while (!mHistoricalRecordsLoaded) {
+            try {
+                mInstanceLock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
-        return false;
     }
 
     /**
@@ -727,9 +857,8 @@ class ActivityChooserModel extends DataSetObservable {
     private boolean addHisoricalRecord(HistoricalRecord historicalRecord) {
         final boolean added = mHistoricalRecords.add(historicalRecord);
         if (added) {
-            mHistoricalRecordsChanged = true;
             pruneExcessiveHistoricalRecordsIfNeeded();
-            persistHistoricalDataIfNeeded();
+            persistHistoricalRecord(historicalRecord);
             sortActivitiesIfNeeded();
             notifyChanged();
         }
@@ -744,7 +873,6 @@ class ActivityChooserModel extends DataSetObservable {
         if (pruneCount <= 0) {
             return;
         }
-        mHistoricalRecordsChanged = true;
         for (int i = 0; i < pruneCount; i++) {
             HistoricalRecord prunedRecord = mHistoricalRecords.remove(0);
             if (DEBUG) {
@@ -911,15 +1039,92 @@ class ActivityChooserModel extends DataSetObservable {
 
     /**
      * Default activity sorter implementation.
+     * <p>
+     * The weight of an activity is the sum of the weights of its records, each decayed
+     * by {@link #WEIGHT_DECAY_COEFFICIENT} for every newer record of the activities.
+     * The sorter remembers the records it has weighted, so that when the history only
+     * gained records at its end and lost records at its start since the previous sort,
+     * the weights are updated for those records only and the activities, which are
+     * still almost sorted, are reordered by moving the few that changed place.
      */
     private final class DefaultSorter implements ActivitySorter {
         private static final float WEIGHT_DECAY_COEFFICIENT = 0.95f;
 
+        /**
+         * Maximal number of incremental updates between two full computations of the
+         * weights, which bounds the accumulated rounding errors.
+         */
+        private static final int MAX_INCREMENTAL_UPDATES = 32;
+
         private final Map<ComponentName, ActivityResolveInfo> mPackageNameToActivityMap =
                 new HashMap<ComponentName, ActivityResolveInfo>();
 
+        /**
+         * The records the current weights were computed from.
+         */
+        private final List<HistoricalRecord> mWeightedRecords = new ArrayList<HistoricalRecord>();
+
+        /**
+         * The number of weighted records whose activity is one of the activities.
+         */
+        private int mMatchedRecordCount;
+
+        private Intent mWeightedIntent;
+        private int mWeightedActivitiesGeneration = -1;
+        private int mIncrementalUpdateCount;
+
         public void sort(Intent intent, List<ActivityResolveInfo> activities,
                 List<HistoricalRecord> historicalRecords) {
+            final int keptIndex = findKeptRecordsIndex(historicalRecords);
+            if (intent != mWeightedIntent
+                    || mActivitiesGeneration != mWeightedActivitiesGeneration
+                    || mIncrementalUpdateCount >= MAX_INCREMENTAL_UPDATES
+                    || keptIndex < 0) {
+                computeWeights(intent, activities, historicalRecords);
+                Collections.sort(activities);
+            } else {
+                updateWeights(activities, historicalRecords, keptIndex);
+                insertionSort(activities);
+            }
+
+            if (DEBUG) {
+                final int activityCount = activities.size();
+                for (int i = 0; i < activityCount; i++) {
+                    Log.i(LOG_TAG, "Sorted: " + activities.get(i));
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the first weighted record which is still in the history,
+         * or -1 if the history did not just gain records at its end and lose records at
+         * its start since the weights were computed.
+         */
+        private int findKeptRecordsIndex(List<HistoricalRecord> historicalRecords) {
+            final List<HistoricalRecord> weightedRecords = mWeightedRecords;
+            final int weightedCount = weightedRecords.size();
+            if (weightedCount == 0 || historicalRecords.isEmpty()) {
+                return -1;
+            }
+            final HistoricalRecord oldestRecord = historicalRecords.get(0);
+            int keptIndex = 0;
+            while (keptIndex < weightedCount && weightedRecords.get(keptIndex) != oldestRecord) {
+                keptIndex++;
+            }
+            final int keptCount = weightedCount - keptIndex;
+            if (keptCount == 0 || keptCount > historicalRecords.size()) {
+                return -1;
+            }
+            for (int i = 1; i < keptCount; i++) {
+                if (weightedRecords.get(keptIndex + i) != historicalRecords.get(i)) {
+                    return -1;
+                }
+            }
+            return keptIndex;
+        }
+
+        private void computeWeights(Intent intent, List<ActivityResolveInfo> activities,
+                List<HistoricalRecord> historicalRecords) {
             Map<ComponentName, ActivityResolveInfo> componentNameToActivityMap =
                     mPackageNameToActivityMap;
             componentNameToActivityMap.clear();
@@ -936,6 +1141,7 @@ class ActivityChooserModel extends DataSetObservable {
 
             final int lastShareIndex = historicalRecords.size() - 1;
             float nextRecordWeight = 1;
+            int matchedRecordCount = 0;
             for (int i = lastShareIndex; i >= 0; i--) {
                 HistoricalRecord historicalRecord = historicalRecords.get(i);
                 ComponentName componentName = historicalRecord.activity;
@@ -943,28 +1149,272 @@ class ActivityChooserModel extends DataSetObservable {
                 if (activity != null) {
                     activity.weight += historicalRecord.weight * nextRecordWeight;
                     nextRecordWeight = nextRecordWeight * WEIGHT_DECAY_COEFFICIENT;
+                    matchedRecordCount++;
                 }
             }
 
-            Collections.sort(activities);
+            mWeightedRecords.clear();
+            mWeightedRecords.addAll(historicalRecords);
+            mMatchedRecordCount = matchedRecordCount;
+            mWeightedIntent = intent;
+            mWeightedActivitiesGeneration = mActivitiesGeneration;
+            mIncrementalUpdateCount = 0;
+        }
 
-            if (DEBUG) {
-                for (int i = 0; i < activityCount; i++) {
-                    Log.i(LOG_TAG, "Sorted: " + activities.get(i));
+        private void updateWeights(List<ActivityResolveInfo> activities,
+                List<HistoricalRecord> historicalRecords, int keptIndex) {
+            final Map<ComponentName, ActivityResolveInfo> componentNameToActivityMap =
+                    mPackageNameToActivityMap;
+            final List<HistoricalRecord> weightedRecords = mWeightedRecords;
+
+            // Take out the contributions of the records pruned from the history, each of
+            // which has been decayed once for every newer record of the activities.
+            int prunedMatchedCount = 0;
+            for (int i = 0; i < keptIndex; i++) {
+                HistoricalRecord historicalRecord = weightedRecords.get(i);
+                ActivityResolveInfo activity =
+                        componentNameToActivityMap.get(historicalRecord.activity);
+                if (activity != null) {
+                    final int newerRecordCount = mMatchedRecordCount - prunedMatchedCount - 1;
+                    activity.weight -= historicalRecord.weight
+                            * (float) Math.pow(WEIGHT_DECAY_COEFFICIENT, newerRecordCount);
+                    if (activity.weight < 0) {
+                        activity.weight = 0;
+                    }
+                    prunedMatchedCount++;
+                }
+            }
+            mMatchedRecordCount -= prunedMatchedCount;
+            weightedRecords.subList(0, keptIndex).clear();
+
+            // Every new record decays all the records before it.
+            final int activityCount = activities.size();
+            final int recordCount = historicalRecords.size();
+            for (int i = weightedRecords.size(); i < recordCount; i++) {
+                HistoricalRecord historicalRecord = historicalRecords.get(i);
+                ActivityResolveInfo activity =
+                        componentNameToActivityMap.get(historicalRecord.activity);
+                if (activity != null) {
+                    for (int j = 0; j < activityCount; j++) {
+                        activities.get(j).weight *= WEIGHT_DECAY_COEFFICIENT;
+                    }
+                    activity.weight += historicalRecord.weight;
+                    mMatchedRecordCount++;
                 }
+                weightedRecords.add(historicalRecord);
             }
+            mIncrementalUpdateCount++;
+        }
+
+        /**
+         * Sorts the activities, which are expected to be nearly sorted, keeping the order
+         * of activities of equal weight like {@link Collections#sort(List)}.
+         */
+        private void insertionSort(List<ActivityResolveInfo> activities) {
+            final int activityCount = activities.size();
+            for (int i = 1; i < activityCount; i++) {
+                final ActivityResolveInfo activity = activities.get(i);
+                int j = i - 1;
+                if (activities.get(j).compareTo(activity) <= 0) {
+                    continue;
+                }
+                while (j >= 0 && activities.get(j).compareTo(activity) > 0) {
+                    activities.set(j + 1, activities.get(j));
+                    j--;
+                }
+                activities.set(j + 1, activity);
+            }
+        }
+    }
+
+    /**
+     * Reads the history log in the background when the model is created.
+     */
+    private final class LoadHistoryAsyncTask extends AsyncTask<Void, Void, Void> {
+
+        @Override
+        public Void doInBackground(Void... args) {
+            loadHistoricalRecords();
+            return null;
+        }
+    }
+
+    /**
+     * Reads the history log and hands the records over to the model. If there is no log
+     * yet, the history file written by older versions is migrated to a log. A log with an
+     * unknown format is neither read nor written. Called in the background.
+     */
+    private void loadHistoricalRecords() {
+        final List<HistoricalRecord> historicalRecords = new ArrayList<HistoricalRecord>();
+        boolean unknown = false;
+        boolean written = false;
+        try {
+            final int result = readHistoryLog(historicalRecords);
+            if (result == HISTORY_LOG_DAMAGED) {
+                // The end of the log is damaged, rewrite it so that it can be appended to.
+                mHistoryLogWriter.write(new HistoryLogSnapshot(historicalRecords));
+            } else if (result == HISTORY_LOG_UNKNOWN) {
+                unknown = true;
+            }
+            written = true;
+        } catch (FileNotFoundException fnfe) {
+            final AtomicFile legacyFile =
+                    new AtomicFile(mContext.getFileStreamPath(mHistoryFileName));
+            if (readLegacyHistoricalData(legacyFile, historicalRecords)) {
+                // The history file is only deleted once its records are in the log.
+                final long failedWriteCount = mHistoryLogWriter.getFailedWriteCount();
+                mHistoryLogWriter.write(new HistoryLogSnapshot(historicalRecords));
+                mHistoryLogWriter.flush();
+                if (mHistoryLogWriter.getFailedWriteCount() == failedWriteCount) {
+                    legacyFile.delete();
+                    written = true;
+                }
+            }
+        }
+        synchronized (mInstanceLock) {
+            mLoadedHistoricalRecords = historicalRecords;
+            mHistoryLogRecordCount = historicalRecords.size();
+            mHistoryLogUnknown = unknown;
+            mHistoryLogWritten = written;
+            mHistoricalRecordsLoaded = true;
+            mInstanceLock.notifyAll();
         }
     }
 
-    private void readHistoricalDataImpl() {
+    /**
+     * Reads the records of the history log.
+     *
+     * @param historicalRecords The list to add the records to.
+     * @return {@link #HISTORY_LOG_READ}, {@link #HISTORY_LOG_DAMAGED} if the log needs to be
+     *         rewritten, or {@link #HISTORY_LOG_UNKNOWN} if the log has an unknown format.
+     * @throws FileNotFoundException If there is no history log.
+     */
+    private int readHistoryLog(List<HistoricalRecord> historicalRecords)
+            throws FileNotFoundException {
+        final BufferedInputStream bis = new BufferedInputStream(mHistoryLogFile.openRead());
+        final DataInputStream in = new DataInputStream(bis);
+        try {
+            if (in.readInt() != HISTORY_LOG_MAGIC || in.readInt() != HISTORY_LOG_VERSION) {
+                Log.e(LOG_TAG, "Unknown historical record log format: "
+                        + mHistoryLogFile.getBaseFile());
+                return HISTORY_LOG_UNKNOWN;
+            }
+            while (true) {
+                bis.mark(1);
+                if (bis.read() < 0) {
+                    break;
+                }
+                bis.reset();
+                final String activity = in.readUTF();
+                final long time = in.readLong();
+                final float weight = in.readFloat();
+                final ComponentName activityName = ComponentName.unflattenFromString(activity);
+                if (activityName == null) {
+                    continue;
+                }
+                HistoricalRecord readRecord = new HistoricalRecord(activityName, time, weight);
+                historicalRecords.add(readRecord);
+
+                if (DEBUG) {
+                    Log.i(LOG_TAG, "Read " + readRecord.toString());
+                }
+            }
+
+            if (DEBUG) {
+                Log.i(LOG_TAG, "Read " + historicalRecords.size() + " historical records.");
+            }
+            return HISTORY_LOG_READ;
+        } catch (EOFException eofe) {
+            // The process died while appending the last record.
+            Log.w(LOG_TAG, "Truncated historical record log: " + mHistoryLogFile.getBaseFile());
+            return HISTORY_LOG_DAMAGED;
+        } catch (IOException ioe) {
+            Log.e(LOG_TAG, "Error reading historical record log: "
+                    + mHistoryLogFile.getBaseFile(), ioe);
+            return HISTORY_LOG_DAMAGED;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ioe) {
+                /* ignore */
+            }
+        }
+    }
+
+    /**
+     * Historical records written to the history log off the UI thread, either as a
+     * complete log or appended to the log.
+     */
+    private static final class HistoryLogSnapshot implements AtomicFileWriter.Snapshot {
+        private final List<HistoricalRecord> mRecords;
+        private final boolean mCompleteLog;
+
+        /**
+         * Creates a snapshot of a complete log holding the given records, which must not
+         * be modified afterwards.
+         */
+        HistoryLogSnapshot(List<HistoricalRecord> records) {
+            mRecords = records;
+            mCompleteLog = true;
+        }
+
+        /**
+         * Creates a snapshot of a record appended to the log.
+         */
+        HistoryLogSnapshot(HistoricalRecord record) {
+            mRecords = Collections.singletonList(record);
+            mCompleteLog = false;
+        }
+
+        @Override
+        public void writeTo(OutputStream os) throws IOException {
+            // Buffered, so that an appended record is written with a single write and a
+            // failure leaves at most a truncated last record, which is dropped when read.
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+            if (mCompleteLog) {
+                out.writeInt(HISTORY_LOG_MAGIC);
+                out.writeInt(HISTORY_LOG_VERSION);
+            }
+            final int recordCount = mRecords.size();
+            for (int i = 0; i < recordCount; i++) {
+                writeHistoricalRecord(out, mRecords.get(i));
+            }
+            out.flush();
+
+            if (DEBUG) {
+                Log.i(LOG_TAG, "Wrote " + recordCount + " historical records.");
+            }
+        }
+    }
+
+    private static void writeHistoricalRecord(DataOutputStream out,
+            HistoricalRecord historicalRecord) throws IOException {
+        out.writeUTF(historicalRecord.activity.flattenToString());
+        out.writeLong(historicalRecord.time);
+        out.writeFloat(historicalRecord.weight);
+        if (DEBUG) {
+            Log.i(LOG_TAG, "Wrote " + historicalRecord.toString());
+        }
+    }
+
+    /**
+     * Reads the XML history file written by older versions of this class.
+     *
+     * @param legacyFile The history file.
+     * @param historicalRecords The list to add the records to.
+     * @return Whether the history file exists and was read without errors. The records
+     *         read before an error are still added to the list.
+     */
+    private boolean readLegacyHistoricalData(AtomicFile legacyFile,
+            List<HistoricalRecord> historicalRecords) {
         FileInputStream fis = null;
         try {
-            fis = mContext.openFileInput(mHistoryFileName);
+            fis = legacyFile.openRead();
         } catch (FileNotFoundException fnfe) {
             if (DEBUG) {
                 Log.i(LOG_TAG, "Could not open historical records file: " + mHistoryFileName);
             }
-            return;
+            return false;
         }
         try {
             XmlPullParser parser = Xml.newPullParser();
@@ -980,9 +1430,6 @@ class ActivityChooserModel extends DataSetObservable {
                         + TAG_HISTORICAL_RECORDS + " tag.");
             }
 
-            List<HistoricalRecord> historicalRecords = mHistoricalRecords;
-            historicalRecords.clear();
-
             while (true) {
                 type = parser.next();
                 if (type == XmlPullParser.END_DOCUMENT) {
@@ -997,11 +1444,17 @@ class ActivityChooserModel extends DataSetObservable {
                 }
 
                 String activity = parser.getAttributeValue(null, ATTRIBUTE_ACTIVITY);
-                final long time =
-                        Long.parseLong(parser.getAttributeValue(null, ATTRIBUTE_TIME));
-                final float weight =
-                        Float.parseFloat(parser.getAttributeValue(null, ATTRIBUTE_WEIGHT));
-                HistoricalRecord readRecord = new HistoricalRecord(activity, time, weight);
+                String time = parser.getAttributeValue(null, ATTRIBUTE_TIME);
+                String weight = parser.getAttributeValue(null, ATTRIBUTE_WEIGHT);
+                if (activity == null || time == null || weight == null) {
+                    throw new XmlPullParserException("Share record is missing attributes.");
+                }
+                final ComponentName activityName = ComponentName.unflattenFromString(activity);
+                if (activityName == null) {
+                    throw new XmlPullParserException("Invalid activity " + activity);
+                }
+                HistoricalRecord readRecord = new HistoricalRecord(activityName,
+                        Long.parseLong(time), Float.parseFloat(weight));
                 historicalRecords.add(readRecord);
 
                 if (DEBUG) {
@@ -1012,8 +1465,11 @@ class ActivityChooserModel extends DataSetObservable {
             if (DEBUG) {
                 Log.i(LOG_TAG, "Read " + historicalRecords.size() + " historical records.");
             }
+            return true;
         } catch (XmlPullParserException xppe) {
             Log.e(LOG_TAG, "Error reading historical recrod file: " + mHistoryFileName, xppe);
+        } catch (NumberFormatException nfe) {
+            Log.e(LOG_TAG, "Error reading historical recrod file: " + mHistoryFileName, nfe);
         } catch (IOException ioe) {
             Log.e(LOG_TAG, "Error reading historical recrod file: " + mHistoryFileName, ioe);
         } finally {
@@ -1025,72 +1481,6 @@ class ActivityChooserModel extends DataSetObservable {
                 }
             }
         }
+        return false;
     }
-
-    /**
-     * Command for persisting the historical records to a file off the UI thread.
-     */
-    private final class PersistHistoryAsyncTask extends AsyncTask<Object, Void, Void> {
-
-        @Override
-        @SuppressWarnings("unchecked")
-        public Void doInBackground(Object... args) {
-            List<HistoricalRecord> historicalRecords = (List<HistoricalRecord>) args[0];
-            String hostoryFileName = (String) args[1];
-
-            FileOutputStream fos = null;
-
-            try {
-                fos = mContext.openFileOutput(hostoryFileName, Context.MODE_PRIVATE);
-            } catch (FileNotFoundException fnfe) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + hostoryFileName, fnfe);
-                return null;
-            }
-
-            XmlSerializer serializer = Xml.newSerializer();
-
-            try {
-                serializer.setOutput(fos, null);
-                serializer.startDocument("UTF-8", true);
-                serializer.startTag(null, TAG_HISTORICAL_RECORDS);
-
-                final int recordCount = historicalRecords.size();
-                for (int i = 0; i < recordCount; i++) {
-                    HistoricalRecord record = historicalRecords.remove(0);
-                    serializer.startTag(null, TAG_HISTORICAL_RECORD);
-                    serializer.attribute(null, ATTRIBUTE_ACTIVITY,
-                            record.activity.flattenToString());
-                    serializer.attribute(null, ATTRIBUTE_TIME, String.valueOf(record.time));
-                    serializer.attribute(null, ATTRIBUTE_WEIGHT, String.valueOf(record.weight));
-                    serializer.endTag(null, TAG_HISTORICAL_RECORD);
-                    if (DEBUG) {
-                        Log.i(LOG_TAG, "Wrote " + record.toString());
-                    }
-                }
-
-                serializer.endTag(null, TAG_HISTORICAL_RECORDS);
-                serializer.endDocument();
-
-                if (DEBUG) {
-                    Log.i(LOG_TAG, "Wrote " + recordCount + " historical records.");
-                }
-            } catch (IllegalArgumentException iae) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + mHistoryFileName, iae);
-            } catch (IllegalStateException ise) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + mHistoryFileName, ise);
-            } catch (IOException ioe) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + mHistoryFileName, ioe);
-            } finally {
-                mCanReadHistoricalData = true;
-                if (fos != null) {
-                    try {
-                        fos.close();
-                    } catch (IOException e) {
-                        /* ignore */
-                    }
-                }
-            }
-            return null;
-        }
-    }
-}
\ No newline at end of file
+}
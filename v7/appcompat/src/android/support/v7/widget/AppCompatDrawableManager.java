@@ -18,6 +18,8 @@ package android.support.v7.widget;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
@@ -78,6 +80,12 @@ public final class AppCompatDrawableManager {
 
     private static final ColorFilterLruCache COLOR_FILTER_CACHE = new ColorFilterLruCache(6);
 
+    /**
+     * The color filter cache grows up to this size when it keeps missing, see
+     * {@link ColorFilterLruCache#adaptSize()}.
+     */
+    private static final int COLOR_FILTER_CACHE_MAX_SIZE = 64;
+
     /**
      * Drawables which should be tinted with the value of {@code R.attr.colorControlNormal},
      * using the default mode using a raw color filter.
@@ -156,8 +164,12 @@ public final class AppCompatDrawableManager {
     };
 
     private WeakHashMap<Context, SparseArray<ColorStateList>> mTintLists;
+    private WeakHashMap<Resources.Theme, ThemeTintedDrawables> mTintedDrawables;
     private ArrayList<InflateDelegate> mDelegates;
 
+    private int mTintedDrawableHitCount;
+    private int mTintedDrawableMissCount;
+
     public Drawable getDrawable(@NonNull Context context, @DrawableRes int resId) {
         return getDrawable(context, resId, false);
     }
@@ -175,25 +187,41 @@ public final class AppCompatDrawableManager {
             }
         }
 
+        // Mutate can cause NPEs on 2.1, and the cache hands out mutated clones
+        final boolean canCache = Build.VERSION.SDK_INT >= 8;
+        if (canCache) {
+            final TintedDrawableState cached = getTintedDrawableFromCache(context, resId);
+            if (cached != null) {
+                mTintedDrawableHitCount++;
+                return cached.newDrawable(context.getResources());
+            }
+            mTintedDrawableMissCount++;
+        }
+
         // The delegates failed so we'll carry on
         Drawable drawable = ContextCompat.getDrawable(context, resId);
 
         if (drawable != null) {
-            if (Build.VERSION.SDK_INT >= 8) {
-                // Mutate can cause NPEs on 2.1
+            TintedDrawableState tintedState = null;
+            if (canCache) {
+                // The state from the resources has not been mutated yet, keep it to clone
+                // from next time
+                final Drawable.ConstantState state = drawable.getConstantState();
+                if (state != null) {
+                    tintedState = new TintedDrawableState(state);
+                }
                 drawable = drawable.mutate();
             }
 
             final ColorStateList tintList = getTintList(context, resId);
             if (tintList != null) {
-                // First wrap the Drawable and set the tint list
-                drawable = DrawableCompat.wrap(drawable);
-                DrawableCompat.setTintList(drawable, tintList);
-
                 // If there is a blending mode specified for the drawable, use it
                 final PorterDuff.Mode tintMode = getTintMode(resId);
-                if (tintMode != null) {
-                    DrawableCompat.setTintMode(drawable, tintMode);
+                drawable = applyTintList(drawable, tintList, tintMode);
+                if (tintedState != null) {
+                    tintedState.mTintList = tintList;
+                    tintedState.mTintMode = tintMode;
+                    addTintedDrawableToCache(context, resId, tintedState);
                 }
             } else if (resId == R.drawable.abc_cab_background_top_material) {
                 return new LayerDrawable(new Drawable[]{
@@ -209,7 +237,11 @@ public final class AppCompatDrawableManager {
                 setPorterDuffColorFilter(ld.findDrawableByLayerId(android.R.id.progress),
                         getThemeAttrColor(context, R.attr.colorControlActivated), DEFAULT_MODE);
             } else {
-                final boolean tinted = tintDrawableUsingColorFilter(context, resId, drawable);
+                final boolean tinted =
+                        tintDrawableUsingColorFilter(context, resId, drawable, tintedState);
+                if (tinted && tintedState != null) {
+                    addTintedDrawableToCache(context, resId, tintedState);
+                }
                 if (!tinted && failIfNotKnown) {
                     // If we didn't tint using a ColorFilter, and we're set to fail if we don't
                     // know the id, return null
@@ -220,8 +252,25 @@ public final class AppCompatDrawableManager {
         return drawable;
     }
 
+    private static Drawable applyTintList(Drawable drawable, ColorStateList tintList,
+            PorterDuff.Mode tintMode) {
+        // First wrap the Drawable and set the tint list
+        drawable = DrawableCompat.wrap(drawable);
+        DrawableCompat.setTintList(drawable, tintList);
+        if (tintMode != null) {
+            DrawableCompat.setTintMode(drawable, tintMode);
+        }
+        return drawable;
+    }
+
     public final boolean tintDrawableUsingColorFilter(@NonNull Context context,
             @DrawableRes final int resId, @NonNull Drawable drawable) {
+        return tintDrawableUsingColorFilter(context, resId, drawable, null);
+    }
+
+    private boolean tintDrawableUsingColorFilter(@NonNull Context context,
+            @DrawableRes final int resId, @NonNull Drawable drawable,
+            @Nullable TintedDrawableState tintedState) {
         PorterDuff.Mode tintMode = DEFAULT_MODE;
         boolean colorAttrSet = false;
         int colorAttr = 0;
@@ -245,12 +294,18 @@ public final class AppCompatDrawableManager {
 
         if (colorAttrSet) {
             final int color = getThemeAttrColor(context, colorAttr);
-            drawable.setColorFilter(getPorterDuffColorFilter(color, tintMode));
+            final PorterDuffColorFilter filter = getPorterDuffColorFilter(color, tintMode);
+            drawable.setColorFilter(filter);
 
             if (alpha != -1) {
                 drawable.setAlpha(alpha);
             }
 
+            if (tintedState != null) {
+                tintedState.mColorFilter = filter;
+                tintedState.mAlpha = alpha;
+            }
+
             if (DEBUG) {
                 Log.d(TAG, "Tinted Drawable: " + context.getResources().getResourceName(resId) +
                         " with color: #" + Integer.toHexString(color));
@@ -352,6 +407,74 @@ public final class AppCompatDrawableManager {
         themeTints.append(resId, tintList);
     }
 
+    private TintedDrawableState getTintedDrawableFromCache(@NonNull Context context,
+            @DrawableRes int resId) {
+        if (mTintedDrawables != null) {
+            final ThemeTintedDrawables drawables = mTintedDrawables.get(context.getTheme());
+            if (drawables != null) {
+                final Configuration config = context.getResources().getConfiguration();
+                if (!drawables.mConfiguration.equals(config)) {
+                    // The theme outlived a configuration change, so its attributes and the
+                    // drawables may resolve to other values now
+                    drawables.mConfiguration.setTo(config);
+                    drawables.mStates.clear();
+                    return null;
+                }
+                return drawables.mStates.get(resId);
+            }
+        }
+        return null;
+    }
+
+    private void addTintedDrawableToCache(@NonNull Context context, @DrawableRes int resId,
+            @NonNull TintedDrawableState tintedState) {
+        final Resources.Theme theme = context.getTheme();
+        if (theme == null) {
+            return;
+        }
+        if (mTintedDrawables == null) {
+            mTintedDrawables = new WeakHashMap<>();
+        }
+        final Configuration config = context.getResources().getConfiguration();
+        ThemeTintedDrawables drawables = mTintedDrawables.get(theme);
+        if (drawables == null) {
+            drawables = new ThemeTintedDrawables(config);
+            mTintedDrawables.put(theme, drawables);
+        } else if (!drawables.mConfiguration.equals(config)) {
+            drawables.mConfiguration.setTo(config);
+            drawables.mStates.clear();
+        }
+        drawables.mStates.put(resId, tintedState);
+    }
+
+    /**
+     * Returns the number of calls to {@link #getDrawable(Context, int)} which were served by
+     * cloning a previously tinted drawable.
+     */
+    public int getTintedDrawableHitCount() {
+        return mTintedDrawableHitCount;
+    }
+
+    /**
+     * Returns the number of calls to {@link #getDrawable(Context, int)} which had to load and
+     * tint the drawable from its resource.
+     */
+    public int getTintedDrawableMissCount() {
+        return mTintedDrawableMissCount;
+    }
+
+    public static int getColorFilterHitCount() {
+        return COLOR_FILTER_CACHE.hitCount();
+    }
+
+    public static int getColorFilterMissCount() {
+        return COLOR_FILTER_CACHE.missCount();
+    }
+
+    public static int getColorFilterCacheMaxSize() {
+        return COLOR_FILTER_CACHE.maxSize();
+    }
+
     private ColorStateList createDefaultColorStateList(Context context) {
         /**
          * Generate the default color state list which uses the colorControl attributes.
@@ -585,14 +708,89 @@ public final class AppCompatDrawableManager {
         return new ColorStateList(states, colors);
     }
 
+    /**
+     * The tinted drawables of a theme, and the configuration they were loaded in. A theme
+     * survives configuration changes which the activity handles itself, so the drawables
+     * are dropped when the configuration of its resources changes.
+     */
+    private static class ThemeTintedDrawables {
+        final Configuration mConfiguration;
+        final SparseArray<TintedDrawableState> mStates = new SparseArray<>();
+
+        ThemeTintedDrawables(Configuration config) {
+            mConfiguration = new Configuration(config);
+        }
+    }
+
+    /**
+     * A drawable as tinted by {@link #getDrawable(Context, int, boolean)} for a given theme.
+     * Holds the unmutated state loaded from the resources and the tint applied to it, which only
+     * depends on the resource id and theme, so that the tint does not have to be resolved again.
+     * Untinted drawables are not kept, as the resources already cache their state.
+     */
+    private static class TintedDrawableState {
+        final Drawable.ConstantState mState;
+        // Set when tinted through DrawableCompat, with the tint mode for the resource if any
+        ColorStateList mTintList;
+        PorterDuff.Mode mTintMode;
+        // Set when tinted with a color filter, see tintDrawableUsingColorFilter()
+        PorterDuffColorFilter mColorFilter;
+        int mAlpha = -1;
+
+        TintedDrawableState(Drawable.ConstantState state) {
+            mState = state;
+        }
+
+        Drawable newDrawable(Resources res) {
+            Drawable drawable = mState.newDrawable(res).mutate();
+            if (mTintList != null) {
+                drawable = applyTintList(drawable, mTintList, mTintMode);
+            } else if (mColorFilter != null) {
+                drawable.setColorFilter(mColorFilter);
+                if (mAlpha != -1) {
+                    drawable.setAlpha(mAlpha);
+                }
+            }
+            return drawable;
+        }
+    }
+
     private static class ColorFilterLruCache extends LruCache<Integer, PorterDuffColorFilter> {
+        // Number of lookups after which the hit rate is checked, see adaptSize()
+        private static final int ADAPT_INTERVAL = 32;
+
+        private int mLookups;
+        private int mWindowHitCount;
+        private int mWindowEvictionCount;
 
         public ColorFilterLruCache(int maxSize) {
             super(maxSize);
         }
 
         PorterDuffColorFilter get(int color, PorterDuff.Mode mode) {
-            return get(generateCacheKey(color, mode));
+            final PorterDuffColorFilter filter = get(generateCacheKey(color, mode));
+            if (++mLookups == ADAPT_INTERVAL) {
+                adaptSize();
+            }
+            return filter;
+        }
+
+        /**
+         * Doubles the size of the cache, up to {@link #COLOR_FILTER_CACHE_MAX_SIZE}, when less
+         * than half of the recent lookups hit while entries were being evicted. An app using
+         * more colors than fit in the cache would otherwise create a new filter most of the
+         * time, and the filters are small enough to never shrink the cache again.
+         */
+        private void adaptSize() {
+            final int hits = hitCount() - mWindowHitCount;
+            final int evictions = evictionCount() - mWindowEvictionCount;
+            final int maxSize = maxSize();
+            if (evictions > 0 && hits * 2 < mLookups && maxSize < COLOR_FILTER_CACHE_MAX_SIZE) {
+                resize(Math.min(maxSize * 2, COLOR_FILTER_CACHE_MAX_SIZE));
+            }
+            mLookups = 0;
+            mWindowHitCount = hitCount();
+            mWindowEvictionCount = evictionCount();
         }
 
         PorterDuffColorFilter put(int color, PorterDuff.Mode mode, PorterDuffColorFilter filter) {
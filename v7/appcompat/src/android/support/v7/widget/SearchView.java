@@ -36,6 +36,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.ResultReceiver;
 import android.speech.RecognizerIntent;
+import android.support.v4.util.LruCache;
 import android.support.v4.view.KeyEventCompat;
 import android.support.v4.widget.CursorAdapter;
 import android.support.v7.appcompat.R;
@@ -65,7 +66,6 @@ import android.widget.TextView;
 import android.widget.TextView.OnEditorActionListener;
 
 import java.lang.reflect.Method;
-import java.util.WeakHashMap;
 
 import static android.support.v7.widget.SuggestionsAdapter.getColumnString;
 
@@ -110,6 +110,11 @@ public class SearchView extends LinearLayoutCompat implements CollapsibleActionV
      */
     private static final String IME_OPTION_NO_MICROPHONE = "nm";
 
+    /**
+     * Maximal number of suggestion icons kept in the icon cache.
+     */
+    private static final int OUTSIDE_DRAWABLES_CACHE_SIZE = 64;
+
     private final SearchAutoComplete mSearchSrcTextView;
     private final View mSearchEditFrame;
     private final View mSearchPlate;
@@ -192,10 +197,10 @@ public class SearchView extends LinearLayoutCompat implements CollapsibleActionV
         }
     };
 
-    // A weak map of drawables we've gotten from other packages, so we don't load them
-    // more than once.
-    private final WeakHashMap<String, Drawable.ConstantState> mOutsideDrawablesCache =
-            new WeakHashMap<String, Drawable.ConstantState>();
+    // The most recently used drawables we've gotten from other packages, so we don't load
+    // them more than once.
+    private final LruCache<String, Drawable.ConstantState> mOutsideDrawablesCache =
+            new LruCache<String, Drawable.ConstantState>(OUTSIDE_DRAWABLES_CACHE_SIZE);
 
     /**
      * Callbacks for changes to the query text.
@@ -30,7 +30,11 @@ import android.database.Cursor;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.content.LoaderExecutor;
+import android.support.v4.util.LruCache;
 import android.support.v4.widget.ResourceCursorAdapter;
 import android.support.v7.appcompat.R;
 import android.text.Spannable;
@@ -49,10 +53,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
-import java.util.WeakHashMap;
 
 /**
  * Provides the contents for the suggestion drop-down list.in {@link SearchView}.
+ * <p>
+ * Suggestion icons which are not in the icon cache are loaded on the
+ * {@link LoaderExecutor}. Until then the row shows no icon, and a loaded icon is only
+ * set if the row still shows the suggestion it was loaded for.
  * @hide
  */
 class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListener {
@@ -65,11 +72,25 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
     static final int REFINE_BY_ENTRY = 1;
     static final int REFINE_ALL = 2;
 
+    // Stands in the icon cache for activities without an icon, since it cannot hold nulls.
+    private static final Drawable.ConstantState NO_ICON = new Drawable.ConstantState() {
+        @Override
+        public Drawable newDrawable() {
+            return null;
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    };
+
     private final SearchManager mSearchManager;
     private final SearchView mSearchView;
     private final SearchableInfo mSearchable;
     private final Context mProviderContext;
-    private final WeakHashMap<String, Drawable.ConstantState> mOutsideDrawablesCache;
+    private final LruCache<String, Drawable.ConstantState> mOutsideDrawablesCache;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
     private final int mCommitIconResId;
     private boolean mClosed = false;
     private int mQueryRefinement = REFINE_BY_ENTRY;
@@ -87,11 +108,25 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
     private int mIconName2Col = INVALID_INDEX;
     private int mFlagsCol = INVALID_INDEX;
 
+    // Statistics of the suggestion queries, which run on the filter thread.
+    private final Object mQueryStatsLock = new Object();
+    private int mQueryCount;
+    private long mTotalQueryTime;
+    private long mMaxQueryTime;
+
+    // Statistics of binding rows and their icons, only accessed on the UI thread.
+    private int mBindCount;
+    private long mTotalBindTime;
+    private long mMaxBindTime;
+    private int mIconCacheHitCount;
+    private int mIconLoadCount;
+    private int mDroppedIconCount;
+
     // private final Runnable mStartSpinnerRunnable;
     // private final Runnable mStopSpinnerRunnable;
 
     public SuggestionsAdapter(Context context, SearchView searchView, SearchableInfo searchable,
-            WeakHashMap<String, Drawable.ConstantState> outsideDrawablesCache) {
+            LruCache<String, Drawable.ConstantState> outsideDrawablesCache) {
         super(context, searchView.getSuggestionRowLayout(), null /* no initial cursor */,
                 true /* auto-requery */);
         mSearchManager = (SearchManager) mContext.getSystemService(Context.SEARCH_SERVICE);
@@ -135,6 +170,96 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
         return false;
     }
 
+    /**
+     * Returns the number of suggestion queries run since the statistics were last reset.
+     */
+    public int getQueryCount() {
+        synchronized (mQueryStatsLock) {
+            return mQueryCount;
+        }
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent querying suggestions, including filling
+     * the cursor window.
+     */
+    public long getTotalQueryTimeNanos() {
+        synchronized (mQueryStatsLock) {
+            return mTotalQueryTime;
+        }
+    }
+
+    /**
+     * Returns the longest time in nanoseconds spent on a single suggestion query.
+     */
+    public long getMaxQueryTimeNanos() {
+        synchronized (mQueryStatsLock) {
+            return mMaxQueryTime;
+        }
+    }
+
+    /**
+     * Returns the number of suggestion rows bound since the statistics were last reset.
+     * Must be called on the UI thread, like the other binding statistics.
+     */
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent binding suggestion rows on the UI thread.
+     */
+    public long getTotalBindTimeNanos() {
+        return mTotalBindTime;
+    }
+
+    /**
+     * Returns the longest time in nanoseconds spent binding a single suggestion row.
+     */
+    public long getMaxBindTimeNanos() {
+        return mMaxBindTime;
+    }
+
+    /**
+     * Returns the number of icons bound right away, because they were cached or there was
+     * no icon.
+     */
+    public int getIconCacheHitCount() {
+        return mIconCacheHitCount;
+    }
+
+    /**
+     * Returns the number of icons loaded in the background.
+     */
+    public int getIconLoadCount() {
+        return mIconLoadCount;
+    }
+
+    /**
+     * Returns the number of icons loaded in the background that were not set because their
+     * row had been bound to another suggestion in the meantime.
+     */
+    public int getDroppedIconCount() {
+        return mDroppedIconCount;
+    }
+
+    /**
+     * Resets the query and binding statistics.
+     */
+    public void resetStatistics() {
+        synchronized (mQueryStatsLock) {
+            mQueryCount = 0;
+            mTotalQueryTime = 0;
+            mMaxQueryTime = 0;
+        }
+        mBindCount = 0;
+        mTotalBindTime = 0;
+        mMaxBindTime = 0;
+        mIconCacheHitCount = 0;
+        mIconLoadCount = 0;
+        mDroppedIconCount = 0;
+    }
+
     /**
      * Use the search suggestions provider to obtain a live cursor.  This will be called
      * in a worker thread, so it's OK if the query is slow (e.g. round trip for suggestions).
@@ -153,6 +278,7 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
                 || mSearchView.getWindowVisibility() != View.VISIBLE) {
             return null;
         }
+        final long start = System.nanoTime();
         try {
             cursor = getSearchManagerSuggestions(mSearchable, query, QUERY_LIMIT);
             // trigger fill window so the spinner stays up until the results are copied over and
@@ -163,6 +289,15 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
             }
         } catch (RuntimeException e) {
             Log.w(LOG_TAG, "Search suggestions query threw an exception.", e);
+        } finally {
+            final long duration = System.nanoTime() - start;
+            synchronized (mQueryStatsLock) {
+                mQueryCount++;
+                mTotalQueryTime += duration;
+                if (duration > mMaxQueryTime) {
+                    mMaxQueryTime = duration;
+                }
+            }
         }
         // If cursor is null or an exception was thrown, stop the spinner and return null.
         // changeCursor doesn't get called if cursor is null
@@ -261,6 +396,10 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
         public final ImageView mIcon2;
         public final ImageView mIconRefine;
 
+        // Icons being loaded for the suggestion the row is bound to.
+        public IconRequest mIcon1Request;
+        public IconRequest mIcon2Request;
+
         public ChildViewCache(View v) {
             mText1 = (TextView) v.findViewById(android.R.id.text1);
             mText2 = (TextView) v.findViewById(android.R.id.text2);
@@ -272,6 +411,20 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
 
     @Override
     public void bindView(View view, Context context, Cursor cursor) {
+        final long start = System.nanoTime();
+        try {
+            bindViewImpl(view, cursor);
+        } finally {
+            final long duration = System.nanoTime() - start;
+            mBindCount++;
+            mTotalBindTime += duration;
+            if (duration > mMaxBindTime) {
+                mMaxBindTime = duration;
+            }
+        }
+    }
+
+    private void bindViewImpl(View view, Cursor cursor) {
         ChildViewCache views = (ChildViewCache) view.getTag();
 
         int flags = 0;
@@ -308,10 +461,14 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
         }
 
         if (views.mIcon1 != null) {
-            setViewDrawable(views.mIcon1, getIcon1(cursor), View.INVISIBLE);
+            cancelIconRequest(views.mIcon1Request);
+            views.mIcon1Request = bindIcon(views, true, getStringOrNull(cursor, mIconName1Col),
+                    mIconName1Col != INVALID_INDEX);
         }
         if (views.mIcon2 != null) {
-            setViewDrawable(views.mIcon2, getIcon2(cursor), View.GONE);
+            cancelIconRequest(views.mIcon2Request);
+            views.mIcon2Request = bindIcon(views, false, getStringOrNull(cursor, mIconName2Col),
+                    mIconName2Col != INVALID_INDEX);
         }
         if (mQueryRefinement == REFINE_ALL
                 || (mQueryRefinement == REFINE_BY_ENTRY
@@ -357,24 +514,130 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
         }
     }
 
-    private Drawable getIcon1(Cursor cursor) {
-        if (mIconName1Col == INVALID_INDEX) {
+    /**
+     * Binds one of the icons of a row. The icon is set right away if it is cached or there
+     * is none, otherwise the icon is cleared and loaded in the background.
+     *
+     * @param views The row.
+     * @param icon1 Whether to bind the left-hand side icon, which falls back to the icon of
+     *        the searchable activity, rather than the right-hand side one.
+     * @param value The value of the icon column.
+     * @param hasColumn Whether the suggestions have a column for the icon.
+     * @return The request loading the icon, or {@code null} if the icon has been set.
+     */
+    private IconRequest bindIcon(ChildViewCache views, boolean icon1, String value,
+            boolean hasColumn) {
+        final ImageView v = icon1 ? views.mIcon1 : views.mIcon2;
+        final int nullVisibility = icon1 ? View.INVISIBLE : View.GONE;
+        if (!hasColumn) {
+            setViewDrawable(v, null, nullVisibility);
+            return null;
+        }
+
+        final Drawable.ConstantState cached = peekIcon(value, icon1);
+        if (cached != null) {
+            mIconCacheHitCount++;
+            Drawable drawable = cached == NO_ICON ? null : cached.newDrawable();
+            if (drawable == null && icon1) {
+                drawable = mContext.getPackageManager().getDefaultActivityIcon();
+            }
+            setViewDrawable(v, drawable, nullVisibility);
             return null;
         }
-        String value = cursor.getString(mIconName1Col);
+
+        // Keep the space of the icon while it is being loaded.
+        setViewDrawable(v, null, View.INVISIBLE);
+        final IconRequest request = new IconRequest(views, icon1, value);
+        LoaderExecutor.getDefault().execute(request, LoaderExecutor.PRIORITY_FOREGROUND);
+        return request;
+    }
+
+    private void cancelIconRequest(IconRequest request) {
+        if (request != null) {
+            // A request which has already loaded its icon is dropped when it gets back to the
+            // UI thread.
+            request.mCancelled = true;
+            LoaderExecutor.getDefault().remove(request);
+        }
+    }
+
+    /**
+     * Returns the icon for the value of an icon column if it can be found without loading
+     * anything.
+     *
+     * @return The cached state of the icon, {@link #NO_ICON} if there is no icon, or
+     *         {@code null} if the icon has to be loaded.
+     */
+    private Drawable.ConstantState peekIcon(String value, boolean icon1) {
+        if (!isEmptyIconValue(value)) {
+            return mOutsideDrawablesCache.get(getIconCacheKey(value));
+        }
+        if (!icon1) {
+            return NO_ICON;
+        }
+        return mOutsideDrawablesCache.get(
+                mSearchable.getSearchActivity().flattenToShortString());
+    }
+
+    /**
+     * Loads an icon, possibly on a background thread.
+     *
+     * @return The icon, or {@code null} if there is none.
+     */
+    private Drawable loadIcon(String value, boolean icon1) {
         Drawable drawable = getDrawableFromResourceValue(value);
-        if (drawable != null) {
-            return drawable;
+        if (drawable == null && icon1) {
+            drawable = getDefaultIcon1();
         }
-        return getDefaultIcon1(cursor);
+        return drawable;
     }
 
-    private Drawable getIcon2(Cursor cursor) {
-        if (mIconName2Col == INVALID_INDEX) {
-            return null;
+    /**
+     * Loads an icon on the {@link LoaderExecutor}, then sets it on the UI thread if the row
+     * is still bound to the suggestion it was requested for.
+     */
+    private final class IconRequest implements Runnable {
+        private final ChildViewCache mViews;
+        private final boolean mIcon1;
+        private final String mValue;
+        private Drawable mDrawable;
+        private boolean mLoaded;
+        volatile boolean mCancelled;
+
+        IconRequest(ChildViewCache views, boolean icon1, String value) {
+            mViews = views;
+            mIcon1 = icon1;
+            mValue = value;
+        }
+
+        @Override
+        public void run() {
+            if (!mLoaded) {
+                // On the executor
+                if (mCancelled) {
+                    return;
+                }
+                try {
+                    mDrawable = loadIcon(mValue, mIcon1);
+                } catch (RuntimeException e) {
+                    Log.w(LOG_TAG, "Search suggestions icon threw an exception.", e);
+                }
+                mLoaded = true;
+                mHandler.post(this);
+            } else {
+                // On the UI thread
+                mIconLoadCount++;
+                if (mIcon1 && mViews.mIcon1Request == this) {
+                    mViews.mIcon1Request = null;
+                    setViewDrawable(mViews.mIcon1, mDrawable, View.INVISIBLE);
+                } else if (!mIcon1 && mViews.mIcon2Request == this) {
+                    mViews.mIcon2Request = null;
+                    setViewDrawable(mViews.mIcon2, mDrawable, View.GONE);
+                } else {
+                    mDroppedIconCount++;
+                }
+            }
         }
-        String value = cursor.getString(mIconName2Col);
-        return getDrawableFromResourceValue(value);
     }
 
     /**
@@ -480,7 +743,7 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
      * @return a Drawable, or null if none found
      */
     private Drawable getDrawableFromResourceValue(String drawableId) {
-        if (drawableId == null || drawableId.length() == 0 || "0".equals(drawableId)) {
+        if (isEmptyIconValue(drawableId)) {
             return null;
         }
         try {
@@ -555,6 +818,27 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
 
 
 
+    private static boolean isEmptyIconValue(String drawableId) {
+        return drawableId == null || drawableId.length() == 0 || "0".equals(drawableId);
+    }
+
+    /**
+     * Returns the key under which {@link #getDrawableFromResourceValue(String)} caches the
+     * drawable for the given value.
+     */
+    private String getIconCacheKey(String drawableId) {
+        if (TextUtils.isDigitsOnly(drawableId)) {
+            try {
+                final int resourceId = Integer.parseInt(drawableId);
+                return ContentResolver.SCHEME_ANDROID_RESOURCE
+                        + "://" + mProviderContext.getPackageName() + "/" + resourceId;
+            } catch (NumberFormatException nfe) {
+                // Too large for a resource ID, use it as a URI
+            }
+        }
+        return drawableId;
+    }
+
     private Drawable checkIconCache(String resourceUri) {
         Drawable.ConstantState cached = mOutsideDrawablesCache.get(resourceUri);
         if (cached == null) {
@@ -574,10 +858,9 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
      * Gets the left-hand side icon that will be used for the current suggestion
      * if the suggestion contains an icon column but no icon or a broken icon.
      *
-     * @param cursor A cursor positioned at the current suggestion.
      * @return A non-null drawable.
      */
-    private Drawable getDefaultIcon1(Cursor cursor) {
+    private Drawable getDefaultIcon1() {
         // Check the component that gave us the suggestion
         Drawable drawable = getActivityIconWithCache(mSearchable.getSearchActivity());
         if (drawable != null) {
@@ -599,16 +882,15 @@ class SuggestionsAdapter extends ResourceCursorAdapter implements OnClickListene
     private Drawable getActivityIconWithCache(ComponentName component) {
         // First check the icon cache
         String componentIconKey = component.flattenToShortString();
-        // Using containsKey() since we also store null values.
-        if (mOutsideDrawablesCache.containsKey(componentIconKey)) {
-            Drawable.ConstantState cached = mOutsideDrawablesCache.get(componentIconKey);
-            return cached == null ? null : cached.newDrawable(mProviderContext.getResources());
+        Drawable.ConstantState cached = mOutsideDrawablesCache.get(componentIconKey);
+        if (cached != null) {
+            return cached == NO_ICON ? null : cached.newDrawable(mProviderContext.getResources());
         }
         // Then try the activity or application icon
         Drawable drawable = getActivityIcon(component);
         // Stick it in the cache so we don't do this lookup again.
         Drawable.ConstantState toCache = drawable == null ? null : drawable.getConstantState();
-        mOutsideDrawablesCache.put(componentIconKey, toCache);
+        mOutsideDrawablesCache.put(componentIconKey, toCache == null ? NO_ICON : toCache);
         return drawable;
     }
 
@@ -1976,6 +1976,11 @@ public class Toolbar extends ViewGroup {
             }
         }
 
+        @Override
+        public void updateMenuItemView(MenuItemImpl item) {
+            updateMenuView(false);
+        }
+
         @Override
         public void setCallback(Callback cb) {
         }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.app;
+
+import org.junit.Test;
+
+import android.support.v7.appcompat.test.R;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Measures inflating a layout of 200 views through the AppCompat inflater, with the layouts
+ * created by the default {@link ViewFactoryRegistry} factories and through reflection. Both must
+ * inflate the same views; timings are logged.
+ */
+public class LayoutInflationBenchmark extends BaseInstrumentationTestCase<AppCompatActivity> {
+    private static final String TAG = "LayoutInflationBenchmark";
+
+    private static final int ITERATIONS = 50;
+    private static final int VIEW_COUNT = 201;
+    private static final String[] DEFAULT_FACTORY_TAGS = new String[] {
+            "LinearLayout", "FrameLayout", "View"
+    };
+
+    public LayoutInflationBenchmark() {
+        super(AppCompatActivity.class);
+    }
+
+    @Test
+    public void testInflation() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final LayoutInflater inflater = LayoutInflater.from(getActivity());
+                final ViewFactoryRegistry.ViewFactory[] factories =
+                        new ViewFactoryRegistry.ViewFactory[DEFAULT_FACTORY_TAGS.length];
+                for (int i = 0; i < factories.length; i++) {
+                    factories[i] = ViewFactoryRegistry.getFactory(DEFAULT_FACTORY_TAGS[i]);
+                    assertNotNull(DEFAULT_FACTORY_TAGS[i], factories[i]);
+                }
+
+                // Warm up both variants before measuring.
+                inflate(inflater, ITERATIONS);
+                final long factoryNanos = inflate(inflater, ITERATIONS);
+                final String factoryViews = describeViews(
+                        inflater.inflate(R.layout.layout_inflation_benchmark, null));
+                try {
+                    for (String tag : DEFAULT_FACTORY_TAGS) {
+                        ViewFactoryRegistry.unregisterFactory(tag);
+                    }
+                    assertEquals(factoryViews, describeViews(
+                            inflater.inflate(R.layout.layout_inflation_benchmark, null)));
+                    inflate(inflater, ITERATIONS);
+                    final long reflectionNanos = inflate(inflater, ITERATIONS);
+                    Log.i(TAG, String.format("factories=%d us/layout reflection=%d us/layout",
+                            factoryNanos / ITERATIONS / 1000,
+                            reflectionNanos / ITERATIONS / 1000));
+                } finally {
+                    for (int i = 0; i < factories.length; i++) {
+                        ViewFactoryRegistry.registerFactory(DEFAULT_FACTORY_TAGS[i],
+                                factories[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    private static long inflate(LayoutInflater inflater, int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final View view = inflater.inflate(R.layout.layout_inflation_benchmark, null);
+            assertEquals(VIEW_COUNT, countViews(view));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the class, id and size of every view in the hierarchy, in depth-first order.
+     */
+    private static String describeViews(View view) {
+        final StringBuilder builder = new StringBuilder();
+        describeViews(view, builder);
+        return builder.toString();
+    }
+
+    private static void describeViews(View view, StringBuilder builder) {
+        final ViewGroup.LayoutParams lp = view.getLayoutParams();
+        builder.append(view.getClass().getName()).append(" id=").append(view.getId());
+        if (lp != null) {
+            builder.append(' ').append(lp.width).append('x').append(lp.height);
+        }
+        builder.append('\n');
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                describeViews(group.getChildAt(i), builder);
+            }
+        }
+    }
+
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
@@ -16,14 +16,25 @@
 
 package android.support.v7.app;
 
+import android.content.Context;
+import android.os.Parcelable;
+import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 import android.support.v7.view.menu.MenuBuilder;
+import android.support.v7.view.menu.MenuItemImpl;
+import android.support.v7.view.menu.MenuPresenter;
+import android.support.v7.view.menu.MenuView;
+import android.support.v7.view.menu.SubMenuBuilder;
+import android.view.ViewGroup;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -41,5 +52,123 @@ public class MenuBuilderTest {
         assertNotNull(method);
         assertTrue(Modifier.isPublic(method.getModifiers()));
     }
+
+    @Test
+    public void itemChangeIsDispatchedToPresenter() {
+        final MenuBuilder menu = new MenuBuilder(InstrumentationRegistry.getTargetContext());
+        final MenuItemImpl item = (MenuItemImpl) menu.add("First");
+        final RecordingPresenter presenter = new RecordingPresenter();
+        menu.addMenuPresenter(presenter);
+
+        item.setTitle("Changed");
+
+        assertEquals(Arrays.asList(item), presenter.mUpdatedItems);
+        assertEquals(0, presenter.mMenuUpdates);
+    }
+
+    @Test
+    public void itemChangesWhileDispatchStoppedAreAllDispatched() {
+        final MenuBuilder menu = new MenuBuilder(InstrumentationRegistry.getTargetContext());
+        final MenuItemImpl first = (MenuItemImpl) menu.add("First");
+        final MenuItemImpl second = (MenuItemImpl) menu.add("Second");
+        final MenuItemImpl third = (MenuItemImpl) menu.add("Third");
+        third.setCheckable(true);
+        final RecordingPresenter presenter = new RecordingPresenter();
+        menu.addMenuPresenter(presenter);
+
+        menu.stopDispatchingItemsChanged();
+        first.setTitle("First changed");
+        second.setTitle("Second changed");
+        first.setEnabled(false);
+        third.setChecked(true);
+        assertEquals(0, presenter.mUpdatedItems.size());
+        menu.startDispatchingItemsChanged();
+
+        // Each item is dispatched once, in the order it first changed
+        assertEquals(Arrays.asList(first, second, third), presenter.mUpdatedItems);
+        assertEquals(0, presenter.mMenuUpdates);
+    }
+
+    @Test
+    public void structureChangeWhileDispatchStoppedUpdatesWholeMenu() {
+        final MenuBuilder menu = new MenuBuilder(InstrumentationRegistry.getTargetContext());
+        final MenuItemImpl first = (MenuItemImpl) menu.add("First");
+        final RecordingPresenter presenter = new RecordingPresenter();
+        menu.addMenuPresenter(presenter);
+
+        menu.stopDispatchingItemsChanged();
+        first.setTitle("First changed");
+        menu.add("Second");
+        menu.startDispatchingItemsChanged();
+
+        assertEquals(0, presenter.mUpdatedItems.size());
+        assertEquals(1, presenter.mMenuUpdates);
+    }
+
+    private static class RecordingPresenter implements MenuPresenter {
+        final ArrayList<MenuItemImpl> mUpdatedItems = new ArrayList<>();
+        int mMenuUpdates;
+
+        @Override
+        public void initForMenu(Context context, MenuBuilder menu) {
+        }
+
+        @Override
+        public MenuView getMenuView(ViewGroup root) {
+            return null;
+        }
+
+        @Override
+        public void updateMenuView(boolean cleared) {
+            mMenuUpdates++;
+        }
+
+        @Override
+        public void updateMenuItemView(MenuItemImpl item) {
+            mUpdatedItems.add(item);
+        }
+
+        @Override
+        public void setCallback(Callback cb) {
+        }
+
+        @Override
+        public boolean onSubMenuSelected(SubMenuBuilder subMenu) {
+            return false;
+        }
+
+        @Override
+        public void onCloseMenu(MenuBuilder menu, boolean allMenusAreClosing) {
+        }
+
+        @Override
+        public boolean flagActionItems() {
+            return false;
+        }
+
+        @Override
+        public boolean expandItemActionView(MenuBuilder menu, MenuItemImpl item) {
+            return false;
+        }
+
+        @Override
+        public boolean collapseItemActionView(MenuBuilder menu, MenuItemImpl item) {
+            return false;
+        }
+
+        @Override
+        public int getId() {
+            return 0;
+        }
+
+        @Override
+        public Parcelable onSaveInstanceState() {
+            return null;
+        }
+
+        @Override
+        public void onRestoreInstanceState(Parcelable state) {
+        }
+    }
 }
 
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.widget;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.util.AtomicFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ActivityChooserModelTest {
+    private static final String HISTORY_FILE_NAME = "activity_chooser_model_test";
+    private static final String ACTION_CHOOSE = "android.support.v7.appcompat.test.CHOOSE";
+    private static final int LOG_HEADER_LENGTH = 8;
+
+    private Context mContext;
+    private Intent mIntent;
+    private File mLogFile;
+    private File mLegacyFile;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mIntent = new Intent(ACTION_CHOOSE);
+        mIntent.setPackage(mContext.getPackageName());
+        mLogFile = mContext.getFileStreamPath(HISTORY_FILE_NAME + ".log");
+        mLegacyFile = mContext.getFileStreamPath(HISTORY_FILE_NAME + ".xml");
+        deleteHistoryFiles();
+    }
+
+    @After
+    public void tearDown() {
+        deleteHistoryFiles();
+    }
+
+    private void deleteHistoryFiles() {
+        new AtomicFile(mLogFile).delete();
+        new AtomicFile(mLegacyFile).delete();
+    }
+
+    /**
+     * Creates a model which reads its history from the history files, like a model created
+     * when the process starts again.
+     */
+    private ActivityChooserModel loadModel() {
+        ActivityChooserModel model = new ActivityChooserModel(mContext, HISTORY_FILE_NAME);
+        model.setIntent(mIntent);
+        return model;
+    }
+
+    private static void choose(ActivityChooserModel model, String activityName) {
+        for (int i = 0; i < model.getActivityCount(); i++) {
+            if (model.getActivity(i).activityInfo.name.equals(activityName)) {
+                model.chooseActivity(i);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No activity " + activityName);
+    }
+
+    private static String[] getOrder(ActivityChooserModel model) {
+        final String[] order = new String[model.getActivityCount()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = model.getActivity(i).activityInfo.name;
+        }
+        return order;
+    }
+
+    @Test
+    public void appendedChoicesAreReloaded() {
+        ActivityChooserModel model = loadModel();
+        assertEquals(3, model.getActivityCount());
+        final String[] names = getOrder(model);
+        choose(model, names[2]);
+        model.flushHistoryLog();
+        final long firstLength = mLogFile.length();
+        assertEquals(LOG_HEADER_LENGTH + getRecordLength(names[2]), firstLength);
+        choose(model, names[1]);
+        choose(model, names[2]);
+        model.flushHistoryLog();
+        // Each choice appended one record
+        assertEquals(firstLength + getRecordLength(names[1]) + getRecordLength(names[2]),
+                mLogFile.length());
+
+        ActivityChooserModel reloaded = loadModel();
+        assertEquals(3, reloaded.getHistorySize());
+        assertArrayEquals(getOrder(model), getOrder(reloaded));
+        assertEquals(names[2], reloaded.getDefaultActivity().activityInfo.name);
+    }
+
+    @Test
+    public void truncatedLastRecordIsDropped() throws IOException {
+        ActivityChooserModel model = loadModel();
+        final String[] names = getOrder(model);
+        choose(model, names[1]);
+        choose(model, names[2]);
+        choose(model, names[2]);
+        model.flushHistoryLog();
+
+        // As if the process died while appending the last record
+        RandomAccessFile file = new RandomAccessFile(mLogFile, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        ActivityChooserModel reloaded = loadModel();
+        assertEquals(2, reloaded.getHistorySize());
+        // The damaged log was rewritten, so that it can be appended to again
+        choose(reloaded, names[1]);
+        reloaded.flushHistoryLog();
+        assertEquals(3, loadModel().getHistorySize());
+    }
+
+    @Test
+    public void legacyHistoryIsMigrated() throws IOException {
+        final String packageName = mContext.getPackageName();
+        final String[] names = getOrder(loadModel());
+        FileOutputStream out = new FileOutputStream(mLegacyFile);
+        try {
+            StringBuilder xml = new StringBuilder("<historical-records>");
+            for (int i = 0; i < 4; i++) {
+                xml.append("<historical-record activity=\"")
+                        .append(new ComponentName(packageName, names[i % 2 + 1])
+                                .flattenToString())
+                        .append("\" time=\"").append(i).append("\" weight=\"1.0\"/>");
+            }
+            xml.append("</historical-records>");
+            out.write(xml.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        ActivityChooserModel model = loadModel();
+        assertEquals(4, model.getHistorySize());
+        model.flushHistoryLog();
+        assertFalse(mLegacyFile.exists());
+        assertTrue(mLogFile.exists());
+
+        ActivityChooserModel reloaded = loadModel();
+        assertEquals(4, reloaded.getHistorySize());
+        assertArrayEquals(getOrder(model), getOrder(reloaded));
+    }
+
+    @Test
+    public void damagedLegacyHistoryIsKept() throws IOException {
+        final String activity = new ComponentName(mContext.getPackageName(),
+                getOrder(loadModel())[1]).flattenToString();
+        FileOutputStream out = new FileOutputStream(mLegacyFile);
+        try {
+            out.write(("<historical-records><historical-record activity=\"" + activity
+                    + "\" time=\"now\" weight=\"1.0\"/></historical-records>").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        ActivityChooserModel model = loadModel();
+        assertEquals(0, model.getHistorySize());
+        model.flushHistoryLog();
+        assertTrue(mLegacyFile.exists());
+        assertFalse(mLogFile.exists());
+    }
+
+    @Test
+    public void unknownLogVersionIsLeftUntouched() throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mLogFile));
+        try {
+            out.writeInt(0x4143484c);
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeUTF("Records of a newer version");
+        } finally {
+            out.close();
+        }
+        final byte[] contents = readLog();
+
+        ActivityChooserModel model = loadModel();
+        assertEquals(0, model.getHistorySize());
+        choose(model, getOrder(model)[1]);
+        // The choice is still used for the current session
+        assertEquals(1, model.getHistorySize());
+        model.flushHistoryLog();
+        assertArrayEquals(contents, readLog());
+    }
+
+    @Test
+    public void incrementalSortMatchesFullComputation() {
+        ActivityChooserModel model = new ActivityChooserModel(mContext, null);
+        model.setIntent(mIntent);
+        final int historyMaxSize = 10;
+        model.setHistoryMaxSize(historyMaxSize);
+        final String[] names = getOrder(model);
+        final List<String> history = new ArrayList<String>();
+        final Random random = new Random(0);
+
+        // Enough choices to prune the history and to recompute the weights several times
+        for (int i = 0; i < 200; i++) {
+            final String chosen = names[random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(2)];
+            choose(model, chosen);
+            history.add(chosen);
+            if (history.size() > historyMaxSize) {
+                history.remove(0);
+            }
+
+            final String[] order = getOrder(model);
+            for (int j = 1; j < order.length; j++) {
+                final float previousWeight = computeWeight(history, order[j - 1]);
+                final float weight = computeWeight(history, order[j]);
+                assertTrue("Choice " + i + " sorted " + Arrays.toString(order)
+                        + " for history " + history, previousWeight >= weight - 1e-4f);
+            }
+        }
+    }
+
+    /**
+     * Computes the weight of an activity from scratch the way the default sorter does.
+     */
+    private static float computeWeight(List<String> history, String activityName) {
+        float weight = 0;
+        float recordWeight = 1;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if (history.get(i).equals(activityName)) {
+                weight += recordWeight;
+            }
+            recordWeight *= 0.95f;
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the length of a log record: the flattened component name written with
+     * {@link DataOutputStream#writeUTF}, the time and the weight.
+     */
+    private int getRecordLength(String activityName) {
+        final String component =
+                new ComponentName(mContext.getPackageName(), activityName).flattenToString();
+        return 2 + component.length() + 8 + 4;
+    }
+
+    private byte[] readLog() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mLogFile, "r");
+        try {
+            final byte[] contents = new byte[(int) file.length()];
+            file.readFully(contents);
+            return contents;
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.widget;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.appcompat.R;
+import android.view.ContextThemeWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+@RunWith(AndroidJUnit4.class)
+public class AppCompatDrawableManagerTest {
+    private static final int TINTED_DRAWABLE = R.drawable.abc_ic_ab_back_mtrl_am_alpha;
+
+    private AppCompatDrawableManager mManager;
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mManager = AppCompatDrawableManager.get();
+        mContext = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.Theme_AppCompat);
+    }
+
+    @Test
+    public void tintedDrawableIsClonedFromCache() {
+        final int hits = mManager.getTintedDrawableHitCount();
+        final int misses = mManager.getTintedDrawableMissCount();
+        final Drawable first = mManager.getDrawable(mContext, TINTED_DRAWABLE);
+        final Drawable second = mManager.getDrawable(mContext, TINTED_DRAWABLE);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertEquals(first.getIntrinsicWidth(), second.getIntrinsicWidth());
+        assertEquals(misses + 1, mManager.getTintedDrawableMissCount());
+        assertEquals(hits + 1, mManager.getTintedDrawableHitCount());
+    }
+
+    @Test
+    public void tintedDrawablesAreCachedPerTheme() {
+        final Context otherContext = new ContextThemeWrapper(
+                InstrumentationRegistry.getTargetContext(), R.style.Theme_AppCompat_Light);
+        mManager.getDrawable(mContext, TINTED_DRAWABLE);
+        final int misses = mManager.getTintedDrawableMissCount();
+        mManager.getDrawable(otherContext, TINTED_DRAWABLE);
+        assertEquals(misses + 1, mManager.getTintedDrawableMissCount());
+        mManager.getDrawable(otherContext, TINTED_DRAWABLE);
+        assertEquals(misses + 1, mManager.getTintedDrawableMissCount());
+    }
+
+    @Test
+    public void tintedDrawablesAreDroppedOnConfigurationChange() {
+        final Resources appResources = mContext.getResources();
+        final Configuration config = new Configuration(appResources.getConfiguration());
+        final Resources resources = new Resources(appResources.getAssets(),
+                appResources.getDisplayMetrics(), config);
+        final Resources.Theme theme = resources.newTheme();
+        theme.applyStyle(R.style.Theme_AppCompat, true);
+        // A context whose theme outlives configuration changes, like an activity which
+        // handles them itself
+        final Context context = new ContextWrapper(mContext) {
+            @Override
+            public Resources getResources() {
+                return resources;
+            }
+
+            @Override
+            public Resources.Theme getTheme() {
+                return theme;
+            }
+        };
+
+        mManager.getDrawable(context, TINTED_DRAWABLE);
+        final int misses = mManager.getTintedDrawableMissCount();
+        mManager.getDrawable(context, TINTED_DRAWABLE);
+        assertEquals(misses, mManager.getTintedDrawableMissCount());
+
+        config.orientation = config.orientation == Configuration.ORIENTATION_PORTRAIT
+                ? Configuration.ORIENTATION_LANDSCAPE : Configuration.ORIENTATION_PORTRAIT;
+        resources.updateConfiguration(config, appResources.getDisplayMetrics());
+        mManager.getDrawable(context, TINTED_DRAWABLE);
+        assertEquals(misses + 1, mManager.getTintedDrawableMissCount());
+        mManager.getDrawable(context, TINTED_DRAWABLE);
+        assertEquals(misses + 1, mManager.getTintedDrawableMissCount());
+    }
+
+    @Test
+    public void colorFilterCacheGrowsWhenItKeepsMissing() {
+        // Cycle through more colors than the cache can ever hold, so that it grows to its
+        // maximum size
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                AppCompatDrawableManager.getPorterDuffColorFilter(Color.rgb(i, round, 0),
+                        PorterDuff.Mode.SRC_IN);
+            }
+        }
+        final int maxSize = AppCompatDrawableManager.getColorFilterCacheMaxSize();
+        assertEquals(64, maxSize);
+
+        // A set of colors which fits is now served from the cache
+        for (int i = 0; i < maxSize; i++) {
+            AppCompatDrawableManager.getPorterDuffColorFilter(Color.rgb(i, 0, 255),
+                    PorterDuff.Mode.SRC_IN);
+        }
+        final int hits = AppCompatDrawableManager.getColorFilterHitCount();
+        for (int i = 0; i < maxSize; i++) {
+            AppCompatDrawableManager.getPorterDuffColorFilter(Color.rgb(i, 0, 255),
+                    PorterDuff.Mode.SRC_IN);
+        }
+        assertEquals(hits + maxSize, AppCompatDrawableManager.getColorFilterHitCount());
+        assertEquals(maxSize, AppCompatDrawableManager.getColorFilterCacheMaxSize());
+    }
+}
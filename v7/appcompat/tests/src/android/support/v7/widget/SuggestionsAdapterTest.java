@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.widget;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.app.SearchManager;
+import android.app.SearchableInfo;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.graphics.drawable.Drawable;
+import android.provider.BaseColumns;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.util.LruCache;
+import android.support.v7.appcompat.R;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SuggestionsAdapterTest {
+    private static final int ICON_A = R.drawable.abc_ic_clear_mtrl_alpha;
+    private static final int ICON_B = R.drawable.abc_ic_go_search_api_mtrl_alpha;
+    private static final long TIMEOUT_MS = 5000;
+
+    private Instrumentation mInstrumentation;
+    private Context mContext;
+    private ComponentName mSearchActivity;
+    private LruCache<String, Drawable.ConstantState> mCache;
+    private SuggestionsAdapter mAdapter;
+    private FrameLayout mParent;
+    private View mRow;
+    // The left-hand side icon of the row as bound, before any icon loaded in the background
+    // gets back to it.
+    private Drawable mBoundIcon1;
+    private int mBoundIcon1Visibility;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContext = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.Theme_AppCompat);
+        // Declared searchable in the test manifest, without an icon
+        mSearchActivity = new ComponentName(mContext, Activity.class);
+        final SearchableInfo searchable = ((SearchManager) mContext.getSystemService(
+                Context.SEARCH_SERVICE)).getSearchableInfo(mSearchActivity);
+        assertNotNull(searchable);
+        mCache = new LruCache<>(16);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter = new SuggestionsAdapter(mContext, new SearchView(mContext),
+                        searchable, mCache);
+                mParent = new FrameLayout(mContext);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.close();
+            }
+        });
+    }
+
+    /**
+     * Shows one suggestion for each of the given values of the left-hand side icon column.
+     */
+    private void setSuggestions(String... icons) {
+        final MatrixCursor cursor = new MatrixCursor(new String[] {
+                BaseColumns._ID, SearchManager.SUGGEST_COLUMN_TEXT_1,
+                SearchManager.SUGGEST_COLUMN_ICON_1 });
+        for (int i = 0; i < icons.length; i++) {
+            cursor.addRow(new Object[] { i, "Suggestion " + i, icons[i] });
+        }
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.changeCursor(cursor);
+            }
+        });
+    }
+
+    /**
+     * Binds the row at the given position on the UI thread, and records its icon as bound.
+     */
+    private View bind(final int position, final View convertView) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRow = mAdapter.getView(position, convertView, mParent);
+                mBoundIcon1 = getIcon1(mRow).getDrawable();
+                mBoundIcon1Visibility = getIcon1(mRow).getVisibility();
+            }
+        });
+        return mRow;
+    }
+
+    private String getIconCacheKey(int resId) {
+        return ContentResolver.SCHEME_ANDROID_RESOURCE + "://" + mContext.getPackageName()
+                + "/" + resId;
+    }
+
+    private static ImageView getIcon1(View row) {
+        return (ImageView) row.findViewById(android.R.id.icon1);
+    }
+
+    /**
+     * Waits until the given number of icons loaded in the background got back to the UI
+     * thread.
+     */
+    private void waitForIconLoads(int count) throws InterruptedException {
+        final int[] loads = new int[1];
+        for (long waited = 0; waited < TIMEOUT_MS; waited += 50) {
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    loads[0] = mAdapter.getIconLoadCount();
+                }
+            });
+            if (loads[0] >= count) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        assertEquals(count, loads[0]);
+    }
+
+    @Test
+    public void cachedIconIsSetWhileBinding() throws InterruptedException {
+        setSuggestions(Integer.toString(ICON_A));
+        final View row = bind(0, null);
+        // The icon is loaded in the background, keeping its space meanwhile
+        assertNull(mBoundIcon1);
+        assertEquals(View.INVISIBLE, mBoundIcon1Visibility);
+        assertEquals(0, mAdapter.getIconCacheHitCount());
+
+        waitForIconLoads(1);
+        final Drawable.ConstantState cached = mCache.get(getIconCacheKey(ICON_A));
+        assertNotNull(cached);
+        assertSame(cached, getIcon1(row).getDrawable().getConstantState());
+        assertEquals(View.VISIBLE, getIcon1(row).getVisibility());
+
+        bind(0, null);
+        assertSame(cached, mBoundIcon1.getConstantState());
+        assertEquals(View.VISIBLE, mBoundIcon1Visibility);
+        assertEquals(1, mAdapter.getIconCacheHitCount());
+        assertEquals(1, mAdapter.getIconLoadCount());
+    }
+
+    @Test
+    public void missingActivityIconIsCached() throws InterruptedException {
+        final String activityKey = mSearchActivity.flattenToShortString();
+        assertNull(mCache.get(activityKey));
+        // Without an icon value, the row falls back to the icon of the searchable activity
+        setSuggestions("0");
+        bind(0, null);
+        waitForIconLoads(1);
+
+        final Drawable.ConstantState cached = mCache.get(activityKey);
+        assertNotNull(cached);
+        assertNull(cached.newDrawable());
+
+        // The activity has no icon either, so the default activity icon is set right away
+        bind(0, null);
+        assertNotNull(mBoundIcon1);
+        assertEquals(View.VISIBLE, mBoundIcon1Visibility);
+        assertEquals(1, mAdapter.getIconCacheHitCount());
+        assertEquals(1, mAdapter.getIconLoadCount());
+    }
+
+    @Test
+    public void iconLoadedForRecycledRowIsDropped() throws InterruptedException {
+        setSuggestions(Integer.toString(ICON_A), Integer.toString(ICON_B));
+        final boolean[] loaded = new boolean[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final View row = mAdapter.getView(0, null, mParent);
+                // Keep the UI thread busy until the first icon has been loaded, so that it
+                // only gets back to the row after the row has been recycled.
+                final long start = System.currentTimeMillis();
+                while (mCache.get(getIconCacheKey(ICON_A)) == null &&
+                        System.currentTimeMillis() - start < TIMEOUT_MS) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                loaded[0] = mCache.get(getIconCacheKey(ICON_A)) != null;
+                mRow = mAdapter.getView(1, row, mParent);
+            }
+        });
+        assertTrue(loaded[0]);
+
+        waitForIconLoads(2);
+        assertEquals(1, mAdapter.getDroppedIconCount());
+        assertSame(mCache.get(getIconCacheKey(ICON_B)),
+                getIcon1(mRow).getDrawable().getConstantState());
+    }
+}
@@ -255,6 +255,15 @@ public class GridLayout extends ViewGroup {
     int mLastLayoutParamsHashCode = UNINITIALIZED_HASH;
     Printer mPrinter = LOG_PRINTER;
 
+    // The specs and visibility of the children when the structure of the axes was last built.
+    // A layout request only rebuilds the structure if these changed, children that merely
+    // changed their size keep the arcs and their order.
+    Spec[] mStructureRowSpecs;
+    Spec[] mStructureColumnSpecs;
+    boolean[] mStructureGone;
+    boolean mStructureRtl;
+    boolean mStructureCheckPending;
+
     // Constructors
 
     /**
@@ -872,10 +881,61 @@ public class GridLayout extends ViewGroup {
         return result;
     }
 
+    private void recordStructure() {
+        final int N = getChildCount();
+        if (mStructureGone == null || mStructureGone.length != N) {
+            mStructureRowSpecs = new Spec[N];
+            mStructureColumnSpecs = new Spec[N];
+            mStructureGone = new boolean[N];
+        }
+        for (int i = 0; i < N; i++) {
+            View c = getChildAt(i);
+            LayoutParams lp = getLayoutParams(c);
+            mStructureRowSpecs[i] = lp.rowSpec;
+            mStructureColumnSpecs[i] = lp.columnSpec;
+            mStructureGone[i] = c.getVisibility() == View.GONE;
+        }
+        mStructureRtl = isLayoutRtlCompat();
+    }
+
+    private static boolean isSameSpec(Spec spec, Spec other) {
+        // Spec.equals() ignores weights, which change the alignment and distribution of space
+        return spec.equals(other) && spec.weight == other.weight;
+    }
+
+    private boolean hasStructureChanged() {
+        final int N = getChildCount();
+        if (mStructureGone == null || mStructureGone.length != N
+                || mStructureRtl != isLayoutRtlCompat()) {
+            return true;
+        }
+        for (int i = 0; i < N; i++) {
+            View c = getChildAt(i);
+            LayoutParams lp = getLayoutParams(c);
+            if (!isSameSpec(lp.rowSpec, mStructureRowSpecs[i])
+                    || !isSameSpec(lp.columnSpec, mStructureColumnSpecs[i])
+                    || (c.getVisibility() == View.GONE) != mStructureGone[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Called before each layout operation, after the layout was requested
+    private void structureCheck() {
+        if (mStructureCheckPending) {
+            mStructureCheckPending = false;
+            if (mLastLayoutParamsHashCode != UNINITIALIZED_HASH && hasStructureChanged()) {
+                invalidateStructure();
+            }
+        }
+    }
+
     private void consistencyCheck() {
         if (mLastLayoutParamsHashCode == UNINITIALIZED_HASH) {
             validateLayoutParams();
             mLastLayoutParamsHashCode = computeLayoutParamsHashCode();
+            recordStructure();
         } else if (mLastLayoutParamsHashCode != computeLayoutParamsHashCode()) {
             mPrinter.println("The fields of some layout parameters were modified in between "
                     + "layout operations. Check the javadoc for GridLayout.LayoutParams#rowSpec.");
@@ -930,6 +990,7 @@ public class GridLayout extends ViewGroup {
 
     @Override
     protected void onMeasure(int widthSpec, int heightSpec) {
+        structureCheck();
         consistencyCheck();
 
         /** If we have been called by {@link View#measure(int, int)}, one of width or height
@@ -980,7 +1041,10 @@ public class GridLayout extends ViewGroup {
     @Override
     public void requestLayout() {
         super.requestLayout();
-        invalidateStructure();
+        // Views are added and removed after requesting a layout, so whether the structure
+        // changed can only be checked once we are measured.
+        mStructureCheckPending = true;
+        invalidateValues();
     }
 
     // Layout container
@@ -999,6 +1063,7 @@ public class GridLayout extends ViewGroup {
      */
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        structureCheck();
         consistencyCheck();
 
         int targetWidth = right - left;
@@ -1118,6 +1183,9 @@ public class GridLayout extends ViewGroup {
         public boolean hasWeightsValid = false;
         public int[] deltas;
 
+        // The values of the arcs when the locations were last solved, see computeLocations()
+        int[] solvedArcValues;
+
         boolean orderPreserved = DEFAULT_ORDER_PRESERVED;
 
         private MutableInt parentMin = new MutableInt(0);
@@ -1485,16 +1553,30 @@ public class GridLayout extends ViewGroup {
         which the O(n^2) Bellman-Ford algorithm the most commonly used general solution.
         */
         private boolean solve(Arc[] arcs, int[] locations) {
-            return solve(arcs, locations, true);
+            return solve(arcs, locations, true, false);
         }
 
         private boolean solve(Arc[] arcs, int[] locations, boolean modifyOnError) {
+            return solve(arcs, locations, modifyOnError, false);
+        }
+
+        /*
+        When warmStart is set, the first pass starts from the values already in locations
+        rather than from zero. This converges to the same solution provided that they are
+        no larger than the solution, which is the case for the solution of a system whose
+        arcs were all no larger than the current ones. Inconsistent constraints are always
+        resolved starting from zero.
+        */
+        private boolean solve(Arc[] arcs, int[] locations, boolean modifyOnError,
+                boolean warmStart) {
             String axisName = horizontal ? "horizontal" : "vertical";
             int N = getCount() + 1; // The number of vertices is the number of columns/rows + 1.
             boolean[] originalCulprits = null;
 
             for (int p = 0; p < arcs.length; p++) {
-                init(locations);
+                if (p != 0 || !warmStart) {
+                    init(locations);
+                }
 
                 // We take one extra pass over traditional Bellman-Ford (and omit their final step)
                 for (int i = 0; i < N; i++) {
@@ -1510,6 +1592,11 @@ public class GridLayout extends ViewGroup {
                     }
                 }
 
+                if (warmStart) {
+                    // Start again from zero, so that the same culprits are found as before
+                    return solve(arcs, locations, modifyOnError, false);
+                }
+
                 if (!modifyOnError) {
                     return false; // cannot solve with these constraints
                 }
@@ -1681,9 +1768,39 @@ public class GridLayout extends ViewGroup {
             return totalWeight;
         }
 
+        private static final int ARCS_UNCHANGED = 0;
+        private static final int ARCS_TIGHTENED = 1;
+        private static final int ARCS_CHANGED = 2;
+
+        // Compares the values of the arcs with those of the last solve, and records them
+        private int updateSolvedArcValues(Arc[] arcs) {
+            int result = ARCS_UNCHANGED;
+            if (solvedArcValues == null || solvedArcValues.length != arcs.length) {
+                solvedArcValues = new int[arcs.length];
+                result = ARCS_CHANGED;
+            }
+            for (int i = 0; i < arcs.length; i++) {
+                int value = arcs[i].value.value;
+                if (result != ARCS_CHANGED && value != solvedArcValues[i]) {
+                    result = value > solvedArcValues[i] ? ARCS_TIGHTENED : ARCS_CHANGED;
+                }
+                solvedArcValues[i] = value;
+            }
+            return result;
+        }
+
         private void computeLocations(int[] a) {
             if (!hasWeights()) {
-                solve(a);
+                Arc[] arcs = getArcs();
+                int change = updateSolvedArcValues(arcs);
+                if (change == ARCS_UNCHANGED) {
+                    // The children and the parent constraints measure the same as when the
+                    // locations were last computed, so they still hold
+                    return;
+                }
+                // Start from the previous solution if it cannot be larger than the new one.
+                // Unless the order is preserved it has been translated below, so it may be.
+                solve(arcs, a, true, change == ARCS_TIGHTENED && orderPreserved);
             } else {
                 solveAndDistributeSpace(a);
             }
@@ -1768,6 +1885,7 @@ public class GridLayout extends ViewGroup {
             arcs = null;
 
             locations = null;
+            solvedArcValues = null;
 
             deltas = null;
             hasWeightsValid = false;
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.widget.test;
+
+import android.content.Context;
+import android.support.v7.widget.GridLayout;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Measures how long 10x10 and 30x30 GridLayouts take to lay out again after the text of one
+ * of their cells changed. The grids must end up laid out like grids laid out from scratch;
+ * timings are logged.
+ *
+ * @hide
+ */
+public class GridLayoutBenchmark extends ActivityInstrumentationTestCase2 {
+    private static final String TAG = "GridLayoutBenchmark";
+
+    private static final int ITERATIONS = 100;
+
+    public GridLayoutBenchmark() {
+        super("android.support.v7.widget.test", GridLayoutTestActivity.class);
+    }
+
+    public void testRelayout10x10() throws Throwable {
+        benchmarkRelayout(10);
+    }
+
+    public void testRelayout30x30() throws Throwable {
+        benchmarkRelayout(30);
+    }
+
+    private void benchmarkRelayout(final int size) throws Throwable {
+        final Context context = getActivity();
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final GridLayout grid = createGrid(context, size);
+                layout(grid);
+                final int width = grid.getMeasuredWidth();
+                final int height = grid.getMeasuredHeight();
+
+                // A grid which lays out again must end up as one laid out from scratch
+                final TextView changed = (TextView) grid.getChildAt(size + 1);
+                changed.setText("A much longer cell");
+                layout(grid);
+                final GridLayout expected = createGrid(context, size);
+                ((TextView) expected.getChildAt(size + 1)).setText("A much longer cell");
+                layout(expected);
+                assertSameLayout(expected, grid);
+
+                // Warm up before measuring
+                relayout(grid, ITERATIONS);
+                final long start = System.nanoTime();
+                relayout(grid, ITERATIONS);
+                final long nanos = System.nanoTime() - start;
+                Log.i(TAG, String.format("%dx%d: %d us/layout", size, size,
+                        nanos / (2 * ITERATIONS) / 1000));
+                // Every cell got its text back
+                assertSameLayout(expected, grid);
+
+                changed.setText(String.valueOf(size + 1));
+                layout(grid);
+                assertEquals(width, grid.getMeasuredWidth());
+                assertEquals(height, grid.getMeasuredHeight());
+            }
+        });
+    }
+
+    private static GridLayout createGrid(Context context, int size) {
+        final GridLayout grid = new GridLayout(context);
+        grid.setColumnCount(size);
+        for (int i = 0; i < size * size; i++) {
+            final TextView cell = new TextView(context);
+            cell.setText(String.valueOf(i));
+            grid.addView(cell);
+        }
+        return grid;
+    }
+
+    private static void layout(GridLayout grid) {
+        final int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        grid.measure(spec, spec);
+        grid.layout(0, 0, grid.getMeasuredWidth(), grid.getMeasuredHeight());
+    }
+
+    /**
+     * Makes every cell in turn wider and then narrow again, laying out the grid each time, the
+     * way a grid of live values would be.
+     */
+    private static void relayout(GridLayout grid, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            final TextView cell = (TextView) grid.getChildAt(i % grid.getChildCount());
+            final CharSequence text = cell.getText();
+            cell.setText(text + "0");
+            layout(grid);
+            cell.setText(text);
+            layout(grid);
+        }
+    }
+
+    private static void assertSameLayout(GridLayout expected, GridLayout actual) {
+        assertEquals(expected.getMeasuredWidth(), actual.getMeasuredWidth());
+        assertEquals(expected.getMeasuredHeight(), actual.getMeasuredHeight());
+        for (int i = 0; i < expected.getChildCount(); i++) {
+            final View expectedChild = expected.getChildAt(i);
+            final View actualChild = actual.getChildAt(i);
+            assertEquals("left of cell " + i, expectedChild.getLeft(), actualChild.getLeft());
+            assertEquals("top of cell " + i, expectedChild.getTop(), actualChild.getTop());
+            assertEquals("right of cell " + i, expectedChild.getRight(), actualChild.getRight());
+            assertEquals("bottom of cell " + i, expectedChild.getBottom(),
+                    actualChild.getBottom());
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.content.res.XmlResourceParser;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.view.ConstructorCache;
 import android.util.AttributeSet;
 import android.util.Xml;
 import android.view.InflateException;
@@ -31,7 +32,6 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
-import java.util.HashMap;
 
 /**
  * The {@link PreferenceInflater} is used to inflate preference hierarchies from
@@ -43,8 +43,6 @@ class PreferenceInflater {
     private static final Class<?>[] CONSTRUCTOR_SIGNATURE = new Class[] {
             Context.class, AttributeSet.class};
 
-    private static final HashMap<String, Constructor> CONSTRUCTOR_MAP = new HashMap<>();
-
     private final Context mContext;
 
     private final Object[] mConstructorArgs = new Object[2];
@@ -216,7 +214,8 @@ class PreferenceInflater {
     private Preference createItem(@NonNull String name, @Nullable String[] prefixes,
             AttributeSet attrs)
             throws ClassNotFoundException, InflateException {
-        Constructor constructor = CONSTRUCTOR_MAP.get(name);
+        Constructor<? extends Preference> constructor =
+                ConstructorCache.get(name, Preference.class, CONSTRUCTOR_SIGNATURE);
 
         try {
             if (constructor == null) {
@@ -245,14 +244,14 @@ class PreferenceInflater {
                         }
                     }
                 }
-                constructor = clazz.getConstructor(CONSTRUCTOR_SIGNATURE);
-                constructor.setAccessible(true);
-                CONSTRUCTOR_MAP.put(name, constructor);
+                constructor = clazz.asSubclass(Preference.class)
+                        .getConstructor(CONSTRUCTOR_SIGNATURE);
+                ConstructorCache.put(name, CONSTRUCTOR_SIGNATURE, constructor);
             }
 
             Object[] args = mConstructorArgs;
             args[1] = attrs;
-            return (Preference) constructor.newInstance(args);
+            return constructor.newInstance(args);
 
         } catch (ClassNotFoundException e) {
             // If loadClass fails, we should propagate the exception.